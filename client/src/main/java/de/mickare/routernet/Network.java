@@ -1,7 +1,9 @@
 package de.mickare.routernet;
 
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import de.mickare.routernet.client.ClientSettings;
 import de.mickare.routernet.core.AbstractClientNetwork;
 import lombok.Getter;
 
@@ -12,6 +14,10 @@ public class Network extends AbstractClientNetwork {
 	public Network( NetClient client ) {
 		super( client.getLogger(), client.getExecutor(), client.getHome() );
 		this.client = client;
+		final ClientSettings.Connection settings = client.getConfig().getConnection();
+		getFragmentAssembler().setMemoryLimit( settings.getFragmentMemoryLimit() );
+		getFragmentAssembler().setSenderMemoryLimit( settings.getFragmentSenderMemoryLimit() );
+		getFragmentAssembler().setTimeout( settings.getFragmentTimeoutMillis(), TimeUnit.MILLISECONDS );
 	}
 	
 	@Override
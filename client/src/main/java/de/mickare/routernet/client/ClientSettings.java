@@ -1,6 +1,8 @@
 package de.mickare.routernet.client;
 
 import de.mickare.routernet.client.connection.ConnectFailHandler;
+import de.mickare.routernet.core.packet.FragmentAssembler;
+import de.mickare.routernet.netty.PipelineUtils;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
@@ -16,6 +18,24 @@ public @Data @NoArgsConstructor class ClientSettings {
 		
 		private ConnectFailHandler failHandler = ConnectFailHandler.RETRY;
 		
+		// Maximum number of flushes merged into one, 0 disables flush consolidation
+		private int flushConsolidationLimit = PipelineUtils.DEFAULT_FLUSH_CONSOLIDATION_LIMIT;
+		// Also merge flushes that are not caused by a read
+		private boolean consolidateFlushesWithoutRead = false;
+		// Time in microseconds a tunnel message may wait for a batch, e.g. 1000. 0 disables batching
+		private long batchLatencyMicros = PipelineUtils.DEFAULT_BATCH_LATENCY_MICROS;
+		private int batchMaxPackets = PipelineUtils.DEFAULT_BATCH_MAX_PACKETS;
+		// Offer frame compression to the router, the router decides whether it is used
+		private boolean compression = true;
+		// Offer varint length prefixes to the router
+		private boolean varintFraming = true;
+		// Maximum bytes of incomplete fragmented packets addressed to this client
+		private long fragmentMemoryLimit = FragmentAssembler.DEFAULT_MEMORY_LIMIT;
+		// Maximum bytes of incomplete fragmented packets of one sender, limits the size of a packet
+		private long fragmentSenderMemoryLimit = FragmentAssembler.DEFAULT_SENDER_MEMORY_LIMIT;
+		// Time in milliseconds an incomplete fragmented packet waits for its next fragment
+		private long fragmentTimeoutMillis = FragmentAssembler.DEFAULT_TIMEOUT_MILLIS;
+		
 	}
 	
 }
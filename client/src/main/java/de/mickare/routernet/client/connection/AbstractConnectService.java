@@ -1,5 +1,7 @@
 package de.mickare.routernet.client.connection;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -9,10 +11,13 @@ import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import de.mickare.routernet.NetClient;
+import de.mickare.routernet.client.ClientSettings;
 import de.mickare.routernet.client.ConnectClient;
 import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.NotConnectedException;
+import de.mickare.routernet.core.login.ClientLoginEngine;
 import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
 import de.mickare.routernet.util.FutureUtils;
 import de.mickare.routernet.util.concurrent.CloseableLock;
 import de.mickare.routernet.util.concurrent.CloseableReadWriteLock;
@@ -150,6 +155,22 @@ public abstract class AbstractConnectService extends AbstractScheduledService im
 	
 	protected abstract ConnectClient newConnectClient( Promise<Connection> future );
 	
+	/**
+	 * Creates the base pipeline initializer as configured in the client settings.
+	 * 
+	 * @return base initializer
+	 */
+	protected PipelineUtils.BaseInitializer newBaseInitializer() {
+		final ClientSettings.Connection settings = client.getConfig().getConnection();
+		return new PipelineUtils.BaseInitializer( settings.getFlushConsolidationLimit(), settings.isConsolidateFlushesWithoutRead(), settings.getBatchLatencyMicros(), settings.getBatchMaxPackets() );
+	}
+	
+	protected ClientLoginEngine newLoginEngine() {
+		final ClientSettings.Connection settings = client.getConfig().getConnection();
+		final Set<Compression> compressions = settings.isCompression() ? ClientLoginEngine.DEFAULT_COMPRESSIONS : Collections.emptySet();
+		return new ClientLoginEngine( client.getNetwork(), client.getAuthentication(), compressions, settings.isVarintFraming() );
+	}
+	
 	@Override
 	protected Scheduler scheduler() {
 		return Scheduler.newFixedDelaySchedule( delay_time, delay_time, delay_unit );
@@ -32,14 +32,16 @@ public class LocalConnectService extends AbstractConnectService {
 	@Override
 	protected LocalConnectClient newConnectClient( Promise<Connection> promise ) {
 		
+		final PipelineUtils.BaseInitializer base = newBaseInitializer();
+		
 		RouterLoginEngine engine_test = new RouterLoginEngine( framework.getTestNetwork(), framework.getAuthenticationRouter() );
-		ChannelInitializer<LocalChannel> init_test = PipelineUtils.baseInitAnd( ch -> {
+		ChannelInitializer<LocalChannel> init_test = PipelineUtils.baseInitAnd( base, ch -> {
 			ch.pipeline().addLast( new LoginHandler( engine_test, FutureUtils.newPromise() ) );
 			ch.pipeline().addLast( new ConnectionHandler( framework.getTestNetwork(), BasePacketHandler.DEFAULT ) );
 		} );
 		
-		ClientLoginEngine engine_client = new ClientLoginEngine( getClient().getNetwork(), getClient().getAuthentication() );
-		ChannelInitializer<LocalChannel> init_client = PipelineUtils.baseInitAnd( ch -> {
+		ClientLoginEngine engine_client = newLoginEngine();
+		ChannelInitializer<LocalChannel> init_client = PipelineUtils.baseInitAnd( base, ch -> {
 			ch.pipeline().addLast( new LoginHandler( engine_client, promise ) );
 			ch.pipeline().addLast( new ConnectionHandler( getClient().getNetwork(), BasePacketHandler.DEFAULT ) );
 		} );
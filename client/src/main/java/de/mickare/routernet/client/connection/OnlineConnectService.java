@@ -27,9 +27,9 @@ public class OnlineConnectService extends AbstractConnectService {
 	@Override
 	protected OnlineConnectClient newConnectClient( Promise<Connection> future ) {
 		
-		ClientLoginEngine engine = new ClientLoginEngine( getClient().getNetwork(), getClient().getAuthentication() );
+		ClientLoginEngine engine = newLoginEngine();
 		
-		ChannelInitializer<Channel> init = PipelineUtils.baseInitAnd( ch -> {
+		ChannelInitializer<Channel> init = PipelineUtils.baseInitAnd( newBaseInitializer(), ch -> {
 			ch.pipeline().addLast( new LoginHandler( engine, future ) );
 			ch.pipeline().addLast( new ConnectionHandler( getClient().getNetwork(), BasePacketHandler.DEFAULT ) );
 		} );
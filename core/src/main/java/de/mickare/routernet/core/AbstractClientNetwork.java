@@ -24,6 +24,7 @@ import de.mickare.routernet.core.tunnel.TunnelMessage;
 import de.mickare.routernet.event.ConnectionAddedEvent;
 import de.mickare.routernet.event.ConnectionRemovedEvent;
 import de.mickare.routernet.exception.ProtocolException;
+import de.mickare.routernet.netty.EncodedPacket;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureResponseMessage;
@@ -281,6 +282,17 @@ public abstract class AbstractClientNetwork extends AbstractNetwork {
 		return send( Packer.pack( cmsg.toProtocolMessage() ) );
 	}
 	
+	@Override
+	protected boolean sendTunnelMessageEncoded( final TunnelMessage cmsg ) {
+		try ( CloseableLock l = connectionLock.readLock().open() ) {
+			if ( connection != null && connection.isActive() ) {
+				connection.writeAndFlushFast( EncodedPacket.encode( Packer.pack( cmsg.toProtocolMessage() ) ) );
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	@Override
 	protected boolean registerTunnel( final Tunnel tunnel ) {
 		return send( tunnel::sendTunnelRegister );
@@ -1,16 +1,21 @@
 package de.mickare.routernet.core;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import com.google.common.base.Preconditions;
@@ -23,16 +28,20 @@ import com.google.common.eventbus.EventBus;
 
 import de.mickare.routernet.ProtocolUtils;
 import de.mickare.routernet.core.Node.HomeNode;
+import de.mickare.routernet.core.packet.FragmentAssembler;
 import de.mickare.routernet.core.procedure.ProcedureCall;
 import de.mickare.routernet.core.tunnel.SubTunnel;
 import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
 import de.mickare.routernet.core.tunnel.TunnelDescriptors;
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
 import de.mickare.routernet.core.tunnel.TunnelMessage;
 import de.mickare.routernet.core.tunnel.object.ObjectTunnel;
 import de.mickare.routernet.event.NetworkEventBus;
 import de.mickare.routernet.event.NodeEvent;
 import de.mickare.routernet.exception.ConnectionException;
 import de.mickare.routernet.exception.ProtocolException;
+import de.mickare.routernet.metric.Metric;
+import de.mickare.routernet.protocol.ComponentsProtocol.UUIDMessage;
 import de.mickare.routernet.protocol.TransportProtocol;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
@@ -59,13 +68,18 @@ public abstract class AbstractNetwork {
 	private final @Getter HomeNode home;
 	private final LoadingCache<UUID, Node> nodesCache = CacheBuilder.newBuilder().weakValues().build( CacheLoader.from( Node::new ) );
 	private final Map<UUID, Node> nodes = new HashMap<>();
+	private volatile NodeIndex nodeIndex = NodeIndex.EMPTY;
+	private final AtomicLong topologyEpoch = new AtomicLong( 0 );
 	private final CloseableReadWriteLock nodeLock = new ReentrantCloseableReadWriteLock();
 	
 	private final @Getter ProcedureManager procedureManager;
+	private final @Getter FragmentAssembler fragmentAssembler;
 	
 	private final CloseableLock tunnelLock = new ReentrantCloseableLock();
 	private final ConcurrentMap<String, Tunnel> tunnelsByName = new ConcurrentHashMap<>();
 	private final ConcurrentMap<Integer, Tunnel> tunnelsById = new ConcurrentHashMap<>();
+	// Index 0 is never assigned
+	private volatile Tunnel[] tunnelsByIndex = new Tunnel[ 1 ];
 	private final ConcurrentMap<SubTunnelDescriptor<?>, SubTunnel> subTunnels = new ConcurrentHashMap<>();
 	
 	private final @Getter EventBus eventBus;
@@ -80,9 +94,11 @@ public abstract class AbstractNetwork {
 		home.setNetwork( this );
 		this.home = home;
 		this.nodes.put( home.getId(), home );
+		this.nodeIndex = NodeIndex.EMPTY.update( home );
 		this.executor = executor;
 		
 		this.procedureManager = new ProcedureManager( this, executor );
+		this.fragmentAssembler = new FragmentAssembler( () -> this.logger, executor );
 		
 		AbstractNetwork.instance = this;
 	}
@@ -154,6 +170,16 @@ public abstract class AbstractNetwork {
 	
 	protected abstract boolean sendTunnelMessage( TunnelMessage cmsg );
 	
+	/**
+	 * Sends a tunnel message of which the data references a buffer of the caller. The message must be encoded before
+	 * this returns, so the caller can reuse the buffer.
+	 * 
+	 * @param cmsg
+	 *            to send
+	 * @return true if it was sent
+	 */
+	protected abstract boolean sendTunnelMessageEncoded( TunnelMessage cmsg );
+	
 	protected abstract boolean registerTunnel( Tunnel tunnel );
 	
 	/**
@@ -201,7 +227,8 @@ public abstract class AbstractNetwork {
 	}
 	
 	/**
-	 * Gets the tunnel with the given id.
+	 * Gets the tunnel with the given id. The id is the hash of the name, so tunnels may share an id. The id belongs to
+	 * the tunnel that was created first, use {@link #getTunnelByIndex(int, int)} or the name to get the others.
 	 * 
 	 * @param tunnelId
 	 *            of tunnel
@@ -211,22 +238,90 @@ public abstract class AbstractNetwork {
 		return this.tunnelsById.get( tunnelId );
 	}
 	
+	/**
+	 * Gets the tunnel with the given dense index that was assigned by the router. Falls back to the id if the
+	 * index is unknown or belongs to another tunnel.
+	 * 
+	 * @param tunnelIndex
+	 *            of tunnel, 0 if not assigned
+	 * @param tunnelId
+	 *            of tunnel
+	 * @return null if the tunnel does not exists
+	 */
+	public Tunnel getTunnelByIndex( int tunnelIndex, int tunnelId ) {
+		final Tunnel[] tunnels = this.tunnelsByIndex;
+		if ( tunnelIndex > 0 && tunnelIndex < tunnels.length ) {
+			final Tunnel tunnel = tunnels[ tunnelIndex ];
+			if ( tunnel != null && tunnel.getId() == tunnelId ) {
+				return tunnel;
+			}
+		}
+		return getTunnelById( tunnelId );
+	}
+	
+	/**
+	 * Assigns the next free dense index to the tunnel, if it does not already have one.
+	 * 
+	 * @param tunnel
+	 *            to index
+	 * @return index of tunnel
+	 */
+	protected int assignTunnelIndex( Tunnel tunnel ) {
+		try ( CloseableLock l = tunnelLock.open() ) {
+			if ( tunnel.getIndex() == 0 ) {
+				setTunnelIndex( tunnel, this.tunnelsByIndex.length );
+			}
+			return tunnel.getIndex();
+		}
+	}
+	
+	/**
+	 * Sets the dense index of the tunnel, as assigned by the router.
+	 * 
+	 * @param tunnel
+	 *            to index
+	 * @param index
+	 *            of tunnel, greater than 0
+	 */
+	protected void setTunnelIndex( Tunnel tunnel, int index ) {
+		Preconditions.checkArgument( index > 0 );
+		try ( CloseableLock l = tunnelLock.open() ) {
+			if ( tunnel.getIndex() == index && this.tunnelsByIndex[ index ] == tunnel ) {
+				return;
+			}
+			final Tunnel[] tunnels = Arrays.copyOf( this.tunnelsByIndex, Math.max( this.tunnelsByIndex.length, index + 1 ) );
+			if ( tunnel.getIndex() > 0 && tunnels[ tunnel.getIndex() ] == tunnel ) {
+				tunnels[ tunnel.getIndex() ] = null;
+			}
+			final Tunnel old = tunnels[ index ];
+			if ( old != null && old != tunnel ) {
+				old.setIndex( 0 );
+			}
+			tunnels[ index ] = tunnel;
+			tunnel.setIndex( index );
+			this.tunnelsByIndex = tunnels;
+		}
+	}
+	
 	private Tunnel getTunnel( String name, boolean register ) {
 		final String key = name.toLowerCase();
 		Tunnel tunnel = this.tunnelsByName.get( key );
 		if ( tunnel == null ) {
+			boolean created = false;
 			try ( CloseableLock l = tunnelLock.open() ) {
 				// Check again, but in synchronized state!
 				tunnel = this.tunnelsByName.get( key );
 				if ( tunnel == null ) {
 					tunnel = new Tunnel( this, key );
 					this.tunnelsByName.put( tunnel.getName(), tunnel );
-					this.tunnelsById.put( tunnel.getId(), tunnel );
-					if ( register ) {
-						this.registerTunnel( tunnel );
-					}
+					this.tunnelsById.putIfAbsent( tunnel.getId(), tunnel );
+					created = true;
 				}
 			}
+			// Register outside of the tunnel lock, connections take it while holding their own lock
+			if ( created && register ) {
+				this.registerTunnel( tunnel );
+			}
 		}
 		return tunnel;
 	}
@@ -273,27 +368,91 @@ public abstract class AbstractNetwork {
 		return subTunnel;
 	}
 	
-	protected void receiveTunnelRegister( TransportProtocol.TunnelRegister msg ) throws ConnectionException {
+	protected Tunnel receiveTunnelRegister( TransportProtocol.TunnelRegister msg ) throws ConnectionException {
+		Tunnel tunnel;
 		try ( CloseableLock l = tunnelLock.open() ) {
-			Tunnel old = this.tunnelsByName.get( msg.getName() );
+			tunnel = this.tunnelsByName.get( msg.getName() );
 			
-			if ( old != null ) {
+			if ( tunnel != null ) {
 				
-				if ( old.getId() != msg.getTunnelId() ) {
-					throw new ConnectionException( ErrorMessage.Type.ID_ALREADY_USED, "Can't register Tunnel with id " + msg.getTunnelId() + " and name \"" + msg.getName() + "\". Already as \"" + old.getName() + "\" registered!" );
+				if ( tunnel.getId() != msg.getTunnelId() ) {
+					throw new ConnectionException( ErrorMessage.Type.ID_ALREADY_USED, "Can't register Tunnel with id " + msg.getTunnelId() + " and name \"" + msg.getName() + "\". Already as \"" + tunnel.getName() + "\" registered!" );
 				}
-				old.setType( msg.getType() );
+				tunnel.setType( msg.getType() );
 				
 			} else {
 				
-				Tunnel tunnel = new Tunnel( this, msg.getName() );
+				tunnel = new Tunnel( this, msg.getName() );
 				
 				Preconditions.checkState( tunnel.getId() == msg.getTunnelId() );
 				tunnel.setType( msg.getType() );
 				this.tunnelsByName.put( tunnel.getName(), tunnel );
-				this.tunnelsById.put( tunnel.getId(), tunnel );
+				// Names with the same hash share the id, they are told apart by the dense index
+				this.tunnelsById.putIfAbsent( tunnel.getId(), tunnel );
+			}
+		}
+		if ( msg.getType() == TransportProtocol.TunnelRegister.Type.OBJECT ) {
+			try {
+				tunnel.setCodecId( msg.getCodec() );
+				tunnel.setSchemaHash( msg.getSchema() );
+			} catch ( IllegalStateException e ) {
+				throw new ConnectionException( ErrorMessage.Type.CODEC_MISMATCH, "Can't register Tunnel \"" + msg.getName() + "\" with codec " + msg.getCodec() + ". " + e.getMessage(), e );
 			}
 		}
+		this.receiveTunnelIndex( tunnel, msg.getIndex() );
+		if ( msg.hasDictionary() ) {
+			this.receiveTunnelDictionary( tunnel, msg.getDictionary() );
+		}
+		return tunnel;
+	}
+	
+	/**
+	 * Gets the metric that counters of this network are registered with.
+	 * 
+	 * @return metric or empty if this network has none
+	 */
+	public Optional<Metric> getMetric() {
+		return Optional.empty();
+	}
+	
+	/**
+	 * Whether this network trains the tunnel dictionaries and distributes them. Only the router does.
+	 * 
+	 * @return true if authority
+	 */
+	public boolean isDictionaryAuthority() {
+		return false;
+	}
+	
+	/**
+	 * Handles the dictionary of a received tunnel register. Clients take the dictionary of the router.
+	 * 
+	 * @param tunnel
+	 *            that was registered
+	 * @param dictionary
+	 *            of register message, version 0 if there is none
+	 */
+	protected void receiveTunnelDictionary( Tunnel tunnel, TransportProtocol.TunnelDictionary dictionary ) {
+		if ( dictionary.getVersion() == 0 ) {
+			tunnel.setDictionary( null );
+		} else if ( !dictionary.getData().isEmpty() ) {
+			tunnel.setDictionary( TunnelDictionary.of( dictionary ) );
+		}
+	}
+	
+	/**
+	 * Handles the dense index of a received tunnel register. Clients take the index that was assigned by the
+	 * router.
+	 * 
+	 * @param tunnel
+	 *            that was registered
+	 * @param index
+	 *            of register message, 0 if not assigned
+	 */
+	protected void receiveTunnelIndex( Tunnel tunnel, int index ) {
+		if ( index > 0 ) {
+			this.setTunnelIndex( tunnel, index );
+		}
 	}
 	
 	// ***************************************************************************
@@ -305,11 +464,98 @@ public abstract class AbstractNetwork {
 	 * @return set of nodes
 	 */
 	public Set<Node> getNodes() {
-		try ( CloseableLock l = nodeLock.readLock().open() ) {
-			return ImmutableSet.copyOf( nodes.values() );
+		return ImmutableSet.copyOf( this.nodeIndex.getNodes() );
+	}
+	
+	/**
+	 * Get the nodes in the network without copying them. The list is an immutable snapshot and does not
+	 * need any lock.
+	 * 
+	 * @return list of nodes
+	 */
+	public List<Node> getNodeList() {
+		return this.nodeIndex.getNodes();
+	}
+	
+	/**
+	 * Get the nodes that are described in the target message.
+	 * 
+	 * @param target
+	 *            describes a group of nodes
+	 * @return set of nodes
+	 */
+	public Set<Node> getNodes( TransportProtocol.TargetMessage target ) {
+		final ImmutableSet.Builder<Node> b = ImmutableSet.builder();
+		this.forEachNode( target, b::add );
+		return b.build();
+	}
+	
+	/**
+	 * Passes each node that is described in the target message exactly once to the action, without creating a set of
+	 * the nodes.
+	 * 
+	 * @param target
+	 *            describes a group of nodes
+	 * @param action
+	 *            called for each node
+	 */
+	public void forEachNode( TransportProtocol.TargetMessage target, Consumer<Node> action ) {
+		final NodeIndex index = this.nodeIndex;
+		if ( target.getToAll() ) {
+			final List<Node> list = index.getNodes();
+			for ( int i = 0; i < list.size(); ++i ) {
+				final Node node = list.get( i );
+				if ( TargetMatcher.matches( target, node ) ) {
+					action.accept( node );
+				}
+			}
+			return;
+		}
+		// Only check the nodes that can be a part of the target
+		for ( int i = 0; i < target.getNodesIncludeCount(); ++i ) {
+			final UUIDMessage id = target.getNodesInclude( i );
+			if ( isIncludedBefore( target, id, i ) ) {
+				continue;
+			}
+			final Node node = index.getNode( ProtocolUtils.convert( id ) );
+			if ( node != null && TargetMatcher.matches( target, node ) ) {
+				action.accept( node );
+			}
+		}
+		for ( int i = 0; i < target.getNamespacesIncludeCount(); ++i ) {
+			for ( Node node : index.getNodesOfNamespace( target.getNamespacesInclude( i ) ) ) {
+				// Skip nodes that were already passed by an included id or an earlier namespace
+				if ( TargetMatcher.isNodeIncluded( target, node.getId().getMostSignificantBits(), node.getId().getLeastSignificantBits() ) ) {
+					continue;
+				}
+				if ( isInNamespaceBefore( index, target, node, i ) ) {
+					continue;
+				}
+				if ( TargetMatcher.matches( target, node ) ) {
+					action.accept( node );
+				}
+			}
 		}
 	}
 	
+	private static boolean isIncludedBefore( TransportProtocol.TargetMessage target, UUIDMessage id, int end ) {
+		for ( int i = 0; i < end; ++i ) {
+			if ( TargetMatcher.is( target.getNodesInclude( i ), id.getMostSignificantBits(), id.getLeastSignificantBits() ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isInNamespaceBefore( NodeIndex index, TransportProtocol.TargetMessage target, Node node, int end ) {
+		for ( int i = 0; i < end; ++i ) {
+			if ( index.getNodesOfNamespace( target.getNamespacesInclude( i ) ).contains( node ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Get the nodes that are described in the target object.
 	 * 
@@ -318,11 +564,23 @@ public abstract class AbstractNetwork {
 	 * @return set of nodes
 	 */
 	public Set<Node> getNodes( Target target ) {
-		try ( CloseableLock l = nodeLock.readLock().open() ) {
-			ImmutableSet.Builder<Node> b = ImmutableSet.builder();
-			this.nodes.values().stream().filter( target::contains ).forEach( b::add );
-			return b.build();
+		final NodeIndex index = this.nodeIndex;
+		final ImmutableSet.Builder<Node> b = ImmutableSet.builder();
+		if ( target.isToAll() ) {
+			index.getNodes().stream().filter( target::contains ).forEach( b::add );
+		} else {
+			// Only check the nodes that can be a part of the target
+			for ( UUID id : target.getNodesInclude() ) {
+				final Node node = index.getNode( id );
+				if ( node != null && target.contains( node ) ) {
+					b.add( node );
+				}
+			}
+			for ( String namespace : target.getNamespacesInclude() ) {
+				index.getNodesOfNamespace( namespace ).stream().filter( target::contains ).forEach( b::add );
+			}
 		}
+		return b.build();
 	}
 	
 	/**
@@ -333,7 +591,7 @@ public abstract class AbstractNetwork {
 	 * @return node
 	 */
 	public Node getNode( UUID id ) {
-		return this.nodes.get( id );
+		return this.nodeIndex.getNode( id );
 	}
 	
 	/**
@@ -356,9 +614,18 @@ public abstract class AbstractNetwork {
 	 * @return node, or null if not found
 	 */
 	public Node getNode( String name ) {
-		try ( CloseableLock l = nodeLock.readLock().open() ) {
-			return this.nodes.values().stream().filter( n -> n.getName().isPresent() && n.getName().get().equalsIgnoreCase( name ) ).findAny().orElse( null );
-		}
+		return this.nodeIndex.getNodeByName( name.toLowerCase() );
+	}
+	
+	/**
+	 * Gets the nodes of a type.
+	 * 
+	 * @param type
+	 *            of nodes
+	 * @return set of nodes
+	 */
+	public Set<Node> getNodes( NodeMessage.Type type ) {
+		return this.nodeIndex.getNodesOfType( type );
 	}
 	
 	/**
@@ -392,13 +659,12 @@ public abstract class AbstractNetwork {
 	 * @return set of nodes
 	 */
 	public Set<Node> getNodes( Collection<Namespace> namespaces ) {
-		try ( CloseableLock l = nodeLock.readLock().open() ) {
-			ImmutableSet.Builder<Node> b = ImmutableSet.builder();
-			for ( Namespace namespace : namespaces ) {
-				this.nodes.values().stream().filter( n -> n.hasNamespace( namespace ) ).forEach( b::add );
-			}
-			return b.build();
+		final NodeIndex index = this.nodeIndex;
+		ImmutableSet.Builder<Node> b = ImmutableSet.builder();
+		for ( Namespace namespace : namespaces ) {
+			b.addAll( index.getNodesOfNamespace( namespace.getName().toLowerCase() ) );
 		}
+		return b.build();
 	}
 	
 	/**
@@ -411,15 +677,16 @@ public abstract class AbstractNetwork {
 	 * @return set of nodes
 	 */
 	public Set<Node> getNodesOfNamespace( String namespace, String... namespaces ) {
-		try ( CloseableLock l = nodeLock.readLock().open() ) {
-			ImmutableSet.Builder<Node> b = ImmutableSet.builder();
-			this.nodes.values().stream().filter( n -> n.hasNamespace( namespace ) ).forEach( b::add );
-			for ( int i = 0; i < namespaces.length; ++i ) {
-				String s = namespaces[i];
-				this.nodes.values().stream().filter( n -> n.hasNamespace( s ) ).forEach( b::add );
-			}
-			return b.build();
+		final NodeIndex index = this.nodeIndex;
+		if ( namespaces.length == 0 ) {
+			return ImmutableSet.copyOf( index.getNodesOfNamespace( namespace.toLowerCase() ) );
+		}
+		ImmutableSet.Builder<Node> b = ImmutableSet.builder();
+		b.addAll( index.getNodesOfNamespace( namespace.toLowerCase() ) );
+		for ( int i = 0; i < namespaces.length; ++i ) {
+			b.addAll( index.getNodesOfNamespace( namespaces[i].toLowerCase() ) );
 		}
+		return b.build();
 	}
 	
 	/**
@@ -455,7 +722,11 @@ public abstract class AbstractNetwork {
 		}
 		Node node = nodesCache.getUnchecked( id );
 		node.update( msg );
-		Node old = this.nodes.put( id, node );
+		Node old;
+		try ( CloseableLock l = nodeLock.writeLock().open() ) {
+			old = this.nodes.put( id, node );
+			setNodeIndex( this.nodeIndex.update( node ) );
+		}
 		if ( old == null ) {
 			this.eventBus.post( new NodeEvent.NodeAddedEvent( this, node ) );
 		} else {
@@ -471,27 +742,91 @@ public abstract class AbstractNetwork {
 	 *            - topology message
 	 */
 	public void updateNodes( Connection con, NodeTopologyMessage msg ) {
-		try ( CloseableLock l = nodeLock.readLock().open() ) {
+		final List<NodeEvent> events = new ArrayList<>( msg.getNodesCount() );
+		try ( CloseableLock l = nodeLock.writeLock().open() ) {
+			// The index is built once for the whole topology
+			final NodeIndex.Builder index = this.nodeIndex.toBuilder();
 			Set<Node> retain = Sets.newHashSet();
-			for ( NodeMessage node : msg.getNodesList() ) {
-				retain.add( updateNodeSilent( node ) );
-			}
 			retain.add( this.getHome() );
-			this.nodes.values().retainAll( retain );
+			for ( NodeMessage nodeMsg : msg.getNodesList() ) {
+				UUID id = ProtocolUtils.convert( nodeMsg.getId() );
+				if ( id.equals( this.getHome().getId() ) ) {
+					continue;
+				}
+				Node node = nodesCache.getUnchecked( id );
+				node.update( nodeMsg );
+				retain.add( node );
+				if ( this.nodes.put( id, node ) == null ) {
+					events.add( new NodeEvent.NodeAddedEvent( this, node ) );
+				} else {
+					events.add( new NodeEvent.NodeUpdatedEvent( this, node ) );
+				}
+				index.update( node );
+			}
+			Iterator<Node> it = this.nodes.values().iterator();
+			while ( it.hasNext() ) {
+				Node node = it.next();
+				if ( !retain.contains( node ) ) {
+					it.remove();
+					index.remove( node.getId() );
+				}
+			}
+			setNodeIndex( index.build() );
 		}
+		events.forEach( this.eventBus::post );
 	}
 	
 	public void removeNode( UUID id ) {
 		if ( id.equals( this.getHome().getId() ) ) {
 			throw new IllegalArgumentException( "Forbidden to remove home node!" );
 		}
-		Node node = this.nodes.remove( id );
+		Node node;
+		try ( CloseableLock l = nodeLock.writeLock().open() ) {
+			node = this.nodes.remove( id );
+			setNodeIndex( this.nodeIndex.remove( id ) );
+		}
 		if ( node != null ) {
 			node.disconnected();
 			this.eventBus.post( new NodeEvent.NodeRemovedEvent( this, node ) );
 		}
 	}
 	
+	// Needs the write lock
+	private void setNodeIndex( NodeIndex index ) {
+		if ( this.nodeIndex != index ) {
+			this.nodeIndex = index;
+			nextTopologyEpoch();
+		}
+	}
+	
+	/**
+	 * Gets the topology epoch. It changes every time a node is added, updated or removed, or when the namespaces of a
+	 * node change. Results that depend on the topology are valid as long as the epoch does not change.
+	 * 
+	 * @return current epoch
+	 */
+	public long getTopologyEpoch() {
+		return this.topologyEpoch.get();
+	}
+	
+	protected void nextTopologyEpoch() {
+		this.topologyEpoch.incrementAndGet();
+	}
+	
+	/**
+	 * Updates the indexed namespaces, name and type of a node.
+	 * 
+	 * @param node
+	 *            that changed
+	 */
+	void updateIndex( Node node ) {
+		try ( CloseableLock l = nodeLock.writeLock().open() ) {
+			if ( this.nodes.get( node.getId() ) == node ) {
+				setNodeIndex( this.nodeIndex.update( node ) );
+			}
+		}
+	}
+	
 	public NodeTopologyMessage getTopologyMessage() {
 		NodeTopologyMessage.Builder b = NodeTopologyMessage.newBuilder();
 		try ( CloseableLock l = nodeLock.readLock().open() ) {
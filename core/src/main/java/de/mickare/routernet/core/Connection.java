@@ -1,20 +1,21 @@
 package de.mickare.routernet.core;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 
 import de.mickare.routernet.core.packet.PacketWriter;
 import de.mickare.routernet.exception.ConnectionException;
 import de.mickare.routernet.netty.ChannelWrapper;
+import de.mickare.routernet.netty.EncodedPacket;
 import de.mickare.routernet.protocol.TransportProtocol;
 import de.mickare.routernet.protocol.TransportProtocol.CloseMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ErrorMessage;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
-import de.mickare.routernet.util.collection.ConditionBiMap;
+import de.mickare.routernet.util.collection.ConditionMap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.util.concurrent.Future;
@@ -29,7 +30,7 @@ public @Getter class Connection implements PacketWriter<ChannelFuture> {
 	private final ChannelWrapper channel;
 	private @Setter @NonNull CloseMessage closeMessage = null;
 	
-	private final ConditionBiMap<Integer, String> remoteTunnels = new ConditionBiMap<>( HashBiMap.create() );
+	private final ConditionMap<String, Integer> remoteTunnels = new ConditionMap<>( new HashMap<>() );
 	
 	public Connection( AbstractNetwork network, UUID peerId, ChannelWrapper channel ) {
 		Preconditions.checkNotNull( network );
@@ -84,6 +85,11 @@ public @Getter class Connection implements PacketWriter<ChannelFuture> {
 		channel.flush();
 	}
 	
+	@Override
+	public void flushNow() {
+		channel.flushNow();
+	}
+	
 	@Override
 	public void writeFast( Packet packet ) {
 		channel.writeFast( packet );
@@ -104,6 +110,26 @@ public @Getter class Connection implements PacketWriter<ChannelFuture> {
 		return channel.writeAndFlush( packet );
 	}
 	
+	@Override
+	public void writeFast( EncodedPacket packet ) {
+		channel.writeFast( packet );
+	}
+	
+	@Override
+	public ChannelFuture write( EncodedPacket packet ) {
+		return channel.write( packet );
+	}
+	
+	@Override
+	public void writeAndFlushFast( EncodedPacket packet ) {
+		channel.writeAndFlushFast( packet );
+	}
+	
+	@Override
+	public ChannelFuture writeAndFlush( EncodedPacket packet ) {
+		return channel.writeAndFlush( packet );
+	}
+	
 	@Override
 	public String toString() {
 		return "Connection[" + this.peerId + "]";
@@ -115,34 +141,39 @@ public @Getter class Connection implements PacketWriter<ChannelFuture> {
 	}
 	
 	public void registerRemoteTunnel( int id, String name ) {
-		this.remoteTunnels.forcePut( id, name.toLowerCase() );
+		this.remoteTunnels.put( name.toLowerCase(), id );
 	}
 	
 	public void awaitTunnelRegistered( Tunnel tunnel ) throws InterruptedException {
-		awaitTunnelRegistered( tunnel.getId() );
+		awaitTunnelRegistered( tunnel.getName() );
 	}
 	
 	public void awaitTunnelRegistered( int id ) throws InterruptedException {
-		this.remoteTunnels.awaitContainsKey( id );
+		this.remoteTunnels.awaitContainsValue( id );
 	}
 	
 	public void awaitTunnelRegistered( String name ) throws InterruptedException {
-		this.remoteTunnels.awaitContainsValue( name.toLowerCase() );
+		this.remoteTunnels.awaitContainsKey( name.toLowerCase() );
 	}
 	
 	public boolean awaitTunnelRegistered( Tunnel tunnel, long time, TimeUnit unit ) throws InterruptedException {
-		return awaitTunnelRegistered( tunnel.getId(), time, unit );
+		return awaitTunnelRegistered( tunnel.getName(), time, unit );
 	}
 	
 	public boolean awaitTunnelRegistered( int id, long time, TimeUnit unit ) throws InterruptedException {
-		return this.remoteTunnels.awaitContainsKey( id, time, unit );
+		return this.remoteTunnels.awaitContainsValue( id, time, unit );
 	}
 	
 	public boolean awaitTunnelRegistered( String name, long time, TimeUnit unit ) throws InterruptedException {
 		return this.remoteTunnels.awaitContainsKey( name.toLowerCase(), time, unit );
 	}
 	
-	public BiMap<Integer, String> getRemoteTunnels() {
+	/**
+	 * Gets the tunnels that the peer registered. Names with the same hash share the id.
+	 * 
+	 * @return map from name to id
+	 */
+	public Map<String, Integer> getRemoteTunnels() {
 		return remoteTunnels.immutable();
 	}
 	
@@ -151,11 +182,11 @@ public @Getter class Connection implements PacketWriter<ChannelFuture> {
 	}
 	
 	public boolean hasRemoteTunnel( int id ) {
-		return this.remoteTunnels.containsKey( id );
+		return this.remoteTunnels.containsValue( id );
 	}
 	
 	public boolean hasRemoteTunnel( String name ) {
-		return this.remoteTunnels.containsValue( name.toLowerCase() );
+		return this.remoteTunnels.containsKey( name.toLowerCase() );
 	}
 	
 	public void addToNetwork() {
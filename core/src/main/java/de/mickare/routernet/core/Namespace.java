@@ -1,6 +1,9 @@
 package de.mickare.routernet.core;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Preconditions;
 
@@ -8,6 +11,39 @@ import lombok.Getter;
 
 public @Getter class Namespace {
 	
+	private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<>();
+	private static final AtomicInteger NEXT_ID = new AtomicInteger( 0 );
+	
+	/**
+	 * Gets the interned id of a namespace name. Ids are only valid in this runtime.
+	 * 
+	 * @param namespace
+	 *            lowercase name
+	 * @return id of the namespace
+	 */
+	public static int intern( String namespace ) {
+		Integer id = IDS.get( namespace );
+		if ( id == null ) {
+			id = IDS.computeIfAbsent( namespace, n -> NEXT_ID.getAndIncrement() );
+		}
+		return id;
+	}
+	
+	/**
+	 * Gets the interned id of a namespace name without interning it.
+	 * 
+	 * @param namespace
+	 *            lowercase name
+	 * @return id of the namespace, or -1 if no node ever had this namespace
+	 */
+	public static int idOf( String namespace ) {
+		Integer id = IDS.get( namespace );
+		return id != null ? id : -1;
+	}
+	
+	// static end
+	// ******************************************************************************************
+	
 	private transient final AbstractNetwork network;
 	private final String name;
 	
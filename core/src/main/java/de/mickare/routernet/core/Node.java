@@ -1,5 +1,6 @@
 package de.mickare.routernet.core;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Optional;
@@ -43,6 +44,7 @@ public @RequiredArgsConstructor class Node {
 	protected @Getter NodeMessage.Type type = NodeMessage.Type.UNRECOGNIZED;
 	protected @Getter Optional<String> name = Optional.empty();
 	protected final Set<String> namespaces = Collections.synchronizedSet( Sets.newHashSet() );
+	private volatile int[] namespaceIds = new int[0];
 	protected @Getter long startTimestamp = -1;
 	
 	protected final ConditionSet<Procedure> procedures = ConditionSet.of( Sets.newTreeSet() );
@@ -77,6 +79,7 @@ public @RequiredArgsConstructor class Node {
 		synchronized ( this.namespaces ) {
 			this.namespaces.clear();
 			this.namespaces.addAll( msg.getNamespacesList() );
+			updateNamespaceIds();
 		}
 		this.procedures.safe( s -> {
 			Set<Procedure> procedures = msg.getProceduresList().stream().map( Procedure::new ).collect( Collectors.toSet() );
@@ -114,6 +117,24 @@ public @RequiredArgsConstructor class Node {
 		}
 	}
 	
+	protected void updateNamespaceIds() {
+		synchronized ( this.namespaces ) {
+			this.namespaceIds = this.namespaces.stream().mapToInt( Namespace::intern ).sorted().toArray();
+		}
+	}
+	
+	/**
+	 * Checks for a namespace by its interned id.
+	 * 
+	 * @see Namespace#idOf(String)
+	 * @param namespaceId
+	 *            of namespace
+	 * @return true if the node has the namespace
+	 */
+	public boolean hasNamespaceId( int namespaceId ) {
+		return namespaceId >= 0 && Arrays.binarySearch( this.namespaceIds, namespaceId ) >= 0;
+	}
+	
 	public Set<Procedure> getProcedures() {
 		return this.procedures.immutable();
 	}
@@ -157,7 +178,7 @@ public @RequiredArgsConstructor class Node {
 	}
 	
 	public boolean isPart( TransportProtocol.TargetMessage target ) {
-		return isPart( new Target( target ) );
+		return TargetMatcher.matches( target, this );
 	}
 	
 	public boolean isPart( Target target ) {
@@ -225,22 +246,34 @@ public @RequiredArgsConstructor class Node {
 			Set<String> temp = Sets.newHashSet();
 			namespaces.stream().filter( n -> !n.isEmpty() ).forEach( n -> temp.add( n.toLowerCase() ) );
 			this.namespaces.addAll( temp );
+			updateNamespaceIds();
 		}
 		
 		public void setType( NodeMessage.Type type ) {
 			Preconditions.checkNotNull( type );
 			this.type = type;
+			updateIndex();
+		}
+		
+		private void updateIndex() {
+			if ( network != null ) {
+				network.updateIndex( this );
+			}
 		}
 		
 		public void addNamespace( String namespace ) {
 			Preconditions.checkArgument( !namespace.isEmpty() );
 			dirty |= this.namespaces.add( namespace.toLowerCase() );
+			updateNamespaceIds();
+			updateIndex();
 			publishChanges();
 		}
 		
 		public void removeNamespace( String namespace ) {
 			Preconditions.checkArgument( !namespace.isEmpty() );
 			dirty |= this.namespaces.remove( namespace.toLowerCase() );
+			updateNamespaceIds();
+			updateIndex();
 			publishChanges();
 		}
 		
@@ -257,6 +290,7 @@ public @RequiredArgsConstructor class Node {
 					dirty = true;
 				}
 			}
+			updateIndex();
 			publishChanges();
 		}
 		
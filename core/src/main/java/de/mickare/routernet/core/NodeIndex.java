@@ -0,0 +1,259 @@
+package de.mickare.routernet.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
+
+/**
+ * Immutable snapshot of the nodes in a network, with inverted indexes on namespace, name and type.
+ *
+ * A single change creates a new snapshot that only copies the entries and the index sets of the changed namespaces and
+ * names, so readers never need a lock. The node list and the type index are derived from the entries on first use.
+ * Many changes at once, like a topology message, are applied with a {@link Builder} that builds the snapshot once.
+ */
+final class NodeIndex {
+
+	private static final class Entry {
+		private final Node node;
+		private final String name;
+		private final NodeMessage.Type type;
+		private final Set<String> namespaces;
+
+		private Entry( Node node ) {
+			this.node = node;
+			this.name = node.getName().orElse( null );
+			this.type = node.getType();
+			this.namespaces = node.getNamespaces();
+		}
+
+		private boolean isIndexedEqual( Entry other ) {
+			return other != null && this.node == other.node && Objects.equals( this.name, other.name ) && this.type == other.type && this.namespaces.equals( other.namespaces );
+		}
+
+		private Collection<String> names() {
+			return name != null ? Collections.singleton( name ) : Collections.emptySet();
+		}
+	}
+
+	public static final NodeIndex EMPTY = new NodeIndex( Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap() );
+
+	// Insertion ordered, so the node list keeps the order in which nodes were added
+	private final Map<UUID, Entry> entries;
+	private final Map<String, Set<Node>> namespaces;
+	// Several nodes may share a name
+	private final Map<String, Set<Node>> names;
+
+	// Derived on first use
+	private volatile List<Node> nodes = null;
+	private volatile Map<NodeMessage.Type, Set<Node>> types = null;
+
+	private NodeIndex( Map<UUID, Entry> entries, Map<String, Set<Node>> namespaces, Map<String, Set<Node>> names ) {
+		this.entries = entries;
+		this.namespaces = namespaces;
+		this.names = names;
+	}
+
+	public List<Node> getNodes() {
+		List<Node> result = this.nodes;
+		if ( result == null ) {
+			result = ImmutableList.copyOf( entries.values().stream().map( e -> e.node ).iterator() );
+			this.nodes = result;
+		}
+		return result;
+	}
+
+	public Node getNode( UUID id ) {
+		final Entry entry = entries.get( id );
+		return entry != null ? entry.node : null;
+	}
+
+	/**
+	 * @param namespace
+	 *            lowercase name of namespace
+	 * @return nodes with the namespace
+	 */
+	public Set<Node> getNodesOfNamespace( String namespace ) {
+		final Set<Node> result = namespaces.get( namespace );
+		return result != null ? result : Collections.emptySet();
+	}
+
+	/**
+	 * @param name
+	 *            lowercase name of node
+	 * @return first added node with the name, or null
+	 */
+	public Node getNodeByName( String name ) {
+		final Set<Node> result = names.get( name );
+		return result != null ? result.iterator().next() : null;
+	}
+
+	public Set<Node> getNodesOfType( NodeMessage.Type type ) {
+		Map<NodeMessage.Type, Set<Node>> types = this.types;
+		if ( types == null ) {
+			final Map<NodeMessage.Type, ImmutableSet.Builder<Node>> builders = new EnumMap<>( NodeMessage.Type.class );
+			for ( Entry entry : entries.values() ) {
+				builders.computeIfAbsent( entry.type, t -> ImmutableSet.builder() ).add( entry.node );
+			}
+			types = new EnumMap<>( NodeMessage.Type.class );
+			for ( Map.Entry<NodeMessage.Type, ImmutableSet.Builder<Node>> e : builders.entrySet() ) {
+				types.put( e.getKey(), e.getValue().build() );
+			}
+			this.types = types;
+		}
+		final Set<Node> result = types.get( type );
+		return result != null ? result : Collections.emptySet();
+	}
+
+	// ******************************************************************************
+	// Changes
+
+	/**
+	 * Adds the node or updates its indexed values.
+	 *
+	 * @param node
+	 *            to index
+	 * @return new index, or the same index if nothing changed
+	 */
+	public NodeIndex update( final Node node ) {
+		final Entry old = entries.get( node.getId() );
+		final Entry entry = new Entry( node );
+		if ( entry.isIndexedEqual( old ) ) {
+			return this;
+		}
+		return change( old, entry );
+	}
+
+	/**
+	 * Removes the node.
+	 *
+	 * @param id
+	 *            of node
+	 * @return new index, or the same index if the node was not indexed
+	 */
+	public NodeIndex remove( final UUID id ) {
+		final Entry old = entries.get( id );
+		if ( old == null ) {
+			return this;
+		}
+		return change( old, null );
+	}
+
+	public Builder toBuilder() {
+		return new Builder( this );
+	}
+
+	private NodeIndex change( final Entry old, final Entry entry ) {
+		final Map<UUID, Entry> entries = new LinkedHashMap<>( this.entries );
+		if ( entry == null ) {
+			entries.remove( old.node.getId() );
+		} else {
+			entries.put( entry.node.getId(), entry );
+		}
+
+		// Only the sets of changed namespaces and names are copied
+		final Map<String, Set<Node>> namespaces = new HashMap<>( this.namespaces );
+		final Map<String, Set<Node>> names = new HashMap<>( this.names );
+		if ( old != null ) {
+			removeAll( namespaces, old.namespaces, old.node );
+			removeAll( names, old.names(), old.node );
+		}
+		if ( entry != null ) {
+			addAll( namespaces, entry.namespaces, entry.node );
+			addAll( names, entry.names(), entry.node );
+		}
+
+		return new NodeIndex( Collections.unmodifiableMap( entries ), Collections.unmodifiableMap( namespaces ), Collections.unmodifiableMap( names ) );
+	}
+
+	private static void removeAll( Map<String, Set<Node>> index, Collection<String> keys, Node node ) {
+		for ( String key : keys ) {
+			final Set<Node> set = ImmutableSet.copyOf( index.get( key ).stream().filter( n -> n != node ).iterator() );
+			if ( set.isEmpty() ) {
+				index.remove( key );
+			} else {
+				index.put( key, set );
+			}
+		}
+	}
+
+	private static void addAll( Map<String, Set<Node>> index, Collection<String> keys, Node node ) {
+		for ( String key : keys ) {
+			final Set<Node> set = index.get( key );
+			index.put( key, set == null ? ImmutableSet.of( node ) : ImmutableSet.<Node> builder().addAll( set ).add( node ).build() );
+		}
+	}
+
+	/**
+	 * Applies many changes to an index and builds the new snapshot once. The builder must not be used after
+	 * {@link #build()}.
+	 */
+	static final class Builder {
+
+		private final NodeIndex base;
+		private final Map<UUID, Entry> entries;
+		private boolean changed = false;
+
+		private Builder( NodeIndex base ) {
+			this.base = base;
+			this.entries = new LinkedHashMap<>( base.entries );
+		}
+
+		public Builder update( final Node node ) {
+			final Entry entry = new Entry( node );
+			if ( !entry.isIndexedEqual( entries.get( node.getId() ) ) ) {
+				entries.put( node.getId(), entry );
+				changed = true;
+			}
+			return this;
+		}
+
+		public Builder remove( final UUID id ) {
+			if ( entries.remove( id ) != null ) {
+				changed = true;
+			}
+			return this;
+		}
+
+		/**
+		 * @return new index, or the base index if nothing changed
+		 */
+		public NodeIndex build() {
+			if ( !changed ) {
+				return base;
+			}
+			final Map<String, ImmutableSet.Builder<Node>> namespaces = new HashMap<>();
+			final Map<String, ImmutableSet.Builder<Node>> names = new HashMap<>();
+			for ( Entry entry : entries.values() ) {
+				for ( String namespace : entry.namespaces ) {
+					namespaces.computeIfAbsent( namespace, k -> ImmutableSet.builder() ).add( entry.node );
+				}
+				for ( String name : entry.names() ) {
+					names.computeIfAbsent( name, k -> ImmutableSet.builder() ).add( entry.node );
+				}
+			}
+			return new NodeIndex( Collections.unmodifiableMap( entries ), build( namespaces ), build( names ) );
+		}
+
+		private static Map<String, Set<Node>> build( Map<String, ImmutableSet.Builder<Node>> builders ) {
+			final Map<String, Set<Node>> result = new HashMap<>( builders.size() * 2 );
+			for ( Map.Entry<String, ImmutableSet.Builder<Node>> e : builders.entrySet() ) {
+				result.put( e.getKey(), e.getValue().build() );
+			}
+			return Collections.unmodifiableMap( result );
+		}
+
+	}
+
+}
@@ -3,33 +3,164 @@ package de.mickare.routernet.core;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
 
-import org.nustaq.serialization.FSTConfiguration;
-import org.nustaq.serialization.FSTObjectInput;
-import org.nustaq.serialization.FSTObjectOutput;
-
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.ByteString.Output;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
 
-import de.mickare.routernet.core.tunnel.object.ConvertObjectTunnelException;
+import de.mickare.routernet.core.codec.Codecs;
 
+/**
+ * Java serialization. The compact variants write strings, boxed primitives, UUIDs and array lists and hash maps of those
+ * in a tagged format instead, see {@link Codecs#COMPACT}. Other serializers are provided by {@link Codecs}.
+ */
 public class Serialization {
 	
-	public static FSTConfiguration FST = FSTConfiguration.createDefaultConfiguration();
-	
 	private Serialization() {
 	}
 	
-	private static boolean USE_FST = false;
+	// Resolved classes per class loader. Weak keys and values, so the cache never keeps an unloaded plugin alive.
+	private static final ConcurrentMap<ClassLoader, ConcurrentMap<String, Class<?>>> resolved = new MapMaker().weakKeys().makeMap();
+	private static final ConcurrentMap<String, Class<?>> resolvedDefault = new MapMaker().weakValues().makeMap();
+	
+	// Allow-list of deserialized classes, disabled while empty
+	private static final Set<String> allowedClasses = Sets.newConcurrentHashSet();
+	private static final Set<String> allowedPackages = Sets.newConcurrentHashSet();
+	private static volatile boolean allowListEnabled = false;
+	
+	private static ConcurrentMap<String, Class<?>> getResolved( ClassLoader loader ) {
+		if ( loader == null ) {
+			return resolvedDefault;
+		}
+		ConcurrentMap<String, Class<?>> classes = resolved.get( loader );
+		if ( classes == null ) {
+			classes = new MapMaker().weakValues().makeMap();
+			final ConcurrentMap<String, Class<?>> old = resolved.putIfAbsent( loader, classes );
+			if ( old != null ) {
+				classes = old;
+			}
+		}
+		return classes;
+	}
+	
+	/**
+	 * Removes all resolved classes of the class loader from the cache. Called when a plugin is unloaded.
+	 *
+	 * @param loader
+	 *            that is unloaded
+	 */
+	public static void invalidate( ClassLoader loader ) {
+		Preconditions.checkNotNull( loader );
+		resolved.remove( loader );
+		// Classes of the loader that were resolved by other loaders
+		resolvedDefault.values().removeIf( c -> c.getClassLoader() == loader );
+		for ( ConcurrentMap<String, Class<?>> classes : resolved.values() ) {
+			classes.values().removeIf( c -> c.getClassLoader() == loader );
+		}
+	}
+	
+	/**
+	 * Allows the classes to be deserialized. Once a class or package is allowed, java serialization rejects all classes
+	 * that are not allowed. Superclasses of serializable classes and the interfaces of proxies are resolved as well and
+	 * need to be allowed.
+	 *
+	 * @param classes
+	 *            to allow
+	 */
+	public static void allowClasses( Class<?>... classes ) {
+		for ( Class<?> c : classes ) {
+			allowedClasses.add( c.getName() );
+		}
+		allowListEnabled = true;
+	}
+	
+	/**
+	 * Allows all classes in the packages to be deserialized. Sub-packages are not included.
+	 *
+	 * @see #allowClasses(Class...)
+	 * @param packages
+	 *            to allow
+	 */
+	public static void allowPackages( String... packages ) {
+		for ( String p : packages ) {
+			Preconditions.checkArgument( !p.isEmpty() );
+			allowedPackages.add( p );
+		}
+		allowListEnabled = true;
+	}
 	
+	/**
+	 * Clears the allow-list, so all classes can be deserialized again.
+	 */
+	public static void clearAllowList() {
+		allowListEnabled = false;
+		allowedClasses.clear();
+		allowedPackages.clear();
+	}
+	
+	/**
+	 * @param name
+	 *            of a class, as returned by {@link Class#getName()}
+	 * @return true if the class is allowed to be deserialized
+	 */
+	public static boolean isAllowed( String name ) {
+		if ( !allowListEnabled ) {
+			return true;
+		}
+		if ( name.startsWith( "[" ) ) {
+			// Arrays of allowed components
+			final int dims = name.lastIndexOf( '[' ) + 1;
+			if ( name.length() == dims + 1 ) {
+				// Primitive array
+				return true;
+			}
+			name = name.substring( dims + 1, name.length() - 1 );
+		}
+		if ( allowedClasses.contains( name ) ) {
+			return true;
+		}
+		final int dot = name.lastIndexOf( '.' );
+		return dot > 0 && allowedPackages.contains( name.substring( 0, dot ) );
+	}
+	
+	private static final Map<String, Class<?>> PRIMITIVES = ImmutableMap.<String, Class<?>> builder()//
+			.put( "boolean", boolean.class ).put( "byte", byte.class ).put( "char", char.class ).put( "short", short.class )//
+			.put( "int", int.class ).put( "long", long.class ).put( "float", float.class ).put( "double", double.class )//
+			.put( "void", void.class ).build();
+	
+	/**
+	 * Resolves classes only with the class loader of the deserialized type, never with the loader of the caller, so the
+	 * cached result does not depend on the call stack.
+	 */
 	private static class ClassLoaderObjectInputStream extends ObjectInputStream {
 		
 		private final ClassLoader loader;
+		private final ConcurrentMap<String, Class<?>> classes;
 		
 		public ClassLoaderObjectInputStream( InputStream in, Class<?> c ) throws IOException {
 			this( in, c.getClassLoader() );
@@ -37,19 +168,55 @@ public class Serialization {
 		
 		public ClassLoaderObjectInputStream( InputStream in, ClassLoader loader ) throws IOException {
 			super( in );
-			this.loader = loader;
+			// Types of the bootstrap loader, like Object, resolve with the loader of this library
+			this.loader = loader != null ? loader : Serialization.class.getClassLoader();
+			this.classes = getResolved( this.loader );
 		}
 		
+		@Override
 		protected Class<?> resolveClass( ObjectStreamClass desc ) throws ClassNotFoundException, IOException {
+			return resolve( desc.getName() );
+		}
+		
+		@Override
+		protected Class<?> resolveProxyClass( String[] interfaces ) throws ClassNotFoundException, IOException {
+			final Class<?>[] resolvedInterfaces = new Class<?>[ interfaces.length ];
+			// Non-public interfaces can only be implemented by a proxy of their own loader
+			ClassLoader proxyLoader = loader;
+			for ( int i = 0; i < interfaces.length; ++i ) {
+				resolvedInterfaces[i] = resolve( interfaces[i] );
+				if ( !Modifier.isPublic( resolvedInterfaces[i].getModifiers() ) ) {
+					proxyLoader = resolvedInterfaces[i].getClassLoader();
+				}
+			}
 			try {
-				return super.resolveClass( desc );
-			} catch ( ClassNotFoundException e ) {
-			
+				return Proxy.getProxyClass( proxyLoader, resolvedInterfaces );
+			} catch ( IllegalArgumentException e ) {
+				throw new ClassNotFoundException( "Can't create proxy class of " + Arrays.toString( interfaces ), e );
 			}
-			if ( loader == null ) {
-				return Class.forName( desc.getName() );
+		}
+		
+		private Class<?> resolve( String name ) throws ClassNotFoundException, IOException {
+			if ( !isAllowed( name ) ) {
+				throw new InvalidClassException( name, "Class is not allowed to be deserialized" );
+			}
+			Class<?> c = classes.get( name );
+			if ( c == null ) {
+				c = load( name );
+				classes.put( name, c );
 			}
-			return loader.loadClass( desc.getName() );
+			return c;
+		}
+		
+		private Class<?> load( String name ) throws ClassNotFoundException {
+			final Class<?> primitive = PRIMITIVES.get( name );
+			if ( primitive != null ) {
+				return primitive;
+			}
+			if ( loader == null || name.startsWith( "[" ) ) {
+				return Class.forName( name, false, loader );
+			}
+			return loader.loadClass( name );
 		}
 	}
 	
@@ -58,46 +225,290 @@ public class Serialization {
 	}
 	
 	public static <V> ByteString asByteString( Class<V> c, V obj ) throws IOException {
-		if ( USE_FST ) {
-			try ( final Output stream = ByteString.newOutput(); ) {
-				final FSTObjectOutput out = FST.getObjectOutput( stream );
-				out.writeObject( obj, c );
-				out.flush();
-				return stream.toByteString();
-			} catch ( final IOException e ) {
-				throw new ConvertObjectTunnelException( e );
-			}
-		} else {
-			try ( final Output stream = ByteString.newOutput(); ObjectOutput out = new ObjectOutputStream( stream ) ) {
-				out.writeObject( obj );
-				out.flush();
-				return stream.toByteString();
-			} catch ( IOException e ) {
-				throw new RuntimeException( e );
-			}
+		try ( final Output stream = ByteString.newOutput(); ObjectOutput out = new ObjectOutputStream( stream ) ) {
+			out.writeObject( obj );
+			out.flush();
+			return stream.toByteString();
 		}
 	}
 	
 	public static <V> Object asObject( Class<V> c, ByteString byteData ) throws Exception {
-		if ( USE_FST ) {
-			try ( final InputStream stream = byteData.newInput(); ) {
-				final FSTObjectInput in = FST.getObjectInput( stream );
-				return in.readObject( c );
+		try ( final InputStream stream = byteData.newInput(); ObjectInput in = new ClassLoaderObjectInputStream( stream, c ) ) {
+			return in.readObject();
+		}
+	}
+	
+	public static <V> Object asObject( Class<V> c, byte[] byteData ) throws Exception {
+		try ( final InputStream stream = new ByteArrayInputStream( byteData ); ObjectInput in = new ClassLoaderObjectInputStream( stream, c ) ) {
+			return in.readObject();
+		}
+	}
+	
+	/**
+	 * Writes common value types in the compact format and all other objects with java serialization. Only
+	 * {@link #asCompactObject(Class, ByteString)} can read the result.
+	 */
+	public static <V> ByteString asCompactByteString( Class<V> c, V obj ) throws IOException {
+		final int size = sizeOf( obj, 0 );
+		if ( size >= 0 ) {
+			final byte[] result = new byte[ size ];
+			final CodedOutputStream out = CodedOutputStream.newInstance( result );
+			write( out, obj );
+			out.checkNoSpaceLeft();
+			return UnsafeByteOperations.unsafeWrap( result );
+		}
+		return asByteString( c, obj );
+	}
+	
+	public static <V> Object asCompactObject( Class<V> c, ByteString byteData ) throws Exception {
+		if ( !byteData.isEmpty() && byteData.byteAt( 0 ) != STREAM_MAGIC ) {
+			final CodedInputStream in = byteData.newCodedInput();
+			in.pushLimit( byteData.size() );
+			return read( in, 0 );
+		}
+		return asObject( c, byteData );
+	}
+	
+	public static <V> Object asCompactObject( Class<V> c, byte[] byteData ) throws Exception {
+		if ( byteData.length > 0 && byteData[0] != STREAM_MAGIC ) {
+			final CodedInputStream in = CodedInputStream.newInstance( byteData );
+			in.pushLimit( byteData.length );
+			return read( in, 0 );
+		}
+		return asObject( c, byteData );
+	}
+	
+	// ***************************************************************************
+	// Compact encoding of common value types. A tag byte precedes every value, it never equals the first byte of a
+	// java serialization stream. Other types, lists and maps with other types and deeper nesting use java serialization.
+	
+	private static final byte STREAM_MAGIC = ( byte ) ( ObjectStreamConstants.STREAM_MAGIC >>> 8 );
+	private static final int MAX_DEPTH = 16;
+	
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte SHORT = 4;
+	private static final byte BYTE = 5;
+	private static final byte BOOLEAN = 6;
+	private static final byte CHARACTER = 7;
+	private static final byte FLOAT = 8;
+	private static final byte DOUBLE = 9;
+	private static final byte UUID_TAG = 10;
+	private static final byte LIST = 11;
+	private static final byte MAP = 12;
+	
+	private static final Map<Class<?>, Byte> TAGS = ImmutableMap.<Class<?>, Byte> builder()//
+			.put( String.class, STRING ).put( Integer.class, INTEGER ).put( Long.class, LONG )//
+			.put( Short.class, SHORT ).put( Byte.class, BYTE ).put( Boolean.class, BOOLEAN )//
+			.put( Character.class, CHARACTER ).put( Float.class, FLOAT ).put( Double.class, DOUBLE )//
+			.put( UUID.class, UUID_TAG ).put( ArrayList.class, LIST ).put( HashMap.class, MAP ).build();
+	
+	/**
+	 * @return encoded size or -1 if java serialization is needed
+	 */
+	private static int sizeOf( final Object obj, final int depth ) {
+		if ( obj == null ) {
+			return 1;
+		}
+		final Byte tag = TAGS.get( obj.getClass() );
+		if ( tag == null ) {
+			return -1;
+		}
+		switch ( tag ) {
+			case STRING:
+				final String str = ( String ) obj;
+				return isWellFormed( str ) ? 1 + CodedOutputStream.computeStringSizeNoTag( str ) : -1;
+			case INTEGER:
+				return 1 + CodedOutputStream.computeSInt32SizeNoTag( ( Integer ) obj );
+			case LONG:
+				return 1 + CodedOutputStream.computeSInt64SizeNoTag( ( Long ) obj );
+			case SHORT:
+				return 1 + CodedOutputStream.computeSInt32SizeNoTag( ( Short ) obj );
+			case BYTE:
+			case BOOLEAN:
+				return 2;
+			case CHARACTER:
+				return 1 + CodedOutputStream.computeUInt32SizeNoTag( ( Character ) obj );
+			case FLOAT:
+				return 5;
+			case DOUBLE:
+				return 9;
+			case UUID_TAG:
+				return 17;
+			case LIST: {
+				if ( depth >= MAX_DEPTH ) {
+					return -1;
+				}
+				final List<?> list = ( List<?> ) obj;
+				int size = 1 + CodedOutputStream.computeUInt32SizeNoTag( list.size() );
+				for ( int i = 0; i < list.size(); ++i ) {
+					final int n = sizeOf( list.get( i ), depth + 1 );
+					if ( n < 0 ) {
+						return -1;
+					}
+					size += n;
+				}
+				return size;
 			}
-		} else {
-			try ( final InputStream stream = byteData.newInput(); ObjectInput in = new ClassLoaderObjectInputStream( stream, c ) ) {
-				return in.readObject();
+			case MAP: {
+				if ( depth >= MAX_DEPTH ) {
+					return -1;
+				}
+				final Map<?, ?> map = ( Map<?, ?> ) obj;
+				int size = 1 + CodedOutputStream.computeUInt32SizeNoTag( map.size() );
+				for ( final Map.Entry<?, ?> e : map.entrySet() ) {
+					final int k = sizeOf( e.getKey(), depth + 1 );
+					final int v = sizeOf( e.getValue(), depth + 1 );
+					if ( k < 0 || v < 0 ) {
+						return -1;
+					}
+					size += k + v;
+				}
+				return size;
 			}
+			default:
+				return -1;
 		}
 	}
 	
-	public static <V> Object asObject( Class<V> c, byte[] byteData ) throws Exception {
-		if ( USE_FST ) {
-			return FST.getObjectInput( byteData ).readObject( c );
-		} else {
-			try ( final InputStream stream = new ByteArrayInputStream( byteData ); ObjectInput in = new ClassLoaderObjectInputStream( stream, c ) ) {
-				return in.readObject();
+	/**
+	 * Unpaired surrogates can not be encoded as UTF-8, those strings use java serialization.
+	 */
+	private static boolean isWellFormed( final String str ) {
+		for ( int i = 0, len = str.length(); i < len; ++i ) {
+			final char c = str.charAt( i );
+			if ( Character.isSurrogate( c ) ) {
+				if ( !Character.isHighSurrogate( c ) || ++i == len || !Character.isLowSurrogate( str.charAt( i ) ) ) {
+					return false;
+				}
 			}
 		}
+		return true;
+	}
+	
+	private static void write( final CodedOutputStream out, final Object obj ) throws IOException {
+		if ( obj == null ) {
+			out.writeRawByte( NULL );
+			return;
+		}
+		final byte tag = TAGS.get( obj.getClass() );
+		out.writeRawByte( tag );
+		switch ( tag ) {
+			case STRING:
+				out.writeStringNoTag( ( String ) obj );
+				break;
+			case INTEGER:
+				out.writeSInt32NoTag( ( Integer ) obj );
+				break;
+			case LONG:
+				out.writeSInt64NoTag( ( Long ) obj );
+				break;
+			case SHORT:
+				out.writeSInt32NoTag( ( Short ) obj );
+				break;
+			case BYTE:
+				out.writeRawByte( ( Byte ) obj );
+				break;
+			case BOOLEAN:
+				out.writeRawByte( ( Boolean ) obj ? 1 : 0 );
+				break;
+			case CHARACTER:
+				out.writeUInt32NoTag( ( Character ) obj );
+				break;
+			case FLOAT:
+				out.writeFloatNoTag( ( Float ) obj );
+				break;
+			case DOUBLE:
+				out.writeDoubleNoTag( ( Double ) obj );
+				break;
+			case UUID_TAG:
+				final UUID uuid = ( UUID ) obj;
+				out.writeFixed64NoTag( uuid.getMostSignificantBits() );
+				out.writeFixed64NoTag( uuid.getLeastSignificantBits() );
+				break;
+			case LIST:
+				final List<?> list = ( List<?> ) obj;
+				out.writeUInt32NoTag( list.size() );
+				for ( int i = 0; i < list.size(); ++i ) {
+					write( out, list.get( i ) );
+				}
+				break;
+			case MAP:
+				final Map<?, ?> map = ( Map<?, ?> ) obj;
+				out.writeUInt32NoTag( map.size() );
+				for ( final Map.Entry<?, ?> e : map.entrySet() ) {
+					write( out, e.getKey() );
+					write( out, e.getValue() );
+				}
+				break;
+			default:
+				throw new IllegalStateException();
+		}
 	}
+	
+	private static Object read( final CodedInputStream in, final int depth ) throws IOException {
+		final byte tag = in.readRawByte();
+		switch ( tag ) {
+			case NULL:
+				return null;
+			case STRING:
+				return in.readStringRequireUtf8();
+			case INTEGER:
+				return in.readSInt32();
+			case LONG:
+				return in.readSInt64();
+			case SHORT:
+				return ( short ) in.readSInt32();
+			case BYTE:
+				return in.readRawByte();
+			case BOOLEAN:
+				return in.readRawByte() != 0;
+			case CHARACTER:
+				return ( char ) in.readUInt32();
+			case FLOAT:
+				return in.readFloat();
+			case DOUBLE:
+				return in.readDouble();
+			case UUID_TAG:
+				return new UUID( in.readFixed64(), in.readFixed64() );
+			case LIST: {
+				checkDepth( depth );
+				final int size = readSize( in );
+				final ArrayList<Object> list = new ArrayList<>( size );
+				for ( int i = 0; i < size; ++i ) {
+					list.add( read( in, depth + 1 ) );
+				}
+				return list;
+			}
+			case MAP: {
+				checkDepth( depth );
+				final int size = readSize( in );
+				final HashMap<Object, Object> map = Maps.newHashMapWithExpectedSize( size );
+				for ( int i = 0; i < size; ++i ) {
+					map.put( read( in, depth + 1 ), read( in, depth + 1 ) );
+				}
+				return map;
+			}
+			default:
+				throw new StreamCorruptedException( "unknown value tag " + tag );
+		}
+	}
+	
+	private static void checkDepth( final int depth ) throws IOException {
+		if ( depth >= MAX_DEPTH ) {
+			throw new StreamCorruptedException( "nested too deep" );
+		}
+	}
+	
+	private static int readSize( final CodedInputStream in ) throws IOException {
+		final int size = in.readUInt32();
+		// Every element needs at least its tag
+		if ( size < 0 || size > in.getBytesUntilLimit() ) {
+			throw new StreamCorruptedException( "invalid size " + size );
+		}
+		return size;
+	}
+	
 }
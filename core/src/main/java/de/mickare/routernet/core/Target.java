@@ -89,13 +89,22 @@ public @Getter class Target {
 		return false;
 	}
 	
+	private static boolean overlaps( Collection<String> namespaces, Node node ) {
+		for ( String namespace : namespaces ) {
+			if ( node.hasNamespaceId( Namespace.idOf( namespace ) ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	public boolean contains( final Node node ) {
 		final UUID id = node.getId();
 		if ( toAll ) {
 			if ( nodesExclude.contains( id ) ) {
 				return false;
 			}
-			if ( overlaps( this.namespacesExclude, node.getNamespaces() ) ) {
+			if ( overlaps( this.namespacesExclude, node ) ) {
 				return false;
 			}
 			return true;
@@ -103,7 +112,7 @@ public @Getter class Target {
 		if ( nodesInclude.contains( id ) ) {
 			return true;
 		}
-		if ( overlaps( this.namespacesInclude, node.getNamespaces() ) ) {
+		if ( overlaps( this.namespacesInclude, node ) ) {
 			return !nodesExclude.contains( id );
 		}
 		return false;
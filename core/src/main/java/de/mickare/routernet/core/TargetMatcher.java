@@ -0,0 +1,99 @@
+package de.mickare.routernet.core;
+
+import java.util.UUID;
+
+import de.mickare.routernet.protocol.ComponentsProtocol.UUIDMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
+
+/**
+ * Evaluates target messages directly without creating a {@link Target}.
+ *
+ * Compares node ids by their bits and namespaces by their interned ids, so routing a message does not
+ * allocate anything.
+ */
+public class TargetMatcher {
+
+	private TargetMatcher() {
+	}
+
+	/**
+	 * Checks if the node is part of the target. Same result as {@link Target#contains(Node)}.
+	 *
+	 * @param target
+	 *            protocol message
+	 * @param node
+	 *            to check
+	 * @return true if the node is a receiver
+	 */
+	public static boolean matches( final TargetMessage target, final Node node ) {
+		final UUID id = node.getId();
+		final long msb = id.getMostSignificantBits();
+		final long lsb = id.getLeastSignificantBits();
+		if ( isNodeExcluded( target, msb, lsb ) ) {
+			return false;
+		}
+		if ( target.getToAll() ) {
+			return !hasExcludedNamespace( target, node );
+		}
+		return isNodeIncluded( target, msb, lsb ) || hasIncludedNamespace( target, node );
+	}
+
+	public static boolean is( final UUIDMessage msg, final long msb, final long lsb ) {
+		return msg.getMostSignificantBits() == msb && msg.getLeastSignificantBits() == lsb;
+	}
+
+	public static boolean is( final UUIDMessage msg, final UUID id ) {
+		return is( msg, id.getMostSignificantBits(), id.getLeastSignificantBits() );
+	}
+
+	public static boolean is( final UUIDMessage msg, final Node node ) {
+		return is( msg, node.getId() );
+	}
+
+	public static boolean isNodeIncluded( final TargetMessage target, final long msb, final long lsb ) {
+		for ( int i = 0, size = target.getNodesIncludeCount(); i < size; ++i ) {
+			if ( is( target.getNodesInclude( i ), msb, lsb ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static boolean isNodeExcluded( final TargetMessage target, final long msb, final long lsb ) {
+		for ( int i = 0, size = target.getNodesExcludeCount(); i < size; ++i ) {
+			if ( is( target.getNodesExclude( i ), msb, lsb ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isNamespaceExcluded( final TargetMessage target, final String namespace ) {
+		for ( int i = 0, size = target.getNamespacesExcludeCount(); i < size; ++i ) {
+			if ( namespace.equals( target.getNamespacesExclude( i ) ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasIncludedNamespace( final TargetMessage target, final Node node ) {
+		for ( int i = 0, size = target.getNamespacesIncludeCount(); i < size; ++i ) {
+			final String namespace = target.getNamespacesInclude( i );
+			if ( node.hasNamespaceId( Namespace.idOf( namespace ) ) && !isNamespaceExcluded( target, namespace ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasExcludedNamespace( final TargetMessage target, final Node node ) {
+		for ( int i = 0, size = target.getNamespacesExcludeCount(); i < size; ++i ) {
+			if ( node.hasNamespaceId( Namespace.idOf( target.getNamespacesExclude( i ) ) ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
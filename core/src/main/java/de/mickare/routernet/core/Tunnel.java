@@ -2,20 +2,27 @@ package de.mickare.routernet.core;
 
 import java.nio.ByteBuffer;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.logging.Level;
+import java.util.zip.DataFormatException;
 
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
 import de.mickare.routernet.Owner;
+import de.mickare.routernet.ProtocolUtils;
 import de.mickare.routernet.core.Node.HomeNode;
+import de.mickare.routernet.core.codec.JdkCodec;
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
 import de.mickare.routernet.core.tunnel.TunnelHandler;
 import de.mickare.routernet.core.tunnel.TunnelMessage;
 import de.mickare.routernet.protocol.TransportProtocol;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -25,13 +32,21 @@ public class Tunnel {
 	private transient @Getter final AbstractNetwork network;
 	private @Getter final String name;
 	private @Getter final int id;
+	private @Getter volatile int index = 0;
 	private @Getter volatile boolean closed = false;
 	private transient @Getter Optional<Executor> executor = Optional.empty();
 	
 	private Optional<TunnelRegister.Type> type = Optional.empty();
+	private Optional<Integer> codec = Optional.empty();
+	private int schemaHash = 0;
 	private transient TunnelHandler handler = null;
 	private transient final CopyOnWriteArraySet<RegisteredMessageListener> listeners = new CopyOnWriteArraySet<>();
 	
+	private transient volatile TunnelDictionary dictionary = null;
+	// Messages compressed with the replaced dictionary may still be in flight. Only one is kept, the router replaces
+	// a dictionary at most once per minimum interval
+	private transient volatile TunnelDictionary previousDictionary = null;
+	
 	public Tunnel( final AbstractNetwork network, final String name ) {
 		Preconditions.checkNotNull( network );
 		Preconditions.checkArgument( !name.isEmpty() );
@@ -50,8 +65,20 @@ public class Tunnel {
 		if ( this.type.isPresent() ) {
 			Preconditions.checkState( handler.getType() == this.type.get() );
 		}
+		if ( this.codec.isPresent() ) {
+			Preconditions.checkState( handler.getCodecId() == this.codec.get(), "Codec already defined as %s!", this.codec.get() );
+		}
+		if ( this.schemaHash != 0 && handler.getSchemaHash() != 0 ) {
+			Preconditions.checkState( handler.getSchemaHash() == this.schemaHash, "Schema already defined with hash %s!", this.schemaHash );
+		}
 		this.handler = handler;
 		this.type = Optional.of( handler.getType() );
+		if ( handler.getType() == TunnelRegister.Type.OBJECT ) {
+			this.codec = Optional.of( handler.getCodecId() );
+			if ( handler.getSchemaHash() != 0 ) {
+				this.schemaHash = handler.getSchemaHash();
+			}
+		}
 	}
 	
 	public synchronized void setType( final TunnelRegister.Type type ) {
@@ -69,6 +96,132 @@ public class Tunnel {
 		return type.orElse( TunnelRegister.Type.BYTES );
 	}
 	
+	/**
+	 * Sets the codec of an object tunnel, both sides of the tunnel have to use the same codec.
+	 * 
+	 * @param codec
+	 *            id of codec
+	 * @throws IllegalStateException
+	 *             if another codec is defined
+	 */
+	public synchronized void setCodecId( final int codec ) throws IllegalStateException {
+		if ( this.codec.isPresent() ) {
+			if ( this.codec.get() == codec ) {
+				return;
+			}
+			throw new IllegalStateException( "Codec already defined as " + this.codec.get() + "!" );
+		}
+		this.codec = Optional.of( codec );
+	}
+	
+	public int getCodecId() {
+		return codec.orElse( JdkCodec.ID );
+	}
+	
+	/**
+	 * Sets the schema hash of an object tunnel, both sides of the tunnel have to use the same fields.
+	 * 
+	 * @param schemaHash
+	 *            hash of the schema, 0 if unknown
+	 * @throws IllegalStateException
+	 *             if another schema is defined
+	 */
+	public synchronized void setSchemaHash( final int schemaHash ) throws IllegalStateException {
+		if ( schemaHash == 0 || this.schemaHash == schemaHash ) {
+			return;
+		}
+		if ( this.schemaHash != 0 ) {
+			throw new IllegalStateException( "Schema already defined with hash " + this.schemaHash + "!" );
+		}
+		this.schemaHash = schemaHash;
+	}
+	
+	public synchronized int getSchemaHash() {
+		return schemaHash;
+	}
+	
+	void setIndex( final int index ) {
+		this.index = index;
+	}
+	
+	/**
+	 * Gets the dictionary that data of this tunnel is compressed with.
+	 * 
+	 * @return current dictionary or null
+	 */
+	public TunnelDictionary getDictionary() {
+		return this.dictionary;
+	}
+	
+	/**
+	 * Gets a dictionary by version. Only the current and the replaced dictionary are known.
+	 * 
+	 * @param version
+	 *            of dictionary
+	 * @return dictionary or null if unknown
+	 */
+	public TunnelDictionary getDictionary( final int version ) {
+		final TunnelDictionary current = this.dictionary;
+		if ( current != null && current.getVersion() == version ) {
+			return current;
+		}
+		final TunnelDictionary previous = this.previousDictionary;
+		if ( previous != null && previous.getVersion() == version ) {
+			return previous;
+		}
+		return null;
+	}
+	
+	/**
+	 * Replaces the dictionary. The replaced dictionary is kept to decompress messages that are still in flight.
+	 * 
+	 * @param dictionary
+	 *            new dictionary or null to stop compressing
+	 */
+	public synchronized void setDictionary( final TunnelDictionary dictionary ) {
+		final TunnelDictionary current = this.dictionary;
+		if ( current == dictionary || ( current != null && dictionary != null && current.getVersion() == dictionary.getVersion() ) ) {
+			return;
+		}
+		if ( current != null ) {
+			this.previousDictionary = current;
+		}
+		this.dictionary = dictionary;
+	}
+	
+	/**
+	 * Decompresses data of a received message.
+	 * 
+	 * @param version
+	 *            of dictionary, 0 if the data is not compressed
+	 * @param data
+	 *            of message
+	 * @return raw data
+	 * @throws DataFormatException
+	 *             if the dictionary is unknown or the data is invalid
+	 */
+	public ByteString decompress( final int version, final ByteString data ) throws DataFormatException {
+		if ( version == 0 ) {
+			return data;
+		}
+		final TunnelDictionary dictionary = getDictionary( version );
+		if ( dictionary == null ) {
+			throw new DataFormatException( "unknown dictionary " + version );
+		}
+		// Fragmented messages may be larger than a frame, but not larger than the reassembly limit
+		final long maxLength = Math.min( Integer.MAX_VALUE, network.getFragmentAssembler().getMaxPacketLength() );
+		return dictionary.decompress( data, ( int ) maxLength );
+	}
+	
+	private ByteString decompressOrLog( final int version, final ByteString data ) {
+		try {
+			return decompress( version, data );
+		} catch ( DataFormatException e ) {
+			this.getNetwork().getLogger().log( Level.WARNING, "Dropped message of tunnel " + name + ": " + e.getMessage() );
+			return null;
+		}
+	}
+	
 	public void close() {
 		this.closed = true;
 	}
@@ -85,14 +238,91 @@ public class Tunnel {
 		return this.send( Target.toAll(), data );
 	}
 	
+	/**
+	 * Sends the remaining bytes of the buffer without copying them. The message is encoded before this returns, so
+	 * direct buffers are copied into the frame only and the buffer can be reused afterwards.
+	 * 
+	 * @param target
+	 *            of message
+	 * @param data
+	 *            to send, its position is moved to its limit
+	 * @return true if it was sent
+	 */
 	public boolean send( final Target target, final ByteBuffer data ) {
-		return this.send( target, ByteString.copyFrom( data ) );
+		final boolean success = this.sendTransient( target, UnsafeByteOperations.unsafeWrap( data.slice() ) );
+		data.position( data.limit() );
+		return success;
+	}
+	
+	/**
+	 * Sends data that references a buffer the caller reuses afterwards. The message is encoded before this returns,
+	 * only receivers of this node get a copy of the data.
+	 * 
+	 * @param target
+	 *            of message
+	 * @param data
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean sendTransient( final Target target, final ByteString data ) {
+		final HomeNode home = getNetwork().getHome();
+		boolean success = true;
+		if ( !target.isOnly( home ) ) {
+			success = this.network.sendTunnelMessageEncoded( new TunnelMessage( this, target, home.getId(), data ) );
+		}
+		if ( target.contains( home ) ) {
+			this.receive( null, new TunnelMessage( this, target, home.getId(), UnsafeByteOperations.unsafeWrap( data.toByteArray() ) ) );
+		}
+		return success;
 	}
 	
 	public boolean send( final Target target, final byte[] data ) {
 		return this.send( target, ByteString.copyFrom( data ) );
 	}
 	
+	public boolean broadcastOwned( final byte[] data ) {
+		return this.sendOwned( Target.toAll(), data );
+	}
+	
+	/**
+	 * Sends the array without copying it. The tunnel takes ownership of the array, it must not be modified afterwards.
+	 * 
+	 * @param target
+	 *            of message
+	 * @param data
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean sendOwned( final Target target, final byte[] data ) {
+		return this.send( target, UnsafeByteOperations.unsafeWrap( data ) );
+	}
+	
+	public boolean broadcast( final ByteBuf data ) {
+		return this.send( Target.toAll(), data );
+	}
+	
+	/**
+	 * Sends the readable bytes of the buffer without copying them. The tunnel takes ownership of the buffer and
+	 * releases it when the message is encoded.
+	 * 
+	 * @param target
+	 *            of message
+	 * @param data
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean send( final Target target, final ByteBuf data ) {
+		try {
+			ByteString wrapped = ByteString.EMPTY;
+			for ( final ByteBuffer buffer : data.nioBuffers() ) {
+				wrapped = wrapped.concat( UnsafeByteOperations.unsafeWrap( buffer ) );
+			}
+			return this.sendTransient( target, wrapped );
+		} finally {
+			data.release();
+		}
+	}
+	
 	public boolean send( final Target target, final ByteString data ) {
 		final TunnelMessage cmsg = new TunnelMessage( this, target, getNetwork().getHome().getId(), data );
 		return this.send( cmsg );
@@ -121,7 +351,36 @@ public class Tunnel {
 	public final void receiveProto( final Connection con, final TransportProtocol.TunnelMessage msg ) {
 		if ( this.listeners.size() > 0 || this.handler != null ) {
 			// Only handle it if there are handlers.
-			this.receive( con, new TunnelMessage( this, msg ) );
+			if ( msg.getDictionary() == 0 ) {
+				this.receive( con, new TunnelMessage( this, msg ) );
+			} else {
+				final ByteString data = decompressOrLog( msg.getDictionary(), msg.getData() );
+				if ( data != null ) {
+					this.receive( con, new TunnelMessage( this, new Target( msg.getTarget() ), ProtocolUtils.convert( msg.getSender() ), data ) );
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Receives a batch of tunnel messages that share the target and sender of the batch.
+	 * 
+	 * @param con
+	 *            that received the batch
+	 * @param batch
+	 *            with target
+	 */
+	public final void receiveBatch( final Connection con, final TransportProtocol.PacketBatch batch ) {
+		if ( this.listeners.size() > 0 || this.handler != null ) {
+			final Target target = new Target( batch.getTarget() );
+			final UUID sender = ProtocolUtils.convert( batch.getSender() );
+			for ( int i = 0, size = batch.getPacketsCount(); i < size; ++i ) {
+				final TransportProtocol.TunnelMessage msg = batch.getPackets( i ).getTunnelMessage();
+				final ByteString data = decompressOrLog( msg.getDictionary(), msg.getData() );
+				if ( data != null ) {
+					this.receive( con, new TunnelMessage( this, target, sender, data ) );
+				}
+			}
 		}
 	}
 	
@@ -161,6 +420,16 @@ public class Tunnel {
 		b.setTunnelId( this.getId() );
 		b.setName( this.getName() );
 		b.setType( this.getType() );
+		b.setIndex( this.index );
+		b.setCodec( this.getCodecId() );
+		b.setSchema( this.getSchemaHash() );
+		final TunnelDictionary dictionary = this.dictionary;
+		if ( network.isDictionaryAuthority() ) {
+			b.setDictionary( dictionary != null ? dictionary.toProtocol( true ) : TransportProtocol.TunnelDictionary.getDefaultInstance() );
+		} else if ( dictionary != null ) {
+			// Only announce the version, the router replies if it has another one
+			b.setDictionary( dictionary.toProtocol( false ) );
+		}
 		if ( flush ) {
 			connection.writeAndFlushFast( b.build() );
 		} else {
@@ -0,0 +1,38 @@
+package de.mickare.routernet.core.codec;
+
+import java.io.IOException;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Serializes objects of object tunnels and procedures. Both sides of a tunnel or procedure use the codec with the same
+ * id, see {@link Codecs}.
+ */
+public interface Codec {
+	
+	/**
+	 * @return id of the codec, that is sent to the peers
+	 */
+	int getId();
+	
+	/**
+	 * @param dataClass
+	 *            of objects
+	 * @return true if the codec can serialize objects of the class
+	 */
+	boolean supports( Class<?> dataClass );
+	
+	/**
+	 * @param dataClass
+	 *            of objects
+	 * @return hash of the layout of the class that both sides have to share, or 0 if the codec does not depend on it
+	 */
+	default int getSchemaHash( Class<?> dataClass ) {
+		return 0;
+	}
+	
+	<T> ByteString encode( Class<T> dataClass, T obj ) throws IOException;
+	
+	<T> T decode( Class<T> dataClass, ByteString data ) throws Exception;
+	
+}
@@ -0,0 +1,78 @@
+package de.mickare.routernet.core.codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Registry of codecs by id.
+ */
+public class Codecs {
+	
+	public static final Codec JDK = new JdkCodec();
+	public static final Codec FST = new FstCodec( 1 );
+	public static final Codec PROTOBUF = new ProtobufCodec();
+	public static final Codec SCHEMA = new SchemaCodec();
+	public static final Codec COMPACT = new CompactCodec();
+	
+	private static final ConcurrentMap<Integer, Codec> codecs = new ConcurrentHashMap<>();
+	
+	static {
+		register( JDK );
+		register( FST );
+		register( PROTOBUF );
+		register( SCHEMA );
+		register( COMPACT );
+	}
+	
+	private Codecs() {
+	}
+	
+	/**
+	 * Gets the codec that is used if none is chosen: the {@link SchemaCodec} if a class is marked with {@link Schema},
+	 * otherwise java serialization.
+	 * 
+	 * @param dataClasses
+	 *            of objects
+	 * @return default codec
+	 */
+	public static Codec getDefault( Class<?>... dataClasses ) {
+		for ( final Class<?> dataClass : dataClasses ) {
+			if ( SchemaCodec.isSchema( dataClass ) ) {
+				return SCHEMA;
+			}
+		}
+		return JDK;
+	}
+	
+	/**
+	 * Registers a codec, for example a {@link FstCodec} with registered classes.
+	 * 
+	 * @param codec
+	 *            to register
+	 * @throws IllegalStateException
+	 *             if another codec has the same id
+	 */
+	public static void register( Codec codec ) throws IllegalStateException {
+		Preconditions.checkNotNull( codec );
+		final Codec other = codecs.putIfAbsent( codec.getId(), codec );
+		if ( other != null && other != codec ) {
+			throw new IllegalStateException( "Codec id " + codec.getId() + " already used by " + other.getClass().getName() + "!" );
+		}
+	}
+	
+	/**
+	 * @param id
+	 *            of codec
+	 * @return registered codec
+	 * @throws IllegalArgumentException
+	 *             if no codec has the id
+	 */
+	public static Codec get( int id ) throws IllegalArgumentException {
+		final Codec codec = codecs.get( id );
+		Preconditions.checkArgument( codec != null, "Unknown codec %s", id );
+		return codec;
+	}
+	
+}
@@ -0,0 +1,41 @@
+package de.mickare.routernet.core.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.core.Serialization;
+
+/**
+ * Java serialization that writes strings, boxed primitives, UUIDs and array lists and hash maps of those in a compact
+ * tagged format. Nodes that only know the {@link JdkCodec} can not read it, so tunnels and procedures have to choose it.
+ */
+public class CompactCodec implements Codec {
+	
+	public static final int ID = 4;
+	
+	CompactCodec() {
+	}
+	
+	@Override
+	public int getId() {
+		return ID;
+	}
+	
+	@Override
+	public boolean supports( Class<?> dataClass ) {
+		return Serializable.class.isAssignableFrom( dataClass );
+	}
+	
+	@Override
+	public <T> ByteString encode( Class<T> dataClass, T obj ) throws IOException {
+		return Serialization.asCompactByteString( dataClass, obj );
+	}
+	
+	@Override
+	public <T> T decode( Class<T> dataClass, ByteString data ) throws Exception {
+		return dataClass.cast( Serialization.asCompactObject( dataClass, data ) );
+	}
+	
+}
@@ -0,0 +1,60 @@
+package de.mickare.routernet.core.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ByteString.Output;
+
+import lombok.Getter;
+
+/**
+ * FST serialization. Registered classes are written as short ids instead of their names, so both sides have to
+ * register the same classes in the same order.
+ */
+public class FstCodec implements Codec {
+	
+	private final @Getter int id;
+	private final FSTConfiguration config;
+	
+	/**
+	 * @param id
+	 *            of the codec
+	 * @param registeredClasses
+	 *            that are written as ids
+	 */
+	public FstCodec( int id, Class<?>... registeredClasses ) {
+		Preconditions.checkArgument( id != JdkCodec.ID );
+		this.id = id;
+		this.config = FSTConfiguration.createDefaultConfiguration();
+		this.config.registerClass( registeredClasses );
+	}
+	
+	@Override
+	public boolean supports( Class<?> dataClass ) {
+		return Serializable.class.isAssignableFrom( dataClass );
+	}
+	
+	@Override
+	public <T> ByteString encode( Class<T> dataClass, T obj ) throws IOException {
+		try ( final Output stream = ByteString.newOutput() ) {
+			final FSTObjectOutput out = config.getObjectOutput( stream );
+			out.writeObject( obj, dataClass );
+			out.flush();
+			return stream.toByteString();
+		}
+	}
+	
+	@Override
+	public <T> T decode( Class<T> dataClass, ByteString data ) throws Exception {
+		try ( final InputStream stream = data.newInput() ) {
+			return dataClass.cast( config.getObjectInput( stream ).readObject( dataClass ) );
+		}
+	}
+	
+}
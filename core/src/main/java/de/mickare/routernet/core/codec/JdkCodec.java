@@ -0,0 +1,40 @@
+package de.mickare.routernet.core.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.core.Serialization;
+
+/**
+ * Java serialization, the default codec.
+ */
+public class JdkCodec implements Codec {
+	
+	public static final int ID = 0;
+	
+	JdkCodec() {
+	}
+	
+	@Override
+	public int getId() {
+		return ID;
+	}
+	
+	@Override
+	public boolean supports( Class<?> dataClass ) {
+		return Serializable.class.isAssignableFrom( dataClass );
+	}
+	
+	@Override
+	public <T> ByteString encode( Class<T> dataClass, T obj ) throws IOException {
+		return Serialization.asByteString( dataClass, obj );
+	}
+	
+	@Override
+	public <T> T decode( Class<T> dataClass, ByteString data ) throws Exception {
+		return dataClass.cast( Serialization.asObject( dataClass, data ) );
+	}
+	
+}
@@ -0,0 +1,58 @@
+package de.mickare.routernet.core.codec;
+
+import java.io.IOException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+/**
+ * Protobuf messages, parsed with the parser of their type.
+ */
+public class ProtobufCodec implements Codec {
+	
+	public static final int ID = 2;
+	
+	private static final ClassValue<Parser<?>> PARSERS = new ClassValue<Parser<?>>() {
+		@Override
+		protected Parser<?> computeValue( Class<?> type ) {
+			try {
+				return ( ( MessageLite ) type.getMethod( "getDefaultInstance" ).invoke( null ) ).getParserForType();
+			} catch ( ReflectiveOperationException e ) {
+				throw new IllegalArgumentException( "No protobuf message (" + type.getName() + ")!", e );
+			}
+		}
+	};
+	
+	ProtobufCodec() {
+	}
+	
+	@Override
+	public int getId() {
+		return ID;
+	}
+	
+	@Override
+	public boolean supports( Class<?> dataClass ) {
+		if ( !MessageLite.class.isAssignableFrom( dataClass ) ) {
+			return false;
+		}
+		try {
+			PARSERS.get( dataClass );
+			return true;
+		} catch ( IllegalArgumentException e ) {
+			return false;
+		}
+	}
+	
+	@Override
+	public <T> ByteString encode( Class<T> dataClass, T obj ) throws IOException {
+		return ( ( MessageLite ) obj ).toByteString();
+	}
+	
+	@Override
+	public <T> T decode( Class<T> dataClass, ByteString data ) throws Exception {
+		return dataClass.cast( PARSERS.get( dataClass ).parseFrom( data ) );
+	}
+	
+}
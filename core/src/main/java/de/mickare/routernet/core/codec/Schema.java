@@ -0,0 +1,20 @@
+package de.mickare.routernet.core.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class that is written field by field with the {@link SchemaCodec} instead of java serialization.
+ *
+ * The class needs a constructor without arguments. All non-static, non-transient fields are written in the order of
+ * their declaring classes, from the super class down, and by name within a class. Both sides need the same fields.
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface Schema {
+	
+}
@@ -0,0 +1,446 @@
+package de.mickare.routernet.core.codec;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ByteString.Output;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.core.Serialization;
+
+/**
+ * Writes classes marked with {@link Schema} field by field with protobuf wire primitives. The fields of a class are
+ * inspected once and accessed with method handles, no class descriptors are written.
+ *
+ * Primitives are written as is. Reference fields start with a presence flag. Strings, boxed primitives, UUIDs, byte
+ * arrays, enums and nested schema classes are written directly, other types with {@link Serialization}. Classes
+ * without the annotation use {@link Serialization} as well.
+ *
+ * Nested schema objects are limited to {@link #MAX_DEPTH} levels, so self referencing schemas can not overflow the
+ * stack.
+ */
+public class SchemaCodec implements Codec {
+	
+	public static final int ID = 3;
+	public static final int MAX_DEPTH = 64;
+	
+	private static final ClassValue<ClassSchema> SCHEMAS = new ClassValue<ClassSchema>() {
+		@Override
+		protected ClassSchema computeValue( Class<?> type ) {
+			try {
+				return new ClassSchema( type );
+			} catch ( ReflectiveOperationException e ) {
+				throw new IllegalArgumentException( "Can't inspect schema of " + type.getName() + ": " + e.getMessage(), e );
+			}
+		}
+	};
+	
+	SchemaCodec() {
+	}
+	
+	public static boolean isSchema( Class<?> dataClass ) {
+		return dataClass.isAnnotationPresent( Schema.class );
+	}
+	
+	@Override
+	public int getId() {
+		return ID;
+	}
+	
+	/**
+	 * Inspects schema classes, so invalid classes fail when the tunnel or procedure is created and not with the first
+	 * message.
+	 */
+	@Override
+	public boolean supports( Class<?> dataClass ) {
+		if ( !isSchema( dataClass ) ) {
+			return Serializable.class.isAssignableFrom( dataClass );
+		}
+		try {
+			SCHEMAS.get( dataClass );
+			return true;
+		} catch ( IllegalArgumentException e ) {
+			return false;
+		}
+	}
+	
+	/**
+	 * The hash of a schema covers the names and types of its fields in order. Nested schemas are covered by their class
+	 * name.
+	 */
+	@Override
+	public int getSchemaHash( Class<?> dataClass ) {
+		return isSchema( dataClass ) ? SCHEMAS.get( dataClass ).hash : 0;
+	}
+	
+	@Override
+	public <T> ByteString encode( Class<T> dataClass, T obj ) throws IOException {
+		if ( !isSchema( dataClass ) ) {
+			return Serialization.asCompactByteString( dataClass, obj );
+		}
+		Preconditions.checkNotNull( obj );
+		return SCHEMAS.get( dataClass ).encode( obj, 0 );
+	}
+	
+	@Override
+	public <T> T decode( Class<T> dataClass, ByteString data ) throws Exception {
+		if ( !isSchema( dataClass ) ) {
+			return dataClass.cast( Serialization.asCompactObject( dataClass, data ) );
+		}
+		final CodedInputStream in = data.newCodedInput();
+		final Object obj = SCHEMAS.get( dataClass ).read( in, 0 );
+		checkAtEnd( in );
+		return dataClass.cast( obj );
+	}
+	
+	private static void checkAtEnd( CodedInputStream in ) throws IOException {
+		if ( !in.isAtEnd() ) {
+			throw new StreamCorruptedException( "unread bytes after schema object" );
+		}
+	}
+	
+	private static IOException rethrow( Throwable t ) throws IOException {
+		Throwables.propagateIfPossible( t, IOException.class );
+		throw new IOException( t );
+	}
+	
+	private static final class ClassSchema {
+		
+		private static final Comparator<Field> BY_NAME = Comparator.comparing( Field::getName );
+		
+		private final Class<?> type;
+		private final MethodHandle constructor;
+		private final FieldCodec[] fields;
+		private final int hash;
+		
+		private ClassSchema( Class<?> type ) throws ReflectiveOperationException {
+			Preconditions.checkArgument( isSchema( type ), "missing @Schema" );
+			Preconditions.checkArgument( !type.isInterface() && !Modifier.isAbstract( type.getModifiers() ), "not a concrete class" );
+			this.type = type;
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final Constructor<?> c = type.getDeclaredConstructor();
+			c.setAccessible( true );
+			this.constructor = lookup.unreflectConstructor( c ).asType( MethodType.methodType( Object.class ) );
+			
+			final List<Field> declared = new ArrayList<>();
+			for ( Class<?> k = type; k != null && k != Object.class; k = k.getSuperclass() ) {
+				final List<Field> own = new ArrayList<>();
+				for ( final Field field : k.getDeclaredFields() ) {
+					if ( !Modifier.isStatic( field.getModifiers() ) && !Modifier.isTransient( field.getModifiers() ) && !field.isSynthetic() ) {
+						own.add( field );
+					}
+				}
+				own.sort( BY_NAME );
+				declared.addAll( 0, own );
+			}
+			this.fields = new FieldCodec[ declared.size() ];
+			final StringBuilder signature = new StringBuilder();
+			for ( int i = 0; i < fields.length; ++i ) {
+				final Field field = declared.get( i );
+				field.setAccessible( true );
+				fields[i] = FieldCodec.of( field, lookup.unreflectGetter( field ), lookup.unreflectSetter( field ) );
+				signature.append( field.getName() ).append( ':' ).append( field.getType().getName() ).append( ';' );
+			}
+			// 0 means unknown
+			final int h = signature.toString().hashCode();
+			this.hash = h != 0 ? h : 1;
+		}
+		
+		private ByteString encode( Object obj, int depth ) throws IOException {
+			final Output stream = ByteString.newOutput();
+			final CodedOutputStream out = CodedOutputStream.newInstance( stream, 256 );
+			write( out, obj, depth );
+			out.flush();
+			return stream.toByteString();
+		}
+		
+		private void write( CodedOutputStream out, Object obj, int depth ) throws IOException {
+			if ( obj.getClass() != type ) {
+				throw new InvalidClassException( obj.getClass().getName(), "schema of " + type.getName() + " expected" );
+			}
+			if ( depth >= MAX_DEPTH ) {
+				throw new InvalidObjectException( "schema objects nested deeper than " + MAX_DEPTH );
+			}
+			try {
+				for ( final FieldCodec field : fields ) {
+					field.write( out, obj, depth );
+				}
+			} catch ( Throwable t ) {
+				throw rethrow( t );
+			}
+		}
+		
+		private Object read( CodedInputStream in, int depth ) throws IOException {
+			if ( depth >= MAX_DEPTH ) {
+				throw new StreamCorruptedException( "schema objects nested deeper than " + MAX_DEPTH );
+			}
+			try {
+				final Object obj = ( Object ) constructor.invokeExact();
+				for ( final FieldCodec field : fields ) {
+					field.read( in, obj, depth );
+				}
+				return obj;
+			} catch ( Throwable t ) {
+				throw rethrow( t );
+			}
+		}
+	}
+	
+	private static abstract class FieldCodec {
+		
+		protected final MethodHandle getter;
+		protected final MethodHandle setter;
+		
+		private FieldCodec( MethodHandle getter, MethodHandle setter, Class<?> type ) {
+			this.getter = getter.asType( MethodType.methodType( type, Object.class ) );
+			this.setter = setter.asType( MethodType.methodType( void.class, Object.class, type ) );
+		}
+		
+		abstract void write( CodedOutputStream out, Object obj, int depth ) throws Throwable;
+		
+		abstract void read( CodedInputStream in, Object obj, int depth ) throws Throwable;
+		
+		private static FieldCodec of( Field field, MethodHandle getter, MethodHandle setter ) {
+			final Class<?> type = field.getType();
+			if ( type == int.class ) {
+				return new FieldCodec( getter, setter, int.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeSInt32NoTag( ( int ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, in.readSInt32() );
+					}
+				};
+			} else if ( type == long.class ) {
+				return new FieldCodec( getter, setter, long.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeSInt64NoTag( ( long ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, in.readSInt64() );
+					}
+				};
+			} else if ( type == double.class ) {
+				return new FieldCodec( getter, setter, double.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeDoubleNoTag( ( double ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, in.readDouble() );
+					}
+				};
+			} else if ( type == float.class ) {
+				return new FieldCodec( getter, setter, float.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeFloatNoTag( ( float ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, in.readFloat() );
+					}
+				};
+			} else if ( type == boolean.class ) {
+				return new FieldCodec( getter, setter, boolean.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeBoolNoTag( ( boolean ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, in.readBool() );
+					}
+				};
+			} else if ( type == short.class ) {
+				return new FieldCodec( getter, setter, short.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeSInt32NoTag( ( short ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, ( short ) in.readSInt32() );
+					}
+				};
+			} else if ( type == byte.class ) {
+				return new FieldCodec( getter, setter, byte.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeRawByte( ( byte ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, in.readRawByte() );
+					}
+				};
+			} else if ( type == char.class ) {
+				return new FieldCodec( getter, setter, char.class ) {
+					void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+						out.writeUInt32NoTag( ( char ) getter.invokeExact( obj ) );
+					}
+					
+					void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+						setter.invokeExact( obj, ( char ) in.readUInt32() );
+					}
+				};
+			}
+			final ValueCodec value = ValueCodec.of( type );
+			return new FieldCodec( getter, setter, Object.class ) {
+				void write( CodedOutputStream out, Object obj, int depth ) throws Throwable {
+					final Object v = ( Object ) getter.invokeExact( obj );
+					out.writeBoolNoTag( v != null );
+					if ( v != null ) {
+						value.write( out, v, depth );
+					}
+				}
+				
+				void read( CodedInputStream in, Object obj, int depth ) throws Throwable {
+					setter.invokeExact( obj, in.readBool() ? value.read( in, depth ) : ( Object ) null );
+				}
+			};
+		}
+	}
+	
+	/**
+	 * Writes non-null values of a reference type.
+	 */
+	private static abstract class ValueCodec {
+		
+		abstract void write( CodedOutputStream out, Object value, int depth ) throws IOException;
+		
+		abstract Object read( CodedInputStream in, int depth ) throws Exception;
+		
+		private static ValueCodec of( final Class<?> type ) {
+			if ( type == String.class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeStringNoTag( ( String ) value );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return in.readStringRequireUtf8();
+					}
+				};
+			} else if ( type == Integer.class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeSInt32NoTag( ( Integer ) value );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return in.readSInt32();
+					}
+				};
+			} else if ( type == Long.class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeSInt64NoTag( ( Long ) value );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return in.readSInt64();
+					}
+				};
+			} else if ( type == Double.class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeDoubleNoTag( ( Double ) value );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return in.readDouble();
+					}
+				};
+			} else if ( type == Boolean.class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeBoolNoTag( ( Boolean ) value );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return in.readBool();
+					}
+				};
+			} else if ( type == UUID.class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						final UUID uuid = ( UUID ) value;
+						out.writeFixed64NoTag( uuid.getMostSignificantBits() );
+						out.writeFixed64NoTag( uuid.getLeastSignificantBits() );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return new UUID( in.readFixed64(), in.readFixed64() );
+					}
+				};
+			} else if ( type == byte[].class ) {
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeByteArrayNoTag( ( byte[] ) value );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						return in.readByteArray();
+					}
+				};
+			} else if ( type.isEnum() ) {
+				final Object[] constants = type.getEnumConstants();
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeUInt32NoTag( ( ( Enum<?> ) value ).ordinal() );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						final int ordinal = in.readUInt32();
+						if ( ordinal < 0 || ordinal >= constants.length ) {
+							throw new InvalidClassException( type.getName(), "unknown constant " + ordinal );
+						}
+						return constants[ordinal];
+					}
+				};
+			} else if ( isSchema( type ) ) {
+				// Resolved on first use, so schemas can reference each other
+				return new ValueCodec() {
+					void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+						out.writeBytesNoTag( SCHEMAS.get( type ).encode( value, depth + 1 ) );
+					}
+					
+					Object read( CodedInputStream in, int depth ) throws IOException {
+						final int limit = in.pushLimit( in.readRawVarint32() );
+						final Object value = SCHEMAS.get( type ).read( in, depth + 1 );
+						checkAtEnd( in );
+						in.popLimit( limit );
+						return value;
+					}
+				};
+			}
+			return new ValueCodec() {
+				@SuppressWarnings( { "unchecked", "rawtypes" } )
+				void write( CodedOutputStream out, Object value, int depth ) throws IOException {
+					out.writeBytesNoTag( Serialization.asCompactByteString( ( Class ) type, value ) );
+				}
+				
+				Object read( CodedInputStream in, int depth ) throws Exception {
+					return type.cast( Serialization.asCompactObject( type, in.readBytes() ) );
+				}
+			};
+		}
+	}
+	
+}
@@ -1,6 +1,9 @@
 package de.mickare.routernet.core.login;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import com.google.common.base.Preconditions;
@@ -12,6 +15,8 @@ import de.mickare.routernet.core.AbstractNetwork;
 import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.event.LoginSuccessEvent.RouterLoginSuccessEvent;
 import de.mickare.routernet.exception.ProtocolException;
+import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
 import de.mickare.routernet.protocol.LoginProtocol.LoginChallengeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginHandshakeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginResponseMessage;
@@ -21,15 +26,36 @@ import lombok.Getter;
 
 public class ClientLoginEngine extends LoginEngine {
 	
+	public static final Set<Compression> DEFAULT_COMPRESSIONS = Collections.unmodifiableSet( EnumSet.of( Compression.DEFLATE ) );
+	
 	private final ClientAuthentication auth;
+	private final Set<Compression> compressions;
+	private final boolean varintFraming;
 	private @Getter UUID loginId = null;
 	private @Getter String loginName = null;
 	private @Getter LoginSuccessMessage finalMessage = null;
 	
 	public ClientLoginEngine( AbstractNetwork network, ClientAuthentication authentication ) {
+		this( network, authentication, DEFAULT_COMPRESSIONS, true );
+	}
+	
+	/**
+	 * @param network
+	 *            of client
+	 * @param authentication
+	 *            of client
+	 * @param compressions
+	 *            codecs the router may pick for frame compression
+	 * @param varintFraming
+	 *            the router may switch to varint length prefixes
+	 */
+	public ClientLoginEngine( AbstractNetwork network, ClientAuthentication authentication, Set<Compression> compressions, boolean varintFraming ) {
 		super( network );
 		Preconditions.checkNotNull( authentication );
+		Preconditions.checkNotNull( compressions );
 		this.auth = authentication;
+		this.compressions = compressions.isEmpty() ? EnumSet.noneOf( Compression.class ) : EnumSet.copyOf( compressions );
+		this.varintFraming = varintFraming;
 	}
 	
 	@Override
@@ -60,7 +86,7 @@ public class ClientLoginEngine extends LoginEngine {
 	public void handle( LoginEngine ctx, LoginChallengeMessage msg ) throws Exception {
 		checkAndSetState( State.LOGIN, State.AUTH );
 		ByteString response = this.auth.calculateResponse( msg.getToken() );
-		this.getChannel().writeAndFlush( LoginResponseMessage.newBuilder().setToken( response ) ).addListener( FAIL_LISTENER );
+		this.getChannel().writeAndFlush( LoginResponseMessage.newBuilder().setToken( response ).addAllCompressions( compressions ).setVarintFraming( varintFraming ) ).addListener( FAIL_LISTENER );
 	}
 	
 	@Override
@@ -70,6 +96,19 @@ public class ClientLoginEngine extends LoginEngine {
 		this.loginId = ProtocolUtils.convert( msg.getRouterId() );
 		this.loginName = msg.getRouterName();
 		Preconditions.checkState( this.loginId != null );
+		if ( msg.getCompression() != Compression.NONE ) {
+			if ( !compressions.contains( msg.getCompression() ) ) {
+				throw new ProtocolException( "unsupported compression " + msg.getCompression() );
+			}
+			// Every following frame in both directions is compressed
+			PipelineUtils.enableCompression( this.getChannel().getChannel(), msg.getCompression(), msg.getCompressionThreshold() );
+		}
+		if ( msg.getVarintFraming() ) {
+			if ( !varintFraming ) {
+				throw new ProtocolException( "unsupported varint framing" );
+			}
+			PipelineUtils.enableVarintFraming( this.getChannel().getChannel() );
+		}
 		this.getChannel().writeAndFlush( LoginUpgradeMessage.newBuilder().setNode( this.getNetwork().getHome().toProtocol() ) ).addListener( FAIL_LISTENER ).addListener( f -> {
 			if ( f.isSuccess() ) {
 				setSuccess();
@@ -18,6 +18,8 @@ import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
 import de.mickare.routernet.protocol.TransportProtocol.CloseMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ErrorMessage;
 import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
@@ -165,6 +167,16 @@ public @Getter abstract class LoginEngine implements PacketHandler<LoginEngine>
 		throw new HandshakeException( "Invalid or unknown packet!" );
 	}
 	
+	@Override
+	public void handle( LoginEngine ctx, PacketBatch batch ) throws Exception {
+		throw new HandshakeException( "Invalid or unknown packet!" );
+	}
+	
+	@Override
+	public void handle( LoginEngine ctx, PacketFragment fragment ) throws Exception {
+		throw new HandshakeException( "Invalid or unknown packet!" );
+	}
+	
 	@Override
 	public void handle( LoginEngine ctx, NodeUpdateMessage msg ) throws HandshakeException {
 		throw new HandshakeException( "Invalid or unknown packet!" );
@@ -12,6 +12,8 @@ import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.event.LoginSuccessEvent.ClientLoginSuccessEvent;
 import de.mickare.routernet.exception.HandshakeException;
 import de.mickare.routernet.exception.ProtocolException;
+import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
 import de.mickare.routernet.protocol.LoginProtocol.LoginChallengeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginHandshakeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginResponseMessage;
@@ -23,15 +25,40 @@ import lombok.Getter;
 public class RouterLoginEngine extends LoginEngine {
 	
 	private final RouterAuthentication authentication;
+	private final Compression compression;
+	private final int compressionThreshold;
+	private final boolean varintFraming;
 	private @Getter int protocolVersion = -1;
 	private @Getter UUID loginId = null;
 	private @Getter String loginName = null;
 	private @Getter LoginUpgradeMessage finalMessage = null;
 	
 	public RouterLoginEngine( AbstractNetwork network, RouterAuthentication authentication ) {
+		this( network, authentication, Compression.DEFLATE, PipelineUtils.DEFAULT_COMPRESSION_THRESHOLD, true );
+	}
+	
+	/**
+	 * @param network
+	 *            of router
+	 * @param authentication
+	 *            of router
+	 * @param compression
+	 *            codec used if the client supports it, NONE disables compression
+	 * @param compressionThreshold
+	 *            minimum size in bytes of a frame to be compressed
+	 * @param varintFraming
+	 *            use varint length prefixes if the client supports them
+	 */
+	public RouterLoginEngine( AbstractNetwork network, RouterAuthentication authentication, Compression compression, int compressionThreshold, boolean varintFraming ) {
 		super( network );
 		Preconditions.checkNotNull( authentication );
+		Preconditions.checkNotNull( compression );
+		Preconditions.checkArgument( compression != Compression.UNRECOGNIZED );
+		Preconditions.checkArgument( compressionThreshold >= 0 );
 		this.authentication = authentication;
+		this.compression = compression;
+		this.compressionThreshold = compressionThreshold;
+		this.varintFraming = varintFraming;
 	}
 	
 	@Override
@@ -75,7 +102,16 @@ public class RouterLoginEngine extends LoginEngine {
 			b.setRouterName( name.get() );
 		}
 		b.setTopology( this.getNetwork().getTopologyMessage() );
+		final Compression picked = msg.getCompressionsList().contains( compression ) ? compression : Compression.NONE;
+		b.setCompression( picked );
+		b.setCompressionThreshold( compressionThreshold );
+		b.setVarintFraming( varintFraming && msg.getVarintFraming() );
 		this.getChannel().writeAndFlush( b ).addListener( FAIL_LISTENER );
+		// The success message is already encoded, every following frame uses the negotiated format
+		PipelineUtils.enableCompression( this.getChannel().getChannel(), picked, compressionThreshold );
+		if ( b.getVarintFraming() ) {
+			PipelineUtils.enableVarintFraming( this.getChannel().getChannel() );
+		}
 	}
 	
 	@Override
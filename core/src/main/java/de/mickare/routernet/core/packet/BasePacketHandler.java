@@ -17,6 +17,9 @@ import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
 import de.mickare.routernet.protocol.TransportProtocol.CloseMessage;
 import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
@@ -41,6 +44,38 @@ public class BasePacketHandler implements PacketHandler<Connection> {
 		
 	}
 	
+	@Override
+	public void handle( Connection con, PacketBatch batch ) throws Exception {
+		if ( batch.hasTarget() ) {
+			// Tunnel messages of a single tunnel
+			if ( !isReceiver( con, batch.getTarget() ) ) {
+				return; // drop packet
+			}
+			Tunnel tunnel = con.getNetwork().getTunnelByIndex( batch.getTunnelIndex(), batch.getTunnelId() );
+			if ( tunnel != null && !tunnel.isClosed() ) {
+				tunnel.receiveBatch( con, batch );
+			}
+		} else {
+			// Dispatch in order
+			for ( int i = 0, size = batch.getPacketsCount(); i < size; ++i ) {
+				handle( con, batch.getPackets( i ) );
+			}
+		}
+	}
+	
+	@Override
+	public void handle( Connection con, PacketFragment fragment ) throws Exception {
+		if ( fragment.hasTarget() && !isReceiver( con, fragment.getTarget() ) ) {
+			return; // drop packet
+		}
+		// Fragments without target are from the peer itself
+		final UUID sender = fragment.hasTarget() ? ProtocolUtils.convert( fragment.getSender() ) : con.getPeerId();
+		final Packet packet = con.getNetwork().getFragmentAssembler().add( sender, fragment );
+		if ( packet != null ) {
+			handle( con, packet );
+		}
+	}
+	
 	// LOGIN
 	
 	@Override
@@ -99,7 +134,7 @@ public class BasePacketHandler implements PacketHandler<Connection> {
 		if ( !isReceiver( con, msg.getTarget() ) ) {
 			return; // drop packet
 		}
-		Tunnel tunnel = con.getNetwork().getTunnelById( msg.getTunnelId() );
+		Tunnel tunnel = con.getNetwork().getTunnelByIndex( msg.getTunnelIndex(), msg.getTunnelId() );
 		if ( tunnel != null && !tunnel.isClosed() ) {
 			tunnel.receiveProto(con, msg );
 		}
@@ -0,0 +1,222 @@
+package de.mickare.routernet.core.packet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Preconditions;
+
+import de.mickare.routernet.netty.PacketDecoder;
+import de.mickare.routernet.netty.PacketFragmenter;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reassembles packets that were split by the {@link PacketFragmenter}.
+ *
+ * Fragments of a packet are identified by their sender and id, and arrive in order since they take the same route.
+ * The whole packet is allocated with its first fragment. Incomplete packets that exceed the memory limit of all
+ * senders or of their sender are dropped. Incomplete packets that do not receive a fragment within the timeout are
+ * dropped by a task on the executor.
+ */
+public class FragmentAssembler {
+
+	public static final long DEFAULT_MEMORY_LIMIT = 128 * 1024 * 1024;
+	public static final long DEFAULT_SENDER_MEMORY_LIMIT = 64 * 1024 * 1024;
+	public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	private final Supplier<Logger> logger;
+	private final ScheduledExecutorService executor;
+	private @Getter volatile long memoryLimit = DEFAULT_MEMORY_LIMIT;
+	private @Getter volatile long senderMemoryLimit = DEFAULT_SENDER_MEMORY_LIMIT;
+	private @Getter volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+	private final Map<Key, Assembly> assemblies = new HashMap<>();
+	private final Map<UUID, Long> senderMemory = new HashMap<>();
+	private long memory = 0;
+
+	public FragmentAssembler( Supplier<Logger> logger, ScheduledExecutorService executor ) {
+		Preconditions.checkNotNull( logger );
+		Preconditions.checkNotNull( executor );
+		this.logger = logger;
+		this.executor = executor;
+	}
+
+	private static @RequiredArgsConstructor @EqualsAndHashCode class Key {
+		private final UUID sender;
+		private final int id;
+	}
+
+	private static class Assembly {
+		private final byte[] data;
+		private int received = 0;
+		private long lastUpdate;
+		private ScheduledFuture<?> timeout = null;
+
+		private Assembly( int length, long now ) {
+			this.data = new byte[ length ];
+			this.lastUpdate = now;
+		}
+	}
+
+	/**
+	 * @param memoryLimit
+	 *            maximum size in bytes of all incomplete packets
+	 */
+	public void setMemoryLimit( long memoryLimit ) {
+		Preconditions.checkArgument( memoryLimit > 0 );
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * @param senderMemoryLimit
+	 *            maximum size in bytes of the incomplete packets of one sender
+	 */
+	public void setSenderMemoryLimit( long senderMemoryLimit ) {
+		Preconditions.checkArgument( senderMemoryLimit > 0 );
+		this.senderMemoryLimit = senderMemoryLimit;
+	}
+
+	/**
+	 * @return maximum size in bytes of one reassembled packet
+	 */
+	public long getMaxPacketLength() {
+		return Math.min( memoryLimit, senderMemoryLimit );
+	}
+
+	/**
+	 * @param timeout
+	 *            time an incomplete packet waits for its next fragment
+	 * @param unit
+	 *            of timeout
+	 */
+	public void setTimeout( long timeout, TimeUnit unit ) {
+		Preconditions.checkArgument( timeout > 0 );
+		this.timeoutMillis = unit.toMillis( timeout );
+	}
+
+	/**
+	 * @return size in bytes of all incomplete packets
+	 */
+	public synchronized long getMemory() {
+		return memory;
+	}
+
+	/**
+	 * @return number of incomplete packets
+	 */
+	public synchronized int size() {
+		return assemblies.size();
+	}
+
+	/**
+	 * Adds a fragment to its packet.
+	 *
+	 * @param sender
+	 *            of fragment
+	 * @param fragment
+	 *            to add
+	 * @return the complete packet or null if fragments are missing or the packet was dropped
+	 * @throws Exception
+	 *             if the complete packet is not a valid packet
+	 */
+	public Packet add( UUID sender, PacketFragment fragment ) throws Exception {
+		final byte[] data;
+		synchronized ( this ) {
+			final long now = System.currentTimeMillis();
+
+			final Key key = new Key( sender, fragment.getId() );
+			Assembly assembly = assemblies.get( key );
+			if ( assembly != null && now - assembly.lastUpdate > timeoutMillis ) {
+				// The timeout task did not run yet
+				remove( key, assembly );
+				drop( sender, fragment, "timed out" );
+				return null;
+			}
+			if ( assembly == null ) {
+				if ( fragment.getOffset() != 0 ) {
+					// The packet was dropped already
+					return null;
+				}
+				final long used = senderMemory.getOrDefault( sender, 0L );
+				if ( fragment.getLength() <= 0 || memory + fragment.getLength() > memoryLimit ) {
+					drop( sender, fragment, "memory limit of " + memoryLimit + " bytes exceeded" );
+					return null;
+				}
+				if ( used + fragment.getLength() > senderMemoryLimit ) {
+					drop( sender, fragment, "memory limit of " + senderMemoryLimit + " bytes per sender exceeded" );
+					return null;
+				}
+				assembly = new Assembly( fragment.getLength(), now );
+				assemblies.put( key, assembly );
+				memory += fragment.getLength();
+				senderMemory.put( sender, used + fragment.getLength() );
+				scheduleTimeout( key, assembly, timeoutMillis );
+			}
+
+			final int size = fragment.getData().size();
+			if ( fragment.getOffset() != assembly.received || size > assembly.data.length - assembly.received ) {
+				remove( key, assembly );
+				drop( sender, fragment, "fragment out of order" );
+				return null;
+			}
+			fragment.getData().copyTo( assembly.data, assembly.received );
+			assembly.received += size;
+			assembly.lastUpdate = now;
+
+			if ( assembly.received < assembly.data.length ) {
+				return null;
+			}
+			remove( key, assembly );
+			data = assembly.data;
+		}
+		return PacketDecoder.decode( data );
+	}
+
+	private void remove( Key key, Assembly assembly ) {
+		assemblies.remove( key );
+		memory -= assembly.data.length;
+		final long used = senderMemory.get( key.sender ) - assembly.data.length;
+		if ( used > 0 ) {
+			senderMemory.put( key.sender, used );
+		} else {
+			senderMemory.remove( key.sender );
+		}
+		if ( assembly.timeout != null ) {
+			assembly.timeout.cancel( false );
+		}
+	}
+
+	// The task only references the key, so a cancelled task does not hold the data
+	private void scheduleTimeout( Key key, Assembly assembly, long delayMillis ) {
+		assembly.timeout = executor.schedule( () -> checkTimeout( key ), delayMillis + 1, TimeUnit.MILLISECONDS );
+	}
+
+	private synchronized void checkTimeout( Key key ) {
+		final Assembly assembly = assemblies.get( key );
+		if ( assembly == null ) {
+			return;
+		}
+		final long remaining = assembly.lastUpdate + timeoutMillis - System.currentTimeMillis();
+		if ( remaining >= 0 ) {
+			scheduleTimeout( key, assembly, remaining );
+			return;
+		}
+		remove( key, assembly );
+		logger.get().log( Level.WARNING, "Dropped fragmented packet " + key.id + " of " + key.sender + ": timed out" );
+	}
+
+	private void drop( UUID sender, PacketFragment fragment, String reason ) {
+		logger.get().log( Level.WARNING, "Dropped fragmented packet " + fragment.getId() + " of " + sender + ": " + reason );
+	}
+
+}
@@ -12,6 +12,8 @@ import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
 import de.mickare.routernet.protocol.TransportProtocol.CloseMessage;
 import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
@@ -38,6 +40,9 @@ public class Packer {
 	
 	private static final BiConsumer<Packet.Builder, CloseMessage> SETTER_CLOSE = Packet.Builder::setClose;
 	private static final BiConsumer<Packet.Builder, HeartbeatMessage> SETTER_HEARTBEAT = Packet.Builder::setHeartbeat;
+	private static final BiConsumer<Packet.Builder, PacketBatch> SETTER_BATCH = Packet.Builder::setBatch;
+	
+	private static final BiConsumer<Packet.Builder, PacketFragment> SETTER_FRAGMENT = Packet.Builder::setFragment;
 	
 	private static final BiConsumer<Packet.Builder, LoginHandshakeMessage> SETTER_LOGIN_HANDSHAKE = Packet.Builder::setLoginHandshake;
 	private static final BiConsumer<Packet.Builder, LoginChallengeMessage> SETTER_LOGIN_CHALLENGE = Packet.Builder::setLoginChallenge;
@@ -73,6 +78,22 @@ public class Packer {
 		return pack( SETTER_HEARTBEAT, value );
 	}
 	
+	public static Packet pack( PacketBatch.Builder builder ) {
+		return pack( builder.build() );
+	}
+	
+	public static Packet pack( PacketBatch value ) {
+		return pack( SETTER_BATCH, value );
+	}
+	
+	public static Packet pack( PacketFragment.Builder builder ) {
+		return pack( builder.build() );
+	}
+	
+	public static Packet pack( PacketFragment value ) {
+		return pack( SETTER_FRAGMENT, value );
+	}
+	
 	// ******************************************************************************
 	// Handshake
 	
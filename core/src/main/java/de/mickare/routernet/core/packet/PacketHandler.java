@@ -11,6 +11,8 @@ import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
 import de.mickare.routernet.protocol.TransportProtocol.CloseMessage;
 import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
@@ -27,6 +29,12 @@ public interface PacketHandler<C> {
 			case HEARTBEAT:
 				handle( ctx, packet.getHeartbeat() );
 				break;
+			case BATCH:
+				handle( ctx, packet.getBatch() );
+				break;
+			case FRAGMENT:
+				handle( ctx, packet.getFragment() );
+				break;
 			
 			// Login
 			case LOGINHANDSHAKE:
@@ -84,6 +92,10 @@ public interface PacketHandler<C> {
 	
 	void handle( C ctx, HeartbeatMessage heartbeat ) throws Exception;
 	
+	void handle( C ctx, PacketBatch batch ) throws Exception;
+	
+	void handle( C ctx, PacketFragment fragment ) throws Exception;
+	
 	// LOGIN
 	void handle( C ctx, LoginHandshakeMessage msg ) throws Exception;
 	
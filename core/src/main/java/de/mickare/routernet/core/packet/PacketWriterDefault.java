@@ -1,5 +1,6 @@
 package de.mickare.routernet.core.packet;
 
+import de.mickare.routernet.netty.EncodedPacket;
 import de.mickare.routernet.protocol.LoginProtocol.LoginChallengeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginHandshakeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginResponseMessage;
@@ -32,6 +33,10 @@ public interface PacketWriterDefault<F extends Future<?>> {
 		return writeAndFlush( builder.build() );
 	}
 	
+	F write( EncodedPacket packet );
+	
+	F writeAndFlush( EncodedPacket packet );
+	
 	// ******************************************************************************
 	// Transport
 	
@@ -1,5 +1,6 @@
 package de.mickare.routernet.core.packet;
 
+import de.mickare.routernet.netty.EncodedPacket;
 import de.mickare.routernet.protocol.LoginProtocol.LoginChallengeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginHandshakeMessage;
 import de.mickare.routernet.protocol.LoginProtocol.LoginResponseMessage;
@@ -32,6 +33,29 @@ public interface PacketWriterPromise<F extends Future<?>> {
 		writeAndFlushFast( builder.build() );
 	}
 	
+	void writeFast( EncodedPacket packet );
+	
+	void writeAndFlushFast( EncodedPacket packet );
+	
+	/**
+	 * Flushes immediately, without waiting for the consolidation of flushes.
+	 */
+	void flushNow();
+	
+	default void writeAndFlushNow( Packet packet ) {
+		writeFast( packet );
+		flushNow();
+	}
+	
+	default void writeAndFlushNow( Packet.Builder builder ) {
+		writeAndFlushNow( builder.build() );
+	}
+	
+	default void writeAndFlushNow( EncodedPacket packet ) {
+		writeFast( packet );
+		flushNow();
+	}
+	
 	// ******************************************************************************
 	// Transport
 	
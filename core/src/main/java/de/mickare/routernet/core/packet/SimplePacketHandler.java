@@ -10,6 +10,8 @@ import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
 import de.mickare.routernet.protocol.TransportProtocol.CloseMessage;
 import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
@@ -24,6 +26,16 @@ public class SimplePacketHandler<C> implements PacketHandler<C> {
 		throw new UnsupportedOperationException( "Not implemented!" );
 	}
 	
+	@Override
+	public void handle( C ctx, PacketBatch batch ) throws Exception {
+		throw new UnsupportedOperationException( "Not implemented!" );
+	}
+	
+	@Override
+	public void handle( C ctx, PacketFragment fragment ) throws Exception {
+		throw new UnsupportedOperationException( "Not implemented!" );
+	}
+	
 	@Override
 	public void handle( C ctx, CloseMessage msg ) throws Exception {
 		throw new UnsupportedOperationException( "Not implemented!" );
@@ -7,6 +7,8 @@ import java.util.function.Supplier;
 import com.google.common.base.Preconditions;
 
 import de.mickare.routernet.core.AbstractNetwork;
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureCallMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureResponseMessage;
 import de.mickare.routernet.util.TypeUtils;
@@ -63,15 +65,19 @@ public class BoundProcedure<T, R> extends CallableProcedure<T, R> {
 	private transient @Getter final Function<T, R> function;
 	
 	public BoundProcedure( AbstractNetwork network, CallableProcedure<T, R> procedure, Function<T, R> function ) {
-		this( network, procedure.getName(), procedure.getArgumentClass(), procedure.getResultClass(), function );
+		this( network, procedure.getName(), procedure.getArgumentClass(), procedure.getResultClass(), procedure.getCodec(), function );
 	}
 	
 	public BoundProcedure( AbstractNetwork network, Procedure procedure, Class<T> argClass, Class<R> resultClass, Function<T, R> function ) {
-		this( network, procedure.checkApplicable( argClass, resultClass ).getName(), argClass, resultClass, function );
+		this( network, procedure.checkApplicable( argClass, resultClass ).getName(), argClass, resultClass, Codecs.get( procedure.getCodecId() ), function );
 	}
 	
 	public BoundProcedure( AbstractNetwork network, String name, Class<T> argClass, Class<R> resultClass, Function<T, R> function ) {
-		super( network, name, argClass, resultClass );
+		this( network, name, argClass, resultClass, Codecs.getDefault( argClass, resultClass ), function );
+	}
+	
+	public BoundProcedure( AbstractNetwork network, String name, Class<T> argClass, Class<R> resultClass, Codec codec, Function<T, R> function ) {
+		super( network, name, argClass, resultClass, codec );
 		Preconditions.checkNotNull( function );
 		this.function = function;
 	}
@@ -8,6 +8,8 @@ import com.google.common.base.Preconditions;
 import de.mickare.routernet.core.AbstractNetwork;
 import de.mickare.routernet.core.Node;
 import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.protocol.NetworkProtocol;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureCallMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureResponseMessage;
@@ -19,6 +21,7 @@ public class CallableProcedure<T, R> extends Procedure {
 	
 	private transient @Getter final Class<T> argumentClass;
 	private transient @Getter final Class<R> resultClass;
+	private transient @Getter final Codec codec;
 	
 	private transient final CheckedFunction<ProcedureCallMessage, T> callReader;
 	private transient final BiConsumer<ProcedureCallMessage.Builder, T> callWriter;
@@ -28,23 +31,28 @@ public class CallableProcedure<T, R> extends Procedure {
 	private transient final AbstractNetwork network;
 	
 	public CallableProcedure( final AbstractNetwork network, final Procedure description, final Class<T> argClass, final Class<R> resultClass ) {
-		this( network, description.getName(), argClass, resultClass );
+		this( network, description.getName(), argClass, resultClass, Codecs.get( description.getCodecId() ) );
 	}
 	
 	public CallableProcedure( final AbstractNetwork network, final String name, final Class<T> argClass, final Class<R> resultClass ) {
-		super( name, argClass, resultClass );
+		this( network, name, argClass, resultClass, Codecs.getDefault( argClass, resultClass ) );
+	}
+	
+	public CallableProcedure( final AbstractNetwork network, final String name, final Class<T> argClass, final Class<R> resultClass, final Codec codec ) {
+		super( name, argClass, resultClass, codec.getId() );
 		Preconditions.checkNotNull( network );
 		Preconditions.checkNotNull( argClass );
 		Preconditions.checkNotNull( resultClass );
 		this.network = network;
 		this.argumentClass = argClass;
 		this.resultClass = resultClass;
+		this.codec = codec;
 		
 		// Compile reader / writer
-		this.callReader = ProcedureUtils.compileCallReader( argClass );
-		this.callWriter = ProcedureUtils.compileCallWriter( argClass );
-		this.responseReader = ProcedureUtils.compileResponseReader( resultClass );
-		this.responseWriter = ProcedureUtils.compileResponseWriter( resultClass );
+		this.callReader = ProcedureUtils.compileCallReader( argClass, codec );
+		this.callWriter = ProcedureUtils.compileCallWriter( argClass, codec );
+		this.responseReader = ProcedureUtils.compileResponseReader( resultClass, codec );
+		this.responseWriter = ProcedureUtils.compileResponseWriter( resultClass, codec );
 		
 	}
 	
@@ -62,6 +70,7 @@ public class CallableProcedure<T, R> extends Procedure {
 		result &= this.getName().equals( procedure.getName() );
 		result &= this.getArgumentClass().equals( procedure.getArgumentClass() );
 		result &= this.getResultClass().equals( procedure.getResultClass() );
+		result &= this.getCodecId() == procedure.getCodecId();
 		return result;
 	}
 	
@@ -70,6 +79,7 @@ public class CallableProcedure<T, R> extends Procedure {
 		result &= this.getName().equals( procedure.getName() );
 		result &= this.getArgumentClass().getName().equals( procedure.getArgumentType() );
 		result &= this.getResultClass().getName().equals( procedure.getResultType() );
+		result &= this.getCodecId() == procedure.getCodecId();
 		return result;
 	}
 	
@@ -78,6 +88,7 @@ public class CallableProcedure<T, R> extends Procedure {
 		result &= this.getName().equals( procedure.getName() );
 		result &= this.getArgumentClass().getName().equals( procedure.getArgumentType() );
 		result &= this.getResultClass().getName().equals( procedure.getResultType() );
+		result &= this.getCodecId() == procedure.getCodec();
 		return result;
 	}
 	
@@ -85,6 +96,7 @@ public class CallableProcedure<T, R> extends Procedure {
 		Preconditions.checkArgument( this.getName().equals( procedure.getName() ) );
 		Preconditions.checkArgument( this.getArgumentClass().getName().equals( procedure.getArgumentType() ) );
 		Preconditions.checkArgument( this.getResultClass().getName().equals( procedure.getResultType() ) );
+		Preconditions.checkArgument( this.getCodecId() == procedure.getCodec() );
 	}
 	
 	@Override
@@ -8,6 +8,9 @@ import java.util.function.Supplier;
 import com.google.common.base.Preconditions;
 
 import de.mickare.routernet.core.AbstractNetwork;
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
+import de.mickare.routernet.core.codec.JdkCodec;
 import de.mickare.routernet.protocol.NetworkProtocol.ProcedureDescription;
 import de.mickare.routernet.util.LazyCache;
 import de.mickare.routernet.util.TypeUtils;
@@ -60,6 +63,14 @@ public class Procedure implements Comparable<Procedure> {
 		return new CallableProcedure<T, R>( network, name, argument, result );
 	}
 	
+	public static <T, R> CallableProcedure<T, R> of( String name, Class<T> argument, Class<R> result, Codec codec ) {
+		return of( name, argument, result, codec, AbstractNetwork.getInstance() );
+	}
+	
+	public static <T, R> CallableProcedure<T, R> of( String name, Class<T> argument, Class<R> result, Codec codec, AbstractNetwork network ) {
+		return new CallableProcedure<T, R>( network, name, argument, result, codec );
+	}
+	
 	public static Procedure of( String name, String argumentType, String resultType ) {
 		return new Procedure( name, argumentType, resultType );
 	}
@@ -68,11 +79,12 @@ public class Procedure implements Comparable<Procedure> {
 	// ***************************************************************************
 	
 	private @Getter final String name, argumentType, resultType;
+	private @Getter final int codecId;
 	private transient final LazyCache<Class<?>> argumentClass;
 	private transient final LazyCache<Class<?>> resultClass;
 	
 	public Procedure( final ProcedureDescription msg ) throws IllegalArgumentException, NullPointerException {
-		this( msg.getName(), msg.getArgumentType(), msg.getResultType() );
+		this( msg.getName(), msg.getArgumentType(), msg.getResultType(), msg.getCodec() );
 	}
 	
 	/*
@@ -83,18 +95,27 @@ public class Procedure implements Comparable<Procedure> {
 	 */
 	
 	public Procedure( final String name, final Class<?> argument, final Class<?> result ) {
-		this( name, argument.getName(), result.getName() );
+		this( name, argument, result, Codecs.getDefault( argument, result ).getId() );
+	}
+	
+	public Procedure( final String name, final Class<?> argument, final Class<?> result, final int codecId ) {
+		this( name, argument.getName(), result.getName(), codecId );
 		this.argumentClass.set( argument );
 		this.resultClass.set( result );
 	}
 	
 	public Procedure( final String name, final String argumentType, final String resultType ) throws IllegalArgumentException, NullPointerException {
+		this( name, argumentType, resultType, JdkCodec.ID );
+	}
+	
+	public Procedure( final String name, final String argumentType, final String resultType, final int codecId ) throws IllegalArgumentException, NullPointerException {
 		Preconditions.checkArgument( !name.isEmpty() );
 		Preconditions.checkArgument( !argumentType.isEmpty() );
 		Preconditions.checkArgument( !resultType.isEmpty() );
 		this.name = name.toLowerCase();
 		this.argumentType = argumentType;
 		this.resultType = resultType;
+		this.codecId = codecId;
 		
 		argumentClass = LazyCache.of( () -> {
 			synchronized ( LOCK ) {
@@ -167,7 +188,7 @@ public class Procedure implements Comparable<Procedure> {
 	
 	@Override
 	public int hashCode() {
-		return Objects.hash( name, argumentType, resultType );
+		return Objects.hash( name, argumentType, resultType, codecId );
 	}
 	
 	public Class<?> getArgumentClass() throws RuntimeException {
@@ -211,7 +232,11 @@ public class Procedure implements Comparable<Procedure> {
 		if ( arg != 0 ) {
 			return arg;
 		}
-		return String.CASE_INSENSITIVE_ORDER.compare( resultType, o.resultType );
+		int res = String.CASE_INSENSITIVE_ORDER.compare( resultType, o.resultType );
+		if ( res != 0 ) {
+			return res;
+		}
+		return Integer.compare( codecId, o.codecId );
 	}
 	
 	public ProcedureDescription toProtocol() {
@@ -219,6 +244,7 @@ public class Procedure implements Comparable<Procedure> {
 		b.setName( this.name );
 		b.setArgumentType( this.argumentType );
 		b.setResultType( this.resultType );
+		b.setCodec( this.codecId );
 		return b.build();
 	}
 	
@@ -1,27 +1,31 @@
 package de.mickare.routernet.core.procedure;
 
 import java.io.IOException;
-import java.io.Serializable;
 import java.util.function.BiConsumer;
 
 import com.google.protobuf.ByteString;
 
-import de.mickare.routernet.core.Serialization;
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureCallMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureResponseMessage;
 import de.mickare.routernet.util.function.CheckedFunction;
 
 public class ProcedureUtils {
 	
-	@SuppressWarnings( "unchecked" )
 	public static <R> CheckedFunction<ProcedureResponseMessage, R> compileResponseReader( final Class<R> resultClass ) throws IllegalArgumentException {
+		return compileResponseReader( resultClass, Codecs.JDK );
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public static <R> CheckedFunction<ProcedureResponseMessage, R> compileResponseReader( final Class<R> resultClass, final Codec codec ) throws IllegalArgumentException {
 		
 		if ( Void.class.equals( resultClass ) ) {
 			return ( p ) -> null;
 		} else if ( byte[].class.equals( resultClass ) ) {
 			return ( p ) -> ( R ) p.getBytes().toByteArray();
-		} else if ( Serializable.class.isAssignableFrom( resultClass ) ) {
-			return ( p ) -> ( R ) Serialization.asObject( resultClass, p.getObject() );
+		} else if ( codec.supports( resultClass ) ) {
+			return ( p ) -> codec.decode( resultClass, p.getObject() );
 		} else {
 			throw new IllegalArgumentException( "Unsupported response type (" + resultClass.getName() + ")!" );
 		}
@@ -29,15 +33,19 @@ public class ProcedureUtils {
 	}
 	
 	public static <R> BiConsumer<ProcedureResponseMessage.Builder, R> compileResponseWriter( Class<R> resultClass ) throws IllegalArgumentException {
+		return compileResponseWriter( resultClass, Codecs.JDK );
+	}
+	
+	public static <R> BiConsumer<ProcedureResponseMessage.Builder, R> compileResponseWriter( Class<R> resultClass, Codec codec ) throws IllegalArgumentException {
 		
 		if ( Void.class.equals( resultClass ) ) {
 			return ( p, r ) -> p.clearData();
 		} else if ( byte[].class.equals( resultClass ) ) {
 			return ( p, r ) -> p.setBytes( ByteString.copyFrom( ( byte[] ) r ) );
-		} else if ( Serializable.class.isAssignableFrom( resultClass ) ) {
+		} else if ( codec.supports( resultClass ) ) {
 			return ( p, r ) -> {
 				try {
-					p.setObject( Serialization.asByteString( resultClass, r ) );
+					p.setObject( codec.encode( resultClass, r ) );
 				} catch ( IOException e ) {
 					throw new RuntimeException( e );
 				}
@@ -48,15 +56,19 @@ public class ProcedureUtils {
 		
 	}
 	
-	@SuppressWarnings( "unchecked" )
 	public static <A> CheckedFunction<ProcedureCallMessage, A> compileCallReader( Class<A> argClass ) throws IllegalArgumentException {
+		return compileCallReader( argClass, Codecs.JDK );
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public static <A> CheckedFunction<ProcedureCallMessage, A> compileCallReader( Class<A> argClass, Codec codec ) throws IllegalArgumentException {
 		
 		if ( Void.class.equals( argClass ) ) {
 			return ( p ) -> null;
 		} else if ( byte[].class.equals( argClass ) ) {
 			return ( p ) -> ( A ) p.getBytes().toByteArray();
-		} else if ( Serializable.class.isAssignableFrom( argClass ) ) {
-			return ( p ) -> ( A ) Serialization.asObject( argClass, p.getObject() );
+		} else if ( codec.supports( argClass ) ) {
+			return ( p ) -> codec.decode( argClass, p.getObject() );
 		} else {
 			throw new IllegalArgumentException( "Unsupported call type (" + argClass.getName() + ")!" );
 		}
@@ -64,15 +76,19 @@ public class ProcedureUtils {
 	}
 	
 	public static <A> BiConsumer<ProcedureCallMessage.Builder, A> compileCallWriter( Class<A> argClass ) throws IllegalArgumentException {
+		return compileCallWriter( argClass, Codecs.JDK );
+	}
+	
+	public static <A> BiConsumer<ProcedureCallMessage.Builder, A> compileCallWriter( Class<A> argClass, Codec codec ) throws IllegalArgumentException {
 		
 		if ( Void.class.equals( argClass ) ) {
 			return ( p, r ) -> p.clearData();
 		} else if ( byte[].class.equals( argClass ) ) {
 			return ( p, r ) -> p.setBytes( ByteString.copyFrom( ( byte[] ) r ) );
-		} else if ( Serializable.class.isAssignableFrom( argClass ) ) {
+		} else if ( codec.supports( argClass ) ) {
 			return ( p, r ) -> {
 				try {
-					p.setObject( Serialization.asByteString( argClass, r ) );
+					p.setObject( codec.encode( argClass, r ) );
 				} catch ( IOException e ) {
 					throw new RuntimeException( e );
 				}
@@ -2,9 +2,16 @@ package de.mickare.routernet.core.tunnel;
 
 import java.io.InvalidClassException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.tunnel.file.FileTunnel;
 import de.mickare.routernet.core.tunnel.object.ObjectConverters;
 import de.mickare.routernet.core.tunnel.object.ObjectTunnel;
+import de.mickare.routernet.core.tunnel.primitive.DoubleTunnel;
+import de.mickare.routernet.core.tunnel.primitive.IntTunnel;
+import de.mickare.routernet.core.tunnel.primitive.LongTunnel;
+import de.mickare.routernet.core.tunnel.primitive.StringTunnel;
 import de.mickare.routernet.core.tunnel.stream.StreamTunnel;
 
 public class TunnelDescriptors {
@@ -16,6 +23,10 @@ public class TunnelDescriptors {
 		return new ObjectTunnel.Descriptor<>( name, byte[].class, ObjectConverters.BYTE_ARRAY );
 	}
 	
+	public static ObjectTunnel.Descriptor<ByteBuffer> getByteBufferTunnel( String name ) {
+		return new ObjectTunnel.Descriptor<>( name, ByteBuffer.class, ObjectConverters.BYTE_BUFFER );
+	}
+	
 	public static <T extends Serializable> ObjectTunnel.Descriptor<T> getObjectTunnel( String name, Class<T> dataClass ) {
 		try {
 			return new ObjectTunnel.Descriptor<>( name, dataClass );
@@ -25,8 +36,36 @@ public class TunnelDescriptors {
 		}
 	}
 	
+	public static <T> ObjectTunnel.Descriptor<T> getObjectTunnel( String name, Class<T> dataClass, Codec codec ) throws IllegalArgumentException {
+		try {
+			return new ObjectTunnel.Descriptor<>( name, dataClass, codec );
+		} catch ( InvalidClassException e ) {
+			throw new IllegalArgumentException( e.getMessage(), e );
+		}
+	}
+	
 	public static StreamTunnel.Descriptor getStreamTunnel( String name ) {
 		return new StreamTunnel.Descriptor( name );
 	}
 	
+	public static FileTunnel.Descriptor getFileTunnel( String name ) {
+		return new FileTunnel.Descriptor( name );
+	}
+	
+	public static IntTunnel.Descriptor getIntTunnel( String name ) {
+		return new IntTunnel.Descriptor( name );
+	}
+	
+	public static LongTunnel.Descriptor getLongTunnel( String name ) {
+		return new LongTunnel.Descriptor( name );
+	}
+	
+	public static DoubleTunnel.Descriptor getDoubleTunnel( String name ) {
+		return new DoubleTunnel.Descriptor( name );
+	}
+	
+	public static StringTunnel.Descriptor getStringTunnel( String name ) {
+		return new StringTunnel.Descriptor( name );
+	}
+	
 }
@@ -0,0 +1,203 @@
+package de.mickare.routernet.core.tunnel;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+
+import de.mickare.routernet.protocol.TransportProtocol;
+import lombok.Getter;
+
+/**
+ * Preset deflate dictionary of a tunnel.
+ *
+ * Small payloads like serialized objects repeat the same class descriptors, which deflate can only reference if
+ * they are in the dictionary. Compressed data is the varint length of the raw data followed by raw deflate data.
+ * The version is a hash of the dictionary, so it identifies the content even across router restarts.
+ */
+public class TunnelDictionary {
+
+	/**
+	 * Deflate can not reference anything beyond its window.
+	 */
+	public static final int MAX_SIZE = 32768;
+	public static final int DEFAULT_SIZE = 16384;
+	/**
+	 * Smaller data is never compressed.
+	 */
+	public static final int MIN_DATA_SIZE = 32;
+	/**
+	 * Larger data is never compressed, the dictionary hardly helps with it.
+	 */
+	public static final int MAX_DATA_SIZE = 4096;
+
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial( () -> new Deflater( Deflater.DEFAULT_COMPRESSION, true ) );
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial( () -> new Inflater( true ) );
+
+	public static TunnelDictionary of( final byte[] data ) {
+		final int hash = Hashing.murmur3_32().hashBytes( data ).asInt();
+		return new TunnelDictionary( hash != 0 ? hash : 1, data );
+	}
+
+	public static TunnelDictionary of( final TransportProtocol.TunnelDictionary msg ) {
+		return new TunnelDictionary( msg.getVersion(), msg.getData().toByteArray() );
+	}
+
+	/**
+	 * Builds a dictionary from sampled data. The newest samples are put at the end of the dictionary, where deflate
+	 * references them with the shortest distances. Duplicates are skipped and the oldest samples that do not fit are
+	 * cut.
+	 *
+	 * @param samples
+	 *            raw data, oldest first
+	 * @param size
+	 *            maximum size of the dictionary
+	 * @return dictionary or null if there are no samples
+	 */
+	public static TunnelDictionary train( final List<ByteString> samples, final int size ) {
+		Preconditions.checkArgument( size > 0 && size <= MAX_SIZE );
+		final Deque<ByteString> parts = new ArrayDeque<>();
+		final Set<ByteString> seen = new HashSet<>();
+		int remaining = size;
+		for ( int i = samples.size() - 1; i >= 0 && remaining > 0; --i ) {
+			final ByteString sample = samples.get( i );
+			if ( sample.isEmpty() || !seen.add( sample ) ) {
+				continue;
+			}
+			// Class descriptors are at the beginning of serialized objects
+			final ByteString part = sample.size() <= remaining ? sample : sample.substring( 0, remaining );
+			parts.addFirst( part );
+			remaining -= part.size();
+		}
+		if ( parts.isEmpty() ) {
+			return null;
+		}
+		return of( ByteString.copyFrom( parts ).toByteArray() );
+	}
+
+	private @Getter final int version;
+	private final byte[] data;
+
+	public TunnelDictionary( final int version, final byte[] data ) {
+		Preconditions.checkArgument( version != 0 );
+		Preconditions.checkArgument( data.length > 0 && data.length <= MAX_SIZE );
+		this.version = version;
+		this.data = data;
+	}
+
+	public int size() {
+		return data.length;
+	}
+
+	/**
+	 * @param withData
+	 *            include the dictionary or only announce the version
+	 * @return protocol message
+	 */
+	public TransportProtocol.TunnelDictionary toProtocol( boolean withData ) {
+		final TransportProtocol.TunnelDictionary.Builder b = TransportProtocol.TunnelDictionary.newBuilder();
+		b.setVersion( version );
+		if ( withData ) {
+			b.setData( ByteString.copyFrom( data ) );
+		}
+		return b.build();
+	}
+
+	/**
+	 * Compresses the data with the dictionary.
+	 *
+	 * @param raw
+	 *            data
+	 * @return compressed data or null if it does not shrink or is not in the compressed size range
+	 */
+	public ByteString compress( final ByteString raw ) {
+		final int length = raw.size();
+		if ( length < MIN_DATA_SIZE || length > MAX_DATA_SIZE ) {
+			return null;
+		}
+		final int header = CodedOutputStream.computeUInt32SizeNoTag( length );
+		final byte[] out = new byte[ length ];
+		final Deflater deflater = DEFLATER.get();
+		try {
+			deflater.setDictionary( data );
+			deflater.setInput( raw.toByteArray() );
+			deflater.finish();
+			int size = header;
+			while ( !deflater.finished() && size < length ) {
+				size += deflater.deflate( out, size, length - size );
+			}
+			if ( !deflater.finished() || size >= length ) {
+				return null;
+			}
+			final CodedOutputStream cos = CodedOutputStream.newInstance( out, 0, header );
+			cos.writeUInt32NoTag( length );
+			cos.flush();
+			return UnsafeByteOperations.unsafeWrap( out, 0, size );
+		} catch ( IOException e ) {
+			throw new IllegalStateException( e );
+		} finally {
+			deflater.reset();
+		}
+	}
+
+	/**
+	 * Decompresses data of {@link #compress(ByteString)}.
+	 *
+	 * @param compressed
+	 *            data
+	 * @param maxLength
+	 *            maximum length of the raw data
+	 * @return raw data
+	 * @throws DataFormatException
+	 *             if the data is invalid or too long
+	 */
+	public ByteString decompress( final ByteString compressed, final int maxLength ) throws DataFormatException {
+		final byte[] in = compressed.toByteArray();
+		final CodedInputStream cin = CodedInputStream.newInstance( in );
+		final int length;
+		final int offset;
+		try {
+			length = cin.readUInt32();
+			offset = cin.getTotalBytesRead();
+		} catch ( IOException e ) {
+			throw new DataFormatException( "invalid length" );
+		}
+		if ( length < 0 || length > maxLength ) {
+			throw new DataFormatException( "invalid length " + length );
+		}
+
+		final byte[] out = new byte[ length ];
+		final Inflater inflater = INFLATER.get();
+		try {
+			inflater.setDictionary( data );
+			inflater.setInput( in, offset, in.length - offset );
+			int inflated = 0;
+			while ( inflated < length ) {
+				final int n = inflater.inflate( out, inflated, length - inflated );
+				if ( n == 0 && ( inflater.finished() || inflater.needsInput() || inflater.needsDictionary() ) ) {
+					break;
+				}
+				inflated += n;
+			}
+			if ( inflated != length ) {
+				throw new DataFormatException( "truncated data" );
+			}
+			return UnsafeByteOperations.unsafeWrap( out );
+		} finally {
+			inflater.reset();
+		}
+	}
+
+}
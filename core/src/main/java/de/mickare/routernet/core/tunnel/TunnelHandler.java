@@ -2,6 +2,7 @@ package de.mickare.routernet.core.tunnel;
 
 import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.codec.JdkCodec;
 import de.mickare.routernet.protocol.TransportProtocol;
 
 public interface TunnelHandler {
@@ -12,4 +13,18 @@ public interface TunnelHandler {
 	
 	TransportProtocol.TunnelRegister.Type getType();
 	
+	/**
+	 * @return id of the codec of objects in this tunnel
+	 */
+	default int getCodecId() {
+		return JdkCodec.ID;
+	}
+	
+	/**
+	 * @return hash of the schema of objects in this tunnel, 0 if unknown
+	 */
+	default int getSchemaHash() {
+		return 0;
+	}
+	
 }
@@ -1,5 +1,6 @@
 package de.mickare.routernet.core.tunnel;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import com.google.common.base.Preconditions;
@@ -37,12 +38,30 @@ public @Getter class TunnelMessage extends Message {
 		this.data = message.getData();
 	}
 	
+	/**
+	 * Gets a read-only view of the data. Unlike {@link ByteString#toByteArray()} the data is not copied if it is
+	 * contiguous.
+	 * 
+	 * @return read-only buffer of the data
+	 */
+	public ByteBuffer getDataBuffer() {
+		return this.data.asReadOnlyByteBuffer();
+	}
+	
 	public final TransportProtocol.TunnelMessage toProtocolMessage() {
 		final TransportProtocol.TunnelMessage.Builder b = TransportProtocol.TunnelMessage.newBuilder();
 		b.setTunnelId( tunnel.getId() );
+		b.setTunnelIndex( tunnel.getIndex() );
 		b.setTarget( this.getTarget().getProtocolMessage() );
 		b.setSender( ProtocolUtils.convert( tunnel.getNetwork().getHome().getId() ) );
-		b.setData( this.getData() );
+		final TunnelDictionary dictionary = tunnel.getDictionary();
+		final ByteString compressed = dictionary != null ? dictionary.compress( this.getData() ) : null;
+		if ( compressed != null ) {
+			b.setData( compressed );
+			b.setDictionary( dictionary.getVersion() );
+		} else {
+			b.setData( this.getData() );
+		}
 		return b.build();
 	}
 	
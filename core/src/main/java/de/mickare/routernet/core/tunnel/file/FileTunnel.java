@@ -0,0 +1,582 @@
+package de.mickare.routernet.core.tunnel.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+
+import de.mickare.routernet.Owner;
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.SubTunnel;
+import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.TunnelHandler;
+import de.mickare.routernet.core.tunnel.TunnelMessage;
+import de.mickare.routernet.protocol.TransportProtocol.FileMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Tunnel of files. A transfer goes to a single receiver, that writes the chunks at their offsets into a file of its
+ * directory. Every chunk carries a CRC32C of its data. The receiver acknowledges the verified data, and the sender
+ * continues at the last acknowledged offset if the receiver stops answering, e.g. after a reconnect.
+ */
+public class FileTunnel extends AbstractSubTunnel<FileTunnel, FileTunnel.Descriptor> implements TunnelHandler, SubTunnel {
+
+	public static class Descriptor extends AbstractSubTunnelDescriptor<Descriptor, FileTunnel> implements SubTunnelDescriptor<FileTunnel> {
+
+		public Descriptor( String name ) {
+			super( name, TunnelRegister.Type.FILE );
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !( o instanceof Descriptor ) ) {
+				return false;
+			}
+			Descriptor d = ( Descriptor ) o;
+			return this.name.equals( d.name );
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( name, type );
+		}
+
+		@Override
+		public FileTunnel create( Tunnel parentChannel ) {
+			return new FileTunnel( parentChannel, this );
+		}
+
+	}
+
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	public static final int DEFAULT_WINDOW_SIZE = 1024 * 1024;
+	public static final long DEFAULT_RESEND_TIMEOUT_MILLIS = 5000;
+	/**
+	 * A transfer fails after this many resends without progress.
+	 */
+	public static final int MAX_RESENDS = 12;
+
+	private static final HashFunction CRC32C = Hashing.crc32c();
+	private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial( () -> new byte[ 8192 ] );
+	private static final String PART_SUFFIX = ".part";
+
+	private @Getter volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+	private @Getter volatile int windowSize = DEFAULT_WINDOW_SIZE;
+	private @Getter volatile long resendTimeoutMillis = DEFAULT_RESEND_TIMEOUT_MILLIS;
+	private @Getter volatile Path directory = null;
+	private @Getter volatile boolean replaceExisting = false;
+
+	private final Map<Long, OutgoingFile> outgoing = new ConcurrentHashMap<>();
+	private final Map<TransferKey, IncomingFile> incoming = new ConcurrentHashMap<>();
+	private final CopyOnWriteArraySet<RegisteredFileListener> listeners = new CopyOnWriteArraySet<>();
+
+	public FileTunnel( Tunnel parentChannel, Descriptor descriptor ) throws IllegalStateException {
+		super( parentChannel, descriptor );
+	}
+
+	/**
+	 * @param chunkSize
+	 *            maximum number of bytes in a chunk, must stay below the frame limit
+	 */
+	public void setChunkSize( int chunkSize ) {
+		Preconditions.checkArgument( chunkSize > 0 );
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param windowSize
+	 *            maximum number of bytes sent ahead of the acknowledged offset
+	 */
+	public void setWindowSize( int windowSize ) {
+		Preconditions.checkArgument( windowSize > 0 );
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @param resendTimeoutMillis
+	 *            time without acknowledgement after which the sender offers the transfer again
+	 */
+	public void setResendTimeoutMillis( long resendTimeoutMillis ) {
+		Preconditions.checkArgument( resendTimeoutMillis > 0 );
+		this.resendTimeoutMillis = resendTimeoutMillis;
+	}
+
+	/**
+	 * Sets the directory received files are written to. Offers are ignored as long as there is no directory.
+	 *
+	 * @param directory
+	 *            existing directory or null
+	 */
+	public void setDirectory( Path directory ) {
+		Preconditions.checkArgument( directory == null || Files.isDirectory( directory ) );
+		this.directory = directory;
+	}
+
+	/**
+	 * @param replaceExisting
+	 *            if received files replace existing files of the same name, otherwise those offers are ignored
+	 */
+	public void setReplaceExisting( boolean replaceExisting ) {
+		this.replaceExisting = replaceExisting;
+	}
+
+	/**
+	 * Registers a listener of completely received files. The listener is called by the executor of the tunnel.
+	 *
+	 * @param owner
+	 *            of listener
+	 * @param listener
+	 *            of received files
+	 */
+	public final void registerFileListener( final Owner owner, final Consumer<ReceivedFile> listener ) {
+		listeners.add( new RegisteredFileListener( owner, listener ) );
+	}
+
+	public final void unregisterFileListeners( final Owner owner ) {
+		this.listeners.removeIf( ( l ) -> l.getOwner().equals( owner ) );
+	}
+
+	@Override
+	public synchronized void close() {
+		super.close();
+		for ( OutgoingFile out : outgoing.values() ) {
+			synchronized ( out ) {
+				out.notifyAll();
+			}
+		}
+		for ( IncomingFile in : incoming.values() ) {
+			abort( in, null );
+		}
+	}
+
+	private void checkChannel() throws IOException {
+		if ( isClosed() ) {
+			throw new IOException( "Channel is closed" );
+		}
+	}
+
+	private void send( final UUID receiver, final FileMessage.Builder msg ) {
+		this.parentTunnel.send( Target.to( receiver ), msg.build().toByteString() );
+	}
+
+	private static int crc32c( final ByteString data ) {
+		final Hasher hasher = CRC32C.newHasher();
+		final byte[] scratch = SCRATCH.get();
+		final ByteBuffer buf = data.asReadOnlyByteBuffer();
+		while ( buf.hasRemaining() ) {
+			final int length = Math.min( scratch.length, buf.remaining() );
+			buf.get( scratch, 0, length );
+			hasher.putBytes( scratch, 0, length );
+		}
+		return hasher.hash().asInt();
+	}
+
+	@Override
+	public void receive( final Connection con, final TunnelMessage cmsg ) throws IOException {
+		if ( isClosed() ) {
+			return;
+		}
+		final FileMessage msg;
+		try {
+			// The chunk data references the data of the tunnel message
+			final CodedInputStream input = cmsg.getData().newCodedInput();
+			input.enableAliasing( true );
+			msg = FileMessage.parseFrom( input );
+		} catch ( InvalidProtocolBufferException e ) {
+			this.getNetwork().getLogger().log( Level.WARNING, "Dropped invalid file message of " + cmsg.getSenderId(), e );
+			return;
+		}
+		switch ( msg.getType() ) {
+			case OFFER:
+				receiveOffer( cmsg.getSenderId(), msg );
+				break;
+			case CHUNK:
+				receiveChunk( cmsg.getSenderId(), msg );
+				break;
+			case ACK:
+				final OutgoingFile out = outgoing.get( msg.getTransfer() );
+				if ( out != null && out.receiver.equals( cmsg.getSenderId() ) ) {
+					out.receiveAck( msg.getOffset(), msg.getResend() );
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	// ********************************************************************
+	// OUTPUT
+
+	/**
+	 * Sends a file under its own name and blocks until the receiver acknowledged all of it.
+	 *
+	 * @param receiver
+	 *            node that receives the file
+	 * @param file
+	 *            to send
+	 * @throws IOException
+	 *             if the file can not be read, the tunnel is closed or the receiver does not answer
+	 */
+	public void send( UUID receiver, Path file ) throws IOException {
+		send( receiver, file, file.getFileName().toString() );
+	}
+
+	/**
+	 * Sends a file and blocks until the receiver acknowledged all of it.
+	 *
+	 * @param receiver
+	 *            node that receives the file
+	 * @param file
+	 *            to send
+	 * @param name
+	 *            of the file at the receiver
+	 * @throws IOException
+	 *             if the file can not be read, the tunnel is closed or the receiver does not answer
+	 */
+	public void send( UUID receiver, Path file, String name ) throws IOException {
+		Preconditions.checkNotNull( receiver );
+		Preconditions.checkArgument( toFileName( name ) != null, "Invalid file name %s", name );
+		checkChannel();
+		try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+			final OutgoingFile out = new OutgoingFile( receiver, ThreadLocalRandom.current().nextLong(), name, channel.size() );
+			outgoing.put( out.transfer, out );
+			try {
+				out.run( channel );
+			} finally {
+				outgoing.remove( out.transfer );
+			}
+		}
+	}
+
+	@RequiredArgsConstructor
+	private class OutgoingFile {
+		private final UUID receiver;
+		private final long transfer;
+		private final String name;
+		private final long length;
+
+		// Guarded by this: acknowledged offset, -1 until the offer is answered, and offset of the next chunk
+		private long acked = -1;
+		private long next = 0;
+		private long progress = System.currentTimeMillis();
+		private int resends = 0;
+
+		private void run( final FileChannel channel ) throws IOException {
+			offer();
+			while ( true ) {
+				final long offset;
+				final int size;
+				synchronized ( this ) {
+					checkChannel();
+					if ( acked >= length ) {
+						return;
+					}
+					final long now = System.currentTimeMillis();
+					if ( now - progress >= resendTimeoutMillis ) {
+						if ( ++resends > MAX_RESENDS ) {
+							throw new IOException( "Transfer of " + name + " to " + receiver + " timed out" );
+						}
+						// The receiver answers with the offset it continues at
+						progress = now;
+						offer();
+					}
+					if ( acked < 0 || next >= length || next - acked >= windowSize ) {
+						try {
+							this.wait( Math.max( 1, resendTimeoutMillis - ( now - progress ) ) );
+						} catch ( InterruptedException e ) {
+							Thread.currentThread().interrupt();
+							throw new InterruptedIOException();
+						}
+						continue;
+					}
+					offset = next;
+					size = ( int ) Math.min( chunkSize, length - offset );
+					next += size;
+				}
+				sendChunk( channel, offset, size );
+			}
+		}
+
+		private void offer() {
+			send( receiver, FileMessage.newBuilder().setType( FileMessage.Type.OFFER ).setTransfer( transfer ).setName( name ).setLength( length ) );
+		}
+
+		private void sendChunk( final FileChannel channel, final long offset, final int size ) throws IOException {
+			// Every chunk gets its own array, the message references it until it is written
+			final byte[] data = new byte[ size ];
+			final ByteBuffer buf = ByteBuffer.wrap( data );
+			while ( buf.hasRemaining() ) {
+				if ( channel.read( buf, offset + buf.position() ) < 0 ) {
+					throw new EOFException( "File " + name + " shrank during the transfer" );
+				}
+			}
+			final FileMessage.Builder b = FileMessage.newBuilder().setType( FileMessage.Type.CHUNK ).setTransfer( transfer );
+			b.setOffset( offset ).setCrc( CRC32C.hashBytes( data ).asInt() ).setData( UnsafeByteOperations.unsafeWrap( data ) );
+			send( receiver, b );
+		}
+
+		private synchronized void receiveAck( final long offset, final boolean resend ) {
+			if ( offset > acked ) {
+				acked = offset;
+				progress = System.currentTimeMillis();
+				resends = 0;
+			}
+			if ( resend ) {
+				next = offset;
+				progress = System.currentTimeMillis();
+			}
+			this.notifyAll();
+		}
+	}
+
+	// ********************************************************************
+	// INPUT
+
+	/**
+	 * A completely received and verified file.
+	 */
+	@RequiredArgsConstructor
+	public static @Getter class ReceivedFile {
+		private final UUID senderId;
+		private final String name;
+		private final Path path;
+		private final long length;
+	}
+
+	private static @RequiredArgsConstructor @EqualsAndHashCode class TransferKey {
+		private final UUID sender;
+		private final long transfer;
+	}
+
+	@RequiredArgsConstructor
+	private static class IncomingFile {
+		private final TransferKey key;
+		private final String name;
+		private final long length;
+		private final Path part;
+		private final Path file;
+		private final FileChannel channel;
+
+		// Guarded by this
+		private long received = 0;
+		// A resend was requested and later chunks are dropped until it arrives
+		private boolean resync = false;
+		// Kept until it is idle, so offers of a sender that missed the last acknowledgement are answered
+		private boolean completed = false;
+		private long lastUpdate = System.currentTimeMillis();
+	}
+
+	private void ack( final IncomingFile in, final boolean resend ) {
+		send( in.key.sender, FileMessage.newBuilder().setType( FileMessage.Type.ACK ).setTransfer( in.key.transfer ).setOffset( in.received ).setResend( resend ) );
+	}
+
+	private void receiveOffer( final UUID sender, final FileMessage msg ) {
+		final Path directory = this.directory;
+		if ( directory == null ) {
+			return;
+		}
+		evictIdle();
+		final TransferKey key = new TransferKey( sender, msg.getTransfer() );
+		IncomingFile in = incoming.get( key );
+		if ( in == null ) {
+			final Path fileName = toFileName( msg.getName() );
+			if ( fileName == null || msg.getLength() < 0 ) {
+				this.getNetwork().getLogger().log( Level.WARNING, "Refused file " + msg.getName() + " of " + sender );
+				return;
+			}
+			final Path file = directory.resolve( fileName );
+			final Path part = directory.resolve( fileName + PART_SUFFIX );
+			if ( !replaceExisting && Files.exists( file, LinkOption.NOFOLLOW_LINKS ) ) {
+				this.getNetwork().getLogger().log( Level.WARNING, "Refused file " + msg.getName() + " of " + sender + ", it already exists" );
+				return;
+			}
+			try {
+				// Without replacing, the part file must not exist either
+				final FileChannel channel = replaceExisting
+						? FileChannel.open( part, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING )
+						: FileChannel.open( part, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW );
+				in = new IncomingFile( key, fileName.toString(), msg.getLength(), part, file, channel );
+			} catch ( IOException e ) {
+				this.getNetwork().getLogger().log( Level.WARNING, "Could not receive file " + msg.getName() + " of " + sender, e );
+				return;
+			}
+			incoming.put( key, in );
+		}
+		synchronized ( in ) {
+			// Continue at the verified data, everything after it is sent again
+			in.resync = false;
+			in.lastUpdate = System.currentTimeMillis();
+			if ( in.received >= in.length ) {
+				complete( in );
+			} else {
+				ack( in, true );
+			}
+		}
+	}
+
+	private void receiveChunk( final UUID sender, final FileMessage msg ) {
+		final IncomingFile in = incoming.get( new TransferKey( sender, msg.getTransfer() ) );
+		if ( in == null ) {
+			return;
+		}
+		synchronized ( in ) {
+			final ByteString data = msg.getData();
+			if ( msg.getOffset() != in.received || data.size() > in.length - in.received ) {
+				if ( msg.getOffset() > in.received && !in.resync ) {
+					// Chunks were lost
+					in.resync = true;
+					ack( in, true );
+				}
+				return;
+			}
+			if ( crc32c( data ) != msg.getCrc() ) {
+				this.getNetwork().getLogger().log( Level.WARNING, "Chunk at " + msg.getOffset() + " of file " + in.name + " of " + sender + " is corrupt" );
+				in.resync = true;
+				ack( in, true );
+				return;
+			}
+			try {
+				final ByteBuffer buf = data.asReadOnlyByteBuffer();
+				long position = msg.getOffset();
+				while ( buf.hasRemaining() ) {
+					position += in.channel.write( buf, position );
+				}
+			} catch ( IOException e ) {
+				abort( in, e );
+				return;
+			}
+			in.received += data.size();
+			in.resync = false;
+			in.lastUpdate = System.currentTimeMillis();
+			if ( in.received >= in.length ) {
+				complete( in );
+			} else {
+				ack( in, false );
+			}
+		}
+	}
+
+	/**
+	 * @return name without directories, or null if it does not name a file in the directory
+	 */
+	private static Path toFileName( final String name ) {
+		final Path fileName;
+		try {
+			fileName = Paths.get( name ).getFileName();
+		} catch ( InvalidPathException e ) {
+			return null;
+		}
+		if ( fileName == null ) {
+			return null;
+		}
+		final String str = fileName.toString();
+		return str.isEmpty() || str.equals( "." ) || str.equals( ".." ) ? null : fileName;
+	}
+
+	private void complete( final IncomingFile in ) {
+		if ( !in.completed ) {
+			in.completed = true;
+			try {
+				in.channel.force( true );
+				in.channel.close();
+				if ( replaceExisting ) {
+					Files.move( in.part, in.file, StandardCopyOption.REPLACE_EXISTING );
+				} else {
+					Files.move( in.part, in.file );
+				}
+			} catch ( IOException e ) {
+				abort( in, e );
+				return;
+			}
+			final ReceivedFile file = new ReceivedFile( in.key.sender, in.name, in.file, in.length );
+			this.getExectutor().orElse( Runnable::run ).execute( () -> {
+				this.listeners.forEach( l -> l.accept( file ) );
+			} );
+		}
+		ack( in, false );
+	}
+
+	private void abort( final IncomingFile in, final IOException cause ) {
+		incoming.remove( in.key, in );
+		if ( cause != null ) {
+			this.getNetwork().getLogger().log( Level.WARNING, "Aborted file " + in.name + " of " + in.key.sender, cause );
+		}
+		try {
+			in.channel.close();
+			Files.deleteIfExists( in.part );
+		} catch ( IOException e ) {
+		}
+	}
+
+	/**
+	 * Aborts transfers of which the sender gave up and forgets completed transfers.
+	 */
+	private void evictIdle() {
+		final long idle = resendTimeoutMillis * ( MAX_RESENDS + 1 );
+		final long now = System.currentTimeMillis();
+		final Iterator<IncomingFile> it = incoming.values().iterator();
+		while ( it.hasNext() ) {
+			final IncomingFile in = it.next();
+			synchronized ( in ) {
+				if ( now - in.lastUpdate > idle ) {
+					abort( in, null );
+				}
+			}
+		}
+	}
+
+	private @RequiredArgsConstructor class RegisteredFileListener implements Consumer<ReceivedFile> {
+
+		@NonNull
+		private @Getter final Owner owner;
+		@NonNull
+		private final Consumer<ReceivedFile> delegate;
+
+		@Override
+		public void accept( ReceivedFile file ) {
+			try {
+				delegate.accept( file );
+			} catch ( Exception e ) {
+				owner.getLogger().log( Level.SEVERE, "File listener of " + owner.toString() + " threw exception: " + e.getMessage(), e );
+			}
+		}
+	}
+
+}
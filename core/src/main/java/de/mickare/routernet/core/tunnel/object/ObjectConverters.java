@@ -1,12 +1,14 @@
 package de.mickare.routernet.core.tunnel.object;
 
 import java.io.InvalidClassException;
-import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
-import de.mickare.routernet.core.Serialization;
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.protocol.TransportProtocol;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -18,31 +20,43 @@ public class ObjectConverters {
 	}
 	
 	public static TransportProtocol.TunnelRegister.Type getType( Class<?> dataClass ) throws InvalidClassException {
-		if ( byte[].class.isAssignableFrom( dataClass ) ) {
+		return getType( dataClass, Codecs.getDefault( dataClass ) );
+	}
+	
+	public static TransportProtocol.TunnelRegister.Type getType( Class<?> dataClass, Codec codec ) throws InvalidClassException {
+		if ( byte[].class.isAssignableFrom( dataClass ) || ByteBuffer.class.isAssignableFrom( dataClass ) ) {
 			return TransportProtocol.TunnelRegister.Type.BYTES;
 		}
 		if ( Void.class.equals( dataClass ) ) {
 			return TransportProtocol.TunnelRegister.Type.OBJECT;
 		}
-		if ( Serializable.class.isAssignableFrom( dataClass ) ) {
+		if ( codec.supports( dataClass ) ) {
 			return TransportProtocol.TunnelRegister.Type.OBJECT;
 		}
 		throw new InvalidClassException( dataClass.getName(), "data class not supported" );
 	}
 	
-	@SuppressWarnings( "unchecked" )
 	public static <T> ObjectConverter<T> of( Class<T> dataClass ) throws InvalidClassException {
+		return of( dataClass, Codecs.getDefault( dataClass ) );
+	}
+	
+	@SuppressWarnings( "unchecked" )
+	public static <T> ObjectConverter<T> of( Class<T> dataClass, Codec codec ) throws InvalidClassException {
 		Preconditions.checkNotNull( dataClass );
+		Preconditions.checkNotNull( codec );
 		if ( byte[].class.isAssignableFrom( dataClass ) ) {
 			return ( ObjectConverter<T> ) BYTE_ARRAY;
 		}
+		if ( ByteBuffer.class.equals( dataClass ) ) {
+			return ( ObjectConverter<T> ) BYTE_BUFFER;
+		}
 		if ( Void.class.equals( dataClass ) ) {
 			return ( ObjectConverter<T> ) VOID;
 		}
-		if ( Serializable.class.isAssignableFrom( dataClass ) ) {
-			return ( ObjectConverter<T> ) SerializableObjectConverter.of( ( Class<? extends Serializable> ) dataClass );
+		if ( codec.supports( dataClass ) ) {
+			return new CodecObjectConverter<T>( dataClass, codec );
 		}
-		throw new InvalidClassException( dataClass.getName(), "data class not supported" );
+		throw new InvalidClassException( dataClass.getName(), "data class not supported by codec " + codec.getId() );
 	}
 	
 	@RequiredArgsConstructor
@@ -61,34 +75,37 @@ public class ObjectConverters {
 		}
 	}
 	
-	private static class SerializableObjectConverter<T extends Serializable> extends AbstractObjectConverter<T> {
+	private static class CodecObjectConverter<T> extends AbstractObjectConverter<T> {
 		
-		public static <T extends Serializable> SerializableObjectConverter<T> of( Class<T> dataClass ) {
-			return new SerializableObjectConverter<T>( dataClass );
-		}
+		private final Codec codec;
 		
-		public SerializableObjectConverter( Class<T> dataClass ) {
+		public CodecObjectConverter( Class<T> dataClass, Codec codec ) {
 			super( dataClass );
+			this.codec = codec;
 		}
 		
 		@Override
 		public final ByteString asByteString( final T obj ) throws ConvertObjectTunnelException {
 			try {
-				return Serialization.asByteString( this.dataClass, obj );
-			} catch(Exception e) {
+				return codec.encode( this.dataClass, obj );
+			} catch ( Exception e ) {
 				throw new ConvertObjectTunnelException( e );
 			}
 		}
 		
-		@SuppressWarnings( "unchecked" )
 		@Override
-		public final T asObject( final ByteString byteData ) throws ConvertObjectTunnelException {			
+		public final T asObject( final ByteString byteData ) throws ConvertObjectTunnelException {
 			try {
-				return ( T ) Serialization.asObject( this.dataClass, byteData );
-			} catch(Exception e) {
+				return codec.decode( this.dataClass, byteData );
+			} catch ( Exception e ) {
 				throw new ConvertObjectTunnelException( e );
 			}
 		}
+		
+		@Override
+		public boolean equals( Object o ) {
+			return super.equals( o ) && o instanceof CodecObjectConverter && this.codec.equals( ( ( CodecObjectConverter<?> ) o ).codec );
+		}
 	}
 	
 	public static final ObjectConverter<byte[]> BYTE_ARRAY = new AbstractObjectConverter<byte[]>( byte[].class ) {
@@ -103,6 +120,22 @@ public class ObjectConverters {
 		}
 	};
 	
+	/**
+	 * Converts buffers without copying them. The remaining bytes of a sent buffer must not be modified afterwards,
+	 * received buffers are read-only views of the message data.
+	 */
+	public static final ObjectConverter<ByteBuffer> BYTE_BUFFER = new AbstractObjectConverter<ByteBuffer>( ByteBuffer.class ) {
+		@Override
+		public final ByteString asByteString( final ByteBuffer obj ) throws ConvertObjectTunnelException {
+			return UnsafeByteOperations.unsafeWrap( obj.slice() );
+		}
+		
+		@Override
+		public final ByteBuffer asObject( final ByteString byteData ) throws ConvertObjectTunnelException {
+			return byteData.asReadOnlyByteBuffer();
+		}
+	};
+	
 	public static final ObjectConverter<Void> VOID = new AbstractObjectConverter<Void>( Void.class ) {
 		@Override
 		public final ByteString asByteString( final Void obj ) throws ConvertObjectTunnelException {
@@ -13,6 +13,8 @@ import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.Target;
 import de.mickare.routernet.core.Tunnel;
 import de.mickare.routernet.core.Node.HomeNode;
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.core.tunnel.AbstractSubTunnel;
 import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
 import de.mickare.routernet.core.tunnel.SubTunnel;
@@ -30,17 +32,28 @@ public class ObjectTunnel<T> extends AbstractSubTunnel<ObjectTunnel<T>, ObjectTu
 		
 		private @Getter final Class<T> dataClass;
 		private @Getter final ObjectConverter<T> converter;
+		private @Getter final Codec codec;
 		
 		public Descriptor( String name, Class<T> dataClass ) throws InvalidClassException {
-			this( name, dataClass, ObjectConverters.of( dataClass ) );
+			this( name, dataClass, Codecs.getDefault( dataClass ) );
+		}
+		
+		public Descriptor( String name, Class<T> dataClass, Codec codec ) throws InvalidClassException {
+			this( name, dataClass, ObjectConverters.of( dataClass, codec ), codec );
 		}
 		
 		public Descriptor( String name, Class<T> dataClass, ObjectConverter<T> converter ) {
+			this( name, dataClass, converter, Codecs.JDK );
+		}
+		
+		private Descriptor( String name, Class<T> dataClass, ObjectConverter<T> converter, Codec codec ) {
 			super( name, TransportProtocol.TunnelRegister.Type.OBJECT );
 			Preconditions.checkNotNull( dataClass );
 			Preconditions.checkNotNull( converter );
+			Preconditions.checkNotNull( codec );
 			this.dataClass = dataClass;
 			this.converter = converter;
+			this.codec = codec;
 		}
 		
 		@Override
@@ -87,6 +100,16 @@ public class ObjectTunnel<T> extends AbstractSubTunnel<ObjectTunnel<T>, ObjectTu
 		return this.descriptor.getConverter();
 	}
 	
+	@Override
+	public int getCodecId() {
+		return this.descriptor.getCodec().getId();
+	}
+	
+	@Override
+	public int getSchemaHash() {
+		return this.descriptor.getCodec().getSchemaHash( this.descriptor.getDataClass() );
+	}
+	
 	public boolean broadcast( T obj ) throws ConvertObjectTunnelException {
 		return this.send( Target.toAll(), obj );
 	}
@@ -0,0 +1,113 @@
+package de.mickare.routernet.core.tunnel.primitive;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.DoubleConsumer;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+
+/**
+ * Tunnel of double values, each encoded in 8 bytes.
+ */
+public class DoubleTunnel extends PrimitiveTunnel<DoubleTunnel, DoubleTunnel.Descriptor, DoubleConsumer> {
+
+	public static class Descriptor extends AbstractSubTunnelDescriptor<Descriptor, DoubleTunnel> implements SubTunnelDescriptor<DoubleTunnel> {
+
+		public Descriptor( String name ) {
+			super( name, TunnelRegister.Type.DOUBLE );
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !( o instanceof Descriptor ) ) {
+				return false;
+			}
+			Descriptor d = ( Descriptor ) o;
+			return this.name.equals( d.name );
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( name, type );
+		}
+
+		@Override
+		public DoubleTunnel create( Tunnel parentChannel ) {
+			return new DoubleTunnel( parentChannel, this );
+		}
+
+	}
+
+	public DoubleTunnel( Tunnel parentTunnel, Descriptor descriptor ) {
+		super( parentTunnel, descriptor );
+	}
+
+	public boolean broadcast( double value ) {
+		return this.send( Target.toAll(), value );
+	}
+
+	public boolean broadcast( double[] values ) {
+		return this.send( Target.toAll(), values );
+	}
+
+	public boolean send( Target target, double value ) {
+		final byte[] data = new byte[ CodedOutputStream.computeDoubleSizeNoTag( value ) ];
+		try {
+			CodedOutputStream.newInstance( data ).writeDoubleNoTag( value );
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	/**
+	 * Sends all values in one message.
+	 *
+	 * @param target
+	 *            of message
+	 * @param values
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean send( Target target, double[] values ) {
+		int size = 0;
+		for ( double value : values ) {
+			size += CodedOutputStream.computeDoubleSizeNoTag( value );
+		}
+		final byte[] data = new byte[ size ];
+		final CodedOutputStream out = CodedOutputStream.newInstance( data );
+		try {
+			for ( double value : values ) {
+				out.writeDoubleNoTag( value );
+			}
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	@Override
+	protected void read( CodedInputStream in ) throws IOException {
+		final double value = in.readDouble();
+		for ( RegisteredListener<DoubleConsumer> l : getListeners() ) {
+			try {
+				l.getDelegate().accept( value );
+			} catch ( Exception e ) {
+				l.log( e );
+			}
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package de.mickare.routernet.core.tunnel.primitive;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+
+/**
+ * Tunnel of int values, each encoded as zigzag varint.
+ */
+public class IntTunnel extends PrimitiveTunnel<IntTunnel, IntTunnel.Descriptor, IntConsumer> {
+
+	public static class Descriptor extends AbstractSubTunnelDescriptor<Descriptor, IntTunnel> implements SubTunnelDescriptor<IntTunnel> {
+
+		public Descriptor( String name ) {
+			super( name, TunnelRegister.Type.INT );
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !( o instanceof Descriptor ) ) {
+				return false;
+			}
+			Descriptor d = ( Descriptor ) o;
+			return this.name.equals( d.name );
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( name, type );
+		}
+
+		@Override
+		public IntTunnel create( Tunnel parentChannel ) {
+			return new IntTunnel( parentChannel, this );
+		}
+
+	}
+
+	public IntTunnel( Tunnel parentTunnel, Descriptor descriptor ) {
+		super( parentTunnel, descriptor );
+	}
+
+	public boolean broadcast( int value ) {
+		return this.send( Target.toAll(), value );
+	}
+
+	public boolean broadcast( int[] values ) {
+		return this.send( Target.toAll(), values );
+	}
+
+	public boolean send( Target target, int value ) {
+		final byte[] data = new byte[ CodedOutputStream.computeSInt32SizeNoTag( value ) ];
+		try {
+			CodedOutputStream.newInstance( data ).writeSInt32NoTag( value );
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	/**
+	 * Sends all values in one message.
+	 *
+	 * @param target
+	 *            of message
+	 * @param values
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean send( Target target, int[] values ) {
+		int size = 0;
+		for ( int value : values ) {
+			size += CodedOutputStream.computeSInt32SizeNoTag( value );
+		}
+		final byte[] data = new byte[ size ];
+		final CodedOutputStream out = CodedOutputStream.newInstance( data );
+		try {
+			for ( int value : values ) {
+				out.writeSInt32NoTag( value );
+			}
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	@Override
+	protected void read( CodedInputStream in ) throws IOException {
+		final int value = in.readSInt32();
+		for ( RegisteredListener<IntConsumer> l : getListeners() ) {
+			try {
+				l.getDelegate().accept( value );
+			} catch ( Exception e ) {
+				l.log( e );
+			}
+		}
+	}
+
+}
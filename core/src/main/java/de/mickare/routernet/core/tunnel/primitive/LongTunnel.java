@@ -0,0 +1,113 @@
+package de.mickare.routernet.core.tunnel.primitive;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+
+/**
+ * Tunnel of long values, each encoded as zigzag varint.
+ */
+public class LongTunnel extends PrimitiveTunnel<LongTunnel, LongTunnel.Descriptor, LongConsumer> {
+
+	public static class Descriptor extends AbstractSubTunnelDescriptor<Descriptor, LongTunnel> implements SubTunnelDescriptor<LongTunnel> {
+
+		public Descriptor( String name ) {
+			super( name, TunnelRegister.Type.LONG );
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !( o instanceof Descriptor ) ) {
+				return false;
+			}
+			Descriptor d = ( Descriptor ) o;
+			return this.name.equals( d.name );
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( name, type );
+		}
+
+		@Override
+		public LongTunnel create( Tunnel parentChannel ) {
+			return new LongTunnel( parentChannel, this );
+		}
+
+	}
+
+	public LongTunnel( Tunnel parentTunnel, Descriptor descriptor ) {
+		super( parentTunnel, descriptor );
+	}
+
+	public boolean broadcast( long value ) {
+		return this.send( Target.toAll(), value );
+	}
+
+	public boolean broadcast( long[] values ) {
+		return this.send( Target.toAll(), values );
+	}
+
+	public boolean send( Target target, long value ) {
+		final byte[] data = new byte[ CodedOutputStream.computeSInt64SizeNoTag( value ) ];
+		try {
+			CodedOutputStream.newInstance( data ).writeSInt64NoTag( value );
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	/**
+	 * Sends all values in one message.
+	 *
+	 * @param target
+	 *            of message
+	 * @param values
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean send( Target target, long[] values ) {
+		int size = 0;
+		for ( long value : values ) {
+			size += CodedOutputStream.computeSInt64SizeNoTag( value );
+		}
+		final byte[] data = new byte[ size ];
+		final CodedOutputStream out = CodedOutputStream.newInstance( data );
+		try {
+			for ( long value : values ) {
+				out.writeSInt64NoTag( value );
+			}
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	@Override
+	protected void read( CodedInputStream in ) throws IOException {
+		final long value = in.readSInt64();
+		for ( RegisteredListener<LongConsumer> l : getListeners() ) {
+			try {
+				l.getDelegate().accept( value );
+			} catch ( Exception e ) {
+				l.log( e );
+			}
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package de.mickare.routernet.core.tunnel.primitive;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+
+import de.mickare.routernet.Owner;
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.TunnelMessage;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Tunnel of primitive values. A message holds one or more encoded values, so values are neither boxed nor java
+ * serialized, and a batch of values is sent as one message. Listeners are called once per value.
+ *
+ * @param <L>
+ *            type of listener
+ */
+public abstract class PrimitiveTunnel<SELF extends PrimitiveTunnel<SELF, D, L>, D extends AbstractSubTunnelDescriptor<D, SELF>, L> extends AbstractSubTunnel<SELF, D> {
+
+	// Copy on write, so delivery iterates the array without allocating
+	@SuppressWarnings( "unchecked" )
+	private volatile RegisteredListener<L>[] listeners = new RegisteredListener[0];
+
+	public PrimitiveTunnel( Tunnel parentTunnel, D descriptor ) {
+		super( parentTunnel, descriptor );
+	}
+
+	protected static @Getter @RequiredArgsConstructor class RegisteredListener<L> {
+		private final Owner owner;
+		private final L delegate;
+
+		protected void log( Exception e ) {
+			owner.getLogger().log( Level.SEVERE, "Message listener of " + owner.toString() + " threw exception: " + e.getMessage(), e );
+		}
+	}
+
+	public final synchronized void registerListener( final Owner owner, final L listener ) {
+		Preconditions.checkNotNull( owner );
+		Preconditions.checkNotNull( listener );
+		final RegisteredListener<L>[] result = Arrays.copyOf( listeners, listeners.length + 1 );
+		result[listeners.length] = new RegisteredListener<>( owner, listener );
+		this.listeners = result;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	public final synchronized void unregisterListeners( final Owner owner ) {
+		this.listeners = Arrays.stream( listeners ).filter( l -> !l.getOwner().equals( owner ) ).toArray( RegisteredListener[]::new );
+	}
+
+	protected final RegisteredListener<L>[] getListeners() {
+		return listeners;
+	}
+
+	/**
+	 * Sends encoded values without copying them.
+	 *
+	 * @param target
+	 *            of message
+	 * @param data
+	 *            encoded values, must not be modified afterwards
+	 * @return true if it was sent
+	 */
+	protected boolean send( Target target, byte[] data ) {
+		return this.parentTunnel.sendOwned( target, data );
+	}
+
+	@Override
+	public void receive( final Connection con, final TunnelMessage cmsg ) {
+		if ( this.listeners.length > 0 ) {
+			if ( con != null ) {
+				this.getExectutor().orElseGet( con.getChannel().getChannel()::eventLoop ).execute( () -> {
+					this.receive( cmsg.getData() );
+				} );
+			} else {
+				this.receive( cmsg.getData() );
+			}
+		}
+	}
+
+	private void receive( final ByteString data ) {
+		try {
+			final CodedInputStream in = data.newCodedInput();
+			while ( !in.isAtEnd() ) {
+				this.read( in );
+			}
+		} catch ( IOException e ) {
+			getNetwork().getLogger().log( Level.WARNING, "Invalid message in tunnel " + getName() + ": " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Reads one value and passes it to all listeners.
+	 *
+	 * @param in
+	 *            to read from
+	 * @throws IOException
+	 *             if the value is invalid
+	 */
+	protected abstract void read( CodedInputStream in ) throws IOException;
+
+}
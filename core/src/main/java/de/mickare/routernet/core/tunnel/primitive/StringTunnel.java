@@ -0,0 +1,113 @@
+package de.mickare.routernet.core.tunnel.primitive;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.AbstractSubTunnelDescriptor;
+import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+
+/**
+ * Tunnel of strings, each encoded as length delimited UTF-8.
+ */
+public class StringTunnel extends PrimitiveTunnel<StringTunnel, StringTunnel.Descriptor, Consumer<String>> {
+
+	public static class Descriptor extends AbstractSubTunnelDescriptor<Descriptor, StringTunnel> implements SubTunnelDescriptor<StringTunnel> {
+
+		public Descriptor( String name ) {
+			super( name, TunnelRegister.Type.STRING );
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if ( this == o ) {
+				return true;
+			}
+			if ( !( o instanceof Descriptor ) ) {
+				return false;
+			}
+			Descriptor d = ( Descriptor ) o;
+			return this.name.equals( d.name );
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash( name, type );
+		}
+
+		@Override
+		public StringTunnel create( Tunnel parentChannel ) {
+			return new StringTunnel( parentChannel, this );
+		}
+
+	}
+
+	public StringTunnel( Tunnel parentTunnel, Descriptor descriptor ) {
+		super( parentTunnel, descriptor );
+	}
+
+	public boolean broadcast( String value ) {
+		return this.send( Target.toAll(), value );
+	}
+
+	public boolean broadcast( String[] values ) {
+		return this.send( Target.toAll(), values );
+	}
+
+	public boolean send( Target target, String value ) {
+		final byte[] data = new byte[ CodedOutputStream.computeStringSizeNoTag( value ) ];
+		try {
+			CodedOutputStream.newInstance( data ).writeStringNoTag( value );
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	/**
+	 * Sends all values in one message.
+	 *
+	 * @param target
+	 *            of message
+	 * @param values
+	 *            to send
+	 * @return true if it was sent
+	 */
+	public boolean send( Target target, String[] values ) {
+		int size = 0;
+		for ( String value : values ) {
+			size += CodedOutputStream.computeStringSizeNoTag( value );
+		}
+		final byte[] data = new byte[ size ];
+		final CodedOutputStream out = CodedOutputStream.newInstance( data );
+		try {
+			for ( String value : values ) {
+				out.writeStringNoTag( value );
+			}
+		} catch ( IOException e ) {
+			// array is large enough
+			throw new RuntimeException( e );
+		}
+		return this.send( target, data );
+	}
+
+	@Override
+	protected void read( CodedInputStream in ) throws IOException {
+		final String value = in.readString();
+		for ( RegisteredListener<Consumer<String>> l : getListeners() ) {
+			try {
+				l.getDelegate().accept( value );
+			} catch ( Exception e ) {
+				l.log( e );
+			}
+		}
+	}
+
+}
@@ -3,19 +3,36 @@ package de.mickare.routernet.core.tunnel.stream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
-import com.Ostermiller.util.CircularByteBuffer;
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 
+import de.mickare.routernet.Owner;
 import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Node;
 import de.mickare.routernet.core.Target;
 import de.mickare.routernet.core.Tunnel;
 import de.mickare.routernet.core.tunnel.AbstractSubTunnel;
@@ -24,11 +41,21 @@ import de.mickare.routernet.core.tunnel.SubTunnel;
 import de.mickare.routernet.core.tunnel.SubTunnelDescriptor;
 import de.mickare.routernet.core.tunnel.TunnelHandler;
 import de.mickare.routernet.core.tunnel.TunnelMessage;
+import de.mickare.routernet.metric.FlowControlCounter;
+import de.mickare.routernet.protocol.TransportProtocol.StreamMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
+/**
+ * Tunnel of byte streams. Every opened stream has an id, so many streams of many senders can be transferred at the
+ * same time. Stream listeners get a separate input stream for every stream, input buffers get the bytes of all
+ * streams.
+ */
 public class StreamTunnel extends AbstractSubTunnel<StreamTunnel, StreamTunnel.Descriptor> implements TunnelHandler, SubTunnel {
 	
 	public static class Descriptor extends AbstractSubTunnelDescriptor<Descriptor, StreamTunnel> implements SubTunnelDescriptor<StreamTunnel> {
@@ -70,66 +97,180 @@ public class StreamTunnel extends AbstractSubTunnel<StreamTunnel, StreamTunnel.D
 		
 	}
 	
-	private final Semaphore outputStreamSemaphore = new Semaphore( 1 );
-	private volatile ChannelOutputStream outputStream = null;
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024;
+	// Receivers without the tunnel never grant credit, so they are not waited for after this time
+	public static final long GRANT_TIMEOUT_MILLIS = 5000;
+	private static final int UNBOUNDED = -1;
+	
+	private final AtomicInteger nextStreamId = new AtomicInteger( 1 );
+	private final Map<Integer, OutgoingStream> outgoingStreams = new ConcurrentHashMap<>();
 	
 	private final Set<ChannelInputStream> inputBuffers = new CopyOnWriteArraySet<>();
+	private final Map<UUID, Map<Integer, IncomingStream>> incomingStreams = new ConcurrentHashMap<>();
+	private final CopyOnWriteArraySet<RegisteredStreamListener> listeners = new CopyOnWriteArraySet<>();
+	
+	private final @Getter FlowControlCounter flowControl = new FlowControlCounter( DEFAULT_WINDOW_SIZE );
+	
+	// Receiver side, guarded by itself: credit state of every stream of every sender
+	private final Map<StreamKey, Inbound> inbound = new HashMap<>();
 	
 	public StreamTunnel( Tunnel parentChannel, Descriptor descriptor ) throws IllegalStateException {
 		super( parentChannel, descriptor );
+		getNetwork().getMetric().ifPresent( m -> m.registerFlowControl( getName(), flowControl ) );
+	}
+	
+	/**
+	 * Gets the number of bytes a sender may write to a stream ahead of the slowest reader of this node. Streams of this
+	 * node may write this many bytes before their receivers granted credit.
+	 * 
+	 * @return window size in bytes
+	 */
+	public int getWindowSize() {
+		return flowControl.getWindow();
+	}
+	
+	/**
+	 * Sets the number of bytes a sender may write to a stream ahead of the slowest reader of this node. Bounded input
+	 * buffers limit the window to their size.
+	 * 
+	 * @param windowSize
+	 *            in bytes
+	 */
+	public void setWindowSize( int windowSize ) {
+		Preconditions.checkArgument( windowSize > 0 );
+		flowControl.setWindow( windowSize );
 	}
 	
+	/**
+	 * Creates an input buffer that receives the bytes of all streams of all senders.
+	 * 
+	 * @return input buffer
+	 * @throws IOException
+	 *             if the tunnel is closed
+	 */
 	public synchronized InputStream newInputBuffer() throws IOException {
-		return newInputBuffer( CircularByteBuffer.INFINITE_SIZE );
+		return newInputBuffer( UNBOUNDED );
 	}
 	
+	/**
+	 * Creates an input buffer that receives the bytes of all streams of all senders.
+	 * 
+	 * @param bufferSize
+	 *            maximum number of bytes senders may write ahead, limits the window of this node
+	 * @return input buffer
+	 * @throws IOException
+	 *             if the tunnel is closed
+	 */
 	public synchronized InputStream newInputBuffer( int bufferSize ) throws IOException {
+		Preconditions.checkArgument( bufferSize > 0 || bufferSize == UNBOUNDED );
 		checkChannel();
 		ChannelInputStream in = new ChannelInputStream( bufferSize );
 		inputBuffers.add( in );
 		return in;
 	}
 	
+	/**
+	 * Creates a channel that receives the bytes of all streams of all senders.
+	 * 
+	 * @return input channel
+	 * @throws IOException
+	 *             if the tunnel is closed
+	 */
+	public synchronized ScatteringByteChannel newInputChannel() throws IOException {
+		return newInputChannel( UNBOUNDED );
+	}
+	
+	public synchronized ScatteringByteChannel newInputChannel( int bufferSize ) throws IOException {
+		return ( ( ChannelInputStream ) newInputBuffer( bufferSize ) ).getChannel();
+	}
+	
+	/**
+	 * Opens a new stream and gets its channel.
+	 * 
+	 * @param target
+	 *            receivers of the stream
+	 * @return output channel
+	 * @throws IOException
+	 *             if the tunnel is closed
+	 */
+	public GatheringByteChannel newOutputChannel( Target target ) throws IOException {
+		return openStream( target ).getChannel();
+	}
+	
 	public OutputStream newOutputBuffer( Target target ) throws IOException {
-		return newOutputBuffer( target, 1024 );
+		return openStream( target );
 	}
 	
 	public OutputStream newOutputBuffer( Target target, int bufferSize ) throws IOException {
+		return openStream( target, bufferSize );
+	}
+	
+	/**
+	 * Opens a new stream. Every stream has its own credit, so a stream that is not read does not block the others.
+	 * 
+	 * @param target
+	 *            receivers of the stream
+	 * @return stream
+	 * @throws IOException
+	 *             if the tunnel is closed
+	 */
+	public OutgoingStream openStream( Target target ) throws IOException {
+		return openStream( target, 1024 );
+	}
+	
+	public OutgoingStream openStream( Target target, int bufferSize ) throws IOException {
 		Preconditions.checkArgument( bufferSize > 0 );
 		Preconditions.checkArgument( !target.isEmpty() );
 		checkChannel();
-		try {
-			if ( !outputStreamSemaphore.tryAcquire( 20, TimeUnit.SECONDS ) ) {
-				if ( this.outputStream != null ) {
-					this.getNetwork().getLogger().log( Level.WARNING, "Resource is blocked by a not-closed OutputStream!", this.outputStream.getThrowable() );
-				}
-				outputStreamSemaphore.acquire();
-			}
-		} catch ( InterruptedException e ) {
-			throw new IOException( e );
-		}
-		try {
-			checkChannel();
-			this.outputStream = new ChannelOutputStream( target, bufferSize );
-			return this.outputStream;
-		} catch ( Exception e ) {
-			outputStreamSemaphore.release();
-			throw e;
-		}
+		final OutgoingStream stream = new OutgoingStream( nextStreamId.getAndIncrement(), target, bufferSize );
+		this.outgoingStreams.put( stream.getStreamId(), stream );
+		return stream;
+	}
+	
+	/**
+	 * Registers a listener that gets a separate input stream for every stream opened after the registration. The
+	 * listener is called by the executor of the tunnel and should hand the stream over to a reading thread.
+	 * 
+	 * @param owner
+	 *            of listener
+	 * @param listener
+	 *            of new streams
+	 */
+	public final void registerStreamListener( final Owner owner, final Consumer<IncomingStream> listener ) {
+		listeners.add( new RegisteredStreamListener( owner, listener ) );
+	}
+	
+	public final void unregisterStreamListeners( final Owner owner ) {
+		this.listeners.removeIf( ( l ) -> l.getOwner().equals( owner ) );
 	}
 	
 	@Override
 	public synchronized void close() {
 		super.close();
+		getNetwork().getMetric().ifPresent( m -> m.unregisterFlowControl( getName(), flowControl ) );
+		for ( OutgoingStream out : this.outgoingStreams.values() ) {
+			// Wakes up blocked writers
+			synchronized ( out.limits ) {
+				out.limits.notifyAll();
+			}
+		}
 		for ( ChannelInputStream in : this.inputBuffers ) {
 			try {
 				in.close();
 			} catch ( IOException e ) {
 			}
 		}
-		if ( outputStream != null ) {
+		for ( Map<Integer, IncomingStream> streams : this.incomingStreams.values() ) {
+			for ( IncomingStream in : streams.values() ) {
+				try {
+					in.close();
+				} catch ( IOException e ) {
+				}
+			}
+		}
+		for ( OutgoingStream out : this.outgoingStreams.values() ) {
 			try {
-				outputStream.close();
+				out.close();
 			} catch ( IOException e ) {
 			}
 		}
@@ -137,19 +278,114 @@ public class StreamTunnel extends AbstractSubTunnel<StreamTunnel, StreamTunnel.D
 	
 	@Override
 	public synchronized void receive( final Connection con, final TunnelMessage cmsg ) throws IOException {
-		if ( !isClosed() && this.inputBuffers.size() > 0 ) {
-			
-			final byte[] data = cmsg.getData().toByteArray();
+		if ( isClosed() ) {
+			return;
+		}
+		final StreamMessage msg;
+		try {
+			// The data of the stream message references the data of the tunnel message
+			final CodedInputStream input = cmsg.getData().newCodedInput();
+			input.enableAliasing( true );
+			msg = StreamMessage.parseFrom( input );
+		} catch ( InvalidProtocolBufferException e ) {
+			this.getNetwork().getLogger().log( Level.WARNING, "Dropped invalid stream message of " + cmsg.getSenderId(), e );
+			return;
+		}
+		if ( msg.getLimit() != 0 ) {
+			final OutgoingStream out = outgoingStreams.get( msg.getStream() );
+			if ( out != null ) {
+				out.receiveCredit( cmsg.getSenderId(), msg.getLimit() );
+			}
+			return;
+		}
+		
+		final UUID sender = cmsg.getSenderId();
+		final StreamKey key = new StreamKey( sender, msg.getStream() );
+		final IncomingStream stream = getIncomingStream( con, sender, msg );
+		if ( !msg.getData().isEmpty() ) {
+			final long end = msg.getOffset() + msg.getData().size();
+			synchronized ( inbound ) {
+				Inbound state = inbound.get( key );
+				if ( state == null ) {
+					state = new Inbound( msg.getOffset() );
+					inbound.put( key, state );
+				}
+				state.received = Math.max( state.received, end );
+			}
 			
-			for ( final ChannelInputStream in : this.inputBuffers ) {
-				try {
-					in.write( data );
-				} catch ( IOException e ) {
-					// just drop it
+			// Every reader gets its own view of the same data and releases it when the data is consumed
+			final ByteBuf data = Unpooled.wrappedBuffer( msg.getData().asReadOnlyByteBuffer() );
+			try {
+				for ( final ChannelInputStream in : this.inputBuffers ) {
+					in.write( key, end, data.retainedDuplicate() );
 				}
+				if ( stream != null ) {
+					stream.write( key, end, data.retainedDuplicate() );
+				}
+			} finally {
+				data.release();
+			}
+			updateCredit( key );
+		}
+		if ( msg.getEnd() ) {
+			if ( stream != null ) {
+				stream.end();
+			}
+			// The sender does not need credit anymore
+			synchronized ( inbound ) {
+				inbound.remove( key );
 			}
 		}
-		
+	}
+	
+	/**
+	 * Gets the input stream of a stream message. New streams are only created if there are listeners.
+	 * 
+	 * @return input stream or null if nobody listens to the stream
+	 */
+	private IncomingStream getIncomingStream( final Connection con, final UUID sender, final StreamMessage msg ) {
+		final Map<Integer, IncomingStream> streams = incomingStreams.computeIfAbsent( sender, id -> new ConcurrentHashMap<>() );
+		IncomingStream stream = streams.get( msg.getStream() );
+		if ( stream == null ) {
+			if ( msg.getSequence() != 0 || this.listeners.isEmpty() ) {
+				// Opened before anyone listened
+				return null;
+			}
+			final IncomingStream created = new IncomingStream( sender, msg.getStream() );
+			streams.put( msg.getStream(), created );
+			if ( con != null ) {
+				this.getExectutor().orElseGet( con.getChannel().getChannel()::eventLoop ).execute( () -> {
+					this.listeners.forEach( l -> l.accept( created ) );
+				} );
+			} else {
+				this.getExectutor().orElse( Runnable::run ).execute( () -> {
+					this.listeners.forEach( l -> l.accept( created ) );
+				} );
+			}
+			stream = created;
+		} else if ( stream.failed ) {
+			return null;
+		}
+		if ( msg.getSequence() != stream.nextSequence ) {
+			this.getNetwork().getLogger().log( Level.WARNING, "Stream " + msg.getStream() + " of " + sender + " lost data, expected chunk "
+					+ stream.nextSequence + " but got " + msg.getSequence() );
+			stream.fail();
+			return null;
+		}
+		stream.nextSequence++;
+		return stream;
+	}
+	
+	private void removeInput( final ChannelInputStream in ) {
+		if ( in instanceof IncomingStream ) {
+			final IncomingStream stream = ( IncomingStream ) in;
+			final Map<Integer, IncomingStream> streams = incomingStreams.get( stream.getSenderId() );
+			if ( streams != null ) {
+				streams.remove( stream.getStreamId(), stream );
+			}
+		} else {
+			inputBuffers.remove( in );
+		}
 	}
 	
 	private void checkChannel() throws IOException {
@@ -158,86 +394,555 @@ public class StreamTunnel extends AbstractSubTunnel<StreamTunnel, StreamTunnel.D
 		}
 	}
 	
+	// ********************************************************************
+	// FLOW CONTROL
+	
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	private static class StreamKey {
+		private final UUID sender;
+		private final int stream;
+	}
+	
+	private static class Inbound {
+		// End of the received data
+		private long received;
+		// Limit that was last granted to the sender, 0 if none
+		private long granted = 0;
+		
+		private Inbound( long offset ) {
+			this.received = offset;
+		}
+	}
+	
+	/**
+	 * Gets the window granted to senders. Bounded input buffers must not block the receiving thread, so the window
+	 * is never larger than the smallest of them.
+	 */
+	private int getReceiveWindow() {
+		int window = getWindowSize();
+		for ( final ChannelInputStream in : this.inputBuffers ) {
+			if ( in.capacity > 0 ) {
+				window = Math.min( window, in.capacity );
+			}
+		}
+		return window;
+	}
+	
+	/**
+	 * Grants new credit for the stream if the readers consumed enough of its data. The first data of a stream is
+	 * always answered, so the sender learns about this receiver.
+	 */
+	private void updateCredit( final StreamKey key ) {
+		final int window = getReceiveWindow();
+		final long limit;
+		synchronized ( inbound ) {
+			final Inbound state = inbound.get( key );
+			if ( state == null ) {
+				return;
+			}
+			long consumed = state.received;
+			for ( final ChannelInputStream in : this.inputBuffers ) {
+				consumed = Math.min( consumed, in.getConsumed( key, consumed ) );
+			}
+			final Map<Integer, IncomingStream> streams = incomingStreams.get( key.sender );
+			final IncomingStream stream = streams != null ? streams.get( key.stream ) : null;
+			if ( stream != null ) {
+				consumed = Math.min( consumed, stream.getConsumed( key, consumed ) );
+			}
+			final long newLimit = consumed + window;
+			if ( state.granted != 0 && newLimit - state.granted < window / 2 ) {
+				return;
+			}
+			state.granted = newLimit;
+			limit = newLimit;
+		}
+		flowControl.grant();
+		final StreamMessage grant = StreamMessage.newBuilder().setStream( key.stream ).setLimit( limit ).build();
+		StreamTunnel.this.parentTunnel.send( Target.to( key.sender ), grant.toByteString() );
+	}
+	
+	private void updateCredit( final Set<StreamKey> keys ) {
+		for ( final StreamKey key : keys ) {
+			updateCredit( key );
+		}
+	}
+	
+	// ********************************************************************
+	// INPUT
+	
+	@RequiredArgsConstructor
+	private static class Chunk {
+		private final StreamKey key;
+		private final long end;
+		private final ByteBuf data;
+	}
+	
+	private static class Pending {
+		// End of the consumed data of the stream
+		private long consumed;
+		// Number of buffered chunks of the stream
+		private int chunks = 0;
+		
+		private Pending( long consumed ) {
+			this.consumed = consumed;
+		}
+	}
+	
 	private class ChannelInputStream extends InputStream {
-		private final CircularByteBuffer buffer;
+		// Maximum number of bytes senders may write ahead, -1 if unbounded
+		private final int capacity;
+		
+		// Guarded by itself: buffered data and how far this reader consumed the streams with buffered data
+		private final Deque<Chunk> chunks = new ArrayDeque<>();
+		private final Map<StreamKey, Pending> pending = new HashMap<>();
+		private int buffered = 0;
+		private boolean ended = false;
+		private boolean closed = false;
+		
+		private ScatteringByteChannel channel = null;
 		
 		public ChannelInputStream( int bufferSize ) {
-			this.buffer = new CircularByteBuffer( bufferSize );
+			this.capacity = bufferSize;
+		}
+		
+		/**
+		 * Queues the data, the reader releases it when it is consumed.
+		 */
+		protected void write( StreamKey key, long end, ByteBuf data ) {
+			final int length = data.readableBytes();
+			synchronized ( chunks ) {
+				if ( closed || ended ) {
+					data.release();
+					return;
+				}
+				chunks.addLast( new Chunk( key, end, data ) );
+				Pending p = pending.get( key );
+				if ( p == null ) {
+					p = new Pending( end - length );
+					pending.put( key, p );
+				}
+				p.chunks++;
+				buffered += length;
+				// Counted before a reader can consume it
+				flowControl.buffer( length );
+				chunks.notifyAll();
+			}
+		}
+		
+		/**
+		 * No more data is written, reading returns -1 after the buffered data.
+		 */
+		protected void end() {
+			synchronized ( chunks ) {
+				ended = true;
+				chunks.notifyAll();
+			}
+		}
+		
+		/**
+		 * @return end of the consumed data of the stream, the default value if no data of it is buffered
+		 */
+		long getConsumed( StreamKey key, long defaultValue ) {
+			synchronized ( chunks ) {
+				final Pending p = pending.get( key );
+				return p != null ? p.consumed : defaultValue;
+			}
+		}
+		
+		protected void checkReadable() throws IOException {
+			checkChannel();
+			if ( closed ) {
+				throw new IOException( "Stream is closed" );
+			}
+		}
+		
+		/**
+		 * Takes buffered bytes and grants new credit to their senders.
+		 * 
+		 * @param dst
+		 *            to copy the bytes to, null to skip them
+		 * @param max
+		 *            number of bytes
+		 * @param blocking
+		 *            wait until there are bytes
+		 * @return number of bytes, -1 if the stream ended
+		 */
+		private int take( final ByteBuffer dst, final int max, final boolean blocking ) throws IOException {
+			if ( max == 0 ) {
+				return 0;
+			}
+			final Set<StreamKey> keys = new HashSet<>( 2 );
+			int left = max;
+			synchronized ( chunks ) {
+				while ( chunks.isEmpty() ) {
+					checkReadable();
+					if ( ended ) {
+						return -1;
+					}
+					if ( !blocking ) {
+						return 0;
+					}
+					try {
+						chunks.wait();
+					} catch ( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException();
+					}
+				}
+				checkReadable();
+				while ( left > 0 && !chunks.isEmpty() ) {
+					final Chunk chunk = chunks.peekFirst();
+					final int n = Math.min( left, chunk.data.readableBytes() );
+					if ( dst != null ) {
+						chunk.data.readBytes( ( ByteBuffer ) dst.slice().limit( n ) );
+						dst.position( dst.position() + n );
+					} else {
+						chunk.data.skipBytes( n );
+					}
+					left -= n;
+					final Pending p = pending.get( chunk.key );
+					p.consumed = chunk.end - chunk.data.readableBytes();
+					keys.add( chunk.key );
+					if ( !chunk.data.isReadable() ) {
+						chunks.removeFirst();
+						chunk.data.release();
+						if ( --p.chunks == 0 ) {
+							pending.remove( chunk.key );
+						}
+					}
+				}
+				buffered -= max - left;
+			}
+			flowControl.buffer( left - max );
+			updateCredit( keys );
+			return max - left;
+		}
+		
+		/**
+		 * Reads into the buffer, blocks until at least one byte is available.
+		 * 
+		 * @param dst
+		 *            to copy to
+		 * @return number of bytes, -1 if the stream ended
+		 * @throws IOException
+		 *             if the stream or tunnel is closed
+		 */
+		public int read( ByteBuffer dst ) throws IOException {
+			return take( dst, dst.remaining(), true );
 		}
 		
-		private void write( byte[] data ) throws IOException {
-			this.buffer.getOutputStream().write( data );
+		/**
+		 * Gets a channel view of this stream. Closing the channel closes the stream.
+		 * 
+		 * @return channel
+		 */
+		public synchronized ScatteringByteChannel getChannel() {
+			if ( channel == null ) {
+				channel = new InputChannel( this );
+			}
+			return channel;
 		}
 		
 		@Override
 		public int available() throws IOException {
-			checkChannel();
-			return buffer.getInputStream().available();
+			synchronized ( chunks ) {
+				checkReadable();
+				return buffered;
+			}
 		}
 		
 		@Override
-		public synchronized void close() throws IOException {
-			StreamTunnel.this.inputBuffers.remove( this );
-			buffer.getOutputStream().close();
-			buffer.getInputStream().close();
+		public void close() throws IOException {
+			final Set<StreamKey> keys;
+			long left = 0;
+			synchronized ( chunks ) {
+				if ( closed ) {
+					return;
+				}
+				closed = true;
+				keys = new HashSet<>( pending.keySet() );
+				for ( final Chunk chunk : chunks ) {
+					left += chunk.data.readableBytes();
+					chunk.data.release();
+				}
+				chunks.clear();
+				pending.clear();
+				buffered = 0;
+				chunks.notifyAll();
+			}
+			flowControl.buffer( -left );
+			// The unread data of this reader does not hold back the senders anymore
+			removeInput( this );
+			updateCredit( keys );
+		}
+		
+		public boolean isOpen() {
+			synchronized ( chunks ) {
+				return !closed;
+			}
 		}
 		
 		@Override
-		public void mark( int readAheadLimit ) {
-			buffer.getInputStream().mark( readAheadLimit );
+		public int read() throws IOException {
+			final byte[] b = new byte[ 1 ];
+			return read( b, 0, 1 ) < 0 ? -1 : b[0] & 0xFF;
 		}
 		
 		@Override
-		public boolean markSupported() {
-			return buffer.getInputStream().markSupported();
+		public int read( byte[] b, int off, int len ) throws IOException {
+			Preconditions.checkPositionIndexes( off, off + len, b.length );
+			return take( ByteBuffer.wrap( b, off, len ), len, true );
 		}
 		
 		@Override
-		public int read() throws IOException {
-			checkChannel();
-			return buffer.getInputStream().read();
+		public long skip( long n ) throws IOException {
+			if ( n <= 0 ) {
+				return 0;
+			}
+			return Math.max( 0, take( null, ( int ) Math.min( n, Integer.MAX_VALUE ), true ) );
 		}
+	}
+	
+	@RequiredArgsConstructor
+	private static class InputChannel implements ScatteringByteChannel {
+		
+		private final ChannelInputStream in;
 		
 		@Override
-		public int read( byte[] cbuf ) throws IOException {
-			checkChannel();
-			return buffer.getInputStream().read( cbuf );
+		public boolean isOpen() {
+			return in.isOpen();
 		}
 		
 		@Override
-		public int read( byte[] cbuf, int off, int len ) throws IOException {
-			checkChannel();
-			return buffer.getInputStream().read( cbuf, off, len );
+		public void close() throws IOException {
+			in.close();
 		}
 		
 		@Override
-		public void reset() throws IOException {
-			checkChannel();
-			buffer.getInputStream().reset();
+		public int read( ByteBuffer dst ) throws IOException {
+			return in.read( dst );
 		}
 		
 		@Override
-		public long skip( long n ) throws IOException, IllegalArgumentException {
-			checkChannel();
-			return buffer.getInputStream().skip( n );
+		public long read( ByteBuffer[] dsts, int offset, int length ) throws IOException {
+			Preconditions.checkPositionIndexes( offset, offset + length, dsts.length );
+			long result = 0;
+			for ( int i = offset; i < offset + length; ++i ) {
+				final ByteBuffer dst = dsts[i];
+				if ( !dst.hasRemaining() ) {
+					continue;
+				}
+				// Only wait for the first bytes
+				final int n = in.take( dst, dst.remaining(), result == 0 );
+				if ( n < 0 ) {
+					return result > 0 ? result : -1;
+				}
+				result += n;
+				if ( dst.hasRemaining() ) {
+					break;
+				}
+			}
+			return result;
+		}
+		
+		@Override
+		public long read( ByteBuffer[] dsts ) throws IOException {
+			return read( dsts, 0, dsts.length );
+		}
+		
+	}
+	
+	/**
+	 * Input of a single stream of a sender. Reading returns -1 after the sender closed the stream.
+	 */
+	public class IncomingStream extends ChannelInputStream {
+		
+		private @Getter final UUID senderId;
+		private @Getter final int streamId;
+		// Guarded by the tunnel
+		private long nextSequence = 0;
+		private volatile boolean failed = false;
+		
+		private IncomingStream( UUID senderId, int streamId ) {
+			super( UNBOUNDED );
+			this.senderId = senderId;
+			this.streamId = streamId;
+		}
+		
+		private void fail() {
+			failed = true;
+			end();
+		}
+		
+		@Override
+		protected void checkReadable() throws IOException {
+			super.checkReadable();
+			if ( failed ) {
+				throw new IOException( "Stream " + streamId + " of " + senderId + " lost data" );
+			}
+		}
+		
+	}
+	
+	private @RequiredArgsConstructor class RegisteredStreamListener implements Consumer<IncomingStream> {
+		
+		@NonNull
+		private @Getter final Owner owner;
+		@NonNull
+		private final Consumer<IncomingStream> delegate;
+		
+		@Override
+		public void accept( IncomingStream stream ) {
+			try {
+				delegate.accept( stream );
+			} catch ( Exception e ) {
+				owner.getLogger().log( Level.SEVERE, "Stream listener of " + owner.toString() + " threw exception: " + e.getMessage(), e );
+			}
 		}
 	}
 	
-	private class ChannelOutputStream extends OutputStream {
+	// ********************************************************************
+	// OUTPUT
+	
+	/**
+	 * Output of a single stream. Closing the stream tells the receivers that it ended.
+	 * 
+	 * Every receiver grants credit for the stream. The stream may write up to the smallest limit of its current
+	 * receivers, and up to the window of this tunnel before a receiver granted credit.
+	 */
+	public class OutgoingStream extends OutputStream {
 		
+		private @Getter final int streamId;
+		private @Getter final Target target;
+		private final SenderOutputStream sender = new SenderOutputStream();
 		private final BufferedOutputStream out;
-		private @Getter final Throwable throwable;
+		private GatheringByteChannel channel = null;
 		
-		public ChannelOutputStream( Target target, int size ) {
+		// Guarded by the sender output stream
+		private int sequence = 0;
+		private volatile boolean closed = false;
+		
+		// Guarded by itself: limits granted by the receivers, position of the next written byte and time of the first
+		// written byte
+		private final Map<UUID, Long> limits = new HashMap<>();
+		private long sent = 0;
+		private long started = 0;
+		
+		private OutgoingStream( int streamId, Target target, int size ) {
 			Preconditions.checkNotNull( target );
 			Preconditions.checkArgument( size > 0 );
-			this.out = new BufferedOutputStream( new SenderOutputStream( target ), size );
-			throwable = new Throwable(); // costly
+			this.streamId = streamId;
+			this.target = target;
+			this.out = new BufferedOutputStream( sender, size );
+		}
+		
+		/**
+		 * Gets a channel view of the stream. Written buffers are not copied into the stream but appended to the
+		 * messages, so direct buffers are only copied into the frames.
+		 * 
+		 * @return channel that writes to this stream
+		 */
+		public synchronized GatheringByteChannel getChannel() {
+			if ( channel == null ) {
+				channel = new OutputChannel( this );
+			}
+			return channel;
+		}
+		
+		/**
+		 * Writes the remaining bytes of the buffer after the buffered bytes of the stream.
+		 * 
+		 * @param src
+		 *            buffer, that can be reused after this returns
+		 * @return number of written bytes
+		 * @throws IOException
+		 *             if the stream or tunnel is closed
+		 */
+		public int write( ByteBuffer src ) throws IOException {
+			out.flush();
+			return sender.write( src );
 		}
 		
 		@Override
 		public void close() throws IOException {
-			out.close();
+			try {
+				out.close();
+			} finally {
+				StreamTunnel.this.outgoingStreams.remove( streamId, this );
+			}
+		}
+		
+		private void receiveCredit( final UUID receiver, final long limit ) {
+			synchronized ( limits ) {
+				final Long old = limits.get( receiver );
+				if ( old == null || old < limit ) {
+					limits.put( receiver, limit );
+					limits.notifyAll();
+				}
+			}
+		}
+		
+		/**
+		 * Gets the credit left of the slowest receiver the target resolves to. Receivers that are not targeted anymore
+		 * are forgotten. Receivers that did not grant credit yet are assumed to grant the window of this tunnel, until
+		 * the grant timeout passed.
+		 * 
+		 * @return credit in bytes or -1 if there are no receivers to wait for
+		 */
+		private long getCredit() {
+			final boolean waitForGrants = started == 0 || System.currentTimeMillis() - started < GRANT_TIMEOUT_MILLIS;
+			final Set<UUID> receivers = new HashSet<>();
+			long limit = Long.MAX_VALUE;
+			for ( final Node node : getNetwork().getNodes( target ) ) {
+				receivers.add( node.getId() );
+				final Long granted = limits.get( node.getId() );
+				if ( granted != null ) {
+					limit = Math.min( limit, granted );
+				} else if ( waitForGrants ) {
+					limit = Math.min( limit, getWindowSize() );
+				}
+			}
+			limits.keySet().retainAll( receivers );
+			return limit == Long.MAX_VALUE ? -1 : Math.max( 0, limit - sent );
+		}
+		
+		/**
+		 * Waits until the receivers granted credit and reserves it.
+		 * 
+		 * @param length
+		 *            of data to send
+		 * @return offset of reserved data and number of reserved bytes
+		 */
+		private long[] reserve( final int length ) throws IOException {
+			synchronized ( limits ) {
+				if ( started == 0 ) {
+					started = System.currentTimeMillis();
+				}
+				boolean stalled = false;
+				while ( true ) {
+					checkChannel();
+					final long credit = getCredit();
+					if ( credit != 0 ) {
+						final int reserved = credit < 0 ? length : ( int ) Math.min( credit, length );
+						final long offset = sent;
+						sent += reserved;
+						flowControl.setCredit( credit < 0 ? -1 : credit - reserved );
+						return new long[] { offset, reserved };
+					}
+					if ( !stalled ) {
+						stalled = true;
+						flowControl.stall();
+					}
+					try {
+						// Recheck regularly, receivers may leave the network or the grant timeout may pass
+						limits.wait( 1000 );
+					} catch ( InterruptedException e ) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException();
+					}
+				}
+			}
 		}
 		
 		@Override
@@ -260,41 +965,131 @@ public class StreamTunnel extends AbstractSubTunnel<StreamTunnel, StreamTunnel.D
 			out.write( b );
 		}
 		
-		private @RequiredArgsConstructor class SenderOutputStream extends OutputStream {
-			
-			private @NonNull final Target target;
-			private @Getter boolean closed = false;
+		private StreamMessage.Builder newMessage() {
+			return StreamMessage.newBuilder().setStream( streamId ).setSequence( sequence++ );
+		}
+		
+		private class SenderOutputStream extends OutputStream {
 			
 			@Override
 			public synchronized void close() throws IOException {
-				boolean old = closed;
+				if ( closed ) {
+					return;
+				}
 				closed = true;
-				if ( !old ) {
-					StreamTunnel.this.outputStreamSemaphore.release();
+				if ( !isClosed() ) {
+					final StreamMessage.Builder msg = newMessage().setEnd( true );
+					synchronized ( limits ) {
+						msg.setOffset( sent );
+					}
+					StreamTunnel.this.parentTunnel.send( target, msg.build().toByteString() );
+				}
+			}
+			
+			private boolean isStreamClosed() {
+				return closed || StreamTunnel.this.isClosed();
+			}
+			
+			private void checkOpen() throws IOException {
+				checkChannel();
+				if ( closed ) {
+					throw new IOException( "Stream is closed" );
 				}
 			}
 			
 			@Override
 			public void write( byte[] b ) throws IOException {
-				checkChannel();
-				StreamTunnel.this.parentTunnel.send( this.target, b );
+				write( b, 0, b.length );
 			}
 			
 			@Override
-			public void write( byte[] b, int off, int len ) throws IOException {
-				checkChannel();
-				ByteString data = ByteString.copyFrom( b, off, len );
-				StreamTunnel.this.parentTunnel.send( this.target, data );
+			public synchronized void write( byte[] b, int off, int len ) throws IOException {
+				checkOpen();
+				while ( len > 0 ) {
+					final StreamMessage.Builder msg = newMessage();
+					final long[] reserved = reserve( len );
+					final int n = ( int ) reserved[1];
+					msg.setOffset( reserved[0] );
+					msg.setData( ByteString.copyFrom( b, off, n ) );
+					StreamTunnel.this.parentTunnel.send( target, msg.build().toByteString() );
+					off += n;
+					len -= n;
+				}
 			}
 			
 			@Override
 			public void write( int b ) throws IOException {
-				checkChannel();
-				ByteString data = ByteString.copyFrom( new byte[] { ( byte ) b } );
-				StreamTunnel.this.parentTunnel.send( this.target, data );
+				write( new byte[] { ( byte ) b }, 0, 1 );
+			}
+			
+			public synchronized int write( ByteBuffer src ) throws IOException {
+				checkOpen();
+				final int length = src.remaining();
+				while ( src.hasRemaining() ) {
+					final StreamMessage.Builder msg = newMessage();
+					final long[] reserved = reserve( src.remaining() );
+					final int n = ( int ) reserved[1];
+					msg.setOffset( reserved[0] );
+					final ByteBuffer data = src.slice();
+					data.limit( n );
+					// Encoded before it returns, so the buffer is wrapped instead of copied
+					StreamTunnel.this.parentTunnel.sendTransient( target, withData( msg.build(), UnsafeByteOperations.unsafeWrap( data ) ) );
+					src.position( src.position() + n );
+				}
+				return length;
 			}
 		}
 		
 	}
 	
+	/**
+	 * Appends the data field to an encoded message without data. Fields may be in any order, so the data does not
+	 * need to be copied into the message.
+	 */
+	private static ByteString withData( final StreamMessage msg, final ByteString data ) throws IOException {
+		final byte[] prefix = new byte[ CodedOutputStream.computeTagSize( StreamMessage.DATA_FIELD_NUMBER ) + CodedOutputStream.computeUInt32SizeNoTag( data.size() ) ];
+		final CodedOutputStream out = CodedOutputStream.newInstance( prefix );
+		out.writeTag( StreamMessage.DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED );
+		out.writeUInt32NoTag( data.size() );
+		out.checkNoSpaceLeft();
+		return msg.toByteString().concat( UnsafeByteOperations.unsafeWrap( prefix ) ).concat( data );
+	}
+	
+	@RequiredArgsConstructor
+	private static class OutputChannel implements GatheringByteChannel {
+		
+		private final OutgoingStream out;
+		
+		@Override
+		public boolean isOpen() {
+			return !out.sender.isStreamClosed();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+		
+		@Override
+		public int write( ByteBuffer src ) throws IOException {
+			return out.write( src );
+		}
+		
+		@Override
+		public long write( ByteBuffer[] srcs, int offset, int length ) throws IOException {
+			Preconditions.checkPositionIndexes( offset, offset + length, srcs.length );
+			long result = 0;
+			for ( int i = offset; i < offset + length; ++i ) {
+				result += out.write( srcs[i] );
+			}
+			return result;
+		}
+		
+		@Override
+		public long write( ByteBuffer[] srcs ) throws IOException {
+			return write( srcs, 0, srcs.length );
+		}
+		
+	}
+	
 }
@@ -0,0 +1,36 @@
+package de.mickare.routernet.metric;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class CacheCounter {
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public void hit() {
+    hits.increment();
+  }
+
+  public void miss() {
+    misses.increment();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public double getHitRate() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public String toString() {
+    return "Cache Hits: " + getHits() + ", Misses: " + getMisses();
+  }
+
+}
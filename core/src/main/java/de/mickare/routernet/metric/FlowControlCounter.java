@@ -0,0 +1,52 @@
+package de.mickare.routernet.metric;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.Setter;
+
+public class FlowControlCounter {
+
+  // Window granted to senders
+  private volatile @Getter @Setter int window;
+  // Bytes the sender may write before it blocks, -1 if no receiver granted credit
+  private volatile @Getter @Setter long credit = -1;
+  // Received bytes that were not read yet
+  private final LongAdder buffered = new LongAdder();
+  private final LongAdder stalls = new LongAdder();
+  private final LongAdder grants = new LongAdder();
+
+  public FlowControlCounter(int window) {
+    this.window = window;
+  }
+
+  public void buffer(long bytes) {
+    buffered.add(bytes);
+  }
+
+  public void stall() {
+    stalls.increment();
+  }
+
+  public void grant() {
+    grants.increment();
+  }
+
+  public long getBuffered() {
+    return buffered.sum();
+  }
+
+  public long getStalls() {
+    return stalls.sum();
+  }
+
+  public long getGrants() {
+    return grants.sum();
+  }
+
+  public String toString() {
+    return "Window: " + getWindow() + ", Credit: " + getCredit() + ", Buffered: " + getBuffered()
+        + ", Stalls: " + getStalls() + ", Grants: " + getGrants();
+  }
+
+}
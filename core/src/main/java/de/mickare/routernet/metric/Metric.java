@@ -1,5 +1,9 @@
 package de.mickare.routernet.metric;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import io.netty.channel.EventLoopGroup;
 import io.netty.handler.traffic.CustomGlobalChannelTrafficShapingHandler;
@@ -10,6 +14,8 @@ public class Metric {
   private @Getter CustomGlobalChannelTrafficShapingHandler channelTrafficHandler;
  // private @Getter ChannelTrafficHandler channelTrafficHandler;
   private @Getter PacketTrafficHandler<Packet> packetTrafficHandler;
+  private @Getter final CacheCounter routingCache = new CacheCounter();
+  private final Map<String, FlowControlCounter> flowControls = new ConcurrentHashMap<>();
 
   
   public Metric(EventLoopGroup group) {
@@ -17,4 +23,19 @@ public class Metric {
     this.packetTrafficHandler = new PacketTrafficHandler<>(Packet.class, group, 1000);
   }
 
+  /**
+   * @return flow control counters of the stream tunnels by tunnel name
+   */
+  public Map<String, FlowControlCounter> getFlowControls() {
+    return Collections.unmodifiableMap(flowControls);
+  }
+
+  public void registerFlowControl(String tunnel, FlowControlCounter counter) {
+    flowControls.put(tunnel, counter);
+  }
+
+  public void unregisterFlowControl(String tunnel, FlowControlCounter counter) {
+    flowControls.remove(tunnel, counter);
+  }
+
 }
@@ -8,6 +8,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
+import de.mickare.routernet.netty.EncodedPacket;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
@@ -90,11 +91,30 @@ public class PacketTrafficHandler<T> extends ObjectMonitorChannelDuplexHandler<T
     counter.get(ctx.channel()).write.increment();
   }
 
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof EncodedPacket) {
+      counter.get(ctx.channel()).write.increment();
+    }
+    super.write(ctx, msg, promise);
+  }
+
   @Override
   protected void onRead(ChannelHandlerContext ctx, T msg) throws Exception {
     counter.get(ctx.channel()).read.increment();
   }
 
+  /**
+   * Counts a packet that was read from the channel without passing this handler, like a frame that
+   * is routed by its header only.
+   *
+   * @param channel the packet was read from
+   */
+  public void countRead(Channel channel) {
+    counter.getUnchecked(channel).read.increment();
+  }
+
   @Override
   protected void doMonitoring() {
     counter.asMap().values().forEach(c -> c.sumThenReset());
@@ -9,6 +9,7 @@ import de.mickare.routernet.core.packet.PacketWriter;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
@@ -57,6 +58,17 @@ public @RequiredArgsConstructor class ChannelWrapper implements PacketWriter<Cha
     channel.flush();
   }
 
+  @Override
+  public void flushNow() {
+    // Flush behind the consolidation handler
+    final ChannelHandlerContext ctx = channel.pipeline().context(PipelineUtils.FLUSH_CONSOLIDATION);
+    if (ctx != null) {
+      ctx.flush();
+    } else {
+      channel.flush();
+    }
+  }
+
   @Override
   public ChannelFuture write(Packet packet) {
     return channel.write(packet);
@@ -77,4 +89,24 @@ public @RequiredArgsConstructor class ChannelWrapper implements PacketWriter<Cha
     channel.writeAndFlush(packet, channel.voidPromise());
   }
 
+  @Override
+  public ChannelFuture write(EncodedPacket packet) {
+    return channel.write(packet);
+  }
+
+  @Override
+  public ChannelFuture writeAndFlush(EncodedPacket packet) {
+    return channel.writeAndFlush(packet);
+  }
+
+  @Override
+  public void writeFast(EncodedPacket packet) {
+    channel.write(packet, channel.voidPromise());
+  }
+
+  @Override
+  public void writeAndFlushFast(EncodedPacket packet) {
+    channel.writeAndFlush(packet, channel.voidPromise());
+  }
+
 }
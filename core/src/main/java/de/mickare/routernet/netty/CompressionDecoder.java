@@ -0,0 +1,104 @@
+package de.mickare.routernet.netty;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Preconditions;
+
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Decompresses frames of the {@link CompressionEncoder}.
+ */
+public class CompressionDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+	private final int maxFrameLength;
+	private final Inflater inflater = new Inflater();
+	private byte[] input = new byte[ 0 ];
+
+	/**
+	 * @param maxFrameLength
+	 *            maximum size in bytes of a decompressed frame
+	 */
+	public CompressionDecoder( int maxFrameLength ) {
+		Preconditions.checkArgument( maxFrameLength > 0 );
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	@Override
+	protected void decode( ChannelHandlerContext ctx, ByteBuf msg, List<Object> out ) throws Exception {
+		final int codec = msg.readUnsignedByte();
+		switch ( codec ) {
+			case Compression.NONE_VALUE:
+				out.add( msg.retainedSlice() );
+				break;
+			case Compression.DEFLATE_VALUE:
+				out.add( inflate( ctx, msg ) );
+				break;
+			default:
+				throw new CorruptedFrameException( "unknown compression " + codec );
+		}
+	}
+
+	private ByteBuf inflate( ChannelHandlerContext ctx, ByteBuf msg ) throws DataFormatException {
+		final int length = msg.readInt();
+		if ( length < 0 || length > maxFrameLength ) {
+			throw new TooLongFrameException( "decompressed frame length exceeds " + maxFrameLength + ": " + length );
+		}
+
+		final int size = msg.readableBytes();
+		final byte[] in;
+		final int offset;
+		if ( msg.hasArray() ) {
+			in = msg.array();
+			offset = msg.arrayOffset() + msg.readerIndex();
+		} else {
+			if ( input.length < size ) {
+				input = new byte[ size ];
+			}
+			msg.getBytes( msg.readerIndex(), input, 0, size );
+			in = input;
+			offset = 0;
+		}
+
+		final ByteBuf result = ctx.alloc().heapBuffer( length, length );
+		boolean success = false;
+		try {
+			inflater.setInput( in, offset, size );
+			final byte[] out = result.array();
+			final int outOffset = result.arrayOffset();
+			int inflated = 0;
+			while ( inflated < length ) {
+				final int n = inflater.inflate( out, outOffset + inflated, length - inflated );
+				if ( n == 0 && ( inflater.finished() || inflater.needsInput() || inflater.needsDictionary() ) ) {
+					break;
+				}
+				inflated += n;
+			}
+			if ( inflated != length ) {
+				throw new CorruptedFrameException( "invalid compressed frame" );
+			}
+			result.writerIndex( length );
+			success = true;
+			return result;
+		} finally {
+			inflater.reset();
+			if ( !success ) {
+				result.release();
+			}
+		}
+	}
+
+	@Override
+	public void handlerRemoved( ChannelHandlerContext ctx ) throws Exception {
+		inflater.end();
+		super.handlerRemoved( ctx );
+	}
+
+}
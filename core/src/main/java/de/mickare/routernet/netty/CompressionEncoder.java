@@ -0,0 +1,165 @@
+package de.mickare.routernet.netty;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * Compresses packets and serialized frames before they are framed.
+ *
+ * Every frame starts with its codec, {@link Compression#NONE} frames are followed by the raw frame and
+ * {@link Compression#DEFLATE} frames by the uncompressed length and the deflated frame. Frames below the
+ * threshold are not compressed. Frames that do not shrink are sent raw and compression is skipped for a
+ * growing number of following frames, so incompressible payloads cost as little as possible.
+ */
+public class CompressionEncoder extends MessageToMessageEncoder<Object> {
+
+	private static final int MAX_SKIP = 64;
+
+	private final int threshold;
+	private final Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+	private byte[] input = new byte[ 0 ];
+	private byte[] output = new byte[ 0 ];
+
+	private int skip = 0;
+	private int skipped = 0;
+
+	/**
+	 * @param threshold
+	 *            minimum size in bytes of a frame to be compressed
+	 */
+	public CompressionEncoder( int threshold ) {
+		Preconditions.checkArgument( threshold >= 0 );
+		this.threshold = threshold;
+	}
+
+	@Override
+	public boolean acceptOutboundMessage( Object msg ) throws Exception {
+		return msg instanceof Packet || msg instanceof ByteBuf;
+	}
+
+	@Override
+	protected void encode( ChannelHandlerContext ctx, Object msg, List<Object> out ) throws Exception {
+		if ( msg instanceof Packet ) {
+			encode( ctx, ( Packet ) msg, out );
+		} else {
+			encode( ctx, ( ByteBuf ) msg, out );
+		}
+	}
+
+	private void encode( ChannelHandlerContext ctx, Packet packet, List<Object> out ) throws Exception {
+		final int length = packet.getSerializedSize();
+		final ByteBuf raw = ctx.alloc().ioBuffer( length + 1, length + 1 );
+		boolean success = false;
+		try {
+			raw.writeByte( Compression.NONE_VALUE );
+			if ( isCompressing( length ) ) {
+				// The deflater needs an array, so the packet is serialized into one
+				if ( input.length < length ) {
+					input = new byte[ length ];
+				}
+				final CodedOutputStream cos = CodedOutputStream.newInstance( input, 0, length );
+				packet.writeTo( cos );
+				cos.checkNoSpaceLeft();
+				final ByteBuf compressed = deflate( ctx, input, 0, length );
+				if ( compressed != null ) {
+					out.add( compressed );
+					return;
+				}
+				raw.writeBytes( input, 0, length );
+			} else {
+				final CodedOutputStream cos = CodedOutputStream.newInstance( raw.nioBuffer( 1, length ) );
+				packet.writeTo( cos );
+				cos.checkNoSpaceLeft();
+				raw.writerIndex( length + 1 );
+			}
+			out.add( raw );
+			success = true;
+		} finally {
+			if ( !success ) {
+				raw.release();
+			}
+		}
+	}
+
+	private void encode( ChannelHandlerContext ctx, ByteBuf msg, List<Object> out ) throws Exception {
+		final int length = msg.readableBytes();
+		if ( isCompressing( length ) ) {
+			final ByteBuf compressed;
+			if ( msg.hasArray() ) {
+				compressed = deflate( ctx, msg.array(), msg.arrayOffset() + msg.readerIndex(), length );
+			} else {
+				if ( input.length < length ) {
+					input = new byte[ length ];
+				}
+				msg.getBytes( msg.readerIndex(), input, 0, length );
+				compressed = deflate( ctx, input, 0, length );
+			}
+			if ( compressed != null ) {
+				out.add( compressed );
+				return;
+			}
+		}
+
+		final ByteBuf header = ctx.alloc().buffer( 1 );
+		header.writeByte( Compression.NONE_VALUE );
+		out.add( ctx.alloc().compositeBuffer( 2 ).addComponents( true, header, msg.retain() ) );
+	}
+
+	private boolean isCompressing( int length ) {
+		if ( length < threshold ) {
+			return false;
+		}
+		if ( skipped < skip ) {
+			skipped++;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return deflated frame or null if the frame does not shrink
+	 */
+	private ByteBuf deflate( ChannelHandlerContext ctx, byte[] in, int offset, int length ) {
+		// Anything larger than the raw frame is useless
+		if ( output.length < length ) {
+			output = new byte[ length ];
+		}
+		try {
+			deflater.setInput( in, offset, length );
+			deflater.finish();
+			int size = 0;
+			while ( !deflater.finished() && size < length ) {
+				size += deflater.deflate( output, size, length - size );
+			}
+			if ( !deflater.finished() || size + 5 >= length ) {
+				skip = Math.min( Math.max( 1, skip * 2 ), MAX_SKIP );
+				skipped = 0;
+				return null;
+			}
+			skip = 0;
+			final ByteBuf result = ctx.alloc().buffer( size + 5 );
+			result.writeByte( Compression.DEFLATE_VALUE );
+			result.writeInt( length );
+			result.writeBytes( output, 0, size );
+			return result;
+		} finally {
+			deflater.reset();
+		}
+	}
+
+	@Override
+	public void handlerRemoved( ChannelHandlerContext ctx ) throws Exception {
+		deflater.end();
+		super.handlerRemoved( ctx );
+	}
+
+}
@@ -63,7 +63,7 @@ public class ConnectionHandler extends SimpleChannelInboundHandler<Packet> {
 			}
 			ErrorMessage.Builder error = ErrorMessage.newBuilder().setType( type ).setMessage( text );
 			
-			ctx.writeAndFlush( CloseMessage.newBuilder().setError( error ) ).addListener( ChannelFutureListener.CLOSE );
+			ctx.writeAndFlush( Packet.newBuilder().setClose( CloseMessage.newBuilder().setError( error ) ).build() ).addListener( ChannelFutureListener.CLOSE );
 		} finally {
 			getLogger().log( Level.WARNING, "Channel Exception: " + cause.getMessage(), cause );
 		}
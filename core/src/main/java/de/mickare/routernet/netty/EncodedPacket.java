@@ -0,0 +1,97 @@
+package de.mickare.routernet.netty;
+
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.handler.codec.EncoderException;
+
+/**
+ * A packet that is already serialized into a (pooled) buffer.
+ *
+ * Used to fan out the same packet to many channels without encoding it again for each of them.
+ * Write a {@link #retainedDuplicate()} to each channel and {@link #release()} the original
+ * afterwards.
+ */
+public class EncodedPacket extends DefaultByteBufHolder {
+
+	public static EncodedPacket encode( final Packet packet ) {
+		return encode( ByteBufAllocator.DEFAULT, packet );
+	}
+
+	public static EncodedPacket encode( final ByteBufAllocator alloc, final Packet packet ) {
+		Preconditions.checkNotNull( alloc );
+		Preconditions.checkNotNull( packet );
+		final int size = packet.getSerializedSize();
+		final ByteBuf buf = alloc.ioBuffer( size, size );
+		boolean success = false;
+		try {
+			final CodedOutputStream out = CodedOutputStream.newInstance( buf.nioBuffer( 0, size ) );
+			packet.writeTo( out );
+			out.checkNoSpaceLeft();
+			buf.writerIndex( size );
+			success = true;
+			return new EncodedPacket( buf );
+		} catch ( IOException e ) {
+			throw new EncoderException( e );
+		} finally {
+			if ( !success ) {
+				buf.release();
+			}
+		}
+	}
+
+	public EncodedPacket( final ByteBuf data ) {
+		super( data );
+	}
+
+	@Override
+	public EncodedPacket copy() {
+		return replace( content().copy() );
+	}
+
+	@Override
+	public EncodedPacket duplicate() {
+		return replace( content().duplicate() );
+	}
+
+	@Override
+	public EncodedPacket retainedDuplicate() {
+		return replace( content().retainedDuplicate() );
+	}
+
+	@Override
+	public EncodedPacket replace( final ByteBuf content ) {
+		return new EncodedPacket( content );
+	}
+
+	@Override
+	public EncodedPacket retain() {
+		super.retain();
+		return this;
+	}
+
+	@Override
+	public EncodedPacket retain( int increment ) {
+		super.retain( increment );
+		return this;
+	}
+
+	@Override
+	public EncodedPacket touch() {
+		super.touch();
+		return this;
+	}
+
+	@Override
+	public EncodedPacket touch( Object hint ) {
+		super.touch( hint );
+		return this;
+	}
+
+}
@@ -0,0 +1,22 @@
+package de.mickare.routernet.netty;
+
+import java.util.List;
+
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * Unwraps already serialized packets, so they are only framed before they are written.
+ */
+@Sharable
+public class EncodedPacketEncoder extends MessageToMessageEncoder<EncodedPacket> {
+
+	public static final EncodedPacketEncoder INSTANCE = new EncodedPacketEncoder();
+
+	@Override
+	protected void encode( ChannelHandlerContext ctx, EncodedPacket msg, List<Object> out ) throws Exception {
+		out.add( msg.content().retain() );
+	}
+
+}
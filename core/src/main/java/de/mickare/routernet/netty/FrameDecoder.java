@@ -0,0 +1,88 @@
+package de.mickare.routernet.netty;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Splits the stream into frames of the {@link FrameEncoder}.
+ *
+ * The prefix format can be switched while a frame is handled, the next frame is read with the new format.
+ */
+public class FrameDecoder extends ByteToMessageDecoder {
+
+	private final int maxFrameLength;
+
+	/**
+	 * Read varint length prefixes instead of 4 byte integers.
+	 */
+	private @Getter @Setter boolean varint = false;
+
+	/**
+	 * @param maxFrameLength
+	 *            maximum size in bytes of a frame
+	 */
+	public FrameDecoder( int maxFrameLength ) {
+		Preconditions.checkArgument( maxFrameLength > 0 );
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	@Override
+	protected void decode( ChannelHandlerContext ctx, ByteBuf in, List<Object> out ) throws Exception {
+		final int start = in.readerIndex();
+		final int length;
+		if ( varint ) {
+			length = readVarint( in );
+			if ( length < 0 ) {
+				// Incomplete prefix
+				in.readerIndex( start );
+				return;
+			}
+		} else if ( in.readableBytes() >= 4 ) {
+			length = in.readInt();
+			if ( length < 0 ) {
+				throw new CorruptedFrameException( "negative frame length" );
+			}
+		} else {
+			return;
+		}
+		if ( length > maxFrameLength ) {
+			throw new TooLongFrameException( "frame length exceeds " + maxFrameLength + ": " + length );
+		}
+		if ( in.readableBytes() < length ) {
+			in.readerIndex( start );
+			return;
+		}
+		out.add( in.readRetainedSlice( length ) );
+	}
+
+	/**
+	 * @return length or -1 if the prefix is incomplete
+	 */
+	private static int readVarint( ByteBuf in ) throws CorruptedFrameException {
+		int result = 0;
+		for ( int shift = 0; shift < 32; shift += 7 ) {
+			if ( !in.isReadable() ) {
+				return -1;
+			}
+			final byte b = in.readByte();
+			result |= ( b & 0x7F ) << shift;
+			if ( b >= 0 ) {
+				if ( result < 0 ) {
+					throw new CorruptedFrameException( "negative frame length" );
+				}
+				return result;
+			}
+		}
+		throw new CorruptedFrameException( "malformed frame length" );
+	}
+
+}
@@ -0,0 +1,90 @@
+package de.mickare.routernet.netty;
+
+import java.util.List;
+
+import com.google.protobuf.CodedOutputStream;
+
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Serializes and frames packets in a single pass.
+ *
+ * A packet is written with its length prefix into one (pooled direct) buffer of the exact size. Already serialized
+ * frames are only prefixed. The prefix is a 4 byte integer or, if negotiated on login, a varint.
+ */
+public class FrameEncoder extends MessageToMessageEncoder<Object> {
+
+	/**
+	 * Use varint length prefixes instead of 4 byte integers.
+	 */
+	private @Getter @Setter boolean varint = false;
+
+	public FrameEncoder() {
+	}
+
+	public FrameEncoder( boolean varint ) {
+		this.varint = varint;
+	}
+
+	@Override
+	public boolean acceptOutboundMessage( Object msg ) throws Exception {
+		return msg instanceof Packet || msg instanceof ByteBuf;
+	}
+
+	@Override
+	protected void encode( ChannelHandlerContext ctx, Object msg, List<Object> out ) throws Exception {
+		if ( msg instanceof Packet ) {
+			out.add( encode( ctx, ( Packet ) msg ) );
+		} else {
+			final ByteBuf frame = ( ByteBuf ) msg;
+			final int length = frame.readableBytes();
+			final ByteBuf prefix = ctx.alloc().ioBuffer( prefixSize( length ) );
+			writePrefix( prefix, length );
+			out.add( prefix );
+			out.add( frame.retain() );
+		}
+	}
+
+	private ByteBuf encode( ChannelHandlerContext ctx, Packet packet ) throws Exception {
+		final int size = packet.getSerializedSize();
+		final int total = prefixSize( size ) + size;
+		final ByteBuf buf = ctx.alloc().ioBuffer( total, total );
+		boolean success = false;
+		try {
+			writePrefix( buf, size );
+			final CodedOutputStream out = CodedOutputStream.newInstance( buf.nioBuffer( buf.writerIndex(), size ) );
+			packet.writeTo( out );
+			out.checkNoSpaceLeft();
+			buf.writerIndex( total );
+			success = true;
+			return buf;
+		} finally {
+			if ( !success ) {
+				buf.release();
+			}
+		}
+	}
+
+	private int prefixSize( int length ) {
+		return varint ? CodedOutputStream.computeUInt32SizeNoTag( length ) : 4;
+	}
+
+	private void writePrefix( ByteBuf buf, int length ) {
+		if ( varint ) {
+			int value = length;
+			while ( ( value & ~0x7F ) != 0 ) {
+				buf.writeByte( ( value & 0x7F ) | 0x80 );
+				value >>>= 7;
+			}
+			buf.writeByte( value );
+		} else {
+			buf.writeInt( length );
+		}
+	}
+
+}
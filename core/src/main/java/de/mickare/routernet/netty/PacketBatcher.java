@@ -0,0 +1,200 @@
+package de.mickare.routernet.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Batches consecutive tunnel messages of the same tunnel, target and sender into one {@link PacketBatch}.
+ *
+ * A tunnel message is written immediately if the last one was written longer ago than the latency budget.
+ * Otherwise it is held back until the budget is over, the batch is full or a packet that does not fit into the
+ * batch is written. A batch is full if it has the maximum number of packets or the next packet would exceed the
+ * maximum bytes. The order of packets is always kept.
+ */
+public class PacketBatcher extends ChannelOutboundHandlerAdapter {
+
+	/**
+	 * Upper bound of the bytes a batch adds to the data of a packet: tags, length prefixes and dictionary version.
+	 */
+	private static final int PACKET_OVERHEAD = 32;
+
+	private final long latencyNanos;
+	private final int maxPackets;
+	private final int maxBytes;
+
+	private TunnelMessage first = null;
+	private int bytes = 0;
+	private final List<Packet> packets = new ArrayList<>();
+	private final List<ChannelPromise> promises = new ArrayList<>();
+	private boolean flushRequested = false;
+	private ScheduledFuture<?> timeout = null;
+	private long lastWrite = 0;
+
+	/**
+	 * @param latency
+	 *            budget a tunnel message can be held back
+	 * @param unit
+	 *            of latency
+	 * @param maxPackets
+	 *            maximum number of packets in a batch
+	 */
+	public PacketBatcher( long latency, TimeUnit unit, int maxPackets ) {
+		this( latency, unit, maxPackets, PipelineUtils.DEFAULT_BATCH_MAX_BYTES );
+	}
+
+	/**
+	 * @param latency
+	 *            budget a tunnel message can be held back
+	 * @param unit
+	 *            of latency
+	 * @param maxPackets
+	 *            maximum number of packets in a batch
+	 * @param maxBytes
+	 *            maximum serialized size of a batch
+	 */
+	public PacketBatcher( long latency, TimeUnit unit, int maxPackets, int maxBytes ) {
+		Preconditions.checkArgument( latency > 0 );
+		Preconditions.checkArgument( maxPackets > 1 );
+		Preconditions.checkArgument( maxBytes > 0 );
+		this.latencyNanos = unit.toNanos( latency );
+		this.maxPackets = maxPackets;
+		this.maxBytes = maxBytes;
+		this.lastWrite = System.nanoTime() - latencyNanos;
+	}
+
+	@Override
+	public void write( ChannelHandlerContext ctx, Object msg, ChannelPromise promise ) throws Exception {
+		if ( msg instanceof Packet && ( ( Packet ) msg ).getValueCase() == Packet.ValueCase.TUNNELMESSAGE ) {
+			final TunnelMessage tmsg = ( ( Packet ) msg ).getTunnelMessage();
+			final int size = tmsg.getData().size() + PACKET_OVERHEAD;
+			if ( first != null && ( !isSameBatch( first, tmsg ) || bytes + size > maxBytes ) ) {
+				writeBatch( ctx );
+			}
+
+			final long now = System.nanoTime();
+			if ( first == null && ( now - lastWrite >= latencyNanos || getHeaderSize( tmsg ) + size > maxBytes ) ) {
+				// Idle, no need to wait. Or too large for a batch.
+				lastWrite = now;
+				ctx.write( msg, promise );
+				return;
+			}
+			lastWrite = now;
+
+			if ( first == null ) {
+				first = tmsg;
+				bytes = getHeaderSize( tmsg );
+				timeout = ctx.executor().schedule( () -> {
+					timeout = null;
+					writeBatch( ctx );
+				}, latencyNanos, TimeUnit.NANOSECONDS );
+			}
+			packets.add( Packer.pack( TunnelMessage.newBuilder().setData( tmsg.getData() ).setDictionary( tmsg.getDictionary() ) ) );
+			promises.add( promise );
+			bytes += size;
+
+			if ( packets.size() >= maxPackets ) {
+				writeBatch( ctx );
+			}
+			return;
+		}
+
+		writeBatch( ctx );
+		ctx.write( msg, promise );
+	}
+
+	@Override
+	public void flush( ChannelHandlerContext ctx ) throws Exception {
+		if ( first != null ) {
+			// Flushed with the batch
+			flushRequested = true;
+		}
+		ctx.flush();
+	}
+
+	@Override
+	public void close( ChannelHandlerContext ctx, ChannelPromise promise ) throws Exception {
+		writeBatch( ctx );
+		ctx.close( promise );
+	}
+
+	@Override
+	public void disconnect( ChannelHandlerContext ctx, ChannelPromise promise ) throws Exception {
+		writeBatch( ctx );
+		ctx.disconnect( promise );
+	}
+
+	@Override
+	public void handlerRemoved( ChannelHandlerContext ctx ) throws Exception {
+		writeBatch( ctx );
+	}
+
+	/**
+	 * Bytes of a batch without its packets, the fields that all packets share plus the packet envelope.
+	 */
+	private static int getHeaderSize( final TunnelMessage msg ) {
+		return msg.getSerializedSize() - msg.getData().size() + PACKET_OVERHEAD;
+	}
+
+	private static boolean isSameBatch( final TunnelMessage a, final TunnelMessage b ) {
+		return a.getTunnelId() == b.getTunnelId() && a.getTunnelIndex() == b.getTunnelIndex() && a.getSender().equals( b.getSender() ) && a.getTarget().equals( b.getTarget() );
+	}
+
+	private void writeBatch( final ChannelHandlerContext ctx ) {
+		if ( first == null ) {
+			return;
+		}
+		if ( timeout != null ) {
+			timeout.cancel( false );
+			timeout = null;
+		}
+
+		final Packet packet;
+		if ( packets.size() == 1 ) {
+			packet = Packer.pack( first );
+		} else {
+			final PacketBatch.Builder b = PacketBatch.newBuilder();
+			b.setTarget( first.getTarget() );
+			b.setSender( first.getSender() );
+			b.setTunnelId( first.getTunnelId() );
+			b.setTunnelIndex( first.getTunnelIndex() );
+			b.addAllPackets( packets );
+			packet = Packer.pack( b );
+		}
+
+		final ChannelFuture future = ctx.write( packet );
+		final ChannelPromise[] notify = promises.toArray( new ChannelPromise[ promises.size() ] );
+		future.addListener( ( ChannelFutureListener ) f -> {
+			for ( ChannelPromise p : notify ) {
+				if ( f.isSuccess() ) {
+					p.trySuccess();
+				} else {
+					p.tryFailure( f.cause() );
+				}
+			}
+		} );
+
+		first = null;
+		bytes = 0;
+		packets.clear();
+		promises.clear();
+		if ( flushRequested ) {
+			flushRequested = false;
+			ctx.flush();
+		}
+	}
+
+}
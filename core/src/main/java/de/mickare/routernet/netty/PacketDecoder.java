@@ -0,0 +1,61 @@
+package de.mickare.routernet.netty;
+
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnsafeByteOperations;
+
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+/**
+ * Decodes frames to packets with a single copy of the frame.
+ *
+ * The frame is copied once into a private array, since packets are handled asynchronously and may outlive the
+ * pooled frame. The packet is parsed with aliasing, so bytes fields like tunnel data reference the array instead
+ * of being copied again. The frame is released right after the copy.
+ */
+@Sharable
+public class PacketDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+	public static final PacketDecoder INSTANCE = new PacketDecoder();
+
+	@Override
+	protected void decode( ChannelHandlerContext ctx, ByteBuf msg, List<Object> out ) throws Exception {
+		out.add( decode( msg ) );
+	}
+
+	/**
+	 * Decodes the readable bytes of a frame without changing its reader index.
+	 *
+	 * @param frame
+	 *            serialized packet
+	 * @return packet that does not reference the frame
+	 * @throws Exception
+	 *             if the frame is not a valid packet
+	 */
+	public static Packet decode( ByteBuf frame ) throws Exception {
+		return decode( ByteBufUtil.getBytes( frame ) );
+	}
+
+	/**
+	 * Decodes a serialized packet that references the array.
+	 *
+	 * @param array
+	 *            serialized packet, that must not be modified afterwards
+	 * @return packet
+	 * @throws Exception
+	 *             if the array is not a valid packet
+	 */
+	public static Packet decode( byte[] array ) throws Exception {
+		// The array is never modified, so it can be shared by the parsed byte strings
+		final CodedInputStream in = UnsafeByteOperations.unsafeWrap( array ).newCodedInput();
+		in.enableAliasing( true );
+		return Packet.parseFrom( in );
+	}
+
+}
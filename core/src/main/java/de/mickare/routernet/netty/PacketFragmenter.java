@@ -0,0 +1,139 @@
+package de.mickare.routernet.netty;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
+import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+/**
+ * Splits packets that are larger than the fragment size into {@link PacketFragment}s, so no frame exceeds the frame
+ * limit of the receiver.
+ *
+ * The packet is serialized once and the fragments reference slices of it. Already serialized {@link EncodedPacket}s are
+ * not copied, each fragment is written as a small header followed by a retained slice of the content. The routing fields of tunnel messages,
+ * tunnel batches and procedure messages are repeated in every fragment, so the router forwards the fragments as they
+ * arrive. Fragments of other packets are only reassembled by the peer. Fragments are never fragmented again.
+ */
+public class PacketFragmenter extends MessageToMessageEncoder<Object> {
+
+	// Tag of the length delimited fragment field, always the first byte of a serialized fragment packet
+	private static final int FRAGMENT_TAG = Packet.FRAGMENT_FIELD_NUMBER << 3 | 2;
+
+	private final int fragmentSize;
+	// Random start, so forwarded packets of the same sender are unlikely to reuse an id
+	private int nextId = ThreadLocalRandom.current().nextInt();
+
+	public PacketFragmenter() {
+		this( PipelineUtils.DEFAULT_FRAGMENT_SIZE );
+	}
+
+	/**
+	 * @param fragmentSize
+	 *            maximum size in bytes of the data of a fragment, larger packets are fragmented
+	 */
+	public PacketFragmenter( int fragmentSize ) {
+		Preconditions.checkArgument( fragmentSize > 0 );
+		this.fragmentSize = fragmentSize;
+	}
+
+	@Override
+	public boolean acceptOutboundMessage( Object msg ) throws Exception {
+		if ( msg instanceof Packet ) {
+			final Packet packet = ( Packet ) msg;
+			return packet.getValueCase() != Packet.ValueCase.FRAGMENT && packet.getSerializedSize() > fragmentSize;
+		} else if ( msg instanceof EncodedPacket ) {
+			final ByteBuf content = ( ( EncodedPacket ) msg ).content();
+			return content.readableBytes() > fragmentSize && content.getByte( content.readerIndex() ) != FRAGMENT_TAG;
+		}
+		return false;
+	}
+
+	@Override
+	protected void encode( ChannelHandlerContext ctx, Object msg, List<Object> out ) throws Exception {
+		if ( msg instanceof EncodedPacket ) {
+			encode( ( ( EncodedPacket ) msg ).content(), out );
+			return;
+		}
+		final Packet packet = ( Packet ) msg;
+		final byte[] data = packet.toByteArray();
+
+		final PacketFragment.Builder b = PacketFragment.newBuilder();
+		setRouting( b, packet );
+		b.setId( nextId++ );
+		b.setLength( data.length );
+		for ( int offset = 0; offset < data.length; offset += fragmentSize ) {
+			b.setOffset( offset );
+			// The array is never modified, so the fragments can share it
+			b.setData( UnsafeByteOperations.unsafeWrap( data, offset, Math.min( fragmentSize, data.length - offset ) ) );
+			out.add( Packer.pack( b ) );
+		}
+	}
+
+	private void encode( final ByteBuf content, final List<Object> out ) throws IOException {
+		final int length = content.readableBytes();
+		final PacketFragment.Builder b = PacketFragment.newBuilder();
+		final Packet header = PacketHeader.decode( content );
+		if ( header != null ) {
+			setRouting( b, header );
+		}
+		b.setId( nextId++ );
+		b.setLength( length );
+		for ( int offset = 0; offset < length; offset += fragmentSize ) {
+			final int size = Math.min( fragmentSize, length - offset );
+			final PacketFragment fields = b.setOffset( offset ).build();
+			// The data field is written last, so it directly precedes the slice
+			final int fragmentLength = fields.getSerializedSize() + CodedOutputStream.computeTagSize( PacketFragment.DATA_FIELD_NUMBER ) + CodedOutputStream.computeUInt32SizeNoTag( size ) + size;
+			final byte[] prefix = new byte[ CodedOutputStream.computeUInt32SizeNoTag( FRAGMENT_TAG ) + CodedOutputStream.computeUInt32SizeNoTag( fragmentLength ) + fragmentLength - size ];
+			final CodedOutputStream cos = CodedOutputStream.newInstance( prefix );
+			cos.writeUInt32NoTag( FRAGMENT_TAG );
+			cos.writeUInt32NoTag( fragmentLength );
+			fields.writeTo( cos );
+			cos.writeTag( PacketFragment.DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED );
+			cos.writeUInt32NoTag( size );
+			cos.checkNoSpaceLeft();
+			out.add( new EncodedPacket( Unpooled.wrappedBuffer( Unpooled.wrappedBuffer( prefix ), content.retainedSlice( content.readerIndex() + offset, size ) ) ) );
+		}
+	}
+
+	private static void setRouting( final PacketFragment.Builder b, final Packet packet ) {
+		switch ( packet.getValueCase() ) {
+			case TUNNELMESSAGE:
+				final TunnelMessage tmsg = packet.getTunnelMessage();
+				b.setTarget( tmsg.getTarget() ).setSender( tmsg.getSender() );
+				b.setTunnelId( tmsg.getTunnelId() ).setTunnelIndex( tmsg.getTunnelIndex() );
+				break;
+			case BATCH:
+				final PacketBatch batch = packet.getBatch();
+				if ( batch.hasTarget() ) {
+					b.setTarget( batch.getTarget() ).setSender( batch.getSender() );
+					b.setTunnelId( batch.getTunnelId() ).setTunnelIndex( batch.getTunnelIndex() );
+				}
+				break;
+			case PROCEDUREMESSAGE:
+				final ProcedureMessage pmsg = packet.getProcedureMessage();
+				if ( pmsg.hasTarget() ) {
+					b.setTarget( pmsg.getTarget() ).setSender( pmsg.getSender() );
+				}
+				break;
+			default:
+				// Only for the peer
+				break;
+		}
+	}
+
+}
@@ -0,0 +1,272 @@
+package de.mickare.routernet.netty;
+
+import java.io.IOException;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
+import de.mickare.routernet.protocol.TransportProtocol.ProcedureCallMessage;
+import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Reads only the routing header of a serialized packet.
+ *
+ * The payload fields of tunnel messages, procedure messages, tunnel batches and fragments are skipped and never
+ * copied, so a router can decide where to forward a packet without decoding it completely.
+ */
+public class PacketHeader {
+
+	private PacketHeader() {
+	}
+
+	private static interface Filter {
+		boolean skip( int field );
+
+		Filter nested( int field );
+	}
+
+	// Calls and responses use the same field numbers for their payload.
+	private static final Filter PROCEDURE_DATA = new Filter() {
+		@Override
+		public boolean skip( int field ) {
+			return field == ProcedureCallMessage.BYTES_FIELD_NUMBER || field == ProcedureCallMessage.OBJECT_FIELD_NUMBER;
+		}
+
+		@Override
+		public Filter nested( int field ) {
+			return null;
+		}
+	};
+
+	private static final Filter TUNNEL_MESSAGE = new Filter() {
+		@Override
+		public boolean skip( int field ) {
+			return field == TunnelMessage.DATA_FIELD_NUMBER;
+		}
+
+		@Override
+		public Filter nested( int field ) {
+			return null;
+		}
+	};
+
+	private static final Filter PACKET_BATCH = new Filter() {
+		@Override
+		public boolean skip( int field ) {
+			return field == PacketBatch.PACKETS_FIELD_NUMBER;
+		}
+
+		@Override
+		public Filter nested( int field ) {
+			return null;
+		}
+	};
+
+	private static final Filter PACKET_FRAGMENT = new Filter() {
+		@Override
+		public boolean skip( int field ) {
+			return field == PacketFragment.DATA_FIELD_NUMBER;
+		}
+
+		@Override
+		public Filter nested( int field ) {
+			return null;
+		}
+	};
+
+	private static final Filter PROCEDURE_MESSAGE = new Filter() {
+		@Override
+		public boolean skip( int field ) {
+			return false;
+		}
+
+		@Override
+		public Filter nested( int field ) {
+			if ( field == ProcedureMessage.CALL_FIELD_NUMBER || field == ProcedureMessage.RESPONSE_FIELD_NUMBER ) {
+				return PROCEDURE_DATA;
+			}
+			return null;
+		}
+	};
+
+	/**
+	 * Decodes the header of a serialized packet without moving the reader index of the frame.
+	 *
+	 * @param frame
+	 *            the serialized packet without the length prefix
+	 * @return the packet without payload data, or null if the packet is neither a tunnel message, a
+	 *         procedure message, a batch with target nor a fragment
+	 * @throws IOException
+	 *             if the frame is malformed
+	 */
+	public static Packet decode( final ByteBuf frame ) throws IOException {
+		final Reader in = new Reader( frame, frame.readerIndex(), frame.writerIndex() );
+		if ( !in.hasRemaining() ) {
+			return null;
+		}
+
+		final int tag = in.readTag();
+		if ( WireFormat.getTagWireType( tag ) != WireFormat.WIRETYPE_LENGTH_DELIMITED ) {
+			return null;
+		}
+		final int field = WireFormat.getTagFieldNumber( tag );
+		final Filter filter;
+		if ( field == Packet.TUNNELMESSAGE_FIELD_NUMBER ) {
+			filter = TUNNEL_MESSAGE;
+		} else if ( field == Packet.PROCEDUREMESSAGE_FIELD_NUMBER ) {
+			filter = PROCEDURE_MESSAGE;
+		} else if ( field == Packet.BATCH_FIELD_NUMBER ) {
+			filter = PACKET_BATCH;
+		} else if ( field == Packet.FRAGMENT_FIELD_NUMBER ) {
+			filter = PACKET_FRAGMENT;
+		} else {
+			return null;
+		}
+
+		final int length = in.readLength();
+		if ( in.index + length != in.end ) {
+			// Not a single message
+			return null;
+		}
+
+		final ByteBuf header = Unpooled.buffer( Math.min( length, 256 ) );
+		try {
+			copyFields( in, header, filter );
+			final CodedInputStream cin = CodedInputStream.newInstance( header.array(), header.arrayOffset() + header.readerIndex(), header.readableBytes() );
+			if ( field == Packet.TUNNELMESSAGE_FIELD_NUMBER ) {
+				return Packer.pack( TunnelMessage.parseFrom( cin ) );
+			} else if ( field == Packet.BATCH_FIELD_NUMBER ) {
+				final PacketBatch batch = PacketBatch.parseFrom( cin );
+				// Batches without target have to be unpacked
+				return batch.hasTarget() ? Packer.pack( batch ) : null;
+			} else if ( field == Packet.FRAGMENT_FIELD_NUMBER ) {
+				return Packer.pack( PacketFragment.parseFrom( cin ) );
+			} else {
+				return Packer.pack( ProcedureMessage.parseFrom( cin ) );
+			}
+		} finally {
+			header.release();
+		}
+	}
+
+	private static void copyFields( final Reader in, final ByteBuf out, final Filter filter ) throws IOException {
+		while ( in.hasRemaining() ) {
+			final int start = in.index;
+			final int tag = in.readTag();
+			final int field = WireFormat.getTagFieldNumber( tag );
+
+			if ( filter.skip( field ) ) {
+				in.skipField( tag );
+				continue;
+			}
+
+			final Filter nested = filter.nested( field );
+			if ( nested != null && WireFormat.getTagWireType( tag ) == WireFormat.WIRETYPE_LENGTH_DELIMITED ) {
+				final int length = in.readLength();
+				final ByteBuf sub = Unpooled.buffer( Math.min( length, 256 ) );
+				try {
+					copyFields( new Reader( in.buf, in.index, in.index + length ), sub, nested );
+					writeVarint32( out, tag );
+					writeVarint32( out, sub.readableBytes() );
+					out.writeBytes( sub );
+				} finally {
+					sub.release();
+				}
+				in.index += length;
+			} else {
+				in.skipField( tag );
+				out.writeBytes( in.buf, start, in.index - start );
+			}
+		}
+	}
+
+	private static void writeVarint32( final ByteBuf out, int value ) {
+		while ( ( value & ~0x7F ) != 0 ) {
+			out.writeByte( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		out.writeByte( value );
+	}
+
+	private static final class Reader {
+		private final ByteBuf buf;
+		private int index;
+		private final int end;
+
+		private Reader( final ByteBuf buf, final int index, final int end ) {
+			this.buf = buf;
+			this.index = index;
+			this.end = end;
+		}
+
+		private boolean hasRemaining() {
+			return index < end;
+		}
+
+		private long readVarint() throws InvalidProtocolBufferException {
+			long result = 0;
+			for ( int shift = 0; shift < 64; shift += 7 ) {
+				if ( index >= end ) {
+					throw new InvalidProtocolBufferException( "truncated message" );
+				}
+				final byte b = buf.getByte( index++ );
+				result |= ( long ) ( b & 0x7F ) << shift;
+				if ( ( b & 0x80 ) == 0 ) {
+					return result;
+				}
+			}
+			throw new InvalidProtocolBufferException( "malformed varint" );
+		}
+
+		private int readTag() throws InvalidProtocolBufferException {
+			final int tag = ( int ) readVarint();
+			if ( WireFormat.getTagFieldNumber( tag ) == 0 ) {
+				throw new InvalidProtocolBufferException( "invalid tag" );
+			}
+			return tag;
+		}
+
+		private int readLength() throws InvalidProtocolBufferException {
+			final long length = readVarint();
+			if ( length < 0 || length > end - index ) {
+				throw new InvalidProtocolBufferException( "truncated message" );
+			}
+			return ( int ) length;
+		}
+
+		private void skip( final int length ) throws InvalidProtocolBufferException {
+			if ( length > end - index ) {
+				throw new InvalidProtocolBufferException( "truncated message" );
+			}
+			index += length;
+		}
+
+		private void skipField( final int tag ) throws InvalidProtocolBufferException {
+			switch ( WireFormat.getTagWireType( tag ) ) {
+				case WireFormat.WIRETYPE_VARINT:
+					readVarint();
+					break;
+				case WireFormat.WIRETYPE_FIXED64:
+					skip( 8 );
+					break;
+				case WireFormat.WIRETYPE_FIXED32:
+					skip( 4 );
+					break;
+				case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+					skip( readLength() );
+					break;
+				default:
+					throw new InvalidProtocolBufferException( "invalid wire type" );
+			}
+		}
+	}
+
+}
@@ -2,12 +2,15 @@ package de.mickare.routernet.netty;
 
 import java.security.cert.CertificateException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.net.ssl.SSLException;
 
+import com.google.common.base.Preconditions;
+
 import de.mickare.routernet.core.AbstractNetwork;
-import de.mickare.routernet.protocol.TransportProtocol;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
 import de.mickare.routernet.util.ThrowableUtils;
 import de.mickare.routernet.util.function.CheckedConsumer;
 import io.netty.channel.Channel;
@@ -22,10 +25,7 @@ import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.handler.codec.protobuf.ProtobufDecoder;
-import io.netty.handler.codec.protobuf.ProtobufEncoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -72,29 +72,135 @@ public class PipelineUtils {
 	}
 	
 	public static <C extends Channel> ChannelInitializer<C> baseInitAnd( final CheckedConsumer<C> init ) {
+		return baseInitAnd( BASE_INITIALIZER, init );
+	}
+	
+	public static <C extends Channel> ChannelInitializer<C> baseInitAnd( final BaseInitializer base, final CheckedConsumer<C> init ) {
 		return new ChannelInitializer<C>() {
 			@Override
 			protected void initChannel( C ch ) throws Exception {
-				BASE_INITIALIZER.initChannel( ch );
+				base.initChannel( ch );
 				init.accept( ch );
 			}
 		};
 	}
 	
+	public static final String FLUSH_CONSOLIDATION = "flushConsolidation";
+	public static final int DEFAULT_FLUSH_CONSOLIDATION_LIMIT = 256;
+	public static final String PACKET_BATCHER = "packetBatcher";
+	/**
+	 * Batching trades latency for fewer frames, so it is disabled by default. A budget of 1000 microseconds suits
+	 * connections that send many small tunnel messages.
+	 */
+	public static final long DEFAULT_BATCH_LATENCY_MICROS = 0;
+	public static final int DEFAULT_BATCH_MAX_PACKETS = 64;
+	public static final int MAX_FRAME_LENGTH = 1048576;
+	public static final String PACKET_FRAGMENTER = "packetFragmenter";
+	/**
+	 * Larger packets are fragmented, leaves room for the fragment header below the frame limit.
+	 */
+	public static final int DEFAULT_FRAGMENT_SIZE = MAX_FRAME_LENGTH / 2;
+	/**
+	 * Batches are closed before they would need to be fragmented.
+	 */
+	public static final int DEFAULT_BATCH_MAX_BYTES = DEFAULT_FRAGMENT_SIZE;
+	public static final String COMPRESSION_DECODER = "compressionDecoder";
+	public static final String COMPRESSION_ENCODER = "compressionEncoder";
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+	
+	/**
+	 * Compresses all following frames of the channel. Must be called in the event loop of the channel, after the
+	 * last uncompressed frame was written and before the first compressed frame is read.
+	 * 
+	 * @param ch
+	 *            channel with base pipeline
+	 * @param compression
+	 *            negotiated codec
+	 * @param threshold
+	 *            minimum size in bytes of a frame to be compressed
+	 */
+	public static void enableCompression( Channel ch, Compression compression, int threshold ) {
+		Preconditions.checkArgument( ch.eventLoop().inEventLoop() );
+		switch ( compression ) {
+			case NONE:
+				return;
+			case DEFLATE:
+				final ChannelPipeline p = ch.pipeline();
+				p.addAfter( "frameDecoder", COMPRESSION_DECODER, new CompressionDecoder( MAX_FRAME_LENGTH ) );
+				p.addAfter( "frameEncoder", COMPRESSION_ENCODER, new CompressionEncoder( threshold ) );
+				return;
+			default:
+				throw new IllegalArgumentException( "unsupported compression " + compression );
+		}
+	}
+	
+	/**
+	 * Switches all following frames of the channel to varint length prefixes. Must be called in the event loop of
+	 * the channel, after the last frame with the old prefix was written and before the first frame with the new
+	 * prefix is read.
+	 * 
+	 * @param ch
+	 *            channel with base pipeline
+	 */
+	public static void enableVarintFraming( Channel ch ) {
+		Preconditions.checkArgument( ch.eventLoop().inEventLoop() );
+		final ChannelPipeline p = ch.pipeline();
+		p.get( FrameDecoder.class ).setVarint( true );
+		p.get( FrameEncoder.class ).setVarint( true );
+	}
+	
 	public static final BaseInitializer BASE_INITIALIZER = new BaseInitializer();
 	
 	public static class BaseInitializer extends ChannelInitializer<Channel> {
 		
+		private final int flushConsolidationLimit;
+		private final boolean consolidateWithoutRead;
+		private final long batchLatencyMicros;
+		private final int batchMaxPackets;
+		
+		public BaseInitializer() {
+			this( DEFAULT_FLUSH_CONSOLIDATION_LIMIT, false, DEFAULT_BATCH_LATENCY_MICROS, DEFAULT_BATCH_MAX_PACKETS );
+		}
+		
+		/**
+		 * @param flushConsolidationLimit
+		 *            maximum number of flushes that are merged into one, 0 disables flush consolidation
+		 * @param consolidateWithoutRead
+		 *            merge flushes outside of a read cycle into one flush on the next event loop iteration
+		 * @param batchLatencyMicros
+		 *            budget in microseconds a tunnel message can be held back for batching, 0 disables batching
+		 * @param batchMaxPackets
+		 *            maximum number of packets in a batch
+		 */
+		public BaseInitializer( int flushConsolidationLimit, boolean consolidateWithoutRead, long batchLatencyMicros, int batchMaxPackets ) {
+			Preconditions.checkArgument( flushConsolidationLimit >= 0 );
+			Preconditions.checkArgument( batchLatencyMicros >= 0 );
+			Preconditions.checkArgument( batchLatencyMicros == 0 || batchMaxPackets > 1 );
+			this.flushConsolidationLimit = flushConsolidationLimit;
+			this.consolidateWithoutRead = consolidateWithoutRead;
+			this.batchLatencyMicros = batchLatencyMicros;
+			this.batchMaxPackets = batchMaxPackets;
+		}
+		
 		@Override
 		public void initChannel( Channel ch ) throws Exception {
 			ChannelPipeline p = ch.pipeline();
 			
-			p.addLast( "frameDecoder", new LengthFieldBasedFrameDecoder( 1048576, 0, 4, 0, 4 ) );
-			p.addLast( "frameEncoder", new LengthFieldPrepender( 4 ) );
-			// pipeline.addLast("compressionDecoder", new FastLzFrameDecoder(true));
-			// pipeline.addLast("compressionEncoder", new FastLzFrameEncoder(true));
-			p.addLast( "protoDecoder", new ProtobufDecoder( TransportProtocol.Packet.getDefaultInstance() ) );
-			p.addLast( "protoEncoder", new ProtobufEncoder() );
+			if ( flushConsolidationLimit > 0 ) {
+				// First handler, so that it sees every flush of the pipeline
+				p.addFirst( FLUSH_CONSOLIDATION, new FlushConsolidationHandler( flushConsolidationLimit, consolidateWithoutRead ) );
+			}
+			p.addLast( "frameDecoder", new FrameDecoder( MAX_FRAME_LENGTH ) );
+			// Serializes and frames packets in one pass
+			p.addLast( "frameEncoder", new FrameEncoder() );
+			// Compression is negotiated on login, see enableCompression
+			p.addLast( "protoDecoder", PacketDecoder.INSTANCE );
+			p.addLast( "encodedPacketEncoder", EncodedPacketEncoder.INSTANCE );
+			// Fragments batches too, so it is in front of the batcher
+			p.addLast( PACKET_FRAGMENTER, new PacketFragmenter() );
+			if ( batchLatencyMicros > 0 ) {
+				p.addLast( PACKET_BATCHER, new PacketBatcher( batchLatencyMicros, TimeUnit.MICROSECONDS, batchMaxPackets ) );
+			}
 		}
 		
 	}
@@ -0,0 +1,219 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.core.codec.Codec;
+import de.mickare.routernet.core.codec.Codecs;
+import de.mickare.routernet.core.codec.FstCodec;
+import de.mickare.routernet.core.codec.Schema;
+import de.mickare.routernet.core.codec.SchemaCodec;
+import de.mickare.routernet.core.tunnel.object.ObjectConverter;
+import de.mickare.routernet.core.tunnel.object.ObjectConverters;
+import de.mickare.routernet.protocol.TransportProtocol.FileMessage;
+import lombok.EqualsAndHashCode;
+
+public class CodecTest {
+	
+	public static @EqualsAndHashCode class Point implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int x, y;
+		
+		public Point( int x, int y ) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+	
+	public enum Rank {
+		GUEST, MEMBER, ADMIN
+	}
+	
+	public static @Schema class Base implements Serializable {
+		private static final long serialVersionUID = 1L;
+		protected long id;
+	}
+	
+	public static @Schema @EqualsAndHashCode( callSuper = false ) class Player extends Base {
+		private final String name;
+		private int level;
+		private double x, y, z;
+		private boolean online;
+		private char prefix;
+		private Rank rank;
+		private UUID uuid;
+		private Integer score;
+		private Player friend;
+		private ArrayList<String> tags;
+		private transient int cached;
+		
+		private Player() {
+			this.name = null;
+		}
+		
+		public Player( String name ) {
+			this.name = name;
+		}
+	}
+	
+	public static @Schema class NoConstructor {
+		public NoConstructor( int x ) {
+		}
+	}
+	
+	private static <T> T roundTrip( Codec codec, Class<T> dataClass, T obj ) throws Exception {
+		final ByteString data = codec.encode( dataClass, obj );
+		return codec.decode( dataClass, data );
+	}
+	
+	@Test
+	public void testJdk() throws Exception {
+		final ArrayList<String> list = new ArrayList<>( Arrays.asList( "a", "b", "c" ) );
+		assertEquals( list, roundTrip( Codecs.JDK, ArrayList.class, list ) );
+		assertFalse( Codecs.JDK.supports( Object.class ) );
+	}
+	
+	@Test
+	public void testCompact() throws Exception {
+		final ArrayList<String> list = new ArrayList<>( Arrays.asList( "a", "b", "c" ) );
+		assertEquals( list, roundTrip( Codecs.COMPACT, ArrayList.class, list ) );
+		assertEquals( new Point( 1, 2 ), roundTrip( Codecs.COMPACT, Point.class, new Point( 1, 2 ) ) );
+		assertTrue( Codecs.COMPACT.encode( ArrayList.class, list ).size() < Codecs.JDK.encode( ArrayList.class, list ).size() );
+		assertNotEquals( Codecs.JDK.getId(), Codecs.COMPACT.getId() );
+		assertSame( Codecs.COMPACT, Codecs.get( Codecs.COMPACT.getId() ) );
+	}
+	
+	@Test
+	public void testFst() throws Exception {
+		final ArrayList<String> list = new ArrayList<>( Arrays.asList( "a", "b", "c" ) );
+		assertEquals( list, roundTrip( Codecs.FST, ArrayList.class, list ) );
+		
+		// Registered classes are written as ids
+		final ArrayList<Point> points = new ArrayList<>( Arrays.asList( new Point( 1, 2 ), new Point( 3, 4 ) ) );
+		final FstCodec registered = new FstCodec( 100, Point.class );
+		assertEquals( points, roundTrip( registered, ArrayList.class, points ) );
+		assertTrue( registered.encode( ArrayList.class, points ).size() < Codecs.FST.encode( ArrayList.class, points ).size() );
+	}
+	
+	@Test
+	public void testProtobuf() throws Exception {
+		final FileMessage msg = FileMessage.newBuilder().setName( "test" ).setLength( 42 ).build();
+		assertTrue( Codecs.PROTOBUF.supports( FileMessage.class ) );
+		assertFalse( Codecs.PROTOBUF.supports( String.class ) );
+		assertEquals( msg.toByteString(), Codecs.PROTOBUF.encode( FileMessage.class, msg ) );
+		assertEquals( msg, roundTrip( Codecs.PROTOBUF, FileMessage.class, msg ) );
+	}
+	
+	@Test
+	public void testRegistry() throws Exception {
+		assertSame( Codecs.JDK, Codecs.get( Codecs.JDK.getId() ) );
+		assertSame( Codecs.PROTOBUF, Codecs.get( Codecs.PROTOBUF.getId() ) );
+		
+		final FstCodec codec = new FstCodec( 101 );
+		Codecs.register( codec );
+		Codecs.register( codec );
+		assertSame( codec, Codecs.get( 101 ) );
+	}
+	
+	@Test( expected = IllegalStateException.class )
+	public void testRegistryConflict() throws Exception {
+		Codecs.register( new FstCodec( Codecs.FST.getId() ) );
+	}
+	
+	@Test
+	public void testSchema() throws Exception {
+		final Player player = new Player( "mickare" );
+		player.id = 7;
+		player.level = -3;
+		player.x = 1.5;
+		player.online = true;
+		player.prefix = '#';
+		player.rank = Rank.ADMIN;
+		player.uuid = UUID.randomUUID();
+		player.friend = new Player( "friend" );
+		player.tags = new ArrayList<>( Arrays.asList( "a", "b" ) );
+		player.cached = 42;
+		
+		final Player result = roundTrip( Codecs.SCHEMA, Player.class, player );
+		assertEquals( player, result );
+		assertEquals( 7, result.id );
+		assertEquals( 0, result.cached );
+		assertNull( result.score );
+		assertNull( result.friend.friend );
+		assertTrue( Codecs.SCHEMA.encode( Player.class, player ).size() * 4 < Codecs.JDK.encode( Player.class, player ).size() );
+		
+		// Other classes use java serialization
+		assertEquals( "text", roundTrip( Codecs.SCHEMA, String.class, "text" ) );
+	}
+	
+	@Test( expected = StreamCorruptedException.class )
+	public void testSchemaTrailingBytes() throws Exception {
+		final ByteString data = Codecs.SCHEMA.encode( Player.class, new Player( "mickare" ) );
+		Codecs.SCHEMA.decode( Player.class, data.concat( ByteString.copyFrom( new byte[] { 0 } ) ) );
+	}
+	
+	@Test
+	public void testSchemaDepth() throws Exception {
+		Player player = new Player( "0" );
+		for ( int i = 1; i < SchemaCodec.MAX_DEPTH; ++i ) {
+			final Player p = new Player( Integer.toString( i ) );
+			p.friend = player;
+			player = p;
+		}
+		assertEquals( player, roundTrip( Codecs.SCHEMA, Player.class, player ) );
+		
+		final Player deeper = new Player( "deeper" );
+		deeper.friend = player;
+		try {
+			Codecs.SCHEMA.encode( Player.class, deeper );
+			fail();
+		} catch ( InvalidObjectException e ) {
+		}
+		
+		final Player self = new Player( "self" );
+		self.friend = self;
+		try {
+			Codecs.SCHEMA.encode( Player.class, self );
+			fail();
+		} catch ( InvalidObjectException e ) {
+		}
+	}
+	
+	@Test
+	public void testSchemaHash() throws Exception {
+		assertNotEquals( 0, Codecs.SCHEMA.getSchemaHash( Player.class ) );
+		assertNotEquals( Codecs.SCHEMA.getSchemaHash( Base.class ), Codecs.SCHEMA.getSchemaHash( Player.class ) );
+		assertEquals( Codecs.SCHEMA.getSchemaHash( Player.class ), Codecs.SCHEMA.getSchemaHash( Player.class ) );
+		assertEquals( 0, Codecs.SCHEMA.getSchemaHash( String.class ) );
+		assertEquals( 0, Codecs.JDK.getSchemaHash( Player.class ) );
+	}
+	
+	@Test
+	public void testSchemaDefault() throws Exception {
+		assertSame( Codecs.SCHEMA, Codecs.getDefault( Player.class ) );
+		assertSame( Codecs.SCHEMA, Codecs.getDefault( String.class, Player.class ) );
+		assertSame( Codecs.JDK, Codecs.getDefault( String.class ) );
+		assertFalse( Codecs.SCHEMA.supports( NoConstructor.class ) );
+		
+		final ObjectConverter<Player> converter = ObjectConverters.of( Player.class );
+		final Player player = new Player( "converted" );
+		assertEquals( player, converter.asObject( converter.asByteString( player ) ) );
+	}
+	
+}
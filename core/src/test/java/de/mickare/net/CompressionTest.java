@@ -0,0 +1,89 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.mickare.routernet.netty.CompressionDecoder;
+import de.mickare.routernet.netty.CompressionEncoder;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class CompressionTest {
+
+	private static byte[] compressible( int length ) {
+		final byte[] data = new byte[ length ];
+		for ( int i = 0; i < length; ++i ) {
+			data[i] = ( byte ) ( i % 16 );
+		}
+		return data;
+	}
+
+	private static byte[] random( int length ) {
+		final byte[] data = new byte[ length ];
+		new Random( 42 ).nextBytes( data );
+		return data;
+	}
+
+	private static void roundTrip( EmbeddedChannel encoder, EmbeddedChannel decoder, byte[] data, Compression expected ) {
+		encoder.writeOutbound( Unpooled.wrappedBuffer( data ) );
+		final ByteBuf frame = encoder.readOutbound();
+		assertEquals( expected.getNumber(), frame.getUnsignedByte( frame.readerIndex() ) );
+		if ( expected == Compression.DEFLATE ) {
+			assertTrue( frame.readableBytes() < data.length );
+		}
+
+		decoder.writeInbound( frame );
+		final ByteBuf result = decoder.readInbound();
+		try {
+			assertArrayEquals( data, ByteBufUtil.getBytes( result ) );
+		} finally {
+			result.release();
+		}
+	}
+
+	@Test
+	public void testCompression() {
+		final EmbeddedChannel encoder = new EmbeddedChannel( new CompressionEncoder( 64 ) );
+		final EmbeddedChannel decoder = new EmbeddedChannel( new CompressionDecoder( 1048576 ) );
+
+		roundTrip( encoder, decoder, compressible( 10000 ), Compression.DEFLATE );
+		// Below threshold
+		roundTrip( encoder, decoder, compressible( 63 ), Compression.NONE );
+		roundTrip( encoder, decoder, new byte[ 0 ], Compression.NONE );
+
+		assertTrue( !encoder.finish() );
+		assertTrue( !decoder.finish() );
+	}
+
+	@Test
+	public void testIncompressible() {
+		final EmbeddedChannel encoder = new EmbeddedChannel( new CompressionEncoder( 64 ) );
+		final EmbeddedChannel decoder = new EmbeddedChannel( new CompressionDecoder( 1048576 ) );
+
+		roundTrip( encoder, decoder, random( 1000 ), Compression.NONE );
+		// Skipped once after an incompressible frame
+		roundTrip( encoder, decoder, compressible( 1000 ), Compression.NONE );
+		roundTrip( encoder, decoder, compressible( 1000 ), Compression.DEFLATE );
+
+		encoder.finishAndReleaseAll();
+		decoder.finishAndReleaseAll();
+	}
+
+	@Test( expected = Exception.class )
+	public void testTooLong() {
+		final EmbeddedChannel encoder = new EmbeddedChannel( new CompressionEncoder( 64 ) );
+		final EmbeddedChannel decoder = new EmbeddedChannel( new CompressionDecoder( 1000 ) );
+
+		encoder.writeOutbound( Unpooled.wrappedBuffer( compressible( 10000 ) ) );
+		decoder.writeInbound( encoder.readOutbound() );
+	}
+
+}
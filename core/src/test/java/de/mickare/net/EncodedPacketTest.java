@@ -0,0 +1,59 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class EncodedPacketTest {
+
+	private static EmbeddedChannel newChannel() {
+		return new EmbeddedChannel( PipelineUtils.BASE_INITIALIZER );
+	}
+
+	private static Packet transfer( EmbeddedChannel out, EmbeddedChannel in ) {
+		ByteBuf buf;
+		while ( ( buf = out.readOutbound() ) != null ) {
+			in.writeInbound( buf );
+		}
+		return in.readInbound();
+	}
+
+	@Test
+	public void testFanOut() {
+
+		final Packet packet = Packer.pack( TunnelMessage.newBuilder().setTunnelId( 42 )//
+				.setTarget( Target.toAll().getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.setData( ByteString.copyFromUtf8( "Hello World!" ) ) );
+
+		final EmbeddedChannel out1 = newChannel();
+		final EmbeddedChannel out2 = newChannel();
+
+		final EncodedPacket encoded = EncodedPacket.encode( packet );
+		assertEquals( packet.getSerializedSize(), encoded.content().readableBytes() );
+		out1.writeAndFlush( encoded.retainedDuplicate() );
+		out2.writeAndFlush( encoded.retainedDuplicate() );
+		assertFalse( encoded.release() );
+
+		assertEquals( packet, transfer( out1, newChannel() ) );
+		assertEquals( packet, transfer( out2, newChannel() ) );
+		assertEquals( 0, encoded.refCnt() );
+
+	}
+
+}
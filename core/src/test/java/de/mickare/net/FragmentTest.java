@@ -0,0 +1,234 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.FragmentAssembler;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.netty.FrameDecoder;
+import de.mickare.routernet.netty.FrameEncoder;
+import de.mickare.routernet.netty.PacketDecoder;
+import de.mickare.routernet.netty.PacketFragmenter;
+import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class FragmentTest {
+
+	private static final UUID SENDER = new UUID( 1, 2 );
+	private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+	@AfterClass
+	public static void tearDown() {
+		executor.shutdown();
+	}
+
+	private static Packet newPacket( int size ) {
+		final byte[] data = new byte[ size ];
+		new Random( size ).nextBytes( data );
+		return Packer.pack( TunnelMessage.newBuilder().setTunnelId( 7 ).setTunnelIndex( 3 )//
+				.setTarget( Target.to( new UUID( 3, 4 ) ).getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( SENDER ) )//
+				.setData( ByteString.copyFrom( data ) ) );
+	}
+
+	private static FragmentAssembler newAssembler() {
+		return new FragmentAssembler( () -> Logger.getLogger( FragmentTest.class.getName() ), executor );
+	}
+
+	private static List<PacketFragment> fragment( Object msg, int fragmentSize ) throws Exception {
+		final EmbeddedChannel ch = new EmbeddedChannel( new PacketFragmenter( fragmentSize ) );
+		ch.writeOutbound( msg );
+		final List<PacketFragment> result = new ArrayList<>();
+		Object packet;
+		while ( ( packet = ch.readOutbound() ) != null ) {
+			if ( packet instanceof EncodedPacket ) {
+				// Encoded packets are fragmented without copying them
+				final EncodedPacket encoded = ( EncodedPacket ) packet;
+				result.add( PacketDecoder.decode( ByteBufUtil.getBytes( encoded.content() ) ).getFragment() );
+				encoded.release();
+			} else {
+				result.add( ( ( Packet ) packet ).getFragment() );
+			}
+		}
+		ch.finish();
+		return result;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final EmbeddedChannel out = new EmbeddedChannel( new FrameEncoder(), new PacketFragmenter() );
+		final EmbeddedChannel in = new EmbeddedChannel( new FrameDecoder( PipelineUtils.MAX_FRAME_LENGTH ), PacketDecoder.INSTANCE );
+
+		// Several times the frame limit
+		final Packet large = newPacket( 5 * PipelineUtils.MAX_FRAME_LENGTH );
+		final Packet small = newPacket( 10 );
+		out.writeOutbound( large );
+		out.writeOutbound( small );
+		ByteBuf buf;
+		while ( ( buf = out.readOutbound() ) != null ) {
+			in.writeInbound( buf );
+		}
+
+		final FragmentAssembler assembler = newAssembler();
+		Packet packet;
+		Packet result = null;
+		int fragments = 0;
+		while ( ( packet = in.readInbound() ) != null && packet.getValueCase() == Packet.ValueCase.FRAGMENT ) {
+			final PacketFragment fragment = packet.getFragment();
+			// Routable without reassembly
+			assertEquals( large.getTunnelMessage().getTarget(), fragment.getTarget() );
+			assertEquals( 7, fragment.getTunnelId() );
+			assertEquals( 3, fragment.getTunnelIndex() );
+			assertNull( result );
+			result = assembler.add( ProtocolUtils.convert( fragment.getSender() ), fragment );
+			++fragments;
+		}
+		assertTrue( fragments > 5 );
+		assertEquals( large, result );
+		assertEquals( small, packet );
+		assertEquals( 0, assembler.size() );
+		assertEquals( 0, assembler.getMemory() );
+		out.finish();
+		in.finish();
+	}
+
+	@Test
+	public void testEncodedPacket() throws Exception {
+		final Packet large = newPacket( 3000 );
+		final List<PacketFragment> fragments = fragment( EncodedPacket.encode( large ), 1000 );
+		assertEquals( 4, fragments.size() );
+		assertEquals( large.getTunnelMessage().getTarget(), fragments.get( 0 ).getTarget() );
+
+		// Fragments reference the content instead of copying it
+		final EncodedPacket source = EncodedPacket.encode( large );
+		final EmbeddedChannel sliced = new EmbeddedChannel( new PacketFragmenter( 1000 ) );
+		sliced.writeOutbound( source );
+		assertEquals( 4, source.refCnt() );
+		EncodedPacket slice;
+		while ( ( slice = sliced.readOutbound() ) != null ) {
+			slice.release();
+		}
+		assertEquals( 0, source.refCnt() );
+
+		// Forwarded fragments are not fragmented again
+		final EncodedPacket encoded = EncodedPacket.encode( Packer.pack( fragments.get( 0 ) ) );
+		final EmbeddedChannel ch = new EmbeddedChannel( new PacketFragmenter( 1000 ) );
+		ch.writeOutbound( encoded );
+		assertSame( encoded, ch.readOutbound() );
+		encoded.release();
+
+		final FragmentAssembler assembler = newAssembler();
+		Packet result = null;
+		for ( PacketFragment fragment : fragments ) {
+			result = assembler.add( SENDER, fragment );
+		}
+		assertEquals( large, result );
+	}
+
+	@Test
+	public void testInterleaved() throws Exception {
+		final Packet a = newPacket( 3000 );
+		final Packet b = newPacket( 3500 );
+		final List<PacketFragment> fa = fragment( a, 1000 );
+		final List<PacketFragment> fb = fragment( b, 1000 );
+
+		final FragmentAssembler assembler = newAssembler();
+		final UUID other = new UUID( 5, 6 );
+		for ( int i = 0; i < fa.size() - 1; ++i ) {
+			assertNull( assembler.add( SENDER, fa.get( i ) ) );
+			assertNull( assembler.add( other, fb.get( i ) ) );
+		}
+		assertEquals( 2, assembler.size() );
+		assertEquals( a, assembler.add( SENDER, fa.get( fa.size() - 1 ) ) );
+		assertEquals( b, assembler.add( other, fb.get( fb.size() - 1 ) ) );
+	}
+
+	@Test
+	public void testMemoryLimit() throws Exception {
+		final List<PacketFragment> fragments = fragment( newPacket( 3000 ), 1000 );
+		final FragmentAssembler assembler = newAssembler();
+		assembler.setMemoryLimit( 2000 );
+		for ( PacketFragment fragment : fragments ) {
+			assertNull( assembler.add( SENDER, fragment ) );
+		}
+		assertEquals( 0, assembler.size() );
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		final List<PacketFragment> fragments = fragment( newPacket( 3000 ), 1000 );
+		final FragmentAssembler assembler = newAssembler();
+		assembler.setTimeout( 1, TimeUnit.MILLISECONDS );
+		assertNull( assembler.add( SENDER, fragments.get( 0 ) ) );
+		assertEquals( 1, assembler.size() );
+		Thread.sleep( 10 );
+		assertNull( assembler.add( SENDER, fragments.get( 1 ) ) );
+		assertEquals( 0, assembler.size() );
+		assertEquals( 0, assembler.getMemory() );
+	}
+
+	@Test
+	public void testTimeoutWithoutFragments() throws Exception {
+		final List<PacketFragment> fragments = fragment( newPacket( 3000 ), 1000 );
+		final FragmentAssembler assembler = newAssembler();
+		assembler.setTimeout( 1, TimeUnit.MILLISECONDS );
+		assertNull( assembler.add( SENDER, fragments.get( 0 ) ) );
+		// Dropped without another fragment
+		for ( int i = 0; i < 20 && assembler.size() > 0; ++i ) {
+			Thread.sleep( 10 );
+		}
+		assertEquals( 0, assembler.size() );
+		assertEquals( 0, assembler.getMemory() );
+	}
+
+	@Test
+	public void testSenderMemoryLimit() throws Exception {
+		final Packet a = newPacket( 3000 );
+		final Packet b = newPacket( 3500 );
+		final List<PacketFragment> fa = fragment( a, 1000 );
+		final List<PacketFragment> fb = fragment( b, 1000 );
+		final FragmentAssembler assembler = newAssembler();
+		assembler.setSenderMemoryLimit( fa.get( 0 ).getLength() + 100 );
+
+		assertNull( assembler.add( SENDER, fa.get( 0 ) ) );
+		// The sender has no memory left, other senders do
+		assertNull( assembler.add( SENDER, fb.get( 0 ) ) );
+		assertEquals( 1, assembler.size() );
+		final UUID other = new UUID( 5, 6 );
+		assertNull( assembler.add( other, fa.get( 0 ) ) );
+		assertEquals( 2, assembler.size() );
+
+		for ( int i = 1; i < fa.size(); ++i ) {
+			assertEquals( i < fa.size() - 1 ? null : a, assembler.add( SENDER, fa.get( i ) ) );
+		}
+		assertEquals( 1, assembler.size() );
+		// Memory of the sender is free again
+		assertNull( assembler.add( SENDER, fa.get( 0 ).toBuilder().setId( fa.get( 0 ).getId() + 1 ).build() ) );
+		assertEquals( 2, assembler.size() );
+	}
+
+}
@@ -0,0 +1,134 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.netty.FrameDecoder;
+import de.mickare.routernet.netty.FrameEncoder;
+import de.mickare.routernet.netty.PacketDecoder;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+
+public class FrameCodecTest {
+
+	private static Packet newPacket( int size ) {
+		return Packer.pack( TunnelMessage.newBuilder().setTunnelId( 7 )//
+				.setTarget( Target.toAll().getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.setData( ByteString.copyFrom( new byte[ size ] ) ) );
+	}
+
+	private static ByteBuf readAll( EmbeddedChannel ch ) {
+		final ByteBuf result = Unpooled.buffer();
+		ByteBuf buf;
+		while ( ( buf = ch.readOutbound() ) != null ) {
+			result.writeBytes( buf );
+			buf.release();
+		}
+		return result;
+	}
+
+	private static void testRoundTrip( boolean varint ) throws Exception {
+		final FrameEncoder encoder = new FrameEncoder( varint );
+		final FrameDecoder decoder = new FrameDecoder( 1048576 );
+		decoder.setVarint( varint );
+		final EmbeddedChannel out = new EmbeddedChannel( encoder );
+		final EmbeddedChannel in = new EmbeddedChannel( decoder, PacketDecoder.INSTANCE );
+
+		final Packet small = newPacket( 10 );
+		final Packet large = newPacket( 100000 );
+		out.writeOutbound( small );
+		out.writeOutbound( large );
+		final EncodedPacket encoded = EncodedPacket.encode( small );
+		out.writeOutbound( encoded.content() );
+		final ByteBuf stream = readAll( out );
+		assertEquals( 0, encoded.refCnt() );
+
+		// Deliver in small pieces
+		while ( stream.isReadable() ) {
+			in.writeInbound( stream.readRetainedSlice( Math.min( 1000, stream.readableBytes() ) ) );
+		}
+		stream.release();
+
+		assertEquals( small, in.readInbound() );
+		assertEquals( large, in.readInbound() );
+		assertEquals( small, in.readInbound() );
+		assertNull( in.readInbound() );
+		out.finish();
+		in.finish();
+	}
+
+	@Test
+	public void testFixed() throws Exception {
+		testRoundTrip( false );
+	}
+
+	@Test
+	public void testVarint() throws Exception {
+		testRoundTrip( true );
+	}
+
+	@Test
+	public void testVarintIsSmaller() throws Exception {
+		final Packet packet = newPacket( 10 );
+		final EmbeddedChannel fixed = new EmbeddedChannel( new FrameEncoder( false ) );
+		final EmbeddedChannel varint = new EmbeddedChannel( new FrameEncoder( true ) );
+		fixed.writeOutbound( packet );
+		varint.writeOutbound( packet );
+		final ByteBuf a = readAll( fixed );
+		final ByteBuf b = readAll( varint );
+		assertEquals( packet.getSerializedSize() + 4, a.readableBytes() );
+		assertEquals( packet.getSerializedSize() + 1, b.readableBytes() );
+	}
+
+	@Test
+	public void testSwitch() throws Exception {
+		final FrameDecoder decoder = new FrameDecoder( 1048576 );
+		final EmbeddedChannel in = new EmbeddedChannel( decoder, PacketDecoder.INSTANCE );
+
+		final EmbeddedChannel out = new EmbeddedChannel( new FrameEncoder( false ) );
+		out.writeOutbound( newPacket( 1 ) );
+		final ByteBuf stream = readAll( out );
+		out.pipeline().get( FrameEncoder.class ).setVarint( true );
+		out.writeOutbound( newPacket( 2 ) );
+		stream.writeBytes( readAll( out ) );
+
+		// Both frames in one read, the decoder switches after the first one
+		in.pipeline().addLast( new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelRead( ChannelHandlerContext ctx, Object msg ) throws Exception {
+				decoder.setVarint( true );
+				ctx.fireChannelRead( msg );
+			}
+		} );
+		in.writeInbound( stream );
+		assertEquals( newPacket( 1 ), in.readInbound() );
+		assertEquals( newPacket( 2 ), in.readInbound() );
+	}
+
+	@Test( expected = TooLongFrameException.class )
+	public void testTooLong() throws Exception {
+		final EmbeddedChannel out = new EmbeddedChannel( new FrameEncoder( true ) );
+		final EmbeddedChannel in = new EmbeddedChannel( new FrameDecoder( 1000 ) );
+		in.pipeline().get( FrameDecoder.class ).setVarint( true );
+		out.writeOutbound( newPacket( 2000 ) );
+		in.writeInbound( readAll( out ) );
+	}
+
+}
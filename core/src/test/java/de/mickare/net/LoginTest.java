@@ -2,6 +2,7 @@ package de.mickare.net;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.logging.Logger;
@@ -22,6 +23,7 @@ import de.mickare.routernet.exception.HandshakeException;
 import de.mickare.routernet.netty.LocalConnectClient;
 import de.mickare.routernet.netty.LoginHandler;
 import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
 import de.mickare.routernet.util.FutureUtils;
 import de.mickare.routernet.util.SimpleOwner;
 import io.netty.channel.DefaultEventLoopGroup;
@@ -91,6 +93,12 @@ public class LoginTest {
 			assertEquals( net_client.getHome().getId(), routerEngine.getLoginId() );
 			assertEquals( net_router.getHome().getId(), clientEngine.getLoginId() );
 			
+			// Compression and framing negotiated
+			assertEquals( Compression.DEFLATE, clientEngine.getFinalMessage().getCompression() );
+			assertTrue( clientEngine.getFinalMessage().getVarintFraming() );
+			assertNotNull( clientEngine.getChannel().getChannel().pipeline().get( PipelineUtils.COMPRESSION_ENCODER ) );
+			assertNotNull( routerEngine.getChannel().getChannel().pipeline().get( PipelineUtils.COMPRESSION_DECODER ) );
+			
 		} finally {
 			con.close();
 		}
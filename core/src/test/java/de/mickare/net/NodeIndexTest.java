@@ -0,0 +1,159 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Node;
+import de.mickare.routernet.dummy.DummClientNetwork;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+
+public class NodeIndexTest {
+	
+	EventLoopGroup group;
+	DummClientNetwork network;
+	
+	@Before
+	public void setup() {
+		group = new DefaultEventLoopGroup();
+		network = new DummClientNetwork( group, new UUID( 0, 1 ) );
+	}
+	
+	@After
+	public void tearDown() {
+		group.shutdownGracefully();
+	}
+	
+	private Node update( int id, long timestamp, NodeMessage.Type type, String name, String... namespaces ) {
+		return network.updateNode( null, node( id, timestamp, type, name, namespaces ) );
+	}
+	
+	private static NodeMessage node( int id, long timestamp, NodeMessage.Type type, String name, String... namespaces ) {
+		NodeMessage.Builder b = NodeMessage.newBuilder();
+		b.setId( ProtocolUtils.convert( new UUID( 1, id ) ) );
+		b.setStartTimestamp( timestamp );
+		b.setType( type );
+		b.setName( name );
+		for ( String namespace : namespaces ) {
+			b.addNamespaces( namespace );
+		}
+		return b.build();
+	}
+	
+	@Test
+	public void testIndex() {
+		
+		Node a = update( 1, 1, NodeMessage.Type.BUKKIT, "a", "lobby", "game" );
+		Node b = update( 2, 1, NodeMessage.Type.BUNGEECORD, "b", "lobby" );
+		
+		assertSame( a, network.getNode( "A" ) );
+		assertSame( b, network.getNode( "b" ) );
+		assertEquals( ImmutableSet.of( a, b ), network.getNodesOfNamespace( "lobby" ) );
+		assertEquals( ImmutableSet.of( a ), network.getNodesOfNamespace( "game" ) );
+		assertEquals( ImmutableSet.of( a, network.getHome() ), network.getNodes( NodeMessage.Type.BUKKIT ) );
+		assertEquals( ImmutableSet.of( b ), network.getNodes( NodeMessage.Type.BUNGEECORD ) );
+		
+		// Update
+		update( 1, 2, NodeMessage.Type.BUKKIT, "c", "game" );
+		assertNull( network.getNode( "a" ) );
+		assertSame( a, network.getNode( "c" ) );
+		assertEquals( ImmutableSet.of( b ), network.getNodesOfNamespace( "lobby" ) );
+		
+		// Remove
+		network.removeNode( b.getId() );
+		assertNull( network.getNode( "b" ) );
+		assertTrue( network.getNodesOfNamespace( "lobby" ).isEmpty() );
+		assertTrue( network.getNodes( NodeMessage.Type.BUNGEECORD ).isEmpty() );
+		assertEquals( 2, network.getNodes().size() );
+		
+		// Home
+		network.getHome().addNamespace( "Home" );
+		assertEquals( ImmutableSet.of( network.getHome() ), network.getNodesOfNamespace( "home" ) );
+		network.getHome().removeNamespace( "home" );
+		assertTrue( network.getNodesOfNamespace( "home" ).isEmpty() );
+		
+	}
+	
+	@Test
+	public void testForEachNodeOnce() {
+		
+		Node a = update( 1, 1, NodeMessage.Type.BUKKIT, "a", "lobby", "game" );
+		Node b = update( 2, 1, NodeMessage.Type.BUNGEECORD, "b", "lobby" );
+		update( 3, 1, NodeMessage.Type.BUKKIT, "c", "other" );
+		
+		// a is included by id twice and by both namespaces
+		TargetMessage target = TargetMessage.newBuilder().addNodesInclude( ProtocolUtils.convert( a.getId() ) ).addNodesInclude( ProtocolUtils.convert( a.getId() ) ).addNamespacesInclude( "lobby" ).addNamespacesInclude( "game" ).addNamespacesInclude( "lobby" ).build();
+		
+		List<Node> visited = new ArrayList<>();
+		network.forEachNode( target, visited::add );
+		assertEquals( 2, visited.size() );
+		assertEquals( ImmutableSet.of( a, b ), ImmutableSet.copyOf( visited ) );
+		assertEquals( ImmutableSet.of( a, b ), network.getNodes( target ) );
+		
+	}
+	
+	@Test
+	public void testSharedName() {
+		
+		Node a = update( 1, 1, NodeMessage.Type.BUKKIT, "same" );
+		Node b = update( 2, 1, NodeMessage.Type.BUKKIT, "same" );
+		assertSame( a, network.getNode( "same" ) );
+		
+		// The name stays indexed while any node has it
+		network.removeNode( b.getId() );
+		assertSame( a, network.getNode( "same" ) );
+		b = update( 2, 2, NodeMessage.Type.BUKKIT, "same" );
+		network.removeNode( a.getId() );
+		assertSame( b, network.getNode( "same" ) );
+		
+		update( 2, 3, NodeMessage.Type.BUKKIT, "other" );
+		assertNull( network.getNode( "same" ) );
+		assertSame( b, network.getNode( "other" ) );
+		
+	}
+	
+	@Test
+	public void testTopology() {
+		
+		Node a = update( 1, 1, NodeMessage.Type.BUKKIT, "a", "lobby" );
+		Node b = update( 2, 1, NodeMessage.Type.BUKKIT, "b", "lobby" );
+		final long epoch = network.getTopologyEpoch();
+		
+		// b is removed, a is updated and c is added in one step
+		NodeTopologyMessage.Builder topology = NodeTopologyMessage.newBuilder();
+		topology.addNodes( node( 1, 2, NodeMessage.Type.BUKKIT, "a", "game" ) );
+		topology.addNodes( node( 3, 1, NodeMessage.Type.BUKKIT, "b", "lobby" ) );
+		network.updateNodes( null, topology.build() );
+		
+		assertEquals( epoch + 1, network.getTopologyEpoch() );
+		Node c = network.getNode( new UUID( 1, 3 ) );
+		assertNull( network.getNode( b.getId() ) );
+		assertSame( c, network.getNode( "b" ) );
+		assertEquals( ImmutableSet.of( c ), network.getNodesOfNamespace( "lobby" ) );
+		assertEquals( ImmutableSet.of( a ), network.getNodesOfNamespace( "game" ) );
+		assertEquals( ImmutableSet.of( network.getHome(), a, c ), network.getNodes( NodeMessage.Type.BUKKIT ) );
+		assertEquals( ImmutableSet.of( network.getHome(), a, c ), network.getNodes() );
+		
+		// Nothing changed
+		network.updateNodes( null, topology.build() );
+		assertEquals( epoch + 1, network.getTopologyEpoch() );
+		
+	}
+	
+}
@@ -0,0 +1,145 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.PacketBatcher;
+import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class PacketBatcherTest {
+
+	private static Packet tunnelMessage( int tunnelId, Target target, int data ) {
+		return Packer.pack( TunnelMessage.newBuilder().setTunnelId( tunnelId )//
+				.setTarget( target.getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.setData( ByteString.copyFrom( new byte[] { ( byte ) data } ) ) );
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+
+		final EmbeddedChannel ch = new EmbeddedChannel( new PacketBatcher( 1, TimeUnit.HOURS, 3 ) );
+		final Target target = Target.to( new UUID( 3, 4 ) );
+
+		// Idle, written immediately
+		ch.writeAndFlush( tunnelMessage( 1, target, 0 ) );
+		assertEquals( Packet.ValueCase.TUNNELMESSAGE, ch.<Packet> readOutbound().getValueCase() );
+
+		// Held back until the batch is full
+		final ChannelFuture f1 = ch.writeAndFlush( tunnelMessage( 1, target, 1 ) );
+		ch.writeAndFlush( tunnelMessage( 1, target, 2 ) );
+		assertNull( ch.readOutbound() );
+		ch.writeAndFlush( tunnelMessage( 1, target, 3 ) );
+
+		final Packet packet = ch.readOutbound();
+		assertEquals( Packet.ValueCase.BATCH, packet.getValueCase() );
+		final PacketBatch batch = packet.getBatch();
+		assertEquals( 1, batch.getTunnelId() );
+		assertEquals( target.getProtocolMessage(), batch.getTarget() );
+		assertEquals( 3, batch.getPacketsCount() );
+		for ( int i = 0; i < 3; ++i ) {
+			assertEquals( i + 1, batch.getPackets( i ).getTunnelMessage().getData().byteAt( 0 ) );
+		}
+		assertTrue( f1.isSuccess() );
+
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testOrder() throws Exception {
+
+		final EmbeddedChannel ch = new EmbeddedChannel( new PacketBatcher( 1, TimeUnit.HOURS, 64 ) );
+		final Target target = Target.to( new UUID( 3, 4 ) );
+
+		ch.writeAndFlush( tunnelMessage( 1, target, 0 ) );
+		ch.writeAndFlush( tunnelMessage( 1, target, 1 ) );
+		ch.writeAndFlush( tunnelMessage( 1, target, 2 ) );
+		// Other tunnel and other packets end the batch
+		ch.writeAndFlush( tunnelMessage( 2, target, 3 ) );
+		ch.writeAndFlush( Packer.pack( HeartbeatMessage.newBuilder() ) );
+
+		assertEquals( Packet.ValueCase.TUNNELMESSAGE, ch.<Packet> readOutbound().getValueCase() );
+		assertEquals( 2, ch.<Packet> readOutbound().getBatch().getPacketsCount() );
+		final Packet single = ch.readOutbound();
+		assertEquals( 2, single.getTunnelMessage().getTunnelId() );
+		assertEquals( 3, single.getTunnelMessage().getData().byteAt( 0 ) );
+		assertEquals( Packet.ValueCase.HEARTBEAT, ch.<Packet> readOutbound().getValueCase() );
+		assertNull( ch.readOutbound() );
+
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testLatencyBudget() throws Exception {
+
+		final EmbeddedChannel ch = new EmbeddedChannel( new PacketBatcher( 10, TimeUnit.MILLISECONDS, 64 ) );
+		final Target target = Target.toAll();
+
+		ch.writeAndFlush( tunnelMessage( 1, target, 0 ) );
+		ch.writeAndFlush( tunnelMessage( 1, target, 1 ) );
+		ch.writeAndFlush( tunnelMessage( 1, target, 2 ) );
+		assertEquals( Packet.ValueCase.TUNNELMESSAGE, ch.<Packet> readOutbound().getValueCase() );
+		assertNull( ch.readOutbound() );
+
+		Thread.sleep( 20 );
+		ch.runScheduledPendingTasks();
+		assertEquals( 2, ch.<Packet> readOutbound().getBatch().getPacketsCount() );
+
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testMaxBytes() throws Exception {
+
+		final EmbeddedChannel ch = new EmbeddedChannel( new PacketBatcher( 1, TimeUnit.HOURS, 64, 1024 ) );
+		final Target target = Target.toAll();
+		final byte[] data = new byte[ 200 ];
+
+		int written = 0;
+		for ( int i = 0; i < 20; ++i ) {
+			ch.writeAndFlush( Packer.pack( TunnelMessage.newBuilder().setTunnelId( 1 ).setTarget( target.getProtocolMessage() )//
+					.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) ).setData( ByteString.copyFrom( data ) ) ) );
+			++written;
+		}
+		// Larger than a batch, written on its own
+		ch.writeAndFlush( Packer.pack( TunnelMessage.newBuilder().setTunnelId( 1 ).setTarget( target.getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) ).setData( ByteString.copyFrom( new byte[ 2048 ] ) ) ) );
+		++written;
+		ch.close();
+
+		int received = 0;
+		int batches = 0;
+		Packet packet;
+		while ( ( packet = ch.readOutbound() ) != null ) {
+			if ( packet.getValueCase() == Packet.ValueCase.BATCH ) {
+				assertTrue( packet.getSerializedSize() <= 1024 );
+				received += packet.getBatch().getPacketsCount();
+				++batches;
+			} else {
+				assertTrue( packet.getTunnelMessage().getData().size() == 200 || packet.getTunnelMessage().getData().size() == 2048 );
+				received += 1;
+			}
+		}
+		assertEquals( written, received );
+		assertTrue( batches > 1 );
+
+		ch.finishAndReleaseAll();
+	}
+
+}
@@ -0,0 +1,66 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.PacketDecoder;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class PacketDecoderTest {
+
+	private static Packet newPacket() {
+		final byte[] data = new byte[ 4096 ];
+		new Random( 42 ).nextBytes( data );
+		return Packer.pack( TunnelMessage.newBuilder().setTunnelId( 7 )//
+				.setTarget( Target.toAll().getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.setData( ByteString.copyFrom( data ) ) );
+	}
+
+	@Test
+	public void testDecode() throws Exception {
+		final Packet packet = newPacket();
+
+		final ByteBuf frame = PooledByteBufAllocator.DEFAULT.directBuffer();
+		frame.writeBytes( packet.toByteArray() );
+
+		final EmbeddedChannel ch = new EmbeddedChannel( PacketDecoder.INSTANCE );
+		ch.writeInbound( frame );
+		final Packet decoded = ch.readInbound();
+		assertEquals( packet, decoded );
+		assertEquals( 0, frame.refCnt() );
+		ch.finish();
+	}
+
+	@Test
+	public void testIndependentOfFrame() throws Exception {
+		final Packet packet = newPacket();
+
+		final ByteBuf frame = PooledByteBufAllocator.DEFAULT.heapBuffer();
+		try {
+			frame.writeBytes( packet.toByteArray() );
+			final Packet decoded = PacketDecoder.decode( frame );
+			assertEquals( 0, frame.readerIndex() );
+
+			// Reused pooled memory must not change the decoded packet
+			frame.setZero( 0, frame.readableBytes() );
+			assertEquals( packet, decoded );
+		} finally {
+			frame.release();
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.netty.PacketHeader;
+import de.mickare.routernet.protocol.NetworkProtocol.ProcedureDescription;
+import de.mickare.routernet.protocol.TransportProtocol.HeartbeatMessage;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.ProcedureCallMessage;
+import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+
+public class PacketHeaderTest {
+
+	private static Packet decodeHeader( Packet packet ) throws Exception {
+		final EncodedPacket encoded = EncodedPacket.encode( packet );
+		try {
+			final int readerIndex = encoded.content().readerIndex();
+			final Packet header = PacketHeader.decode( encoded.content() );
+			assertEquals( readerIndex, encoded.content().readerIndex() );
+			return header;
+		} finally {
+			encoded.release();
+		}
+	}
+
+	@Test
+	public void testTunnelMessage() throws Exception {
+
+		final TunnelMessage msg = TunnelMessage.newBuilder().setTunnelId( -42 )//
+				.setTarget( Target.to( new UUID( 3, 4 ) ).getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.setData( ByteString.copyFrom( new byte[ 1024 ] ) ).build();
+
+		final Packet header = decodeHeader( Packer.pack( msg ) );
+		assertEquals( msg.toBuilder().clearData().build(), header.getTunnelMessage() );
+
+	}
+
+	@Test
+	public void testProcedureMessage() throws Exception {
+
+		final ProcedureCallMessage call = ProcedureCallMessage.newBuilder()//
+				.setProcedure( ProcedureDescription.newBuilder().setName( "test" ).setArgumentType( "a" ).setResultType( "b" ) )//
+				.setId( 7 ).setTimestamp( 123 ).setMaxTimeout( 1000 )//
+				.setBytes( ByteString.copyFrom( new byte[ 1024 ] ) ).build();
+		final ProcedureMessage msg = ProcedureMessage.newBuilder()//
+				.setTarget( Target.toAll().getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.setCall( call ).build();
+
+		final Packet header = decodeHeader( Packer.pack( msg ) );
+		assertEquals( msg.toBuilder().setCall( call.toBuilder().clearData() ).build(), header.getProcedureMessage() );
+		assertTrue( header.getProcedureMessage().getCall().getDataCase() == ProcedureCallMessage.DataCase.DATA_NOT_SET );
+
+	}
+
+	@Test
+	public void testPacketBatch() throws Exception {
+
+		final TunnelMessage data = TunnelMessage.newBuilder().setData( ByteString.copyFrom( new byte[ 1024 ] ) ).build();
+		final PacketBatch batch = PacketBatch.newBuilder().setTunnelId( 7 ).setTunnelIndex( 2 )//
+				.setTarget( Target.to( new UUID( 3, 4 ) ).getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( new UUID( 1, 2 ) ) )//
+				.addPackets( Packer.pack( data ) ).addPackets( Packer.pack( data ) ).build();
+
+		final Packet header = decodeHeader( Packer.pack( batch ) );
+		assertEquals( batch.toBuilder().clearPackets().build(), header.getBatch() );
+
+		// Without target the batch has to be unpacked
+		assertNull( decodeHeader( Packer.pack( batch.toBuilder().clearTarget() ) ) );
+
+	}
+
+	@Test
+	public void testNotRoutable() throws Exception {
+
+		assertNull( decodeHeader( Packer.pack( HeartbeatMessage.newBuilder() ) ) );
+
+	}
+
+}
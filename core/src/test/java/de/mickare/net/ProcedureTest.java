@@ -1,7 +1,9 @@
 package de.mickare.net;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -27,6 +29,7 @@ import de.mickare.routernet.client.ConnectClient;
 import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.Node;
 import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.core.login.AuthenticationFactory;
 import de.mickare.routernet.core.login.ClientLoginEngine;
 import de.mickare.routernet.core.login.RouterLoginEngine;
@@ -217,6 +220,25 @@ public class ProcedureTest {
 		
 	}
 	
+	@Test
+	public void testCodec() throws InterruptedException, TimeoutException, ExecutionException {
+		
+		Node client_on_router = net_router.getNode( net_client.getHome().getId() );
+		
+		CallableProcedure<String, String> info = Procedure.of( "testCodec", String.class, String.class, Codecs.FST, net_client );
+		net_client.getProcedureManager().register( info, String::toUpperCase ).getRegisterFuture().await( 1000 );
+		
+		// Java serialization is another procedure
+		assertNotEquals( info, Procedure.of( "testCodec", String.class, String.class ) );
+		assertNull( net_client.getProcedureManager().getRegistered( Procedure.of( "testCodec", String.class, String.class ) ) );
+		
+		assertTrue( client_on_router.awaitProcedure( info, 1, TimeUnit.SECONDS ) );
+		CallableProcedure<String, String> p = info.bind( net_router, String.class, String.class );
+		assertEquals( Codecs.FST, p.getCodec() );
+		assertEquals( "HELLO", p.call( client_on_router, "hello" ).getResult().get( 1, TimeUnit.SECONDS ) );
+		
+	}
+	
 	@Test
 	public void testRunnable() throws InterruptedException, TimeoutException, ExecutionException {
 		
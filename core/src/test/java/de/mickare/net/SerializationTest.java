@@ -0,0 +1,224 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.core.Serialization;
+
+public class SerializationTest {
+	
+	private static Object roundTrip( Object obj ) throws Exception {
+		final ByteString data = Serialization.asCompactByteString( Object.class, obj );
+		assertEquals( obj, Serialization.asCompactObject( Object.class, data.toByteArray() ) );
+		return Serialization.asCompactObject( Object.class, data );
+	}
+	
+	private static int javaSize( Object obj ) throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( ObjectOutputStream out = new ObjectOutputStream( bytes ) ) {
+			out.writeObject( obj );
+		}
+		return bytes.size();
+	}
+	
+	@Test
+	public void testValues() throws Exception {
+		final Object[] values = { "hello ä😀", "", Integer.MIN_VALUE, -1, 300, Long.MAX_VALUE, ( short ) -5, ( byte ) 7, true, false, 'x', 1.5f, Double.NaN, UUID.randomUUID() };
+		for ( Object value : values ) {
+			assertEquals( value, roundTrip( value ) );
+			assertTrue( Serialization.asCompactByteString( Object.class, value ).size() < javaSize( value ) );
+		}
+		assertNull( roundTrip( null ) );
+	}
+	
+	@Test
+	public void testJavaSerialization() throws Exception {
+		// The JDK codec stays readable by nodes without the compact format
+		final Object[] values = { "hello", 42L, UUID.randomUUID(), new ArrayList<>( Arrays.asList( 1, 2 ) ) };
+		for ( Object value : values ) {
+			final ByteString data = Serialization.asByteString( Object.class, value );
+			assertEquals( javaSize( value ), data.size() );
+			assertEquals( value, Serialization.asObject( Object.class, data ) );
+			assertEquals( value, Serialization.asCompactObject( Object.class, data ) );
+		}
+	}
+	
+	@Test
+	public void testCollections() throws Exception {
+		final ArrayList<Object> list = new ArrayList<>( Arrays.asList( "a", 1, null, UUID.randomUUID() ) );
+		final HashMap<Object, Object> map = new HashMap<>();
+		map.put( "list", list );
+		map.put( 42L, "value" );
+		assertEquals( map, roundTrip( map ) );
+		assertTrue( Serialization.asCompactByteString( Object.class, map ).size() * 4 < javaSize( map ) );
+	}
+	
+	@Test
+	public void testFallback() throws Exception {
+		// Other collection types, unsupported elements and unpaired surrogates use java serialization
+		final Object[] values = { new LinkedList<>( Arrays.asList( 1, 2 ) ), new ArrayList<>( Arrays.asList( 1, new LinkedList<>() ) ), "\ud83d", new Date( 0 ) };
+		for ( Object value : values ) {
+			assertEquals( value, roundTrip( value ) );
+			assertEquals( javaSize( value ), Serialization.asCompactByteString( Object.class, value ).size() );
+		}
+		
+		// Nested too deep
+		ArrayList<Object> nested = new ArrayList<>();
+		for ( int i = 0; i < 20; ++i ) {
+			nested = new ArrayList<>( Arrays.asList( nested ) );
+		}
+		assertEquals( nested, roundTrip( nested ) );
+	}
+	
+	private static class Point implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final int x, y;
+		
+		private Point( int x, int y ) {
+			this.x = x;
+			this.y = y;
+		}
+		
+		@Override
+		public boolean equals( Object obj ) {
+			return obj instanceof Point && ( ( Point ) obj ).x == x && ( ( Point ) obj ).y == y;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * x + y;
+		}
+	}
+	
+	@Test
+	public void testAllowList() throws Exception {
+		final ByteString point = Serialization.asByteString( Point.class, new Point( 1, 2 ) );
+		final ByteString date = Serialization.asByteString( Date.class, new Date( 0 ) );
+		final ByteString array = Serialization.asByteString( Object.class, new Point[][] { { new Point( 3, 4 ) } } );
+		try {
+			Serialization.allowClasses( Point.class );
+			assertEquals( new Point( 1, 2 ), Serialization.asObject( Point.class, point ) );
+			assertEquals( new Point( 3, 4 ), ( ( Point[][] ) Serialization.asObject( Object.class, array ) )[0][0] );
+			assertTrue( Serialization.isAllowed( "[[I" ) );
+			try {
+				Serialization.asObject( Date.class, date );
+				fail();
+			} catch ( InvalidClassException e ) {
+				assertEquals( Date.class.getName(), e.classname );
+			}
+			
+			Serialization.allowPackages( "java.util" );
+			assertEquals( new Date( 0 ), Serialization.asObject( Date.class, date ) );
+			assertFalse( Serialization.isAllowed( "java.util.concurrent.ConcurrentHashMap" ) );
+		} finally {
+			Serialization.clearAllowList();
+		}
+		assertTrue( Serialization.isAllowed( "java.util.concurrent.ConcurrentHashMap" ) );
+	}
+	
+	private static class Handler implements InvocationHandler, Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+			return "proxied";
+		}
+	}
+	
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void testProxyAllowList() throws Exception {
+		final Object proxy = Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[] { Supplier.class }, new Handler() );
+		final ByteString data = Serialization.asByteString( Object.class, proxy );
+		try {
+			Serialization.allowClasses( Handler.class, Proxy.class );
+			try {
+				Serialization.asObject( Object.class, data );
+				fail();
+			} catch ( InvalidClassException e ) {
+				assertEquals( Supplier.class.getName(), e.classname );
+			}
+			
+			Serialization.allowClasses( Supplier.class );
+			assertEquals( "proxied", ( ( Supplier<Object> ) Serialization.asObject( Object.class, data ) ).get() );
+		} finally {
+			Serialization.clearAllowList();
+		}
+	}
+	
+	/**
+	 * Loads the test classes itself and counts how often a class is requested.
+	 */
+	private static class CountingClassLoader extends URLClassLoader {
+		private final String counted;
+		private int count = 0;
+		
+		private CountingClassLoader( String counted ) {
+			super( new URL[] { SerializationTest.class.getProtectionDomain().getCodeSource().getLocation() }, null );
+			this.counted = counted;
+		}
+		
+		@Override
+		protected Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException {
+			if ( name.equals( counted ) ) {
+				++count;
+			}
+			return super.loadClass( name, resolve );
+		}
+	}
+	
+	@Test
+	public void testInvalidate() throws Exception {
+		try ( CountingClassLoader loader = new CountingClassLoader( Point.class.getName() ) ) {
+			final Class<?> pointClass = Class.forName( Point.class.getName(), false, loader );
+			final Constructor<?> constructor = pointClass.getDeclaredConstructor( int.class, int.class );
+			constructor.setAccessible( true );
+			final ByteString point = Serialization.asByteString( Object.class, constructor.newInstance( 1, 2 ) );
+			loader.count = 0;
+			
+			// Resolved with the loader of the type, then cached
+			assertEquals( pointClass, Serialization.asObject( pointClass, point ).getClass() );
+			assertEquals( 1, loader.count );
+			assertEquals( pointClass, Serialization.asObject( pointClass, point ).getClass() );
+			assertEquals( 1, loader.count );
+			
+			// Resolved again after the loader was invalidated
+			Serialization.invalidate( loader );
+			assertEquals( pointClass, Serialization.asObject( pointClass, point ).getClass() );
+			assertEquals( 2, loader.count );
+		}
+	}
+	
+	@Test( expected = StreamCorruptedException.class )
+	public void testCorrupted() throws Exception {
+		// List that claims more elements than there are bytes
+		Serialization.asCompactObject( Object.class, new byte[] { 11, 100, 0 } );
+	}
+	
+}
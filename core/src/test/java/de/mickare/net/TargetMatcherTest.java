@@ -0,0 +1,77 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Node;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.TargetMatcher;
+import de.mickare.routernet.dummy.DummClientNetwork;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+
+public class TargetMatcherTest {
+	
+	EventLoopGroup group;
+	DummClientNetwork network;
+	
+	@Before
+	public void setup() {
+		group = new DefaultEventLoopGroup();
+		network = new DummClientNetwork( group, new UUID( 0, 1 ) );
+		network.getHome().addNamespace( "home" );
+		for ( int i = 0; i < 20; ++i ) {
+			NodeMessage.Builder b = NodeMessage.newBuilder();
+			b.setId( ProtocolUtils.convert( new UUID( 1, i ) ) );
+			b.setStartTimestamp( 1 );
+			b.addNamespaces( i % 2 == 0 ? "even" : "odd" );
+			if ( i % 5 == 0 ) {
+				b.addNamespaces( "five" );
+			}
+			network.updateNode( null, b.build() );
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		group.shutdownGracefully();
+	}
+	
+	private void assertSame( Target target ) {
+		for ( Node node : network.getNodeList() ) {
+			assertEquals( target.toString() + " " + node, target.contains( node ), TargetMatcher.matches( target.getProtocolMessage(), node ) );
+		}
+		assertEquals( network.getNodes( target ), network.getNodes( target.getProtocolMessage() ) );
+	}
+	
+	@Test
+	public void testMatches() {
+		
+		List<Target> targets = Lists.newArrayList();
+		targets.add( Target.toAll() );
+		targets.add( Target.to( "even" ) );
+		targets.add( Target.to( "home" ) );
+		targets.add( Target.to( "unknown" ) );
+		targets.add( Target.to( new UUID( 1, 3 ) ) );
+		targets.add( Target.to( network.getHome() ) );
+		targets.add( Target.newBuilder().include( "odd" ).exclude( new UUID( 1, 5 ) ).build() );
+		targets.add( Target.newBuilder().include( "odd" ).include( new UUID( 1, 2 ) ).build() );
+		targets.add( Target.newBuilder().include( "even", "five" ).exclude( "five" ).build() );
+		targets.add( Target.Builder.toAll().exclude( "five" ).build() );
+		targets.add( Target.Builder.toAll().exclude( new UUID( 1, 4 ), new UUID( 0, 1 ) ).build() );
+		
+		targets.forEach( this::assertSame );
+		
+	}
+	
+}
@@ -0,0 +1,92 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
+
+public class TunnelDictionaryTest {
+
+	public static class Position implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String world;
+		private final double x, y, z;
+
+		public Position( String world, double x, double y, double z ) {
+			this.world = world;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+	}
+
+	private static ByteString serialize( Object obj ) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( ObjectOutputStream out = new ObjectOutputStream( bytes ) ) {
+			out.writeObject( obj );
+		}
+		return ByteString.copyFrom( bytes.toByteArray() );
+	}
+
+	private static List<ByteString> samples( int count ) throws IOException {
+		final List<ByteString> result = new ArrayList<>();
+		for ( int i = 0; i < count; ++i ) {
+			result.add( serialize( new Position( "world" + ( i % 3 ), i, i * 2, i * 3 ) ) );
+		}
+		return result;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final TunnelDictionary dictionary = TunnelDictionary.train( samples( 64 ), TunnelDictionary.DEFAULT_SIZE );
+		final ByteString raw = serialize( new Position( "nether", 1.5, 2.5, 3.5 ) );
+		final ByteString compressed = dictionary.compress( raw );
+		assertTrue( compressed.size() * 2 <= raw.size() );
+		assertEquals( raw, dictionary.decompress( compressed, 1 << 20 ) );
+
+		final TunnelDictionary copy = TunnelDictionary.of( dictionary.toProtocol( true ) );
+		assertEquals( dictionary.getVersion(), copy.getVersion() );
+		assertEquals( raw, copy.decompress( compressed, 1 << 20 ) );
+	}
+
+	@Test
+	public void testSmallData() throws Exception {
+		final TunnelDictionary dictionary = TunnelDictionary.train( samples( 8 ), TunnelDictionary.DEFAULT_SIZE );
+		assertNull( dictionary.compress( ByteString.copyFrom( new byte[] { 1, 2, 3 } ) ) );
+		// Large data is not worth it
+		assertNull( dictionary.compress( ByteString.copyFrom( new byte[ TunnelDictionary.MAX_DATA_SIZE + 1 ] ) ) );
+	}
+
+	@Test( expected = DataFormatException.class )
+	public void testTooLong() throws Exception {
+		final TunnelDictionary dictionary = TunnelDictionary.train( samples( 8 ), TunnelDictionary.DEFAULT_SIZE );
+		final ByteString raw = serialize( new Position( "nether", 1.5, 2.5, 3.5 ) );
+		dictionary.decompress( dictionary.compress( raw ), raw.size() - 1 );
+	}
+
+	@Test
+	public void testVersion() throws Exception {
+		final TunnelDictionary a = TunnelDictionary.train( samples( 8 ), 1024 );
+		final TunnelDictionary b = TunnelDictionary.train( samples( 8 ), 1024 );
+		final TunnelDictionary c = TunnelDictionary.train( samples( 16 ), 1024 );
+		assertEquals( a.getVersion(), b.getVersion() );
+		assertNotEquals( a.getVersion(), c.getVersion() );
+		assertTrue( c.size() <= 1024 );
+		assertNotEquals( 0, a.getVersion() );
+	}
+
+}
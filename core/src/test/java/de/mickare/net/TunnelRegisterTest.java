@@ -1,7 +1,9 @@
 package de.mickare.net;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.UUID;
@@ -18,15 +20,21 @@ import de.mickare.routernet.Owner;
 import de.mickare.routernet.client.ConnectClient;
 import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.core.login.AuthenticationFactory;
 import de.mickare.routernet.core.login.ClientLoginEngine;
 import de.mickare.routernet.core.login.RouterLoginEngine;
 import de.mickare.routernet.core.packet.BasePacketHandler;
+import de.mickare.routernet.core.tunnel.TunnelDescriptors;
 import de.mickare.routernet.dummy.DummClientNetwork;
 import de.mickare.routernet.netty.ConnectionHandler;
 import de.mickare.routernet.netty.LocalConnectClient;
 import de.mickare.routernet.netty.LoginHandler;
 import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.TransportProtocol.ErrorMessage;
+import de.mickare.routernet.protocol.TransportProtocol.FileMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
 import de.mickare.routernet.util.FutureUtils;
 import de.mickare.routernet.util.SimpleOwner;
 import io.netty.channel.DefaultEventLoopGroup;
@@ -125,4 +133,92 @@ public class TunnelRegisterTest {
 		
 	}
 	
+	@Test
+	public void testTunnelIndex() throws Exception {
+		
+		try ( NetWrapper test = new NetWrapper() ) {
+			
+			test.connect();
+			
+			final Tunnel tunnel = test.client.getTunnel( "indexed" );
+			assertEquals( 0, tunnel.getIndex() );
+			assertSame( tunnel, test.client.getTunnelByIndex( 0, tunnel.getId() ) );
+			
+			// Router assigns the index
+			final Connection con = test.connection_router.get( 1, TimeUnit.SECONDS );
+			con.writeAndFlush( TunnelRegister.newBuilder().setTunnelId( tunnel.getId() ).setName( tunnel.getName() ).setType( tunnel.getType() ).setIndex( 3 ) ).sync();
+			
+			for ( int i = 0; i < 10 && tunnel.getIndex() == 0; ++i ) {
+				Thread.sleep( 50 );
+			}
+			assertEquals( 3, tunnel.getIndex() );
+			assertSame( tunnel, test.client.getTunnelByIndex( 3, tunnel.getId() ) );
+			
+			// Fallback to id
+			final Tunnel other = test.client.getTunnel( "other" );
+			assertSame( other, test.client.getTunnelByIndex( 3, other.getId() ) );
+			assertSame( other, test.client.getTunnelByIndex( 1000, other.getId() ) );
+			assertNull( test.client.getTunnelByIndex( 3, tunnel.getId() + 1 ) );
+			
+		}
+		
+	}
+	
+	@Test
+	public void testIdCollision() throws Exception {
+		
+		try ( NetWrapper test = new NetWrapper() ) {
+			
+			test.connect();
+			
+			// Names are lower case, so "Aa" and "BB" would not collide
+			final Tunnel first = test.client.getTunnel( "an" );
+			final Tunnel second = test.client.getTunnel( "c0" );
+			assertEquals( first.getId(), second.getId() );
+			assertNotSame( first, second );
+			assertSame( first, test.client.getTunnelById( first.getId() ) );
+			
+			// Both are registered at the router without replacing each other
+			final Connection con = test.connection_router.get( 1, TimeUnit.SECONDS );
+			assertTrue( con.awaitTunnelRegistered( "an", 1, TimeUnit.SECONDS ) );
+			assertTrue( con.awaitTunnelRegistered( "c0", 1, TimeUnit.SECONDS ) );
+			assertTrue( con.isActive() );
+			assertNotSame( test.router.getTunnelIfPresent( "an" ), test.router.getTunnelIfPresent( "c0" ) );
+			assertSame( test.router.getTunnelIfPresent( "an" ), test.router.getTunnelById( first.getId() ) );
+			
+			// The dense index tells them apart
+			con.writeAndFlush( TunnelRegister.newBuilder().setTunnelId( first.getId() ).setName( first.getName() ).setType( first.getType() ).setIndex( 3 ) ).sync();
+			con.writeAndFlush( TunnelRegister.newBuilder().setTunnelId( second.getId() ).setName( second.getName() ).setType( second.getType() ).setIndex( 4 ) ).sync();
+			for ( int i = 0; i < 10 && second.getIndex() == 0; ++i ) {
+				Thread.sleep( 50 );
+			}
+			assertSame( first, test.client.getTunnelByIndex( 3, first.getId() ) );
+			assertSame( second, test.client.getTunnelByIndex( 4, second.getId() ) );
+			
+		}
+		
+	}
+	
+	@Test
+	public void testCodecMismatch() throws Exception {
+		
+		try ( NetWrapper test = new NetWrapper() ) {
+			
+			test.connect();
+			
+			final Tunnel tunnel = test.client.getTunnel( TunnelDescriptors.getObjectTunnel( "codec", FileMessage.class, Codecs.PROTOBUF ) ).getParentTunnel();
+			
+			// The client closes the connection with the reason
+			final Connection con = test.connection_router.get( 1, TimeUnit.SECONDS );
+			con.writeAndFlush( TunnelRegister.newBuilder().setTunnelId( tunnel.getId() ).setName( tunnel.getName() ).setType( tunnel.getType() ).setCodec( Codecs.JDK.getId() ) ).sync();
+			for ( int i = 0; i < 10 && con.getCloseMessage() == null; ++i ) {
+				Thread.sleep( 50 );
+			}
+			assertEquals( ErrorMessage.Type.CODEC_MISMATCH, con.getCloseMessage().getError().getType() );
+			assertEquals( Codecs.PROTOBUF.getId(), tunnel.getCodecId() );
+			
+		}
+		
+	}
+	
 }
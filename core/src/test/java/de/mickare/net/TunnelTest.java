@@ -2,16 +2,27 @@ package de.mickare.net;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -26,11 +37,18 @@ import de.mickare.routernet.client.ConnectClient;
 import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.Target;
 import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.codec.Codecs;
 import de.mickare.routernet.core.login.AuthenticationFactory;
 import de.mickare.routernet.core.login.ClientLoginEngine;
 import de.mickare.routernet.core.login.RouterLoginEngine;
 import de.mickare.routernet.core.packet.BasePacketHandler;
 import de.mickare.routernet.core.tunnel.TunnelDescriptors;
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
+import de.mickare.routernet.core.tunnel.primitive.DoubleTunnel;
+import de.mickare.routernet.core.tunnel.primitive.IntTunnel;
+import de.mickare.routernet.core.tunnel.primitive.LongTunnel;
+import de.mickare.routernet.core.tunnel.primitive.StringTunnel;
+import de.mickare.routernet.core.tunnel.file.FileTunnel;
 import de.mickare.routernet.core.tunnel.object.ConvertObjectTunnelException;
 import de.mickare.routernet.core.tunnel.object.ObjectTunnel;
 import de.mickare.routernet.core.tunnel.stream.StreamTunnel;
@@ -39,8 +57,12 @@ import de.mickare.routernet.netty.ConnectionHandler;
 import de.mickare.routernet.netty.LocalConnectClient;
 import de.mickare.routernet.netty.LoginHandler;
 import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.TransportProtocol.FileMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
 import de.mickare.routernet.util.FutureUtils;
 import de.mickare.routernet.util.SimpleOwner;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.DefaultEventLoopGroup;
 import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.Promise;
@@ -216,6 +238,207 @@ public class TunnelTest {
 
 	}
 
+	@Test
+	public void testProtobufObjectTunnel() throws Exception {
+
+		ObjectTunnel.Descriptor<FileMessage> desc = TunnelDescriptors.getObjectTunnel( "protobuf", FileMessage.class, Codecs.PROTOBUF );
+
+		ObjectTunnel<FileMessage> ch_client = net_client.getTunnel( desc );
+		ObjectTunnel<FileMessage> ch_router = net_router.getTunnel( desc );
+		assertEquals( Codecs.PROTOBUF.getId(), ch_router.getParentTunnel().getCodecId() );
+
+		final FileMessage msg = FileMessage.newBuilder().setName( "test" ).setLength( rand.nextLong() ).build();
+		final BlockingQueue<FileMessage> received = new LinkedBlockingQueue<>();
+		ch_router.registerListener( testingOwner, m -> received.add( m.getObject() ) );
+
+		assertTrue( ch_client.send( target_router, msg ) );
+		assertEquals( msg, received.poll( 1, TimeUnit.SECONDS ) );
+	}
+
+	@Test
+	public void testPrimitiveTunnels() throws Exception {
+
+		LongTunnel long_client = net_client.getTunnel( TunnelDescriptors.getLongTunnel( "long" ) );
+		LongTunnel long_router = net_router.getTunnel( TunnelDescriptors.getLongTunnel( "long" ) );
+		assertEquals( TunnelRegister.Type.LONG, long_router.getParentTunnel().getType() );
+
+		final BlockingQueue<Long> longs = new LinkedBlockingQueue<>();
+		long_router.registerListener( testingOwner, longs::add );
+		assertTrue( long_client.send( target_router, -1L ) );
+		assertTrue( long_client.send( target_router, new long[] { 0, Long.MIN_VALUE, Long.MAX_VALUE } ) );
+		for ( long expected : new long[] { -1, 0, Long.MIN_VALUE, Long.MAX_VALUE } ) {
+			assertEquals( expected, longs.poll( 1, TimeUnit.SECONDS ).longValue() );
+		}
+
+		IntTunnel int_client = net_client.getTunnel( TunnelDescriptors.getIntTunnel( "int" ) );
+		IntTunnel int_router = net_router.getTunnel( TunnelDescriptors.getIntTunnel( "int" ) );
+		final BlockingQueue<Integer> ints = new LinkedBlockingQueue<>();
+		int_router.registerListener( testingOwner, ints::add );
+		assertTrue( int_client.send( target_router, new int[] { 42, Integer.MIN_VALUE } ) );
+		assertEquals( 42, ints.poll( 1, TimeUnit.SECONDS ).intValue() );
+		assertEquals( Integer.MIN_VALUE, ints.poll( 1, TimeUnit.SECONDS ).intValue() );
+
+		DoubleTunnel double_client = net_client.getTunnel( TunnelDescriptors.getDoubleTunnel( "double" ) );
+		DoubleTunnel double_router = net_router.getTunnel( TunnelDescriptors.getDoubleTunnel( "double" ) );
+		final BlockingQueue<Double> doubles = new LinkedBlockingQueue<>();
+		double_router.registerListener( testingOwner, doubles::add );
+		assertTrue( double_client.send( target_router, 1.5 ) );
+		assertEquals( 1.5, doubles.poll( 1, TimeUnit.SECONDS ), 0 );
+
+		StringTunnel string_client = net_client.getTunnel( TunnelDescriptors.getStringTunnel( "string" ) );
+		StringTunnel string_router = net_router.getTunnel( TunnelDescriptors.getStringTunnel( "string" ) );
+		final BlockingQueue<String> strings = new LinkedBlockingQueue<>();
+		string_router.registerListener( testingOwner, strings::add );
+		// Also received by the sender itself
+		string_client.registerListener( testingOwner, strings::add );
+		assertTrue( string_client.broadcast( new String[] { "hello", "" } ) );
+		assertEquals( 4, countWithin( strings, 4 ) );
+
+		// Another type with the same name is rejected
+		try {
+			net_router.getTunnel( TunnelDescriptors.getIntTunnel( "long" ) );
+			fail();
+		} catch ( IllegalStateException e ) {
+		}
+	}
+
+	private static int countWithin( BlockingQueue<?> queue, int count ) throws InterruptedException {
+		int received = 0;
+		while ( received < count && queue.poll( 1, TimeUnit.SECONDS ) != null ) {
+			++received;
+		}
+		return received;
+	}
+
+	@Test
+	public void testLargeObjectTunnel() throws Exception {
+
+		ObjectTunnel.Descriptor<byte[]> desc = TunnelDescriptors.getObjectTunnel( "large", byte[].class );
+
+		ObjectTunnel<byte[]> ch_client = net_client.getTunnel( desc );
+		ObjectTunnel<byte[]> ch_router = net_router.getTunnel( desc );
+
+		// Larger than the frame limit, so it is fragmented
+		byte[] data = new byte[ 3 * PipelineUtils.MAX_FRAME_LENGTH ];
+		rand.nextBytes( data );
+
+		final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+		ch_router.registerListener( testingOwner, msg -> received.add( msg.getObject() ) );
+
+		ch_client.send( target_router, data );
+		assertArrayEquals( data, received.poll( 10, TimeUnit.SECONDS ) );
+
+	}
+
+	@Test
+	public void testLargeDictionaryTunnel() throws Exception {
+
+		ObjectTunnel.Descriptor<byte[]> desc = TunnelDescriptors.getObjectTunnel( "largedictionary", byte[].class );
+
+		ObjectTunnel<byte[]> ch_client = net_client.getTunnel( desc );
+		ObjectTunnel<byte[]> ch_router = net_router.getTunnel( desc );
+
+		// Compressible, so the message is sent compressed
+		final byte[] pattern = new byte[ 1024 ];
+		rand.nextBytes( pattern );
+		final byte[] data = new byte[ 2 * PipelineUtils.MAX_FRAME_LENGTH ];
+		for ( int i = 0; i < data.length; ++i ) {
+			data[i] = pattern[i % pattern.length];
+		}
+		final TunnelDictionary dictionary = TunnelDictionary.of( pattern );
+		ch_client.getParentTunnel().setDictionary( dictionary );
+		ch_router.getParentTunnel().setDictionary( dictionary );
+
+		final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+		ch_router.registerListener( testingOwner, msg -> received.add( msg.getObject() ) );
+
+		ch_client.send( target_router, data );
+		assertArrayEquals( data, received.poll( 10, TimeUnit.SECONDS ) );
+
+	}
+
+	@Test
+	public void testFileTunnel() throws Exception {
+
+		FileTunnel ch_client = net_client.getTunnel( TunnelDescriptors.getFileTunnel( "file" ) );
+		FileTunnel ch_router = net_router.getTunnel( TunnelDescriptors.getFileTunnel( "file" ) );
+
+		final Path source = Files.createTempFile( "routernet", ".dat" );
+		final Path directory = Files.createTempDirectory( "routernet" );
+		try {
+			byte[] data = new byte[ 3 * 1024 * 1024 + 123 ];
+			rand.nextBytes( data );
+			Files.write( source, data );
+
+			final BlockingQueue<FileTunnel.ReceivedFile> received = new LinkedBlockingQueue<>();
+			ch_router.registerFileListener( testingOwner, received::add );
+			ch_router.setDirectory( directory );
+			// Several windows of chunks
+			ch_client.setWindowSize( 256 * 1024 );
+
+			ch_client.send( net_router.getHome().getId(), source, "world.dat" );
+
+			final FileTunnel.ReceivedFile file = received.poll( 1, TimeUnit.SECONDS );
+			assertNotNull( file );
+			assertEquals( net_client.getHome().getId(), file.getSenderId() );
+			assertEquals( directory.resolve( "world.dat" ), file.getPath() );
+			assertArrayEquals( data, Files.readAllBytes( file.getPath() ) );
+			assertFalse( Files.exists( directory.resolve( "world.dat.part" ) ) );
+		} finally {
+			Files.deleteIfExists( directory.resolve( "world.dat" ) );
+			Files.deleteIfExists( directory );
+			Files.deleteIfExists( source );
+		}
+
+	}
+
+	@Test
+	public void testFileTunnelExisting() throws Exception {
+
+		FileTunnel ch_client = net_client.getTunnel( TunnelDescriptors.getFileTunnel( "file" ) );
+		FileTunnel ch_router = net_router.getTunnel( TunnelDescriptors.getFileTunnel( "file" ) );
+
+		final Path source = Files.createTempFile( "routernet", ".dat" );
+		final Path directory = Files.createTempDirectory( "routernet" );
+		final Path existing = directory.resolve( "world.dat" );
+		try {
+			Files.write( source, new byte[] { 1, 2, 3 } );
+			Files.write( existing, new byte[] { 4 } );
+
+			final BlockingQueue<FileTunnel.ReceivedFile> received = new LinkedBlockingQueue<>();
+			ch_router.registerFileListener( testingOwner, received::add );
+			ch_router.setDirectory( directory );
+			ch_client.setResendTimeoutMillis( 20 );
+
+			for ( String name : new String[] { "", ".", "..", "sub/.." } ) {
+				try {
+					ch_client.send( net_router.getHome().getId(), source, name );
+					fail( name );
+				} catch ( IllegalArgumentException e ) {
+				}
+			}
+
+			// The offer is ignored, so the sender gives up
+			try {
+				ch_client.send( net_router.getHome().getId(), source, "world.dat" );
+				fail();
+			} catch ( IOException e ) {
+			}
+			assertNull( received.poll() );
+			assertArrayEquals( new byte[] { 4 }, Files.readAllBytes( existing ) );
+
+			ch_router.setReplaceExisting( true );
+			ch_client.send( net_router.getHome().getId(), source, "world.dat" );
+			assertNotNull( received.poll( 1, TimeUnit.SECONDS ) );
+			assertArrayEquals( new byte[] { 1, 2, 3 }, Files.readAllBytes( existing ) );
+		} finally {
+			Files.deleteIfExists( existing );
+			Files.deleteIfExists( directory );
+			Files.deleteIfExists( source );
+		}
+
+	}
+
 	@Test
 	public void testStreamTunnel() throws Exception {
 
@@ -282,4 +505,305 @@ public class TunnelTest {
 
 	}
 
+	@Test
+	public void testStreamFlowControl() throws Exception {
+
+		StreamTunnel client = net_client.getTunnel( TunnelDescriptors.getStreamTunnel( "flow" ) );
+		StreamTunnel router = net_router.getTunnel( TunnelDescriptors.getStreamTunnel( "flow" ) );
+		// Also bounds the data written before the first grant
+		client.setWindowSize( 1024 );
+		router.setWindowSize( 1024 );
+
+		final byte[] data = new byte[ 4 * 1024 ];
+		rand.nextBytes( data );
+
+		try ( InputStream routerIn = router.newInputBuffer() ) {
+			final OutputStream out = client.newOutputBuffer( Target.to( net_router.getHome() ), 256 );
+
+			// The router grants its window on the first data
+			out.write( data, 0, 1 );
+			out.flush();
+			assertWaiting( 10, () -> router.getFlowControl().getGrants() > 0, 100 );
+
+			final Thread writer = new Thread( () -> {
+				try {
+					out.write( data, 1, data.length - 1 );
+					out.close();
+				} catch ( IOException e ) {
+					throw new RuntimeException( e );
+				}
+			} );
+			writer.start();
+
+			// The writer blocks until the router reads
+			assertWaiting( 10, () -> client.getFlowControl().getStalls() > 0, 100 );
+			assertTrue( router.getFlowControl().getBuffered() <= 1024 );
+
+			final byte[] buf = new byte[ data.length ];
+			int read = 0;
+			while ( read < buf.length ) {
+				read += routerIn.read( buf, read, Math.min( 100, buf.length - read ) );
+				assertTrue( router.getFlowControl().getBuffered() <= 1024 );
+			}
+			writer.join( 1000 );
+			assertArrayEquals( data, buf );
+		}
+
+		client.close();
+		router.close();
+	}
+
+	@Test
+	public void testStreamMultiplexing() throws Exception {
+
+		StreamTunnel client = net_client.getTunnel( TunnelDescriptors.getStreamTunnel( "multiplex" ) );
+		StreamTunnel router = net_router.getTunnel( TunnelDescriptors.getStreamTunnel( "multiplex" ) );
+
+		final BlockingQueue<StreamTunnel.IncomingStream> incoming = new LinkedBlockingQueue<>();
+		router.registerStreamListener( testingOwner, incoming::add );
+
+		final byte[][] data = new byte[3][1000];
+		final StreamTunnel.OutgoingStream[] outs = new StreamTunnel.OutgoingStream[data.length];
+		for ( int i = 0; i < data.length; ++i ) {
+			rand.nextBytes( data[i] );
+			outs[i] = client.openStream( Target.to( net_router.getHome() ), 100 );
+		}
+
+		// Interleave the streams
+		for ( int off = 0; off < 1000; off += 100 ) {
+			for ( int i = 0; i < data.length; ++i ) {
+				outs[i].write( data[i], off, 100 );
+				outs[i].flush();
+			}
+		}
+		for ( StreamTunnel.OutgoingStream out : outs ) {
+			out.close();
+		}
+
+		for ( int i = 0; i < data.length; ++i ) {
+			try ( StreamTunnel.IncomingStream in = incoming.poll( 1, TimeUnit.SECONDS ) ) {
+				assertNotNull( in );
+				assertEquals( net_client.getHome().getId(), in.getSenderId() );
+				int index = -1;
+				for ( int j = 0; j < outs.length; ++j ) {
+					if ( outs[j].getStreamId() == in.getStreamId() ) {
+						index = j;
+					}
+				}
+				final byte[] buf = new byte[ 1000 ];
+				int read = 0;
+				while ( read < buf.length ) {
+					read += in.read( buf, read, buf.length - read );
+				}
+				assertArrayEquals( data[index], buf );
+				assertEquals( -1, in.read() );
+			}
+		}
+
+		client.close();
+		router.close();
+	}
+
+	@Test
+	public void testStreamIndependentCredit() throws Exception {
+
+		StreamTunnel client = net_client.getTunnel( TunnelDescriptors.getStreamTunnel( "independent" ) );
+		StreamTunnel router = net_router.getTunnel( TunnelDescriptors.getStreamTunnel( "independent" ) );
+		client.setWindowSize( 1024 );
+		router.setWindowSize( 1024 );
+
+		final BlockingQueue<StreamTunnel.IncomingStream> incoming = new LinkedBlockingQueue<>();
+		router.registerStreamListener( testingOwner, incoming::add );
+
+		final byte[] data = new byte[ 4096 ];
+		rand.nextBytes( data );
+
+		// Nobody reads this stream, so it runs out of credit
+		final StreamTunnel.OutgoingStream stalled = client.openStream( Target.to( net_router.getHome() ), 100 );
+		final Thread stalledWriter = new Thread( () -> {
+			try {
+				stalled.write( data );
+			} catch ( IOException e ) {
+				// Tunnel closed
+			}
+		} );
+		stalledWriter.start();
+		assertWaiting( 10, () -> client.getFlowControl().getStalls() > 0, 100 );
+
+		final StreamTunnel.OutgoingStream other = client.openStream( Target.to( net_router.getHome() ), 100 );
+		final Thread otherWriter = new Thread( () -> {
+			try {
+				other.write( data );
+				other.close();
+			} catch ( IOException e ) {
+				throw new RuntimeException( e );
+			}
+		} );
+		otherWriter.start();
+
+		StreamTunnel.IncomingStream in;
+		do {
+			in = incoming.poll( 1, TimeUnit.SECONDS );
+			assertNotNull( in );
+		} while ( in.getStreamId() != other.getStreamId() );
+		final byte[] buf = new byte[ data.length ];
+		int read = 0;
+		while ( read < buf.length ) {
+			read += in.read( buf, read, buf.length - read );
+		}
+		assertArrayEquals( data, buf );
+		assertEquals( -1, in.read() );
+		otherWriter.join( 1000 );
+		assertFalse( otherWriter.isAlive() );
+		assertTrue( stalledWriter.isAlive() );
+
+		client.close();
+		router.close();
+		stalledWriter.join( 1000 );
+		assertFalse( stalledWriter.isAlive() );
+	}
+
+	@Test
+	public void testStreamChannel() throws Exception {
+
+		StreamTunnel client = net_client.getTunnel( TunnelDescriptors.getStreamTunnel( "channel" ) );
+		StreamTunnel router = net_router.getTunnel( TunnelDescriptors.getStreamTunnel( "channel" ) );
+
+		final byte[] data = new byte[ 1000 ];
+		rand.nextBytes( data );
+
+		try ( ScatteringByteChannel routerIn = router.newInputChannel() ) {
+			try ( OutputStream out = client.newOutputBuffer( Target.to( net_router.getHome() ), 300 ) ) {
+				out.write( data );
+			}
+
+			final ByteBuffer head = ByteBuffer.allocate( 100 );
+			final ByteBuffer tail = ByteBuffer.allocateDirect( 900 );
+			long read = 0;
+			while ( read < data.length ) {
+				read += routerIn.read( new ByteBuffer[] { head, tail } );
+			}
+			final byte[] buf = new byte[ data.length ];
+			head.flip();
+			tail.flip();
+			head.get( buf, 0, 100 );
+			tail.get( buf, 100, 900 );
+			assertArrayEquals( data, buf );
+			assertEquals( 0, router.getFlowControl().getBuffered() );
+		}
+
+		client.close();
+		router.close();
+	}
+
+	@Test
+	public void testStreamOutputChannel() throws Exception {
+
+		StreamTunnel client = net_client.getTunnel( TunnelDescriptors.getStreamTunnel( "outchannel" ) );
+		StreamTunnel router = net_router.getTunnel( TunnelDescriptors.getStreamTunnel( "outchannel" ) );
+		client.setWindowSize( 1024 );
+		router.setWindowSize( 1024 );
+
+		final byte[] data = new byte[ 4096 ];
+		rand.nextBytes( data );
+
+		try ( InputStream routerIn = router.newInputBuffer() ) {
+			final AtomicBoolean written = new AtomicBoolean( false );
+			// More than the window, so the writer waits for the reader
+			final Thread writer = new Thread( () -> {
+				try ( GatheringByteChannel out = client.newOutputChannel( Target.to( net_router.getHome() ) ) ) {
+					final ByteBuffer direct = ByteBuffer.allocateDirect( 1000 );
+					for ( int off = 0; off < data.length; off += direct.capacity() ) {
+						direct.clear();
+						direct.put( data, off, Math.min( direct.capacity(), data.length - off ) );
+						direct.flip();
+						if ( out.write( direct ) != Math.min( direct.capacity(), data.length - off ) || direct.hasRemaining() ) {
+							return;
+						}
+					}
+					written.set( true );
+				} catch ( IOException e ) {
+					throw new RuntimeException( e );
+				}
+			} );
+			writer.start();
+
+			final byte[] buf = new byte[ data.length ];
+			int read = 0;
+			while ( read < data.length ) {
+				read += routerIn.read( buf, read, data.length - read );
+			}
+			writer.join( 1000 );
+			assertTrue( written.get() );
+			assertArrayEquals( data, buf );
+		}
+
+		client.close();
+		router.close();
+	}
+
+	@Test
+	public void testSendDirectBuffer() throws Exception {
+
+		Tunnel client = net_client.getTunnel( "direct" );
+		Tunnel router = net_router.getTunnel( "direct" );
+
+		final byte[] data = new byte[ 128 ];
+		rand.nextBytes( data );
+
+		final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+		router.registerListener( testingOwner, msg -> received.add( msg.getData().toByteArray() ) );
+
+		final ByteBuffer direct = ByteBuffer.allocateDirect( data.length );
+		direct.put( data ).flip();
+		assertTrue( client.send( target_router, direct ) );
+		assertFalse( direct.hasRemaining() );
+		// The buffer can be reused right away
+		direct.clear();
+		direct.put( new byte[ data.length ] );
+
+		assertArrayEquals( data, received.poll( 1, TimeUnit.SECONDS ) );
+	}
+
+	@Test
+	public void testSendOwned() throws Exception {
+
+		Tunnel client = net_client.getTunnel( "owned" );
+		Tunnel router = net_router.getTunnel( "owned" );
+
+		final byte[] data = new byte[ 128 ];
+		rand.nextBytes( data );
+
+		final BlockingQueue<ByteBuffer> received = new LinkedBlockingQueue<>();
+		router.registerListener( testingOwner, msg -> received.add( msg.getDataBuffer() ) );
+
+		assertTrue( client.sendOwned( target_router, data.clone() ) );
+		final ByteBuffer first = received.poll( 1, TimeUnit.SECONDS );
+		assertTrue( first.isReadOnly() );
+		assertEquals( ByteBuffer.wrap( data ), first );
+
+		final ByteBuf buf = Unpooled.directBuffer( data.length ).writeBytes( data );
+		assertTrue( client.send( target_router, buf ) );
+		assertEquals( 0, buf.refCnt() );
+		assertEquals( ByteBuffer.wrap( data ), received.poll( 1, TimeUnit.SECONDS ) );
+	}
+
+	@Test
+	public void testByteBufferTunnel() throws Exception {
+
+		ObjectTunnel<ByteBuffer> client = net_client.getTunnel( TunnelDescriptors.getByteBufferTunnel( "bytebuffer" ) );
+		ObjectTunnel<ByteBuffer> router = net_router.getTunnel( TunnelDescriptors.getByteBufferTunnel( "bytebuffer" ) );
+
+		final byte[] data = new byte[ 128 ];
+		rand.nextBytes( data );
+
+		final BlockingQueue<ByteBuffer> received = new LinkedBlockingQueue<>();
+		router.registerListener( testingOwner, msg -> received.add( msg.getObject() ) );
+
+		assertTrue( client.send( target_router, ByteBuffer.wrap( data.clone() ) ) );
+		final ByteBuffer result = received.poll( 1, TimeUnit.SECONDS );
+		assertTrue( result.isReadOnly() );
+		assertEquals( ByteBuffer.wrap( data ), result );
+	}
+
 }
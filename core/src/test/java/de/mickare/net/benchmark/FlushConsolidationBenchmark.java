@@ -0,0 +1,139 @@
+package de.mickare.net.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Forwards messages like the router does, one writeAndFlush per message received on one channel to a second
+ * channel, with and without flush consolidation on the second channel.
+ *
+ * The flushes that reach the transport of the second channel are counted, each of them is a write syscall on a
+ * real socket (flushes per read cycle = flushes / messages). The second channel is not reading while the messages
+ * are forwarded, so only consolidateWithoutRead merges its flushes.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class FlushConsolidationBenchmark {
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder().include( FlushConsolidationBenchmark.class.getSimpleName() ).build() ).run();
+	}
+
+	/**
+	 * 0 disables flush consolidation
+	 */
+	@Param( { "0", "256" } )
+	private int flushConsolidationLimit;
+
+	@Param( { "false", "true" } )
+	private boolean consolidateWithoutRead;
+
+	/**
+	 * Messages per read cycle
+	 */
+	@Param( { "16" } )
+	private int messages;
+
+	@AuxCounters( AuxCounters.Type.EVENTS )
+	@State( Scope.Thread )
+	public static class Counters {
+		public long flushes;
+		public long writes;
+
+		@Setup( Level.Iteration )
+		public void reset() {
+			flushes = 0;
+			writes = 0;
+		}
+	}
+
+	private static final Object READ = new Object();
+
+	private EncodedPacket packet;
+	private EmbeddedChannel in;
+	private EmbeddedChannel out;
+	private Counters counters;
+
+	@Setup
+	public void setup() throws Exception {
+		final TunnelMessage msg = TunnelMessage.newBuilder().setTunnelId( 1 )//
+				.setTarget( Target.toAll().getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( UUID.randomUUID() ) )//
+				.setData( ByteString.copyFrom( new byte[ 64 ] ) ).build();
+		packet = EncodedPacket.encode( Packer.pack( msg ) );
+
+		out = new EmbeddedChannel();
+		new PipelineUtils.BaseInitializer( flushConsolidationLimit, consolidateWithoutRead, 0, 0 ).initChannel( out );
+		out.pipeline().addFirst( "counter", new ChannelOutboundHandlerAdapter() {
+			@Override
+			public void flush( ChannelHandlerContext ctx ) throws Exception {
+				counters.flushes++;
+				super.flush( ctx );
+			}
+		} );
+
+		in = new EmbeddedChannel();
+		in.pipeline().addLast( "forward", new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelRead( ChannelHandlerContext ctx, Object msg ) throws Exception {
+				counters.writes++;
+				out.writeAndFlush( packet.retainedDuplicate(), out.voidPromise() );
+			}
+		} );
+	}
+
+	@TearDown
+	public void tearDown() {
+		in.finishAndReleaseAll();
+		out.finishAndReleaseAll();
+		packet.release();
+	}
+
+	@Benchmark
+	public void readCycle( Counters counters ) {
+		this.counters = counters;
+		for ( int i = 0; i < messages; ++i ) {
+			in.pipeline().fireChannelRead( READ );
+		}
+		in.pipeline().fireChannelReadComplete();
+		// Runs the consolidated flush, like the next event loop iteration
+		out.runPendingTasks();
+		out.releaseOutbound();
+	}
+
+}
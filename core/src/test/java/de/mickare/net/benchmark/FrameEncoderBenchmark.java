@@ -0,0 +1,96 @@
+package de.mickare.net.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.packet.Packer;
+import de.mickare.routernet.netty.FrameEncoder;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.protobuf.ProtobufEncoder;
+
+/**
+ * Encodes a tunnel message with the former ProtobufEncoder and LengthFieldPrepender pair and with the single pass
+ * FrameEncoder with fixed and varint length prefixes.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class FrameEncoderBenchmark {
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder().include( FrameEncoderBenchmark.class.getSimpleName() ).build() ).run();
+	}
+
+	@Param( { "64", "4096", "65536" } )
+	private int payloadSize;
+
+	private Packet packet;
+	private EmbeddedChannel pair;
+	private EmbeddedChannel fixed;
+	private EmbeddedChannel varint;
+
+	@Setup
+	public void setup() {
+		packet = Packer.pack( TunnelMessage.newBuilder().setTunnelId( 1 )//
+				.setTarget( Target.toAll().getProtocolMessage() )//
+				.setSender( ProtocolUtils.convert( UUID.randomUUID() ) )//
+				.setData( ByteString.copyFrom( new byte[ payloadSize ] ) ) );
+		pair = new EmbeddedChannel( new LengthFieldPrepender( 4 ), new ProtobufEncoder() );
+		fixed = new EmbeddedChannel( new FrameEncoder( false ) );
+		varint = new EmbeddedChannel( new FrameEncoder( true ) );
+	}
+
+	@TearDown
+	public void tearDown() {
+		pair.finishAndReleaseAll();
+		fixed.finishAndReleaseAll();
+		varint.finishAndReleaseAll();
+	}
+
+	private static boolean encode( EmbeddedChannel ch, Packet packet ) {
+		ch.writeOutbound( packet );
+		return ch.releaseOutbound();
+	}
+
+	@Benchmark
+	public boolean protobufEncoderAndPrepender() {
+		return encode( pair, packet );
+	}
+
+	@Benchmark
+	public boolean frameEncoderFixed() {
+		return encode( fixed, packet );
+	}
+
+	@Benchmark
+	public boolean frameEncoderVarint() {
+		return encode( varint, packet );
+	}
+
+}
@@ -0,0 +1,129 @@
+package de.mickare.net.benchmark;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Node;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.dummy.DummClientNetwork;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
+
+/**
+ * Measures the cost of topology churn on the copy on write node index, and the routing lookups that the index makes
+ * lock free.
+ *
+ * A single update copies the entries and the sets of the changed namespaces, a topology message builds the index once.
+ * Run with the main method, the gc profiler reports the allocations per update (gc.alloc.rate.norm).
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class NodeIndexBenchmark {
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder().include( NodeIndexBenchmark.class.getSimpleName() ).addProfiler( GCProfiler.class ).build() ).run();
+	}
+
+	@Param( { "100", "1000" } )
+	private int nodeCount;
+
+	private ScheduledExecutorService executor;
+	private DummClientNetwork network;
+
+	private NodeMessage[] lobby;
+	private NodeMessage[] game;
+	private int next = 0;
+
+	private NodeTopologyMessage[] topologies;
+	private TargetMessage toNamespace;
+
+	@Setup
+	public void setup() {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		network = new DummClientNetwork( executor, new UUID( 0, 1 ) );
+		lobby = new NodeMessage[ nodeCount ];
+		game = new NodeMessage[ nodeCount ];
+		for ( int i = 0; i < nodeCount; ++i ) {
+			lobby[i] = node( i, "lobby" );
+			game[i] = node( i, "game" );
+			network.updateNode( null, i % 10 == 0 ? lobby[i] : game[i] );
+		}
+		// Every node changes its namespace between the topologies
+		topologies = new NodeTopologyMessage[] { NodeTopologyMessage.newBuilder().addAllNodes( Arrays.asList( lobby ) ).build(), NodeTopologyMessage.newBuilder().addAllNodes( Arrays.asList( game ) ).build() };
+		toNamespace = Target.to( "lobby" ).getProtocolMessage();
+	}
+
+	private static NodeMessage node( int id, String namespace ) {
+		NodeMessage.Builder b = NodeMessage.newBuilder();
+		b.setId( ProtocolUtils.convert( new UUID( 1, id ) ) );
+		b.setName( "node" + id );
+		b.setStartTimestamp( 1 );
+		b.addNamespaces( namespace );
+		return b.build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Moves one node to the other namespace, which changes the index.
+	 */
+	@Benchmark
+	public Node updateNamespace() {
+		final int i = next;
+		next = ( i + 1 ) % nodeCount;
+		final Node node = network.getNode( new UUID( 1, i ) );
+		return network.updateNode( null, node.hasNamespace( "lobby" ) ? game[i] : lobby[i] );
+	}
+
+	/**
+	 * Applies a topology message that moves every node, like a login sync.
+	 */
+	@Benchmark
+	public int updateTopology() {
+		next = ( next + 1 ) % 2;
+		network.updateNodes( null, topologies[next] );
+		return network.getNodeList().size();
+	}
+
+	@Benchmark
+	public int forEachNamespace() {
+		final int[] count = { 0 };
+		network.forEachNode( toNamespace, n -> ++count[0] );
+		return count[0];
+	}
+
+	@Benchmark
+	public int getNodesNamespace() {
+		return network.getNodes( toNamespace ).size();
+	}
+
+}
@@ -0,0 +1,90 @@
+package de.mickare.net.benchmark;
+
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.core.codec.Codecs;
+import de.mickare.routernet.core.codec.Schema;
+
+/**
+ * Serializes and deserializes a small DTO with the schema codec and with java serialization.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class SchemaCodecBenchmark {
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder().include( SchemaCodecBenchmark.class.getSimpleName() ).build() ).run();
+	}
+
+	@Schema
+	public static class Position implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private UUID player;
+		private String world;
+		private double x, y, z;
+		private float yaw, pitch;
+		private boolean onGround;
+	}
+
+	private Position value;
+	private ByteString schema;
+	private ByteString java;
+
+	@Setup
+	public void setup() throws Exception {
+		value = new Position();
+		value.player = UUID.randomUUID();
+		value.world = "world_nether";
+		value.x = 128.5;
+		value.y = 64;
+		value.z = -1024.25;
+		value.yaw = 90;
+		value.pitch = -12.5f;
+		value.onGround = true;
+		schema = Codecs.SCHEMA.encode( Position.class, value );
+		java = Codecs.JDK.encode( Position.class, value );
+	}
+
+	@Benchmark
+	public ByteString writeSchema() throws Exception {
+		return Codecs.SCHEMA.encode( Position.class, value );
+	}
+
+	@Benchmark
+	public ByteString writeJava() throws Exception {
+		return Codecs.JDK.encode( Position.class, value );
+	}
+
+	@Benchmark
+	public Position readSchema() throws Exception {
+		return Codecs.SCHEMA.decode( Position.class, schema );
+	}
+
+	@Benchmark
+	public Position readJava() throws Exception {
+		return Codecs.JDK.decode( Position.class, java );
+	}
+
+}
@@ -0,0 +1,115 @@
+package de.mickare.net.benchmark;
+
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.ByteString.Output;
+
+import de.mickare.routernet.core.Serialization;
+
+/**
+ * Serializes and deserializes common value types with the compact format of Serialization and with plain java
+ * serialization.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class SerializationBenchmark {
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder().include( SerializationBenchmark.class.getSimpleName() ).build() ).run();
+	}
+
+	@Param( { "string", "integer", "uuid", "list", "map" } )
+	private String type;
+
+	private Object value;
+	private ByteString compact;
+	private ByteString java;
+
+	@Setup
+	public void setup() throws Exception {
+		switch ( type ) {
+			case "string":
+				value = "player_name_1234";
+				break;
+			case "integer":
+				value = 123456;
+				break;
+			case "uuid":
+				value = UUID.randomUUID();
+				break;
+			case "list":
+				final ArrayList<Object> list = new ArrayList<>();
+				for ( int i = 0; i < 16; ++i ) {
+					list.add( UUID.randomUUID() );
+				}
+				value = list;
+				break;
+			case "map":
+				final HashMap<Object, Object> map = new HashMap<>();
+				for ( int i = 0; i < 16; ++i ) {
+					map.put( "key" + i, ( long ) i );
+				}
+				value = map;
+				break;
+			default:
+				throw new IllegalArgumentException( type );
+		}
+		compact = Serialization.asCompactByteString( Object.class, value );
+		java = javaSerialize( value );
+	}
+
+	private static ByteString javaSerialize( Object obj ) throws Exception {
+		try ( final Output stream = ByteString.newOutput(); ObjectOutput out = new ObjectOutputStream( stream ) ) {
+			out.writeObject( obj );
+			out.flush();
+			return stream.toByteString();
+		}
+	}
+
+	@Benchmark
+	public ByteString writeCompact() throws Exception {
+		return Serialization.asCompactByteString( Object.class, value );
+	}
+
+	@Benchmark
+	public ByteString writeJava() throws Exception {
+		return javaSerialize( value );
+	}
+
+	@Benchmark
+	public Object readCompact() throws Exception {
+		return Serialization.asCompactObject( Object.class, compact );
+	}
+
+	@Benchmark
+	public Object readJava() throws Exception {
+		// Java serialization streams are still read by Serialization
+		return Serialization.asObject( Object.class, java );
+	}
+
+}
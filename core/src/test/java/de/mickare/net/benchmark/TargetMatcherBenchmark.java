@@ -0,0 +1,131 @@
+package de.mickare.net.benchmark;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.core.Node;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.TargetMatcher;
+import de.mickare.routernet.dummy.DummClientNetwork;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
+
+/**
+ * Compares routing a target message with {@link TargetMatcher} against creating a {@link Target}.
+ * 
+ * Run with the main method, the gc profiler reports the allocations per routed message
+ * (gc.alloc.rate.norm).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+public class TargetMatcherBenchmark {
+	
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder().include( TargetMatcherBenchmark.class.getSimpleName() ).addProfiler( GCProfiler.class ).build() ).run();
+	}
+	
+	@Param( { "300" } )
+	private int nodeCount;
+	
+	private ScheduledExecutorService executor;
+	private DummClientNetwork network;
+	private List<Node> nodes;
+	
+	private TargetMessage toNamespace;
+	private TargetMessage toAllExcept;
+	private TargetMessage toNode;
+	
+	@Setup
+	public void setup() {
+		executor = Executors.newSingleThreadScheduledExecutor();
+		network = new DummClientNetwork( executor, new UUID( 0, 1 ) );
+		for ( int i = 0; i < nodeCount; ++i ) {
+			NodeMessage.Builder b = NodeMessage.newBuilder();
+			b.setId( ProtocolUtils.convert( new UUID( 1, i ) ) );
+			b.setName( "node" + i );
+			b.setStartTimestamp( 1 );
+			b.addNamespaces( i % 10 == 0 ? "lobby" : "game" );
+			network.updateNode( null, b.build() );
+		}
+		nodes = network.getNodeList();
+		
+		toNamespace = Target.to( "lobby" ).getProtocolMessage();
+		toAllExcept = Target.Builder.toAll().exclude( new UUID( 1, 7 ) ).exclude( "game" ).build().getProtocolMessage();
+		toNode = Target.to( new UUID( 1, nodeCount / 2 ) ).getProtocolMessage();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+	
+	private int countMatcher( final TargetMessage target ) {
+		int count = 0;
+		for ( int i = 0; i < nodes.size(); ++i ) {
+			if ( TargetMatcher.matches( target, nodes.get( i ) ) ) {
+				++count;
+			}
+		}
+		return count;
+	}
+	
+	private int countTarget( final TargetMessage msg ) {
+		return network.getNodes( new Target( msg ) ).size();
+	}
+	
+	@Benchmark
+	public int matcherNamespace() {
+		return countMatcher( toNamespace );
+	}
+	
+	@Benchmark
+	public int matcherAllExcept() {
+		return countMatcher( toAllExcept );
+	}
+	
+	@Benchmark
+	public int matcherNode() {
+		return countMatcher( toNode );
+	}
+	
+	@Benchmark
+	public int targetNamespace() {
+		return countTarget( toNamespace );
+	}
+	
+	@Benchmark
+	public int targetAllExcept() {
+		return countTarget( toAllExcept );
+	}
+	
+	@Benchmark
+	public int targetNode() {
+		return countTarget( toNode );
+	}
+	
+}
@@ -2,9 +2,12 @@ package de.mickare.routernet;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import com.google.common.base.Preconditions;
@@ -24,34 +27,63 @@ import de.mickare.routernet.core.tunnel.TunnelMessage;
 import de.mickare.routernet.event.ConnectionAddedEvent;
 import de.mickare.routernet.event.ConnectionRemovedEvent;
 import de.mickare.routernet.exception.ProtocolException;
+import de.mickare.routernet.metric.Metric;
+import de.mickare.routernet.netty.EncodedPacket;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeRemoveMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureResponseMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelDictionary;
+import de.mickare.routernet.router.DictionaryTrainer;
 import de.mickare.routernet.router.Router;
+import de.mickare.routernet.router.RoutingCache;
+import de.mickare.routernet.router.TunnelSubscribers;
+import de.mickare.routernet.router.config.Settings;
 import de.mickare.routernet.util.concurrent.CloseableLock;
 import de.mickare.routernet.util.concurrent.CloseableReadWriteLock;
 import de.mickare.routernet.util.concurrent.ReentrantCloseableReadWriteLock;
+import lombok.Getter;
 
 public class RouterNetwork extends AbstractNetwork {
 
-  private final Router router;
+  private final Metric metric;
 
   private final CloseableReadWriteLock connectionLock = new ReentrantCloseableReadWriteLock(true);
   private final Map<UUID, Connection> connections = new ConcurrentHashMap<>();
+  private final @Getter TunnelSubscribers tunnelSubscribers = new TunnelSubscribers(this);
+  private final @Getter RoutingCache routingCache;
+  private final @Getter DictionaryTrainer dictionaryTrainer;
 
   public RouterNetwork(Router router, ScheduledExecutorService scheduler, HomeNode home) {
-    super(router.getLogger(), scheduler, home);
-    Preconditions.checkNotNull(router);
-    this.router = router;
-    Net.setNetwork(this);
+    this(router.getLogger(), scheduler, home, router.getConfig().getRouterSettings(),
+        router.getMetric(), router.getScheduler());
   }
 
-  @Override
-  public Logger getLogger() {
-    return router.getLogger();
+  /**
+   * @param logger of router
+   * @param scheduler of network
+   * @param home node of router
+   * @param settings of router
+   * @param metric of router
+   * @param background executes work that must not block the event loop
+   */
+  public RouterNetwork(Logger logger, ScheduledExecutorService scheduler, HomeNode home,
+      Settings.RouterConfig settings, Metric metric, Executor background) {
+    super(logger, scheduler, home);
+    Preconditions.checkNotNull(settings);
+    Preconditions.checkNotNull(metric);
+    this.metric = metric;
+    this.routingCache = new RoutingCache(this, tunnelSubscribers, metric.getRoutingCache(),
+        settings.getRoutingCacheSize());
+    this.dictionaryTrainer = new DictionaryTrainer(this, background,
+        settings.getDictionarySampleInterval(), settings.getDictionarySamples(),
+        settings.getDictionarySize(), settings.getDictionaryMinIntervalMillis());
+    getFragmentAssembler().setMemoryLimit(settings.getFragmentMemoryLimit());
+    getFragmentAssembler().setSenderMemoryLimit(settings.getFragmentSenderMemoryLimit());
+    getFragmentAssembler().setTimeout(settings.getFragmentTimeoutMillis(), TimeUnit.MILLISECONDS);
+    Net.setNetwork(this);
   }
 
   // ********************************************************************
@@ -60,8 +92,11 @@ public class RouterNetwork extends AbstractNetwork {
   @Override
   protected void addConnection(Connection connection) {
     try (CloseableLock l = connectionLock.writeLock().open()) {
+      this.tunnelSubscribers.addConnection(connection);
       Connection old = connections.put(connection.getPeerId(), connection);
+      this.nextTopologyEpoch();
       if (old != null && old != connection) {
+        this.unsubscribe(old);
         old.disconnect("replaced");
         this.getEventBus().post(new ConnectionRemovedEvent(connection));
       }
@@ -72,10 +107,23 @@ public class RouterNetwork extends AbstractNetwork {
     }
   }
 
+  private void unsubscribe(Connection connection) {
+    this.tunnelSubscribers.removeConnection(connection);
+    // Tunnels nobody registered anymore do not need samples
+    for (String name : connection.getRemoteTunnels().keySet()) {
+      final Tunnel tunnel = getTunnelIfPresent(name);
+      if (tunnel != null && tunnelSubscribers.getSubscribers(tunnel.getIndex()).isEmpty()) {
+        this.dictionaryTrainer.remove(tunnel);
+      }
+    }
+  }
+
   @Override
   protected void removeConnection(Connection connection) {
     try (CloseableLock l = connectionLock.writeLock().open()) {
       if (this.connections.remove(connection.getPeerId(), connection)) {
+        this.nextTopologyEpoch();
+        this.unsubscribe(connection);
         String name = connection.getName();
         getLogger().info(
             connection.getPeerId() + (name != null ? "(" + name + ")" : "") + " disconnected.");
@@ -183,27 +231,41 @@ public class RouterNetwork extends AbstractNetwork {
   }
 
   private void forwardNodeUpdate(Connection in, NodeUpdateMessage.Builder msg) {
-    final Packet packet = Packer.pack(msg);
     final UUID inId = in.getPeerId();
     try (CloseableLock l = connectionLock.readLock().open()) {
-      this.connections.values().stream().filter(con -> !con.getPeerId().equals(inId))
-          .forEach(out -> {
-            out.writeAndFlushFast(packet);
-          });
+      if (this.connections.isEmpty()) {
+        return;
+      }
+      final EncodedPacket encoded = EncodedPacket.encode(Packer.pack(msg));
+      try {
+        this.connections.values().stream().filter(con -> !con.getPeerId().equals(inId))
+            .forEach(out -> {
+              out.writeAndFlushFast(encoded.retainedDuplicate());
+            });
+      } finally {
+        encoded.release();
+      }
     }
   }
 
   @Override
   public void removeNode(UUID id) {
     Preconditions.checkNotNull(id);
-    final Packet packet =
-        Packer.pack(NodeRemoveMessage.newBuilder().setId(ProtocolUtils.convert(id)));
     try (CloseableLock l = connectionLock.readLock().open()) {
       if (!this.connections.containsKey(id)) {
         super.removeNode(id);
-        this.connections.values().forEach(con -> {
-          con.writeAndFlushFast(packet);
-        });
+        if (this.connections.isEmpty()) {
+          return;
+        }
+        final EncodedPacket encoded = EncodedPacket
+            .encode(Packer.pack(NodeRemoveMessage.newBuilder().setId(ProtocolUtils.convert(id))));
+        try {
+          this.connections.values().forEach(con -> {
+            con.writeAndFlushFast(encoded.retainedDuplicate());
+          });
+        } finally {
+          encoded.release();
+        }
       }
     }
   }
@@ -212,26 +274,65 @@ public class RouterNetwork extends AbstractNetwork {
   // TUNNEL
 
   @Override
-  protected boolean sendTunnelMessage(TunnelMessage cmsg) {
-
-    boolean result = true;
+  protected boolean sendTunnelMessageEncoded(TunnelMessage cmsg) {
+    // Always encoded before it is written
+    return sendTunnelMessage(cmsg);
+  }
 
-    final Packet packet = Packer.pack(cmsg.toProtocolMessage());
+  @Override
+  protected boolean sendTunnelMessage(TunnelMessage cmsg) {
 
-    for (Node node : this.getNodes(cmsg.getTarget())) {
-      Connection con = this.getConnection(node.getId());
-      if (con != null && con.isActive()) {
-        con.writeAndFlushFast(packet);
-      } else {
-        result = false;
+    final RoutingCache.Route route =
+        this.routingCache.getRoute(cmsg.getTarget().getProtocolMessage());
+    boolean result = route.isComplete();
+
+    // Encode only once for all receivers
+    EncodedPacket encoded = null;
+    try {
+      for (int slot = route.nextRecipient(0); slot >= 0; slot = route.nextRecipient(slot + 1)) {
+        final Connection con = route.getConnection(slot);
+        if (con.isActive()) {
+          if (encoded == null) {
+            encoded = EncodedPacket.encode(Packer.pack(cmsg.toProtocolMessage()));
+          }
+          con.writeAndFlushFast(encoded.retainedDuplicate());
+        } else {
+          result = false;
+        }
+      }
+    } finally {
+      if (encoded != null) {
+        encoded.release();
       }
     }
 
     return result;
   }
 
+  @Override
+  protected void receiveTunnelIndex(Tunnel tunnel, int index) {
+    // The router assigns the indexes
+    this.assignTunnelIndex(tunnel);
+  }
+
+  @Override
+  public Optional<Metric> getMetric() {
+    return Optional.of(metric);
+  }
+
+  @Override
+  public boolean isDictionaryAuthority() {
+    return true;
+  }
+
+  @Override
+  protected void receiveTunnelDictionary(Tunnel tunnel, TunnelDictionary dictionary) {
+    // The router trains the dictionaries, clients only announce the version they know
+  }
+
   @Override
   protected boolean registerTunnel(Tunnel tunnel) {
+    this.assignTunnelIndex(tunnel);
     try (CloseableLock l = connectionLock.readLock().open()) {
       this.connections.values().forEach(tunnel::sendTunnelRegister);
     }
@@ -0,0 +1,215 @@
+package de.mickare.routernet.router;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.zip.DataFormatException;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.RouterNetwork;
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+
+/**
+ * Trains the dictionaries of object tunnels from routed messages and distributes them.
+ *
+ * Every n-th message or batch of a tunnel is sampled, with all messages of a batch. Only messages
+ * in the size range of {@link TunnelDictionary#compress(ByteString)} are sampled. When enough
+ * samples are collected a new dictionary is built from them on the executor, not on the event
+ * loop that routed the last sample. It replaces the current dictionary only if it compresses the
+ * samples clearly better, so stable traffic does not cause new dictionaries all the time.
+ *
+ * Receivers keep only the current and the previous dictionary of a tunnel. A dictionary is
+ * therefore replaced at most once per minimum interval, so messages compressed with the previous
+ * one are delivered before it is dropped.
+ */
+public class DictionaryTrainer {
+
+  public static final long DEFAULT_MIN_INTERVAL_MILLIS = 60000;
+
+  /**
+   * A new dictionary must compress the samples this much smaller than the current one.
+   */
+  private static final double MIN_GAIN = 0.9;
+
+  private final RouterNetwork network;
+  private final Executor executor;
+  private final int sampleInterval;
+  private final int samplesPerDictionary;
+  private final int dictionarySize;
+  private final long minIntervalMillis;
+
+  private final Map<Integer, Samples> tunnels = new ConcurrentHashMap<>();
+
+  /**
+   * @param network of router
+   * @param executor that trains the dictionaries
+   * @param sampleInterval sample every n-th message of a tunnel, 0 disables training
+   * @param samplesPerDictionary number of samples a dictionary is trained from
+   * @param dictionarySize maximum size in bytes of a dictionary
+   * @param minIntervalMillis minimum time between two dictionaries of a tunnel
+   */
+  public DictionaryTrainer(RouterNetwork network, Executor executor, int sampleInterval,
+      int samplesPerDictionary, int dictionarySize, long minIntervalMillis) {
+    Preconditions.checkNotNull(network);
+    Preconditions.checkNotNull(executor);
+    Preconditions.checkArgument(sampleInterval >= 0);
+    Preconditions.checkArgument(samplesPerDictionary > 0);
+    Preconditions.checkArgument(dictionarySize > 0 && dictionarySize <= TunnelDictionary.MAX_SIZE);
+    Preconditions.checkArgument(minIntervalMillis >= 0);
+    this.network = network;
+    this.executor = executor;
+    this.sampleInterval = sampleInterval;
+    this.samplesPerDictionary = samplesPerDictionary;
+    this.dictionarySize = dictionarySize;
+    this.minIntervalMillis = minIntervalMillis;
+  }
+
+  private static class Samples {
+    private final AtomicInteger counter = new AtomicInteger();
+    private final List<ByteString> data = new ArrayList<>();
+    // Time the dictionary was last replaced
+    private volatile long replaced = Long.MIN_VALUE;
+
+    private boolean isWaiting(long minIntervalMillis) {
+      return replaced != Long.MIN_VALUE
+          && System.currentTimeMillis() - replaced < minIntervalMillis;
+    }
+  }
+
+  /**
+   * Checks whether the next message of the tunnel is sampled. Cheap enough to call for every
+   * routed message.
+   *
+   * @param tunnel of message
+   * @return true if the message should be passed to {@link #sample(Tunnel, TunnelMessage)}
+   */
+  public boolean isSampling(Tunnel tunnel) {
+    if (sampleInterval == 0 || tunnel.getType() != TunnelRegister.Type.OBJECT) {
+      return false;
+    }
+    final Samples samples = tunnels.computeIfAbsent(tunnel.getId(), id -> new Samples());
+    return samples.counter.getAndIncrement() % sampleInterval == 0
+        && !samples.isWaiting(minIntervalMillis);
+  }
+
+  /**
+   * Adds the data of every message of a batch to the samples of the tunnel.
+   *
+   * @param tunnel of batch
+   * @param batch to sample
+   */
+  public void sample(Tunnel tunnel, PacketBatch batch) {
+    for (int i = 0, size = batch.getPacketsCount(); i < size; ++i) {
+      sample(tunnel, batch.getPackets(i).getTunnelMessage());
+    }
+  }
+
+  /**
+   * Drops the samples of a tunnel, when no connection registered it anymore.
+   *
+   * @param tunnel to forget
+   */
+  public void remove(Tunnel tunnel) {
+    tunnels.remove(tunnel.getId());
+  }
+
+  /**
+   * Adds the data of a message to the samples of the tunnel.
+   *
+   * @param tunnel of message
+   * @param msg to sample
+   */
+  public void sample(Tunnel tunnel, TunnelMessage msg) {
+    final ByteString data;
+    try {
+      data = tunnel.decompress(msg.getDictionary(), msg.getData());
+    } catch (DataFormatException e) {
+      return;
+    }
+    if (data.size() < TunnelDictionary.MIN_DATA_SIZE
+        || data.size() > TunnelDictionary.MAX_DATA_SIZE) {
+      return;
+    }
+
+    final Samples samples = tunnels.computeIfAbsent(tunnel.getId(), id -> new Samples());
+    final List<ByteString> trainingSet;
+    synchronized (samples) {
+      // Keep the sample independent of the frame it was decoded from
+      samples.data.add(ByteString.copyFrom(data.asReadOnlyByteBuffer()));
+      if (samples.data.size() < samplesPerDictionary) {
+        return;
+      }
+      trainingSet = new ArrayList<>(samples.data);
+      samples.data.clear();
+    }
+    executor.execute(() -> train(tunnel, samples, trainingSet));
+  }
+
+  private void train(Tunnel tunnel, Samples samples, List<ByteString> trainingSet) {
+    if (samples.isWaiting(minIntervalMillis)) {
+      return;
+    }
+    final TunnelDictionary trained = TunnelDictionary.train(trainingSet, dictionarySize);
+    if (trained == null) {
+      return;
+    }
+    final TunnelDictionary current = tunnel.getDictionary();
+    if (current != null) {
+      if (current.getVersion() == trained.getVersion()) {
+        return;
+      }
+      // Compare on samples the candidate was not trained with, it would always win on its own
+      final int half = trainingSet.size() / 2;
+      final List<ByteString> older = trainingSet.subList(0, half);
+      final List<ByteString> newer = trainingSet.subList(half, trainingSet.size());
+      final TunnelDictionary candidate = TunnelDictionary.train(older, dictionarySize);
+      if (candidate == null
+          || compressedSize(candidate, newer) > compressedSize(current, newer) * MIN_GAIN) {
+        return;
+      }
+    }
+    tunnel.setDictionary(trained);
+    samples.replaced = System.currentTimeMillis();
+    network.getLogger().log(Level.FINE, "Trained dictionary " + trained.getVersion()
+        + " of tunnel " + tunnel.getName() + " (" + trained.size() + " bytes)");
+    publish(tunnel);
+  }
+
+  private static long compressedSize(TunnelDictionary dictionary, List<ByteString> data) {
+    long result = 0;
+    for (ByteString raw : data) {
+      final ByteString compressed = dictionary.compress(raw);
+      result += compressed != null ? compressed.size() : raw.size();
+    }
+    return result;
+  }
+
+  /**
+   * Sends the current dictionary of the tunnel to all connections that registered it.
+   *
+   * @param tunnel with new dictionary
+   */
+  public void publish(Tunnel tunnel) {
+    final TunnelSubscribers subscribers = network.getTunnelSubscribers();
+    final Connection[] slots = subscribers.getSlots();
+    final BitSet slotSet = subscribers.getSubscribers(tunnel.getIndex());
+    for (int slot = slotSet.nextSetBit(0); slot >= 0; slot = slotSet.nextSetBit(slot + 1)) {
+      if (slot < slots.length && slots[slot] != null && slots[slot].isActive()) {
+        tunnel.sendTunnelRegister(slots[slot]);
+      }
+    }
+  }
+
+}
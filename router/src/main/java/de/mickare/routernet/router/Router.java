@@ -3,6 +3,8 @@ package de.mickare.routernet.router;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,10 +26,12 @@ import de.mickare.routernet.metric.Metric;
 import de.mickare.routernet.netty.ConnectionHandler;
 import de.mickare.routernet.netty.LoginHandler;
 import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.protocol.LoginProtocol.Compression;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
 import de.mickare.routernet.router.command.CommandManager;
 import de.mickare.routernet.router.config.Settings;
 import de.mickare.routernet.router.packet.RouterPacketHandler;
+import de.mickare.routernet.router.packet.RoutingHandler;
 import de.mickare.routernet.router.plugin.Plugin;
 import de.mickare.routernet.router.plugin.PluginManager;
 import de.mickare.routernet.util.BuildInfo;
@@ -54,7 +58,8 @@ public class Router extends AbstractIdleService implements Owner {
   private final @Getter ConsoleReader console;
   private final @Getter CommandManager commandManager;
   private final @Getter ConfigFile<Settings> configFile;
-  // private final @Getter ScheduledExecutorService scheduler;
+  // Background work that must not block the event loop
+  private final @Getter ScheduledExecutorService scheduler;
   private final @Getter PluginManager pluginManager;
   private @Getter HostAndPort address;
   private final @Getter RouterNetwork network;
@@ -62,7 +67,7 @@ public class Router extends AbstractIdleService implements Owner {
   private @Getter EventLoopGroup eventLoop = null;
   private Channel listener = null;
   private @Getter RouterAuthentication authentication = null;
-  private @Getter Metric metric;
+  private final @Getter Metric metric;
 
   private @Getter final File pluginsFolder;
 
@@ -93,16 +98,15 @@ public class Router extends AbstractIdleService implements Owner {
 
     this.pluginManager = new PluginManager(this);
 
-    /*
-     * this.scheduler = MoreExecutors.getExitingScheduledExecutorService( new
-     * ScheduledThreadPoolExecutor(0, new ThreadFactoryBuilder().setNameFormat(
-     * "Router Pool Thread #%1$d").build()), 10, TimeUnit.SECONDS);
-     */
+    this.scheduler = Executors.newScheduledThreadPool(1,
+        new ThreadFactoryBuilder().setNameFormat("Router Pool Thread #%1$d").build());
 
     // Init EventLoop
     this.eventLoop = PipelineUtils.newEventLoopGroup(0,
         new ThreadFactoryBuilder().setNameFormat("Netty IO Thread #%1$d").build());
 
+    this.metric = new Metric(eventLoop);
+
     HomeNode home = new HomeNode(this.configFile.getConfig().getRouterSettings().getHome().getId(),
         this.getConfig().getRouterSettings().getHome().getNamespaces());
     home.setType(NodeMessage.Type.ROUTER);
@@ -158,8 +162,6 @@ public class Router extends AbstractIdleService implements Owner {
     this.authentication = AuthenticationFactory
         .newPasswordForRouter(this.getConfigFile().getConfig().getRouterSettings().getPassword());
 
-    this.metric = new Metric(eventLoop);
-
     // Enable plugins
     this.pluginManager.enablePlugins();
 
@@ -177,14 +179,29 @@ public class Router extends AbstractIdleService implements Owner {
     b.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
         new WriteBufferWaterMark(16 * 1024, 32 * 1024));
 
-    b.childHandler(PipelineUtils.baseInitAnd(ch -> {
+    final Settings.RouterConfig settings = this.configFile.getConfig().getRouterSettings();
+    final boolean headerOnlyRouting = settings.isHeaderOnlyRouting();
+    final PipelineUtils.BaseInitializer base = new PipelineUtils.BaseInitializer(
+        settings.getFlushConsolidationLimit(), settings.isConsolidateFlushesWithoutRead(),
+        settings.getBatchLatencyMicros(), settings.getBatchMaxPackets());
+    final Compression compression = settings.isCompression() ? Compression.DEFLATE : Compression.NONE;
+    final int compressionThreshold = settings.getCompressionThreshold();
+    final boolean varintFraming = settings.isVarintFraming();
+
+    b.childHandler(PipelineUtils.baseInitAnd(base, ch -> {
       final ChannelPipeline p = ch.pipeline();
+      final RouterPacketHandler packetHandler = new RouterPacketHandler();
       p.addFirst("trafficMetric", this.metric.getChannelTrafficHandler());
+      if (headerOnlyRouting) {
+        p.addAfter("frameDecoder", "routingHandler", new RoutingHandler(packetHandler,
+            this.metric.getPacketTrafficHandler()));
+      }
       p.addLast("packetMetric", this.metric.getPacketTrafficHandler());
       p.addLast(
-          new LoginHandler(new RouterLoginEngine(Router.this.getNetwork(), this.authentication),
+          new LoginHandler(new RouterLoginEngine(Router.this.getNetwork(), this.authentication,
+              compression, compressionThreshold, varintFraming),
               FutureUtils.newPromise()));
-      p.addLast(new ConnectionHandler(Router.this.getNetwork(), new RouterPacketHandler()));
+      p.addLast(new ConnectionHandler(Router.this.getNetwork(), packetHandler));
     }));
 
     b.localAddress(new InetSocketAddress(this.address.getHostText(), this.address.getPort()));
@@ -226,6 +243,8 @@ public class Router extends AbstractIdleService implements Owner {
       plugin.getExecutorService().shutdown();
     }
 
+    scheduler.shutdown();
+
     // Close EventLoopGroup
     getLogger().info("Closing EventLoop threads");
     eventLoop.shutdownGracefully();
@@ -0,0 +1,143 @@
+package de.mickare.routernet.router;
+
+import java.util.BitSet;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.mickare.routernet.RouterNetwork;
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Node;
+import de.mickare.routernet.metric.CacheCounter;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
+
+/**
+ * Caches the connections of the receivers of a target.
+ *
+ * Entries are tagged with the topology epoch of the network and are invalid as soon as a node or a
+ * connection changes. The least recently used targets are evicted when the cache is full.
+ */
+public class RoutingCache {
+
+  /**
+   * Receivers of a target as a set of connection slots, see {@link TunnelSubscribers}.
+   */
+  public static final class Route {
+    private final long epoch;
+    private final BitSet recipients;
+    private final Connection[] slots;
+    private final boolean complete;
+
+    private Route(long epoch, BitSet recipients, Connection[] slots, boolean complete) {
+      this.epoch = epoch;
+      this.recipients = recipients;
+      this.slots = slots;
+      this.complete = complete;
+    }
+
+    public boolean isRecipient(int slot) {
+      return recipients.get(slot);
+    }
+
+    /**
+     * Gets the next recipient slot, iterate with
+     * {@code for (int s = route.nextRecipient(0); s >= 0; s = route.nextRecipient(s + 1))}.
+     *
+     * @param fromSlot first slot to check
+     * @return next recipient slot or -1 if there is none
+     */
+    public int nextRecipient(int fromSlot) {
+      return recipients.nextSetBit(fromSlot);
+    }
+
+    /**
+     * Checks if every receiver of the target had a connection when the route was resolved.
+     *
+     * @return false if a receiver is not connected
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    /**
+     * Gets the connection of a recipient slot.
+     *
+     * @param slot of recipient
+     * @return connection
+     */
+    public Connection getConnection(int slot) {
+      return slots[slot];
+    }
+  }
+
+  private final RouterNetwork network;
+  private final TunnelSubscribers subscribers;
+  private final CacheCounter counter;
+  private final int maximumSize;
+  private final Cache<TargetMessage, Route> cache;
+
+  public RoutingCache(RouterNetwork network, TunnelSubscribers subscribers, CacheCounter counter,
+      int maximumSize) {
+    Preconditions.checkNotNull(network);
+    Preconditions.checkNotNull(subscribers);
+    Preconditions.checkNotNull(counter);
+    Preconditions.checkArgument(maximumSize >= 0);
+    this.network = network;
+    this.subscribers = subscribers;
+    this.counter = counter;
+    this.maximumSize = maximumSize;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  /**
+   * Gets the route to all receivers of the target, except the home node.
+   *
+   * @param target of message
+   * @return route to receivers
+   */
+  public Route getRoute(TargetMessage target) {
+    // The epoch must be read before the topology is resolved
+    final long epoch = network.getTopologyEpoch();
+    final Route cached = cache.getIfPresent(target);
+    if (cached != null && cached.epoch == epoch) {
+      counter.hit();
+      return cached;
+    }
+    counter.miss();
+
+    final Route route = resolve(epoch, target);
+    if (maximumSize > 0) {
+      cache.put(target, route);
+    }
+    return route;
+  }
+
+  private Route resolve(long epoch, TargetMessage target) {
+    final Connection[] slots = subscribers.getSlots();
+    final BitSet recipients = new BitSet(slots.length);
+    final Node home = network.getHome();
+    final boolean[] complete = {true};
+    network.forEachNode(target, node -> {
+      if (node == home) {
+        return;
+      }
+      final Connection con = network.getConnection(node.getId());
+      if (con != null) {
+        int slot = subscribers.getSlot(con);
+        // The slot table may be older than the connection
+        if (slot >= 0 && slot < slots.length && slots[slot] == con) {
+          recipients.set(slot);
+          return;
+        }
+      }
+      complete[0] = false;
+    });
+    return new Route(epoch, recipients, slots, complete[0]);
+  }
+
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+}
@@ -0,0 +1,153 @@
+package de.mickare.routernet.router;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+import de.mickare.routernet.core.AbstractNetwork;
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Tunnel;
+
+/**
+ * Index of the connections that registered a tunnel.
+ *
+ * Every connection gets a dense slot number, so the subscribers of a tunnel are a bitset over the
+ * slots. The bitsets are indexed by the dense tunnel index. Bitsets and tables are copy-on-write
+ * and must not be modified by readers.
+ */
+public class TunnelSubscribers {
+
+  private static final BitSet EMPTY = new BitSet(0);
+
+  private final AbstractNetwork network;
+  private final Map<Connection, Integer> slotsByConnection = new IdentityHashMap<>();
+  private final BitSet usedSlots = new BitSet();
+  private volatile Connection[] slots = new Connection[0];
+
+  private volatile BitSet[] subscribers = new BitSet[0];
+
+  public TunnelSubscribers(AbstractNetwork network) {
+    Preconditions.checkNotNull(network);
+    this.network = network;
+  }
+
+  /**
+   * Gets the slot table. The connection of a slot is at its index, free slots are null.
+   *
+   * @return immutable snapshot of slots
+   */
+  public Connection[] getSlots() {
+    return slots;
+  }
+
+  /**
+   * Gets the slot of a connection.
+   *
+   * @param connection to look up
+   * @return slot or -1 if the connection has none
+   */
+  public synchronized int getSlot(Connection connection) {
+    final Integer slot = slotsByConnection.get(connection);
+    return slot != null ? slot : -1;
+  }
+
+  /**
+   * Gets the slots of the connections that registered the tunnel.
+   *
+   * @param tunnelIndex dense index of tunnel
+   * @return immutable bitset of slots
+   */
+  public BitSet getSubscribers(int tunnelIndex) {
+    final BitSet[] subscribers = this.subscribers;
+    if (tunnelIndex > 0 && tunnelIndex < subscribers.length) {
+      final BitSet result = subscribers[tunnelIndex];
+      if (result != null) {
+        return result;
+      }
+    }
+    return EMPTY;
+  }
+
+  /**
+   * Assigns a slot to the connection and subscribes it to all tunnels it already registered.
+   *
+   * @param connection to add
+   * @return slot of connection
+   */
+  public synchronized int addConnection(Connection connection) {
+    Preconditions.checkNotNull(connection);
+    Integer slot = slotsByConnection.get(connection);
+    if (slot == null) {
+      slot = usedSlots.nextClearBit(0);
+      usedSlots.set(slot);
+      slotsByConnection.put(connection, slot);
+
+      final Connection[] copy = Arrays.copyOf(slots, Math.max(slots.length, slot + 1));
+      copy[slot] = connection;
+      slots = copy;
+    }
+    for (String name : connection.getRemoteTunnels().keySet()) {
+      final Tunnel tunnel = network.getTunnelIfPresent(name);
+      if (tunnel != null && tunnel.getIndex() > 0) {
+        subscribe(tunnel.getIndex(), slot);
+      }
+    }
+    return slot;
+  }
+
+  /**
+   * Unsubscribes the connection from all tunnels and frees its slot.
+   *
+   * @param connection to remove
+   */
+  public synchronized void removeConnection(Connection connection) {
+    final Integer slot = slotsByConnection.remove(connection);
+    if (slot == null) {
+      return;
+    }
+    final BitSet[] tunnels = subscribers.clone();
+    for (int i = 0; i < tunnels.length; ++i) {
+      if (tunnels[i] != null && tunnels[i].get(slot)) {
+        final BitSet copy = (BitSet) tunnels[i].clone();
+        copy.clear(slot);
+        tunnels[i] = copy.isEmpty() ? null : copy;
+      }
+    }
+    subscribers = tunnels;
+    final Connection[] copy = slots.clone();
+    copy[slot] = null;
+    slots = copy;
+    usedSlots.clear(slot);
+  }
+
+  /**
+   * Subscribes the connection to the tunnel. Connections without a slot are subscribed when they
+   * are added.
+   *
+   * @param connection that registered the tunnel
+   * @param tunnel with dense index
+   */
+  public synchronized void subscribe(Connection connection, Tunnel tunnel) {
+    Preconditions.checkArgument(tunnel.getIndex() > 0);
+    final Integer slot = slotsByConnection.get(connection);
+    if (slot != null) {
+      subscribe(tunnel.getIndex(), slot);
+    }
+  }
+
+  private void subscribe(int tunnelIndex, int slot) {
+    final BitSet old = getSubscribers(tunnelIndex);
+    if (!old.get(slot)) {
+      final BitSet copy = old != EMPTY ? (BitSet) old.clone() : new BitSet(slots.length);
+      copy.set(slot);
+      final BitSet[] tunnels =
+          Arrays.copyOf(subscribers, Math.max(subscribers.length, tunnelIndex + 1));
+      tunnels[tunnelIndex] = copy;
+      subscribers = tunnels;
+    }
+  }
+
+}
@@ -73,7 +73,7 @@ public class InfoCommand extends AbstractCommand {
         if (con.hasRemoteTunnels()) {
           sb.append(" none");
         } else {
-          con.getRemoteTunnels().values().stream().forEach(t -> sb.append("\n\t - ").append(t));
+          con.getRemoteTunnels().keySet().stream().forEach(t -> sb.append("\n\t - ").append(t));
         }
 
       }
@@ -5,6 +5,11 @@ import java.util.UUID;
 
 import com.google.common.collect.Sets;
 
+import de.mickare.routernet.core.packet.FragmentAssembler;
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
+import de.mickare.routernet.netty.PipelineUtils;
+import de.mickare.routernet.router.DictionaryTrainer;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -16,6 +21,39 @@ public class Settings {
     private NodeSettings home = new NodeSettings();
     private String address = "0.0.0.0:2020";
     private String password = "Wkn2Z[uBYT]x1T/hY1Ac";
+    // Forward tunnel and procedure messages without decoding their payload
+    private boolean headerOnlyRouting = true;
+    // Maximum number of cached targets, 0 disables the routing cache
+    private int routingCacheSize = 1024;
+    // Maximum number of flushes merged into one, 0 disables flush consolidation
+    private int flushConsolidationLimit = PipelineUtils.DEFAULT_FLUSH_CONSOLIDATION_LIMIT;
+    // Also merge flushes that are not caused by a read. Forwarded messages are written while another
+    // connection reads, so without this every forwarded message is flushed on its own
+    private boolean consolidateFlushesWithoutRead = true;
+    // Time in microseconds a tunnel message may wait for a batch, e.g. 1000. 0 disables batching
+    private long batchLatencyMicros = PipelineUtils.DEFAULT_BATCH_LATENCY_MICROS;
+    private int batchMaxPackets = PipelineUtils.DEFAULT_BATCH_MAX_PACKETS;
+    // Compress frames of clients that support it, frames below the threshold are sent raw. Off by
+    // default, because every routed frame is inflated on receive and deflated again for each
+    // receiver, which costs more than it saves on fast links
+    private boolean compression = false;
+    private int compressionThreshold = PipelineUtils.DEFAULT_COMPRESSION_THRESHOLD;
+    // Use varint length prefixes with clients that support them
+    private boolean varintFraming = true;
+    // Sample every n-th message of object tunnels to train compression dictionaries, 0 disables
+    private int dictionarySampleInterval = 16;
+    // Number of samples a dictionary is trained from
+    private int dictionarySamples = 64;
+    private int dictionarySize = TunnelDictionary.DEFAULT_SIZE;
+    // Minimum time in milliseconds between two dictionaries of a tunnel. Receivers keep only the
+    // previous dictionary, so messages still in flight after two replacements are dropped
+    private long dictionaryMinIntervalMillis = DictionaryTrainer.DEFAULT_MIN_INTERVAL_MILLIS;
+    // Maximum bytes of incomplete fragmented packets addressed to the router
+    private long fragmentMemoryLimit = FragmentAssembler.DEFAULT_MEMORY_LIMIT;
+    // Maximum bytes of incomplete fragmented packets of one sender, limits the size of a packet
+    private long fragmentSenderMemoryLimit = FragmentAssembler.DEFAULT_SENDER_MEMORY_LIMIT;
+    // Time in milliseconds an incomplete fragmented packet waits for its next fragment
+    private long fragmentTimeoutMillis = FragmentAssembler.DEFAULT_TIMEOUT_MILLIS;
   }
 
   public static @Data @NoArgsConstructor class NodeSettings {
@@ -1,8 +1,7 @@
 package de.mickare.routernet.router.packet;
 
-import java.util.Set;
+import java.util.BitSet;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import de.mickare.routernet.ProtocolUtils;
 import de.mickare.routernet.RouterNetwork;
@@ -10,19 +9,31 @@ import de.mickare.routernet.core.Connection;
 import de.mickare.routernet.core.Node;
 import de.mickare.routernet.core.ProcedureManager;
 import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.TargetMatcher;
 import de.mickare.routernet.core.Tunnel;
 import de.mickare.routernet.core.Node.HomeNode;
 import de.mickare.routernet.core.packet.BasePacketHandler;
 import de.mickare.routernet.core.packet.Packer;
 import de.mickare.routernet.core.procedure.Procedure;
+import de.mickare.routernet.core.tunnel.TunnelDictionary;
 import de.mickare.routernet.exception.ProtocolException;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.netty.PacketDecoder;
+import de.mickare.routernet.netty.PacketHeader;
+import de.mickare.routernet.protocol.ComponentsProtocol.UUIDMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeRemoveMessage;
 import de.mickare.routernet.protocol.NetworkProtocol.NodeTopologyMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ErrorMessage;
 import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.PacketBatch;
+import de.mickare.routernet.protocol.TransportProtocol.PacketFragment;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureMessage;
 import de.mickare.routernet.protocol.TransportProtocol.ProcedureResponseMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
 import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelRegister;
+import de.mickare.routernet.router.RoutingCache;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelFuture;
 
 public class RouterPacketHandler extends BasePacketHandler {
@@ -37,64 +48,124 @@ public class RouterPacketHandler extends BasePacketHandler {
     throw new ProtocolException("invalid packet");
   }
 
+  /**
+   * Routes a packet of which only the header was decoded.
+   *
+   * @param in the connection the packet was received from
+   * @param header the packet without payload, see {@link PacketHeader}
+   * @param frame the whole serialized packet, that is forwarded as it is
+   */
+  public void route(final Connection in, final Packet header, final ByteBuf frame)
+      throws Exception {
+    switch (header.getValueCase()) {
+      case TUNNELMESSAGE:
+        route(in, header.getTunnelMessage(), frame);
+        break;
+      case PROCEDUREMESSAGE:
+        route(in, header.getProcedureMessage(), frame);
+        break;
+      case BATCH:
+        route(in, header.getBatch(), frame);
+        break;
+      case FRAGMENT:
+        route(in, header.getFragment(), frame);
+        break;
+      default:
+        throw new ProtocolException("packet not routable");
+    }
+  }
+
   @Override
   public void handle(final Connection in, final ProcedureMessage msg) throws Exception {
+    route(in, msg, null);
+  }
+
+  private void route(final Connection in, final ProcedureMessage msg, final ByteBuf frame)
+      throws Exception {
 
     final RouterNetwork net = (RouterNetwork) in.getNetwork();
     final UUID sender = ProtocolUtils.convert(msg.getSender());
-    final Target target = new Target(msg.getTarget());
-    final Set<Node> nodes = net.getNodes(target);
+    final TargetMessage target = msg.getTarget();
+    final RoutingCache.Route route = net.getRoutingCache().getRoute(target);
     final HomeNode home = net.getHome();
 
     if (home.isPart(target)) {
-      net.getProcedureManager().handle(msg);
+      net.getProcedureManager()
+          .handle(frame != null ? PacketDecoder.decode(frame).getProcedureMessage() : msg);
     }
 
-    Set<UUID> nodesUUID = nodes.stream().map(Node::getId).collect(Collectors.toSet());
-
     // Handle unknown UUIDS
-    target.getNodesInclude().stream().filter(id -> !nodesUUID.contains(id)).forEach(unknown -> {
-      sendProcedureFailNotConnected(in, msg, sender, unknown);
-    });
+    if (!target.getToAll()) {
+      for (int i = 0; i < target.getNodesIncludeCount(); ++i) {
+        final UUIDMessage id = target.getNodesInclude(i);
+        if (!TargetMatcher.isNodeExcluded(target, id.getMostSignificantBits(),
+            id.getLeastSignificantBits())) {
+          final UUID unknown = ProtocolUtils.convert(id);
+          if (net.getNode(unknown) == null) {
+            sendProcedureFailNotConnected(in, msg, sender, unknown);
+          }
+        }
+      }
+    }
 
     Procedure proc = null;
     if (msg.getContentCase() == ProcedureMessage.ContentCase.CALL) {
       proc = new Procedure(msg.getCall().getProcedure());
     }
 
-    final Packet packet = Packer.pack(msg);
+    // Encode only once for all receivers
+    EncodedPacket encoded = null;
+    try {
+      for (int slot = route.nextRecipient(0); slot >= 0; slot = route.nextRecipient(slot + 1)) {
+        final Connection out = route.getConnection(slot);
+
+        if (!sender.equals(out.getPeerId())) {
+          final Node node = out.getNode();
+
+          if (out.isActive()) {
+
+            if (proc != null && !node.hasProcedure(proc)) {
+              sendProcedureFail(in, msg, sender, node.getId(), ErrorMessage.newBuilder()
+                  .setType(ErrorMessage.Type.UNDEFINED).setMessage("unregistered procedure"));
+              continue;
+            }
+
+            if (encoded == null) {
+              encoded = frame != null ? new EncodedPacket(frame.retain())
+                  : EncodedPacket.encode(Packer.pack(msg));
+            }
+            ChannelFuture cf = out.writeAndFlush(encoded.retainedDuplicate());
+            if (msg.getContentCase() == ProcedureMessage.ContentCase.CALL) {
+              cf.addListener(f -> {
+                if (!f.isSuccess()) {
+                  sendProcedureFailNotConnected(in, msg, sender, node.getId());
+                }
+              });
+            }
+
+          } else {
+
+            if (msg.getContentCase() == ProcedureMessage.ContentCase.CALL) {
+              sendProcedureFailNotConnected(in, msg, sender, node.getId());
+            }
 
-    for (final Node node : nodes) {
-
-      if (node != home && !sender.equals(node.getId())) {
-        Connection out = net.getConnection(node.getId());
-
-        if (out != null && out.isActive()) {
-
-          if (proc != null && !node.hasProcedure(proc)) {
-            sendProcedureFail(in, msg, sender, node.getId(), ErrorMessage.newBuilder()
-                .setType(ErrorMessage.Type.UNDEFINED).setMessage("unregistered procedure"));
-            continue;
-          }
-
-          ChannelFuture cf = out.writeAndFlush(packet);
-          if (msg.getContentCase() == ProcedureMessage.ContentCase.CALL) {
-            cf.addListener(f -> {
-              if (!f.isSuccess()) {
-                sendProcedureFailNotConnected(in, msg, sender, node.getId());
-              }
-            });
           }
-
-        } else {
-
-          if (msg.getContentCase() == ProcedureMessage.ContentCase.CALL) {
-            sendProcedureFailNotConnected(in, msg, sender, node.getId());
-          }
-
         }
+
       }
+    } finally {
+      if (encoded != null) {
+        encoded.release();
+      }
+    }
 
+    // Receivers without a connection are not part of the route
+    if (!route.isComplete() && msg.getContentCase() == ProcedureMessage.ContentCase.CALL) {
+      net.forEachNode(target, node -> {
+        if (node != home && !sender.equals(node.getId()) && net.getConnection(node.getId()) == null) {
+          sendProcedureFailNotConnected(in, msg, sender, node.getId());
+        }
+      });
     }
 
   }
@@ -120,31 +191,214 @@ public class RouterPacketHandler extends BasePacketHandler {
     in.writeAndFlush(m);
   }
 
+  @Override
+  public void handle(final Connection in, final TunnelRegister msg) throws Exception {
+    super.handle(in, msg);
+    final RouterNetwork net = (RouterNetwork) in.getNetwork();
+    final Tunnel tunnel = net.getTunnelIfPresent(msg.getName());
+    net.getTunnelSubscribers().subscribe(in, tunnel);
+    final TunnelDictionary dictionary = tunnel.getDictionary();
+    if (msg.getIndex() != tunnel.getIndex()
+        || msg.getDictionary().getVersion() != (dictionary != null ? dictionary.getVersion() : 0)) {
+      // Tell the connection the dense index and the dictionary of the tunnel
+      tunnel.sendTunnelRegister(in);
+    }
+  }
+
   @Override
   public void handle(final Connection in, final TunnelMessage msg) throws Exception {
+    route(in, msg, null);
+  }
+
+  @Override
+  public void handle(final Connection in, final PacketBatch msg) throws Exception {
+    if (msg.hasTarget()) {
+      route(in, msg, null);
+    } else {
+      super.handle(in, msg);
+    }
+  }
+
+  private void route(final Connection in, final TunnelMessage msg, final ByteBuf frame)
+      throws Exception {
 
     final RouterNetwork net = (RouterNetwork) in.getNetwork();
-    final UUID sender = ProtocolUtils.convert(msg.getSender());
-    final Target target = new Target(msg.getTarget());
-    final Set<Node> nodes = net.getNodes(target);
-    final HomeNode home = net.getHome();
+    final Tunnel tunnel = net.getTunnelByIndex(msg.getTunnelIndex(), msg.getTunnelId());
+    if (tunnel == null) {
+      // Nobody registered the tunnel
+      return;
+    }
 
-    if (home.isPart(target)) {
-      Tunnel tunnel = net.getTunnelById(msg.getTunnelId());
-      if (tunnel != null && !tunnel.isClosed()) {
-        tunnel.receiveProto(in, msg);
+    final boolean receiving = net.getHome().isPart(msg.getTarget()) && !tunnel.isClosed();
+    final boolean sampling = net.getDictionaryTrainer().isSampling(tunnel);
+    if (receiving || sampling) {
+      final TunnelMessage decoded =
+          frame != null ? PacketDecoder.decode(frame).getTunnelMessage() : msg;
+      if (sampling) {
+        net.getDictionaryTrainer().sample(tunnel, decoded);
+      }
+      if (receiving) {
+        tunnel.receiveProto(in, decoded);
+      }
+    }
+
+    forward(net, tunnel, msg.getSender(), msg.getTarget(), frame,
+        frame != null ? null : Packer.pack(msg));
+  }
+
+  private void route(final Connection in, final PacketBatch msg, final ByteBuf frame)
+      throws Exception {
+
+    final RouterNetwork net = (RouterNetwork) in.getNetwork();
+    final Tunnel tunnel = net.getTunnelByIndex(msg.getTunnelIndex(), msg.getTunnelId());
+    if (tunnel == null) {
+      // Nobody registered the tunnel
+      return;
+    }
+
+    final boolean receiving = net.getHome().isPart(msg.getTarget()) && !tunnel.isClosed();
+    final boolean sampling = net.getDictionaryTrainer().isSampling(tunnel);
+    if (receiving || sampling) {
+      final PacketBatch decoded = frame != null ? PacketDecoder.decode(frame).getBatch() : msg;
+      if (sampling) {
+        net.getDictionaryTrainer().sample(tunnel, decoded);
+      }
+      if (receiving) {
+        tunnel.receiveBatch(in, decoded);
+      }
+    }
+
+    // The batch is forwarded as a whole
+    forward(net, tunnel, msg.getSender(), msg.getTarget(), frame,
+        frame != null ? null : Packer.pack(msg));
+  }
+
+  @Override
+  public void handle(final Connection in, final PacketFragment msg) throws Exception {
+    route(in, msg, null);
+  }
+
+  private void route(final Connection in, final PacketFragment msg, final ByteBuf frame)
+      throws Exception {
+
+    if (!msg.hasTarget()) {
+      // Fragment of a packet for the router only
+      super.handle(in, frame != null ? PacketDecoder.decode(frame).getFragment() : msg);
+      return;
+    }
+
+    final RouterNetwork net = (RouterNetwork) in.getNetwork();
+    if (net.getHome().isPart(msg.getTarget())) {
+      final PacketFragment decoded =
+          frame != null ? PacketDecoder.decode(frame).getFragment() : msg;
+      final Packet packet = net.getFragmentAssembler()
+          .add(ProtocolUtils.convert(msg.getSender()), decoded);
+      if (packet != null) {
+        receive(in, packet);
       }
     }
 
-    for (Node node : nodes) {
+    // Fragments are forwarded as they arrive, only the receivers reassemble them
+    final Packet packet = frame != null ? null : Packer.pack(msg);
+    if (msg.getTunnelId() != 0) {
+      final Tunnel tunnel = net.getTunnelByIndex(msg.getTunnelIndex(), msg.getTunnelId());
+      if (tunnel != null) {
+        forward(net, tunnel, msg.getSender(), msg.getTarget(), frame, packet);
+      }
+    } else {
+      forward(net, ProtocolUtils.convert(msg.getSender()), msg.getTarget(), frame, packet);
+    }
+  }
+
+  /**
+   * Receives a reassembled packet that is addressed to the router, without routing it again.
+   */
+  private void receive(final Connection in, final Packet packet) throws Exception {
+    switch (packet.getValueCase()) {
+      case TUNNELMESSAGE:
+        super.handle(in, packet.getTunnelMessage());
+        break;
+      case PROCEDUREMESSAGE:
+        super.handle(in, packet.getProcedureMessage());
+        break;
+      case BATCH:
+        super.handle(in, packet.getBatch());
+        break;
+      default:
+        throw new ProtocolException("packet not routable");
+    }
+  }
 
-      if (node != home && !sender.equals(node.getId())) {
-        Connection out = net.getConnection(node.getId());
-        if (out != null && out.hasRemoteTunnel(msg.getTunnelId())) {
-          out.writeAndFlush(msg);
+  /**
+   * Forwards a packet to all connected nodes of the target except the sender.
+   *
+   * @param frame the serialized packet or null
+   * @param packet the packet if there is no frame
+   */
+  private void forward(final RouterNetwork net, final UUID sender, final TargetMessage target,
+      final ByteBuf frame, final Packet packet) {
+
+    final RoutingCache.Route route = net.getRoutingCache().getRoute(target);
+
+    // Encode only once for all receivers
+    EncodedPacket encoded = null;
+    try {
+      for (int slot = route.nextRecipient(0); slot >= 0; slot = route.nextRecipient(slot + 1)) {
+        final Connection out = route.getConnection(slot);
+        if (sender.equals(out.getPeerId())) {
+          continue;
         }
+        if (out.isActive()) {
+          if (encoded == null) {
+            encoded = frame != null ? new EncodedPacket(frame.retain())
+                : EncodedPacket.encode(packet);
+          }
+          out.writeAndFlushFast(encoded.retainedDuplicate());
+        }
+      }
+    } finally {
+      if (encoded != null) {
+        encoded.release();
       }
+    }
+
+  }
+
+  /**
+   * Forwards a tunnel packet to all subscribers of the tunnel that are receivers of the target.
+   *
+   * @param frame the serialized packet or null
+   * @param packet the packet if there is no frame
+   */
+  private void forward(final RouterNetwork net, final Tunnel tunnel, final UUIDMessage sender,
+      final TargetMessage target, final ByteBuf frame, final Packet packet) {
+
+    final RoutingCache.Route route = net.getRoutingCache().getRoute(target);
+
+    // Encode only once for all receivers
+    EncodedPacket encoded = null;
+    try {
+      final BitSet subscribers = net.getTunnelSubscribers().getSubscribers(tunnel.getIndex());
+      for (int slot = subscribers.nextSetBit(0); slot >= 0;
+          slot = subscribers.nextSetBit(slot + 1)) {
+        if (!route.isRecipient(slot)) {
+          continue;
+        }
+        final Connection out = route.getConnection(slot);
 
+        if (!TargetMatcher.is(sender, out.getPeerId())) {
+          if (encoded == null) {
+            encoded = frame != null ? new EncodedPacket(frame.retain())
+                : EncodedPacket.encode(packet);
+          }
+          out.writeAndFlushFast(encoded.retainedDuplicate());
+        }
+
+      }
+    } finally {
+      if (encoded != null) {
+        encoded.release();
+      }
     }
 
   }
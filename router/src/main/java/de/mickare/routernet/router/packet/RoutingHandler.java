@@ -0,0 +1,73 @@
+package de.mickare.routernet.router.packet;
+
+import com.google.common.base.Preconditions;
+
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.metric.PacketTrafficHandler;
+import de.mickare.routernet.netty.ConnectionHandler;
+import de.mickare.routernet.netty.PacketHeader;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Routes tunnel and procedure messages of logged in connections by their header only. The frames
+ * are forwarded without decoding the payload. All other frames are passed to the protobuf decoder.
+ *
+ * Routed frames do not reach the packet metric of the pipeline, so they are counted here.
+ */
+public class RoutingHandler extends ChannelInboundHandlerAdapter {
+
+  private final RouterPacketHandler handler;
+  private final PacketTrafficHandler<?> packetMetric;
+  private Connection connection = null;
+
+  public RoutingHandler(RouterPacketHandler handler, PacketTrafficHandler<?> packetMetric) {
+    Preconditions.checkNotNull(handler);
+    Preconditions.checkNotNull(packetMetric);
+    this.handler = handler;
+    this.packetMetric = packetMetric;
+  }
+
+  private Connection getConnection(ChannelHandlerContext ctx) {
+    if (connection == null) {
+      ConnectionHandler con = ctx.pipeline().get(ConnectionHandler.class);
+      if (con != null) {
+        connection = con.getConnection();
+      }
+    }
+    return connection;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof ByteBuf) {
+      final Connection con = getConnection(ctx);
+      if (con != null) {
+        final ByteBuf frame = (ByteBuf) msg;
+        final Packet header;
+        try {
+          header = PacketHeader.decode(frame);
+        } catch (Exception e) {
+          frame.release();
+          throw e;
+        }
+        if (header != null) {
+          packetMetric.countRead(ctx.channel());
+          try {
+            handler.route(con, header, frame);
+          } finally {
+            frame.release();
+          }
+          return;
+        }
+        // Not routable, decode it completely
+        ctx.fireChannelRead(frame);
+        return;
+      }
+    }
+    ctx.fireChannelRead(msg);
+  }
+
+}
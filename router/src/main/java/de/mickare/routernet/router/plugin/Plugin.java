@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import de.mickare.routernet.core.Serialization;
 import de.mickare.routernet.router.Router;
 import de.mickare.routernet.util.LazyCache;
 import lombok.Getter;
@@ -44,6 +45,8 @@ public abstract class Plugin {
     try {
       this.enabled = false;
       this.onDisable();
+      // Cached classes of the plugin must not outlive it
+      Serialization.invalidate(getClass().getClassLoader());
       for (java.util.logging.Handler handler : getLogger().getHandlers()) {
         handler.close();
       }
@@ -0,0 +1,284 @@
+package de.mickare.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+import de.mickare.routernet.ProtocolUtils;
+import de.mickare.routernet.RouterNetwork;
+import de.mickare.routernet.core.Connection;
+import de.mickare.routernet.core.Node.HomeNode;
+import de.mickare.routernet.core.Target;
+import de.mickare.routernet.core.Tunnel;
+import de.mickare.routernet.metric.Metric;
+import de.mickare.routernet.netty.ChannelWrapper;
+import de.mickare.routernet.netty.ConnectionHandler;
+import de.mickare.routernet.netty.EncodedPacket;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeMessage;
+import de.mickare.routernet.protocol.NetworkProtocol.NodeUpdateMessage;
+import de.mickare.routernet.protocol.TransportProtocol.Packet;
+import de.mickare.routernet.protocol.TransportProtocol.TargetMessage;
+import de.mickare.routernet.protocol.TransportProtocol.TunnelMessage;
+import de.mickare.routernet.router.RoutingCache;
+import de.mickare.routernet.router.TunnelSubscribers;
+import de.mickare.routernet.router.config.Settings;
+import de.mickare.routernet.router.packet.RouterPacketHandler;
+import de.mickare.routernet.router.packet.RoutingHandler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class RoutingTest {
+
+  private static final Logger LOGGER = Logger.getLogger(RoutingTest.class.getName());
+
+  EventLoopGroup group;
+  Metric metric;
+  Settings.RouterConfig settings;
+  RouterNetwork network;
+  final List<EmbeddedChannel> channels = new ArrayList<>();
+
+  @Before
+  public void setup() {
+    group = new DefaultEventLoopGroup(1);
+    metric = new Metric(group);
+    settings = new Settings.RouterConfig();
+    settings.setDictionarySampleInterval(0);
+    network = newNetwork();
+  }
+
+  @After
+  public void tearDown() {
+    channels.forEach(EmbeddedChannel::finishAndReleaseAll);
+    group.shutdownGracefully();
+  }
+
+  private RouterNetwork newNetwork() {
+    return new RouterNetwork(LOGGER, group, new HomeNode(new UUID(0, 1)), settings, metric,
+        Runnable::run);
+  }
+
+  private Connection connect(int id, String... namespaces) {
+    final Connection con = node(id, namespaces);
+    con.addToNetwork();
+    return con;
+  }
+
+  private Connection node(int id, String... namespaces) {
+    final EmbeddedChannel channel = new EmbeddedChannel();
+    channels.add(channel);
+    final Connection con = new Connection(network, new UUID(1, id), new ChannelWrapper(channel));
+    update(con, namespaces);
+    return con;
+  }
+
+  private void update(Connection con, String... namespaces) {
+    NodeMessage.Builder b = NodeMessage.newBuilder();
+    b.setId(ProtocolUtils.convert(con.getPeerId()));
+    b.setStartTimestamp(1);
+    b.setType(NodeMessage.Type.BUKKIT);
+    for (String namespace : namespaces) {
+      b.addNamespaces(namespace);
+    }
+    network.updateNode(con, b.build());
+  }
+
+  private static TargetMessage to(UUID id) {
+    return Target.to(id).getProtocolMessage();
+  }
+
+  private static List<Connection> recipients(RoutingCache.Route route) {
+    final List<Connection> result = new ArrayList<>();
+    for (int s = route.nextRecipient(0); s >= 0; s = route.nextRecipient(s + 1)) {
+      result.add(route.getConnection(s));
+    }
+    return result;
+  }
+
+  @Test
+  public void testEpoch() {
+    final RoutingCache cache = network.getRoutingCache();
+    final Connection a = connect(1, "lobby");
+    final TargetMessage lobby = Target.to("lobby").getProtocolMessage();
+
+    final RoutingCache.Route first = cache.getRoute(lobby);
+    assertEquals(1, recipients(first).size());
+    assertSame(first, cache.getRoute(lobby));
+
+    // Node added
+    final Connection b = node(2, "lobby");
+    final RoutingCache.Route known = cache.getRoute(lobby);
+    assertNotSame(first, known);
+    assertFalse(known.isComplete());
+
+    // Connection added
+    b.addToNetwork();
+    final RoutingCache.Route second = cache.getRoute(lobby);
+    assertNotSame(known, second);
+    assertTrue(second.isComplete());
+    assertEquals(2, recipients(second).size());
+    assertSame(second, cache.getRoute(lobby));
+
+    // Namespace changed
+    update(b, "game");
+    final RoutingCache.Route third = cache.getRoute(lobby);
+    assertNotSame(second, third);
+    assertEquals(1, recipients(third).size());
+    assertSame(a, recipients(third).get(0));
+
+    // Connection removed
+    a.removeFromNetwork();
+    final RoutingCache.Route fourth = cache.getRoute(lobby);
+    assertNotSame(third, fourth);
+    assertTrue(recipients(fourth).isEmpty());
+  }
+
+  @Test
+  public void testEviction() {
+    settings.setRoutingCacheSize(2);
+    network = newNetwork();
+    final RoutingCache cache = network.getRoutingCache();
+    final long misses = metric.getRoutingCache().getMisses();
+
+    final RoutingCache.Route a = cache.getRoute(to(new UUID(1, 1)));
+    final RoutingCache.Route b = cache.getRoute(to(new UUID(1, 2)));
+    // a is used more recently than b
+    assertSame(a, cache.getRoute(to(new UUID(1, 1))));
+    cache.getRoute(to(new UUID(1, 3)));
+
+    assertSame(a, cache.getRoute(to(new UUID(1, 1))));
+    assertNotSame(b, cache.getRoute(to(new UUID(1, 2))));
+    assertEquals(4, metric.getRoutingCache().getMisses() - misses);
+    assertEquals(2, metric.getRoutingCache().getHits());
+  }
+
+  @Test
+  public void testSlotReuse() {
+    final TunnelSubscribers subscribers = network.getTunnelSubscribers();
+    final Tunnel tunnel = network.getTunnel("test");
+
+    final Connection a = connect(1);
+    final Connection b = connect(2);
+    b.registerRemoteTunnel(tunnel.getId(), tunnel.getName());
+    subscribers.subscribe(b, tunnel);
+    final int slotA = subscribers.getSlot(a);
+    final int slotB = subscribers.getSlot(b);
+    assertTrue(subscribers.getSubscribers(tunnel.getIndex()).get(slotB));
+
+    b.removeFromNetwork();
+    assertEquals(-1, subscribers.getSlot(b));
+    assertNull(subscribers.getSlots()[slotB]);
+    assertTrue(subscribers.getSubscribers(tunnel.getIndex()).isEmpty());
+
+    // The free slot is used again, without the subscriptions of the old connection
+    final Connection c = connect(3);
+    assertEquals(slotB, subscribers.getSlot(c));
+    assertSame(c, subscribers.getSlots()[slotB]);
+    assertSame(a, subscribers.getSlots()[slotA]);
+    assertFalse(subscribers.getSubscribers(tunnel.getIndex()).get(slotB));
+  }
+
+  @Test
+  public void testComplete() {
+    final RoutingCache cache = network.getRoutingCache();
+    final Connection a = connect(1, "lobby");
+
+    assertTrue(cache.getRoute(to(a.getPeerId())).isComplete());
+    assertTrue(cache.getRoute(Target.to("lobby").getProtocolMessage()).isComplete());
+    // Only the home node
+    assertTrue(cache.getRoute(to(network.getHome().getId())).isComplete());
+
+    // Known node without a connection
+    final Connection b = node(2, "lobby");
+    assertTrue(network.getNodesOfNamespace("lobby").contains(b.getNode()));
+    final RoutingCache.Route route = cache.getRoute(Target.to("lobby").getProtocolMessage());
+    assertFalse(route.isComplete());
+    assertEquals(1, recipients(route).size());
+  }
+
+  private EmbeddedChannel routingChannel(Connection[] con) {
+    final EmbeddedChannel channel = new EmbeddedChannel();
+    channels.add(channel);
+    channel.pipeline().addLast(
+        new RoutingHandler(new RouterPacketHandler(), metric.getPacketTrafficHandler()),
+        new ConnectionHandler(network, new RouterPacketHandler()) {
+          @Override
+          public Connection getConnection() {
+            return con[0];
+          }
+        });
+    return channel;
+  }
+
+  @Test
+  public void testRoutingHandler() {
+    final Tunnel tunnel = network.getTunnel("test");
+    final Connection[] in = {null};
+    final EmbeddedChannel channel = routingChannel(in);
+
+    final Connection b = connect(2);
+    b.registerRemoteTunnel(tunnel.getId(), tunnel.getName());
+    network.getTunnelSubscribers().subscribe(b, tunnel);
+    final EmbeddedChannel out = (EmbeddedChannel) b.getChannel().getChannel();
+    out.releaseOutbound();
+
+    final byte[] data = Packet.newBuilder()
+        .setTunnelMessage(TunnelMessage.newBuilder().setTunnelId(tunnel.getId())
+            .setTunnelIndex(tunnel.getIndex()).setTarget(to(b.getPeerId()))
+            .setSender(ProtocolUtils.convert(new UUID(1, 1)))
+            .setData(ByteString.copyFromUtf8("Hello")))
+        .build().toByteArray();
+
+    // Not logged in, the frame is decoded
+    ByteBuf frame = Unpooled.wrappedBuffer(data);
+    channel.writeInbound(frame);
+    assertSame(frame, channel.readInbound());
+    assertNull(out.readOutbound());
+    frame.release();
+
+    // Forwarded without decoding
+    in[0] = new Connection(network, new UUID(1, 1), new ChannelWrapper(channel));
+    frame = Unpooled.wrappedBuffer(data);
+    channel.writeInbound(frame);
+    assertNull(channel.readInbound());
+
+    final EncodedPacket forwarded = out.readOutbound();
+    try {
+      assertArrayEquals(data, ByteBufUtil.getBytes(forwarded.content()));
+      // Only the forwarded packet holds the frame
+      assertEquals(1, frame.refCnt());
+    } finally {
+      forwarded.release();
+    }
+    assertEquals(0, frame.refCnt());
+    assertNull(out.readOutbound());
+
+    // Not routable
+    final byte[] other = Packet.newBuilder()
+        .setNodeUpdate(NodeUpdateMessage.newBuilder()
+            .setNode(NodeMessage.newBuilder().setName("a"))).build().toByteArray();
+    frame = Unpooled.wrappedBuffer(other);
+    channel.writeInbound(frame);
+    assertSame(frame, channel.readInbound());
+    frame.release();
+  }
+
+}